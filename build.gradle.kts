@@ -237,4 +237,28 @@ tasks.register<Zip>("packageZip") {
 tasks.check {
     dependsOn(tasks.jacocoTestCoverageVerification)
     dependsOn(tasks.spotlessCheck)
-}
\ No newline at end of file
+}
+
+// Headless batch analysis: ./gradlew batch --args="<itv-directory> <site-config.json> ..."
+tasks.register<JavaExec>("batch") {
+    group = "application"
+    description = "Runs the headless batch analysis over a directory of ITV files"
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("ca.lajthabalazs.pressure_integrity_test.main.BatchMain")
+}
+
+// Headless server: ./gradlew server --args="<site-config.json> --itv <file> [--port <n>] ..."
+tasks.register<JavaExec>("server") {
+    group = "application"
+    description = "Runs the pipeline headless and serves the vectors as server-sent events"
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("ca.lajthabalazs.pressure_integrity_test.main.ServerMain")
+}
+
+// Pipeline benchmark: ./gradlew benchmark --args="<site-config.json> --itv <file> [--runs <n>] ..."
+tasks.register<JavaExec>("benchmark") {
+    group = "application"
+    description = "Measures pipeline throughput and latency on 0, 1 and 3 extra threads"
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("ca.lajthabalazs.pressure_integrity_test.main.BenchmarkMain")
+}
@@ -0,0 +1,134 @@
+package ca.lajthabalazs.pressure_integrity_test.batch;
+
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.LeakageMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.RegressionLeakageMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.StageResult;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Summaries of all files of a batch run plus the wall-clock time of the run.
+ *
+ * @param files one summary per file, in file name order
+ * @param elapsedNanos wall-clock time of the whole run
+ */
+public record BatchReport(List<ItvFileSummary> files, long elapsedNanos) {
+
+  private static final double NANOS_PER_SECOND = 1e9;
+  private static final double BYTES_PER_MB = 1e6;
+
+  public BatchReport {
+    files = List.copyOf(files);
+  }
+
+  /** Returns the total size of the files in bytes. */
+  public long totalBytes() {
+    long total = 0;
+    for (ItvFileSummary file : files) {
+      total += file.bytes();
+    }
+    return total;
+  }
+
+  /** Returns the number of files processed per second of wall-clock time. */
+  public double filesPerSecond() {
+    return files.size() / seconds();
+  }
+
+  /** Returns the number of megabytes (10^6 bytes) processed per second of wall-clock time. */
+  public double megabytesPerSecond() {
+    return totalBytes() / BYTES_PER_MB / seconds();
+  }
+
+  private double seconds() {
+    return Math.max(elapsedNanos, 1L) / NANOS_PER_SECOND;
+  }
+
+  /**
+   * Returns the summaries as CSV lines: a header, then one row per file. Per-stage columns are
+   * repeated for as many stages as the file with the most stages has; other files leave them empty.
+   */
+  public List<String> toCsvLines() {
+    int stageColumns = 0;
+    for (ItvFileSummary file : files) {
+      for (StageResult stage : file.stages()) {
+        stageColumns = Math.max(stageColumns, stage.stageIndex() + 1);
+      }
+    }
+    List<String> header =
+        new ArrayList<>(
+            List.of(
+                "file",
+                "bytes",
+                "vectors",
+                "published",
+                "leakage",
+                "regression_leakage",
+                "regression_leakage_ucl",
+                "elapsed_ms",
+                "error"));
+    for (int i = 0; i < stageColumns; i++) {
+      header.add("stage" + i + "_start_utc");
+      header.add("stage" + i + "_end_utc");
+      header.add("stage" + i + "_vectors");
+      header.add("stage" + i + "_leakage");
+      header.add("stage" + i + "_regression_leakage");
+      header.add("stage" + i + "_regression_leakage_ucl");
+    }
+    List<String> lines = new ArrayList<>();
+    lines.add(String.join(",", header));
+    for (ItvFileSummary file : files) {
+      lines.add(toCsvRow(file, stageColumns));
+    }
+    return lines;
+  }
+
+  private static String toCsvRow(ItvFileSummary file, int stageColumns) {
+    List<String> row = new ArrayList<>();
+    row.add(text(file.fileName()));
+    row.add(Long.toString(file.bytes()));
+    row.add(Integer.toString(file.vectorCount()));
+    row.add(Integer.toString(file.publishedCount()));
+    row.add(number(file.finalLeakage()));
+    row.add(number(file.finalRegressionLeakage()));
+    row.add(number(file.finalRegressionLeakageUcl()));
+    row.add(Long.toString(file.elapsedNanos() / 1_000_000L));
+    row.add(text(file.error()));
+    Map<Integer, StageResult> byIndex = new HashMap<>();
+    for (StageResult stage : file.stages()) {
+      byIndex.put(stage.stageIndex(), stage);
+    }
+    for (int i = 0; i < stageColumns; i++) {
+      StageResult stage = byIndex.get(i);
+      if (stage == null) {
+        row.addAll(List.of("", "", "", "", "", ""));
+        continue;
+      }
+      row.add(Long.toString(stage.startTimeUtc()));
+      row.add(Long.toString(stage.endTimeUtc()));
+      row.add(Integer.toString(stage.vectorCount()));
+      Map<String, BigDecimal> leakages = stage.leakageBySourceId();
+      row.add(number(leakages.get(LeakageMeasurementVectorStream.LEAKAGE_SOURCE_ID)));
+      row.add(
+          number(
+              leakages.get(RegressionLeakageMeasurementVectorStream.REGRESSION_LEAKAGE_SOURCE_ID)));
+      row.add(
+          number(
+              leakages.get(
+                  RegressionLeakageMeasurementVectorStream.REGRESSION_LEAKAGE_UCL_SOURCE_ID)));
+    }
+    return String.join(",", row);
+  }
+
+  private static String number(BigDecimal value) {
+    return value != null ? value.toPlainString() : "";
+  }
+
+  /** Keeps free text on one CSV cell: commas and line breaks become spaces. */
+  private static String text(String value) {
+    return value != null ? value.replaceAll("[,\\r\\n]", " ") : "";
+  }
+}
@@ -0,0 +1,196 @@
+package ca.lajthabalazs.pressure_integrity_test.batch;
+
+import ca.lajthabalazs.pressure_integrity_test.config.CalibrationConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.SiteConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.TestConfig;
+import ca.lajthabalazs.pressure_integrity_test.io.ItvFileReader;
+import ca.lajthabalazs.pressure_integrity_test.io.TextFileReader;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Measurement;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.FullStackLeakageMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.LeakageMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.RegressionLeakageMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.StageResultCollector;
+import ca.lajthabalazs.pressure_integrity_test.measurement.streaming.MeasurementVectorStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * Re-evaluates a directory of ITV files without the UI.
+ *
+ * <p>Every file is replayed through a {@link FullStackLeakageMeasurementVectorStream} followed by
+ * a {@link RegressionLeakageMeasurementVectorStream} and a {@link StageResultCollector}, exactly as
+ * a live test would process it. Files are processed in parallel on a fixed number of threads; each
+ * thread holds one file at a time, so memory stays bounded by the thread count times the largest
+ * file regardless of how many files the directory holds.
+ */
+public class ItvBatchAnalyzer {
+
+  private final SiteConfig siteConfig;
+  private final CalibrationConfig calibrationConfig;
+  private final TestConfig testConfig;
+  private final ItvFileReader itvReader;
+  private final int threads;
+
+  /**
+   * Creates a batch analyzer.
+   *
+   * @param siteConfig site configuration; must not be null
+   * @param calibrationConfig optional calibration; if null, no calibration step is applied
+   * @param testConfig optional test configuration; if null, no per-stage results are produced
+   * @param textFileReader reader for the ITV files (e.g. with Windows-1250 encoding)
+   * @param threads number of files processed at the same time
+   * @throws IllegalArgumentException if {@code threads} is not positive
+   */
+  public ItvBatchAnalyzer(
+      SiteConfig siteConfig,
+      CalibrationConfig calibrationConfig,
+      TestConfig testConfig,
+      TextFileReader textFileReader,
+      int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("threads must be positive");
+    }
+    this.siteConfig = siteConfig;
+    this.calibrationConfig = calibrationConfig;
+    this.testConfig = testConfig;
+    this.itvReader = new ItvFileReader(textFileReader);
+    this.threads = threads;
+  }
+
+  /**
+   * Lists the ITV files (extension {@code .itv}, any case) directly in a directory, by name.
+   *
+   * @throws IOException if the directory cannot be listed
+   */
+  public static List<Path> listItvFiles(Path directory) throws IOException {
+    try (Stream<Path> entries = Files.list(directory)) {
+      return entries
+          .filter(Files::isRegularFile)
+          .filter(p -> p.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".itv"))
+          .sorted()
+          .toList();
+    }
+  }
+
+  /**
+   * Processes all ITV files of a directory.
+   *
+   * @param directory directory holding the ITV files
+   * @return one summary per file in file name order, and the wall-clock time
+   * @throws IOException if the directory cannot be listed
+   */
+  public BatchReport analyzeDirectory(Path directory) throws IOException {
+    return analyze(listItvFiles(directory));
+  }
+
+  /**
+   * Processes the given files. A file that cannot be read or processed gets a summary with an
+   * error message; the other files are not affected.
+   *
+   * @param files the ITV files
+   * @return one summary per file in the given order, and the wall-clock time
+   */
+  public BatchReport analyze(List<Path> files) {
+    long start = System.nanoTime();
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      List<CompletableFuture<ItvFileSummary>> futures = new ArrayList<>();
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        futures.add(
+            CompletableFuture.supplyAsync(() -> analyzeFile(file), pool)
+                .exceptionally(
+                    e -> ItvFileSummary.failed(name, 0L, 0L, String.valueOf(e.getCause()))));
+      }
+      List<ItvFileSummary> summaries = new ArrayList<>();
+      for (CompletableFuture<ItvFileSummary> future : futures) {
+        summaries.add(future.join());
+      }
+      return new BatchReport(summaries, System.nanoTime() - start);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /** Reads and replays one file; the vectors are released when it returns. */
+  ItvFileSummary analyzeFile(Path file) {
+    long start = System.nanoTime();
+    String name = file.getFileName().toString();
+    long bytes;
+    List<MeasurementVector> vectors;
+    try {
+      bytes = Files.size(file);
+      vectors = itvReader.read(file.toString());
+    } catch (IOException e) {
+      return ItvFileSummary.failed(name, 0L, System.nanoTime() - start, e.getMessage());
+    }
+
+    ReplaySource source = new ReplaySource();
+    FullStackLeakageMeasurementVectorStream chain =
+        new FullStackLeakageMeasurementVectorStream(
+            siteConfig, calibrationConfig, testConfig, source);
+    RegressionLeakageMeasurementVectorStream regression =
+        new RegressionLeakageMeasurementVectorStream(chain);
+    StageResultCollector stages = new StageResultCollector();
+    LastValidVector last = new LastValidVector();
+    regression.subscribe(last);
+    regression.subscribe(stages);
+    source.replay(vectors);
+    stages.flush();
+    regression.stop();
+    chain.stop();
+
+    return new ItvFileSummary(
+        name,
+        bytes,
+        vectors.size(),
+        last.count,
+        last.value(LeakageMeasurementVectorStream.LEAKAGE_SOURCE_ID),
+        last.value(RegressionLeakageMeasurementVectorStream.REGRESSION_LEAKAGE_SOURCE_ID),
+        last.value(RegressionLeakageMeasurementVectorStream.REGRESSION_LEAKAGE_UCL_SOURCE_ID),
+        stages.getResults(),
+        System.nanoTime() - start,
+        null);
+  }
+
+  /** Publishes the vectors of a file on the calling thread. */
+  private static final class ReplaySource extends MeasurementVectorStream {
+
+    private void replay(List<MeasurementVector> vectors) {
+      for (MeasurementVector vector : vectors) {
+        publish(vector);
+      }
+    }
+  }
+
+  /** Counts the published vectors and keeps the last one without a severe error. */
+  private static final class LastValidVector
+      implements MeasurementVectorStream.MeasurementVectorHandler {
+
+    private int count;
+    private MeasurementVector vector;
+
+    @Override
+    public void handle(MeasurementVector v) {
+      count++;
+      if (!v.hasSevereError()) {
+        vector = v;
+      }
+    }
+
+    private BigDecimal value(String sourceId) {
+      Measurement m = vector != null ? vector.getMeasurementsMap().get(sourceId) : null;
+      return m != null ? m.getValueInDefaultUnit() : null;
+    }
+  }
+}
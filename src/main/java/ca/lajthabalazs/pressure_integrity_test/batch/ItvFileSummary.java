@@ -0,0 +1,42 @@
+package ca.lajthabalazs.pressure_integrity_test.batch;
+
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.StageResult;
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Result of re-evaluating one ITV file.
+ *
+ * @param fileName name of the file, without directory
+ * @param bytes size of the file in bytes
+ * @param vectorCount number of measurement vectors read from the file
+ * @param publishedCount number of vectors that came out of the processing chain
+ * @param finalLeakage two-point leakage rate (v/v%/d) of the last valid vector, or null
+ * @param finalRegressionLeakage regression leakage rate (v/v%/d) of the last valid vector, or null
+ * @param finalRegressionLeakageUcl 95% upper confidence limit of the regression leakage, or null
+ * @param stages results of the test stages, in the order they ended
+ * @param elapsedNanos time spent reading and processing the file
+ * @param error message if the file could not be processed, otherwise null
+ */
+public record ItvFileSummary(
+    String fileName,
+    long bytes,
+    int vectorCount,
+    int publishedCount,
+    BigDecimal finalLeakage,
+    BigDecimal finalRegressionLeakage,
+    BigDecimal finalRegressionLeakageUcl,
+    List<StageResult> stages,
+    long elapsedNanos,
+    String error) {
+
+  public ItvFileSummary {
+    stages = List.copyOf(stages);
+  }
+
+  /** Returns a summary for a file that could not be processed. */
+  static ItvFileSummary failed(String fileName, long bytes, long elapsedNanos, String error) {
+    return new ItvFileSummary(
+        fileName, bytes, 0, 0, null, null, null, List.of(), elapsedNanos, error);
+  }
+}
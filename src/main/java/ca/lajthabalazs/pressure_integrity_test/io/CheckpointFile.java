@@ -0,0 +1,102 @@
+package ca.lajthabalazs.pressure_integrity_test.io;
+
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.Pipeline;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Base64;
+
+/**
+ * Keeps the latest {@link Pipeline} checkpoint in a file on the file system, as one Base64 line.
+ *
+ * <p>A checkpoint is first written to a temporary file next to the checkpoint file, forced to the
+ * disk, and then moved over the checkpoint file atomically, so a crash while writing leaves the
+ * previous checkpoint intact. Unlike the other files of this package it works on a {@link Path}
+ * rather than through {@link TextFileWriter}, because the atomic replace needs the file system.
+ *
+ * <pre>{@code
+ * CheckpointFile file = new CheckpointFile(Path.of("test-42.checkpoint"));
+ * Pipeline pipeline =
+ *     builder.resumeFrom(file.read()).checkpointEvery(600_000L, file).build(source);
+ * }</pre>
+ */
+public class CheckpointFile implements Pipeline.CheckpointSink {
+
+  /** Suffix of the temporary file a checkpoint is written to before it replaces the file. */
+  public static final String TEMP_SUFFIX = ".tmp";
+
+  private final Path path;
+  private final Path tempPath;
+
+  /**
+   * @param path the path to the checkpoint file
+   */
+  public CheckpointFile(Path path) {
+    this.path = path;
+    this.tempPath = path.resolveSibling(path.getFileName() + TEMP_SUFFIX);
+  }
+
+  /**
+   * Reads the checkpoint.
+   *
+   * @return the checkpoint, or null if the file does not exist
+   * @throws TextFileReader.FailedToReadFileException if the file cannot be read or is not Base64
+   */
+  public byte[] read() throws TextFileReader.FailedToReadFileException {
+    if (!Files.exists(path)) {
+      return null;
+    }
+    String text;
+    try {
+      text = Files.readString(path, StandardCharsets.US_ASCII).strip();
+    } catch (IOException e) {
+      throw new TextFileReader.FailedToReadFileException(
+          "Failed to read checkpoint file: " + path + ", " + e.getMessage(), e);
+    }
+    try {
+      return Base64.getDecoder().decode(text);
+    } catch (IllegalArgumentException e) {
+      throw new TextFileReader.FailedToReadFileException("Invalid checkpoint file: " + path, e);
+    }
+  }
+
+  /**
+   * Atomically replaces the file with the checkpoint.
+   *
+   * @throws TextFileReader.FailedToReadFileException if the file cannot be written or replaced
+   */
+  @Override
+  public void write(byte[] checkpoint) throws TextFileReader.FailedToReadFileException {
+    ByteBuffer content =
+        ByteBuffer.wrap(
+            (Base64.getEncoder().encodeToString(checkpoint) + System.lineSeparator())
+                .getBytes(StandardCharsets.US_ASCII));
+    try {
+      Path parent = path.toAbsolutePath().getParent();
+      if (parent != null) {
+        Files.createDirectories(parent);
+      }
+      try (FileChannel channel =
+          FileChannel.open(
+              tempPath,
+              StandardOpenOption.CREATE,
+              StandardOpenOption.TRUNCATE_EXISTING,
+              StandardOpenOption.WRITE)) {
+        while (content.hasRemaining()) {
+          channel.write(content);
+        }
+        channel.force(true);
+      }
+      Files.move(
+          tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      throw new TextFileReader.FailedToReadFileException(
+          "Failed to replace checkpoint file: " + path + ", " + e.getMessage(), e);
+    }
+  }
+}
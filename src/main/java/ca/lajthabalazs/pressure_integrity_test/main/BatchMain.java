@@ -0,0 +1,117 @@
+package ca.lajthabalazs.pressure_integrity_test.main;
+
+import ca.lajthabalazs.pressure_integrity_test.batch.BatchReport;
+import ca.lajthabalazs.pressure_integrity_test.batch.ItvBatchAnalyzer;
+import ca.lajthabalazs.pressure_integrity_test.config.CalibrationConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.CalibrationConfigReader;
+import ca.lajthabalazs.pressure_integrity_test.config.SiteConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.SiteConfigReader;
+import ca.lajthabalazs.pressure_integrity_test.config.TestConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.TestConfigReader;
+import ca.lajthabalazs.pressure_integrity_test.io.FileSystemTextFileReader;
+import ca.lajthabalazs.pressure_integrity_test.io.FileSystemTextFileWriter;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Headless entry point that re-evaluates every ITV file of a directory and writes one summary row
+ * per file to a CSV file.
+ *
+ * <pre>
+ * BatchMain &lt;itv-directory&gt; &lt;site-config.json&gt; [--calibration &lt;file&gt;]
+ *     [--test &lt;file&gt;] [--out &lt;file&gt;] [--threads &lt;n&gt;]
+ * </pre>
+ *
+ * <p>The summary goes to {@code batch-summary.csv} in the ITV directory unless {@code --out} is
+ * given; the thread count defaults to the number of processors.
+ */
+public class BatchMain {
+
+  private static final String USAGE =
+      "Usage: BatchMain <itv-directory> <site-config.json> [--calibration <file>]"
+          + " [--test <file>] [--out <file>] [--threads <n>]";
+
+  public static void main(String[] args) {
+    System.exit(run(args, System.out, System.err));
+  }
+
+  /** Runs the batch and returns the process exit code: 0 on success, 1 on failure, 2 on usage. */
+  static int run(String[] args, PrintStream out, PrintStream err) {
+    List<String> positional = new ArrayList<>();
+    String calibrationPath = null;
+    String testPath = null;
+    String outPath = null;
+    int threads = Runtime.getRuntime().availableProcessors();
+    try {
+      for (int i = 0; i < args.length; i++) {
+        switch (args[i]) {
+          case "--calibration" -> calibrationPath = args[++i];
+          case "--test" -> testPath = args[++i];
+          case "--out" -> outPath = args[++i];
+          case "--threads" -> threads = Integer.parseInt(args[++i]);
+          default -> positional.add(args[i]);
+        }
+      }
+    } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+      err.println(USAGE);
+      return 2;
+    }
+    if (positional.size() != 2 || threads < 1) {
+      err.println(USAGE);
+      return 2;
+    }
+    Path directory = Path.of(positional.get(0));
+    if (outPath == null) {
+      outPath = directory.resolve("batch-summary.csv").toString();
+    }
+
+    FileSystemTextFileReader configReader = new FileSystemTextFileReader();
+    try {
+      SiteConfig siteConfig = new SiteConfigReader(configReader).read(positional.get(1));
+      CalibrationConfig calibrationConfig =
+          calibrationPath != null
+              ? new CalibrationConfigReader(configReader).read(calibrationPath)
+              : null;
+      TestConfig testConfig =
+          testPath != null ? new TestConfigReader(configReader).read(testPath) : null;
+
+      ItvBatchAnalyzer analyzer =
+          new ItvBatchAnalyzer(
+              siteConfig,
+              calibrationConfig,
+              testConfig,
+              new FileSystemTextFileReader(charsetForItv()),
+              threads);
+      BatchReport report = analyzer.analyzeDirectory(directory);
+      new FileSystemTextFileWriter().writeAllLines(outPath, report.toCsvLines());
+      out.println(
+          String.format(
+              Locale.ROOT,
+              "%d files, %.1f MB in %.2f s: %.2f files/s, %.2f MB/s -> %s",
+              report.files().size(),
+              report.totalBytes() / 1e6,
+              report.elapsedNanos() / 1e9,
+              report.filesPerSecond(),
+              report.megabytesPerSecond(),
+              outPath));
+      return 0;
+    } catch (Exception e) {
+      err.println("Batch failed: " + e.getMessage());
+      return 1;
+    }
+  }
+
+  /** Charset for ITV files (Central European; often Windows-1250). */
+  private static Charset charsetForItv() {
+    try {
+      return Charset.forName("Windows-1250");
+    } catch (Exception e) {
+      return StandardCharsets.UTF_8;
+    }
+  }
+}
@@ -0,0 +1,103 @@
+package ca.lajthabalazs.pressure_integrity_test.main;
+
+import ca.lajthabalazs.pressure_integrity_test.config.CalibrationConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.CalibrationConfigReader;
+import ca.lajthabalazs.pressure_integrity_test.config.SiteConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.SiteConfigReader;
+import ca.lajthabalazs.pressure_integrity_test.config.TestConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.TestConfigReader;
+import ca.lajthabalazs.pressure_integrity_test.io.FileSystemTextFileReader;
+import ca.lajthabalazs.pressure_integrity_test.io.ItvFileReader;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.PipelineBenchmark;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Headless entry point that replays one ITV file through the full-stack pipeline on 0, 1 and 3
+ * extra threads and prints the throughput and end-to-end latency of every run (see {@link
+ * PipelineBenchmark}).
+ *
+ * <pre>
+ * BenchmarkMain &lt;site-config.json&gt; --itv &lt;file&gt; [--calibration &lt;file&gt;]
+ *     [--test &lt;file&gt;] [--runs &lt;n&gt;]
+ * </pre>
+ *
+ * <p>Every layout runs {@code --runs} times (default 5), the layouts taking turns so that JIT
+ * warm-up does not favour one of them; the first round is a warm-up.
+ */
+public class BenchmarkMain {
+
+  private static final String USAGE =
+      "Usage: BenchmarkMain <site-config.json> --itv <file> [--calibration <file>]"
+          + " [--test <file>] [--runs <n>]";
+
+  public static void main(String[] args) {
+    System.exit(run(args, System.out, System.err));
+  }
+
+  /** Runs the benchmark and returns the exit code: 0 on success, 1 on failure, 2 on usage. */
+  static int run(String[] args, PrintStream out, PrintStream err) {
+    List<String> positional = new ArrayList<>();
+    String itvPath = null;
+    String calibrationPath = null;
+    String testPath = null;
+    int runs = 5;
+    try {
+      for (int i = 0; i < args.length; i++) {
+        switch (args[i]) {
+          case "--itv" -> itvPath = args[++i];
+          case "--calibration" -> calibrationPath = args[++i];
+          case "--test" -> testPath = args[++i];
+          case "--runs" -> runs = Integer.parseInt(args[++i]);
+          default -> positional.add(args[i]);
+        }
+      }
+    } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+      err.println(USAGE);
+      return 2;
+    }
+    if (positional.size() != 1 || itvPath == null || runs < 1) {
+      err.println(USAGE);
+      return 2;
+    }
+
+    FileSystemTextFileReader configReader = new FileSystemTextFileReader();
+    try {
+      SiteConfig siteConfig = new SiteConfigReader(configReader).read(positional.get(0));
+      CalibrationConfig calibrationConfig =
+          calibrationPath != null
+              ? new CalibrationConfigReader(configReader).read(calibrationPath)
+              : null;
+      TestConfig testConfig =
+          testPath != null ? new TestConfigReader(configReader).read(testPath) : null;
+      List<MeasurementVector> vectors =
+          new ItvFileReader(new FileSystemTextFileReader(charsetForItv())).read(itvPath);
+
+      out.println(vectors.size() + " vectors of " + itvPath);
+      for (int round = 1; round <= runs; round++) {
+        for (int threads : PipelineBenchmark.LAYOUTS) {
+          PipelineBenchmark.Result result =
+              PipelineBenchmark.run(siteConfig, calibrationConfig, testConfig, vectors, threads);
+          out.println("run " + round + (round == 1 ? " (warm-up)" : "") + ": " + result.format());
+        }
+      }
+      return 0;
+    } catch (Exception e) {
+      err.println("Benchmark failed: " + e.getMessage());
+      return 1;
+    }
+  }
+
+  /** Charset for ITV files (Central European; often Windows-1250). */
+  private static Charset charsetForItv() {
+    try {
+      return Charset.forName("Windows-1250");
+    } catch (Exception e) {
+      return StandardCharsets.UTF_8;
+    }
+  }
+}
@@ -0,0 +1,174 @@
+package ca.lajthabalazs.pressure_integrity_test.main;
+
+import ca.lajthabalazs.pressure_integrity_test.config.CalibrationConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.CalibrationConfigReader;
+import ca.lajthabalazs.pressure_integrity_test.config.SiteConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.SiteConfigReader;
+import ca.lajthabalazs.pressure_integrity_test.config.TestConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.TestConfigReader;
+import ca.lajthabalazs.pressure_integrity_test.io.CheckpointFile;
+import ca.lajthabalazs.pressure_integrity_test.io.FileSystemTextFileReader;
+import ca.lajthabalazs.pressure_integrity_test.io.ItvFileReader;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import ca.lajthabalazs.pressure_integrity_test.server.VectorStreamServer;
+import ca.lajthabalazs.pressure_integrity_test.session.Session;
+import ca.lajthabalazs.pressure_integrity_test.session.SessionManager;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Headless entry point that runs the processing pipeline without the UI and serves the processed
+ * vectors to local dashboards as server-sent events on {@code http://127.0.0.1:<port>/vectors}
+ * (see {@link VectorStreamServer}).
+ *
+ * <pre>
+ * ServerMain &lt;site-config.json&gt; --itv &lt;file&gt; [--calibration &lt;file&gt;]
+ *     [--test &lt;file&gt;] [--port &lt;n&gt;] [--speed &lt;x&gt;] [--buffer &lt;n&gt;]
+ *     [--clients &lt;n&gt;] [--checkpoint &lt;file&gt;] [--checkpoint-minutes &lt;n&gt;]
+ * </pre>
+ *
+ * <p>The vectors are replayed from the ITV file at {@code --speed} times real time (default 1),
+ * with their timestamps shifted to now. The port defaults to 8090, the per-client buffer to 1000
+ * vectors and the number of clients to 8. Runs until the process is stopped.
+ *
+ * <p>With {@code --checkpoint}, the state of the pipeline is saved to the file every {@code
+ * --checkpoint-minutes} of measurement time (default 10) and when the process is stopped, and a
+ * restarted server resumes from it: the vectors are replayed with their original timestamps, and
+ * those already processed before the checkpoint are skipped (see {@link CheckpointFile}).
+ */
+public class ServerMain {
+
+  private static final String USAGE =
+      "Usage: ServerMain <site-config.json> --itv <file> [--calibration <file>] [--test <file>]"
+          + " [--port <n>] [--speed <x>] [--buffer <n>] [--clients <n>]"
+          + " [--checkpoint <file>] [--checkpoint-minutes <n>]";
+
+  public static void main(String[] args) throws InterruptedException {
+    int code = run(args, System.out, System.err);
+    if (code != 0) {
+      System.exit(code);
+    }
+    Thread.currentThread().join();
+  }
+
+  /**
+   * Starts the pipeline and the server; returns 0 once serving, 1 on failure, 2 on usage. The
+   * threads stop when the process is stopped.
+   */
+  static int run(String[] args, PrintStream out, PrintStream err) {
+    List<String> positional = new ArrayList<>();
+    String itvPath = null;
+    String calibrationPath = null;
+    String testPath = null;
+    int port = 8090;
+    double speed = 1.0;
+    int buffer = 1000;
+    int clients = 8;
+    String checkpointPath = null;
+    long checkpointMinutes = 10;
+    try {
+      for (int i = 0; i < args.length; i++) {
+        switch (args[i]) {
+          case "--itv" -> itvPath = args[++i];
+          case "--calibration" -> calibrationPath = args[++i];
+          case "--test" -> testPath = args[++i];
+          case "--port" -> port = Integer.parseInt(args[++i]);
+          case "--speed" -> speed = Double.parseDouble(args[++i]);
+          case "--buffer" -> buffer = Integer.parseInt(args[++i]);
+          case "--clients" -> clients = Integer.parseInt(args[++i]);
+          case "--checkpoint" -> checkpointPath = args[++i];
+          case "--checkpoint-minutes" -> checkpointMinutes = Long.parseLong(args[++i]);
+          default -> positional.add(args[i]);
+        }
+      }
+    } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+      err.println(USAGE);
+      return 2;
+    }
+    if (positional.size() != 1
+        || itvPath == null
+        || speed <= 0
+        || buffer < 1
+        || clients < 1
+        || checkpointMinutes < 1) {
+      err.println(USAGE);
+      return 2;
+    }
+
+    FileSystemTextFileReader configReader = new FileSystemTextFileReader();
+    SessionManager sessions = new SessionManager(1);
+    try {
+      SiteConfig siteConfig = new SiteConfigReader(configReader).read(positional.get(0));
+      CalibrationConfig calibrationConfig =
+          calibrationPath != null
+              ? new CalibrationConfigReader(configReader).read(calibrationPath)
+              : null;
+      TestConfig testConfig =
+          testPath != null ? new TestConfigReader(configReader).read(testPath) : null;
+      List<MeasurementVector> vectors =
+          new ItvFileReader(new FileSystemTextFileReader(charsetForItv())).read(itvPath);
+
+      String name = Path.of(itvPath).getFileName().toString();
+      Session session;
+      if (checkpointPath != null) {
+        CheckpointFile checkpoint = new CheckpointFile(Path.of(checkpointPath));
+        session =
+            sessions.openPlayback(
+                name,
+                siteConfig,
+                calibrationConfig,
+                testConfig,
+                checkpoint.read(),
+                checkpointMinutes * 60_000L,
+                checkpoint);
+        long resumeAfterUtc = session.getOutput().getLastTimeUtc();
+        vectors = vectors.stream().filter(v -> v.getTimeUtc() > resumeAfterUtc).toList();
+      } else {
+        session = sessions.openPlayback(name, siteConfig, calibrationConfig, testConfig);
+      }
+      VectorStreamServer server = new VectorStreamServer(session.getOutput(), buffer, clients);
+      server.start(port);
+      Runtime.getRuntime()
+          .addShutdownHook(
+              new Thread(
+                  () -> {
+                    server.close();
+                    sessions.close();
+                  }));
+      session.getPlayback().setSpeed(speed);
+      if (checkpointPath != null) {
+        if (!vectors.isEmpty()) {
+          session.getPlayback().startPlayback(vectors, System.currentTimeMillis(), true);
+        }
+      } else {
+        session.getPlayback().startPlayback(vectors, System.currentTimeMillis());
+      }
+      out.println(
+          "Serving "
+              + vectors.size()
+              + " vectors of "
+              + itvPath
+              + " on http://127.0.0.1:"
+              + server.getPort()
+              + VectorStreamServer.PATH);
+      return 0;
+    } catch (Exception e) {
+      sessions.close();
+      err.println("Server failed: " + e.getMessage());
+      return 1;
+    }
+  }
+
+  /** Charset for ITV files (Central European; often Windows-1250). */
+  private static Charset charsetForItv() {
+    try {
+      return Charset.forName("Windows-1250");
+    } catch (Exception e) {
+      return StandardCharsets.UTF_8;
+    }
+  }
+}
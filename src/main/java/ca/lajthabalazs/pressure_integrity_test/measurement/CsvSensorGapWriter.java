@@ -0,0 +1,80 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement;
+
+import ca.lajthabalazs.pressure_integrity_test.io.TextFileReader;
+import ca.lajthabalazs.pressure_integrity_test.io.TextFileWriter;
+import ca.lajthabalazs.pressure_integrity_test.measurement.streaming.MeasurementVectorStreamMerger;
+import ca.lajthabalazs.pressure_integrity_test.measurement.streaming.SensorGap;
+import java.util.List;
+
+/**
+ * A {@link MeasurementVectorStreamMerger.SensorGapHandler} that appends closed sensor gaps to a CSV
+ * file, next to the measurement CSV written by {@link CsvMeasurementWriter}.
+ *
+ * <p>Each row contains the sensor id, the gap start and end (UTC milliseconds since epoch) and the
+ * gap length in milliseconds. Open gaps are ignored; they are written once a fresh value closes
+ * them. The header line is written if the file does not exist or is empty; otherwise rows are
+ * appended.
+ */
+public class CsvSensorGapWriter implements MeasurementVectorStreamMerger.SensorGapHandler {
+
+  /** Header line of the gap CSV file. */
+  public static final String HEADER = "sensorId,startTimestamp,endTimestamp,durationMs";
+
+  private final String filePath;
+  private final TextFileReader reader;
+  private final TextFileWriter writer;
+  private final Object lock = new Object();
+  private boolean headerChecked;
+
+  /**
+   * Creates a CSV sensor gap writer.
+   *
+   * @param filePath path to the CSV file
+   * @param reader used to check whether the file already has content
+   * @param writer used to write the CSV file
+   */
+  public CsvSensorGapWriter(String filePath, TextFileReader reader, TextFileWriter writer) {
+    this.filePath = filePath;
+    this.reader = reader;
+    this.writer = writer;
+  }
+
+  @Override
+  public void handle(SensorGap gap) {
+    if (gap.isOpen()) {
+      return;
+    }
+    String row =
+        gap.sensorId()
+            + ","
+            + gap.startTimeUtc()
+            + ","
+            + gap.endTimeUtc()
+            + ","
+            + gap.durationMs(gap.endTimeUtc());
+    synchronized (lock) {
+      try {
+        if (!headerChecked && isFileEmpty()) {
+          writer.writeAllLines(filePath, List.of(HEADER, row));
+        } else {
+          writer.appendLines(filePath, List.of(row));
+        }
+        headerChecked = true;
+      } catch (TextFileReader.FailedToReadFileException e) {
+        throw new RuntimeException("Failed to write gap CSV: " + filePath, e);
+      }
+    }
+  }
+
+  private boolean isFileEmpty() {
+    if (!reader.exists(filePath)) {
+      return true;
+    }
+    try {
+      List<String> lines = reader.readAllLines(filePath);
+      return lines.isEmpty() || (lines.size() == 1 && lines.getFirst().trim().isEmpty());
+    } catch (TextFileReader.FailedToReadFileException e) {
+      return true;
+    }
+  }
+}
@@ -0,0 +1,93 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Immutable list of the {@link MeasurementError}s of a {@link MeasurementVector}, built by
+ * appending to the errors of the vector it was derived from.
+ *
+ * <p>Each chain holds its parent chain and only the errors appended to it, so a processing stage
+ * that adds a warning shares the errors found before instead of copying them. The severities of
+ * all errors are combined into a bitmask (see {@link ErrorSeverity#mask()}) when the chain is
+ * created, so checking for a severity does not look at the errors.
+ */
+public final class ErrorChain extends AbstractList<MeasurementError> implements RandomAccess {
+
+  private static final ErrorChain EMPTY = new ErrorChain(null, new MeasurementError[0]);
+
+  private final ErrorChain parent; // null instead of an empty parent
+  private final MeasurementError[] added;
+  private final int size;
+  private final int severityMask;
+
+  private ErrorChain(ErrorChain parent, MeasurementError[] added) {
+    int mask = parent != null ? parent.severityMask : 0;
+    for (MeasurementError error : added) {
+      mask |= error.severity().mask();
+    }
+    this.parent = parent;
+    this.added = added;
+    this.size = (parent != null ? parent.size : 0) + added.length;
+    this.severityMask = mask;
+  }
+
+  /** Returns the chain without errors. */
+  public static ErrorChain empty() {
+    return EMPTY;
+  }
+
+  /**
+   * Returns the errors as a chain: the list itself if it is a chain, otherwise a copy.
+   *
+   * @param errors the errors; null is treated as empty
+   * @throws NullPointerException if an error is null
+   */
+  public static ErrorChain of(List<MeasurementError> errors) {
+    if (errors instanceof ErrorChain chain) {
+      return chain;
+    }
+    return errors != null ? EMPTY.append(errors) : EMPTY;
+  }
+
+  /**
+   * Returns a chain with the given errors after the errors of this chain, which is shared, not
+   * copied.
+   *
+   * @throws NullPointerException if an error is null
+   */
+  public ErrorChain append(List<MeasurementError> errors) {
+    if (errors.isEmpty()) {
+      return this;
+    }
+    MeasurementError[] copy = errors.toArray(new MeasurementError[0]);
+    for (MeasurementError error : copy) {
+      Objects.requireNonNull(error, "error");
+    }
+    return new ErrorChain(size > 0 ? this : null, copy);
+  }
+
+  /** Returns the bitwise or of the {@link ErrorSeverity#mask()} of every error. */
+  public int getSeverityMask() {
+    return severityMask;
+  }
+
+  @Override
+  public MeasurementError get(int index) {
+    Objects.checkIndex(index, size);
+    ErrorChain chain = this;
+    int first = size - added.length;
+    while (index < first) {
+      chain = chain.parent;
+      first = chain.size - chain.added.length;
+    }
+    return chain.added[index - first];
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+}
@@ -3,5 +3,10 @@ package ca.lajthabalazs.pressure_integrity_test.measurement;
 /** Severity of a measurement error attached to a {@link MeasurementVector}. */
 public enum ErrorSeverity {
   WARNING,
-  SEVERE
+  SEVERE;
+
+  /** Returns the bit of this severity in a bitmask such as {@link ErrorChain#getSeverityMask()}. */
+  public int mask() {
+    return 1 << ordinal();
+  }
 }
@@ -14,13 +14,23 @@ import java.util.Map;
  * can carry a list of {@link MeasurementError}s describing issues detected during processing (per
  * sensor or derived quantity). Streams should treat vectors that contain at least one {@link
  * ErrorSeverity#SEVERE} error as invalid and pass them through unchanged without further
- * processing.
+ * processing. The errors are kept in an {@link ErrorChain}: a vector built from the errors of
+ * another vector plus new ones shares the earlier errors, and {@link #hasSevereError()} reads a
+ * severity bitmask computed when the vector is built.
+ *
+ * <p>A vector may also carry the {@link System#nanoTime()} at which it entered the application,
+ * used by {@link ca.lajthabalazs.pressure_integrity_test.measurement.tracing.LatencyTracer} to
+ * measure how long it takes to reach each stage and sink; 0 when the vector is not traced.
  */
 public final class MeasurementVector {
 
+  private static final int SEVERE_MASK = ErrorSeverity.SEVERE.mask();
+
   private final long timeUtc;
   private final Map<String, Measurement> measurements;
-  private final List<MeasurementError> errors;
+  private final ErrorChain errors;
+  private final int severityMask;
+  private final long ingestNanos;
 
   /**
    * Creates a measurement vector with the given timestamp, map of measurements (sensor ID →
@@ -28,13 +38,32 @@ public final class MeasurementVector {
    *
    * @param timeUtc timestamp in milliseconds since epoch for this vector
    * @param measurements map of sensor ID to measurement (not null; can be empty)
-   * @param errors list of associated errors (not null; can be empty)
+   * @param errors list of associated errors (can be empty; shared if it is an {@link ErrorChain})
    */
   public MeasurementVector(
       long timeUtc, Map<String, Measurement> measurements, List<MeasurementError> errors) {
+    this(timeUtc, measurements, errors, 0L);
+  }
+
+  /**
+   * Creates a measurement vector with the given timestamp, map of measurements (sensor ID →
+   * measurement), list of errors and ingest time.
+   *
+   * @param timeUtc timestamp in milliseconds since epoch for this vector
+   * @param measurements map of sensor ID to measurement (not null; can be empty)
+   * @param errors list of associated errors (can be empty; shared if it is an {@link ErrorChain})
+   * @param ingestNanos {@link System#nanoTime()} at which the vector entered the application, or 0
+   */
+  public MeasurementVector(
+      long timeUtc,
+      Map<String, Measurement> measurements,
+      List<MeasurementError> errors,
+      long ingestNanos) {
     this.timeUtc = timeUtc;
     this.measurements = Collections.unmodifiableMap(new LinkedHashMap<>(measurements));
-    this.errors = errors != null ? List.copyOf(errors) : List.of();
+    this.errors = ErrorChain.of(errors);
+    this.severityMask = this.errors.getSeverityMask();
+    this.ingestNanos = ingestNanos;
   }
 
   /**
@@ -54,7 +83,7 @@ public final class MeasurementVector {
    *
    * @param timeUtc timestamp in milliseconds since epoch for this vector
    * @param measurements list of measurements (not null; can be empty)
-   * @param errors list of associated errors (not null; can be empty)
+   * @param errors list of associated errors (can be empty; shared if it is an {@link ErrorChain})
    */
   public MeasurementVector(
       long timeUtc, List<Measurement> measurements, List<MeasurementError> errors) {
@@ -64,7 +93,18 @@ public final class MeasurementVector {
       map.put(m.getSourceId(), m);
     }
     this.measurements = Collections.unmodifiableMap(map);
-    this.errors = errors != null ? List.copyOf(errors) : List.of();
+    this.errors = ErrorChain.of(errors);
+    this.severityMask = this.errors.getSeverityMask();
+    this.ingestNanos = 0L;
+  }
+
+  /** Shares the immutable contents of {@code source}. */
+  private MeasurementVector(MeasurementVector source, long ingestNanos) {
+    this.timeUtc = source.timeUtc;
+    this.measurements = source.measurements;
+    this.errors = source.errors;
+    this.severityMask = source.severityMask;
+    this.ingestNanos = ingestNanos;
   }
 
   /**
@@ -83,6 +123,19 @@ public final class MeasurementVector {
     return timeUtc;
   }
 
+  /** Returns the {@link System#nanoTime()} at which the vector entered the application, or 0. */
+  public long getIngestNanos() {
+    return ingestNanos;
+  }
+
+  /**
+   * Returns a vector with the same contents and the given ingest time. The measurements and errors
+   * are shared, not copied.
+   */
+  public MeasurementVector withIngestNanos(long ingestNanos) {
+    return new MeasurementVector(this, ingestNanos);
+  }
+
   /** Returns an unmodifiable map from sensor ID to measurement. */
   public Map<String, Measurement> getMeasurementsMap() {
     return measurements;
@@ -94,17 +147,22 @@ public final class MeasurementVector {
   }
 
   /** Returns an unmodifiable list of errors associated with this vector (may be empty). */
-  public List<MeasurementError> getErrors() {
+  public ErrorChain getErrors() {
     return errors;
   }
 
+  /** Returns the bitwise or of the {@link ErrorSeverity#mask()} of every error of this vector. */
+  public int getSeverityMask() {
+    return severityMask;
+  }
+
+  /** Returns true if this vector contains at least one error of the given severity. */
+  public boolean hasError(ErrorSeverity severity) {
+    return (severityMask & severity.mask()) != 0;
+  }
+
   /** Returns true if this vector contains at least one severe error. */
   public boolean hasSevereError() {
-    for (MeasurementError e : errors) {
-      if (e.severity() == ErrorSeverity.SEVERE) {
-        return true;
-      }
-    }
-    return false;
+    return (severityMask & SEVERE_MASK) != 0;
   }
 }
@@ -0,0 +1,38 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement;
+
+import java.math.BigDecimal;
+
+/**
+ * Index of the test stage a measurement vector belongs to (0-based, in {@code TestConfig} stage
+ * order).
+ *
+ * <p>A value of {@code -1} marks vectors between stages (pressurisation, depressurisation, or
+ * before the first plateau).
+ */
+public class StageIndex extends Measurement {
+
+  public static final String INDEX = "index";
+
+  public StageIndex(long timeUtc, String sourceId, BigDecimal value) {
+    super(timeUtc, sourceId, INDEX, value);
+  }
+
+  public StageIndex(long timeUtc, String sourceId, int index) {
+    this(timeUtc, sourceId, BigDecimal.valueOf(index));
+  }
+
+  /** Returns the stage index as an int. */
+  public int getIndex() {
+    return getValueInDefaultUnit().intValue();
+  }
+
+  @Override
+  public Measurement withNewTimestamp(long newTimestamp) {
+    return new StageIndex(newTimestamp, getSourceId(), getValueInDefaultUnit());
+  }
+
+  @Override
+  public Measurement withNewValueInDefaultUnit(BigDecimal newValueInDefaultUnit) {
+    return new StageIndex(getTimeUtc(), getSourceId(), newValueInDefaultUnit);
+  }
+}
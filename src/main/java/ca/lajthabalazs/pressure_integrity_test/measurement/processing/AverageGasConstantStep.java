@@ -0,0 +1,169 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
+
+import ca.lajthabalazs.pressure_integrity_test.config.LocationConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.SiteConfig;
+import ca.lajthabalazs.pressure_integrity_test.measurement.GasConstant;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Humidity;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Measurement;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Pressure;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Temperature;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Adds the volume-weighted harmonic mean of the humid-air gas constant of the credible site-config
+ * humidity/temperature pairs as {@link AverageGasConstantMeasurementVectorStream#AVG_R_SOURCE_ID}.
+ * Drops vectors without an average pressure or a credible pair. Used by {@link
+ * AverageGasConstantMeasurementVectorStream} and {@link Pipeline}.
+ */
+final class AverageGasConstantStep implements PipelineStep {
+
+  /** Gas constant of dry air [Nm/(kg·K)] in ILRT reference implementation. */
+  private static final double R_L = 286.9;
+
+  /** Gas constant of water vapour [Nm/(kg·K)] in ILRT reference implementation. */
+  private static final double R_G = 460.7;
+
+  /** (1 − R_L/R_G) / 100, applied to the humidity in percent. */
+  private static final double ONE_MINUS_RATIO_PER_PERCENT = (1.0 - R_L / R_G) / 100.0;
+
+  /** Math context of the published average. */
+  private static final MathContext MC = new MathContext(16, RoundingMode.HALF_UP);
+
+  private final Set<String> siteSensorIds;
+
+  /**
+   * Mapping from sensor id to its {@link LocationConfig}. Used to obtain the volume factor for the
+   * location of each paired humidity/temperature measurement.
+   */
+  private final Map<String, LocationConfig> locationBySensorId;
+
+  /**
+   * Mapping from humidity sensor id to the id of its paired temperature sensor (for the same
+   * physical location).
+   */
+  private final Map<String, String> humidityToTemperatureSensorId;
+
+  /**
+   * @param locationBySensorId mapping from sensor source id to its {@link LocationConfig}; may be
+   *     null
+   * @param humidityToTemperatureSensorId mapping from humidity sensor id to its paired temperature
+   *     sensor id; may be null
+   * @param siteConfig site configuration; only its sensors are used for humidity/temperature
+   */
+  AverageGasConstantStep(
+      Map<String, LocationConfig> locationBySensorId,
+      Map<String, String> humidityToTemperatureSensorId,
+      SiteConfig siteConfig) {
+    this.locationBySensorId = locationBySensorId != null ? locationBySensorId : Map.of();
+    this.humidityToTemperatureSensorId =
+        humidityToTemperatureSensorId != null ? humidityToTemperatureSensorId : Map.of();
+    this.siteSensorIds = MeasurementFilter.sensorIds(siteConfig);
+  }
+
+  @Override
+  public String getName() {
+    return "averageGasConstant";
+  }
+
+  @Override
+  public boolean isStateless() {
+    return true;
+  }
+
+  @Override
+  public boolean process(PipelineVector vector) {
+    GasConstant avg = computeAverageGasConstant(vector);
+    if (avg == null) {
+      return false;
+    }
+    vector.putMeasurement(avg);
+    return true;
+  }
+
+  private GasConstant computeAverageGasConstant(PipelineVector vector) {
+    Map<String, Measurement> measurements = vector.getMeasurementsMap();
+    Measurement avgPressure =
+        measurements.get(AveragePressureMeasurementVectorStream.AVG_PRESSURE_SOURCE_ID);
+    if (!(avgPressure instanceof Pressure)) {
+      return null;
+    }
+    double presAver = ((Pressure) avgPressure).getPascalValue().doubleValue();
+
+    double sumWeights = 0.0;
+    double sumWeightsOverR = 0.0;
+
+    for (Measurement m : measurements.values()) {
+      if (!(m instanceof Humidity humidity) || !siteSensorIds.contains(humidity.getSourceId())) {
+        continue;
+      }
+
+      String tempId = humidityToTemperatureSensorId.get(humidity.getSourceId());
+      if (!siteSensorIds.contains(tempId)
+          || !(measurements.get(tempId) instanceof Temperature temp)) {
+        continue;
+      }
+
+      double phi = humidity.getValueInDefaultUnit().doubleValue(); // percentage
+      double tempC = temp.getCelsiusValue().doubleValue();
+      if (!isCredible(phi, tempC)) {
+        continue;
+      }
+
+      // Volume factor from the location of the paired temperature sensor.
+      LocationConfig location = locationBySensorId.get(tempId);
+      double volumeFactor = location.getVolumeFactor().doubleValue();
+      if (volumeFactor <= 0) {
+        continue;
+      }
+
+      double presSat = SaturationPressureTable.pascal(tempC);
+      double r = calcSpecificGasConstant(presAver, phi, presSat);
+
+      sumWeights += volumeFactor;
+      sumWeightsOverR += volumeFactor / r;
+    }
+
+    if (sumWeights == 0.0) {
+      return null;
+    }
+    double rMean = sumWeights / sumWeightsOverR;
+    return new GasConstant(
+        vector.getTimeUtc(),
+        AverageGasConstantMeasurementVectorStream.AVG_R_SOURCE_ID,
+        new BigDecimal(rMean, MC));
+  }
+
+  /**
+   * Credibility filter equivalent to the original CF_Hum: 0–100 % humidity and 0–100 °C
+   * temperature, the range covered by {@link SaturationPressureTable}.
+   */
+  private static boolean isCredible(double phi, double tempC) {
+    return phi >= 0.0
+        && phi <= 100.0
+        && tempC >= SaturationPressureTable.MIN_CELSIUS
+        && tempC <= SaturationPressureTable.MAX_CELSIUS;
+  }
+
+  /**
+   * Calculates the specific gas constant of humid air for a single location, ported from the ILRT
+   * implementation:
+   *
+   * <pre>
+   * R_nl = (R_L * P_aver) / (P_aver - (1 - R_L / R_G) * (phi / 100) * P_sat)
+   * </pre>
+   *
+   * <p>The constant factor (1 − R_L/R_G)/100 is precomputed, so a pair costs a few floating-point
+   * operations.
+   *
+   * @param presAver average absolute pressure (Pa)
+   * @param phi relative humidity (%)
+   * @param presSat saturation pressure of water vapour at the local temperature (Pa)
+   */
+  private static double calcSpecificGasConstant(double presAver, double phi, double presSat) {
+    return R_L * presAver / (presAver - ONE_MINUS_RATIO_PER_PERCENT * phi * presSat);
+  }
+}
@@ -2,13 +2,9 @@ package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
 
 import ca.lajthabalazs.pressure_integrity_test.config.SensorConfig;
 import ca.lajthabalazs.pressure_integrity_test.config.SiteConfig;
-import ca.lajthabalazs.pressure_integrity_test.measurement.Measurement;
 import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
 import ca.lajthabalazs.pressure_integrity_test.measurement.Pressure;
 import ca.lajthabalazs.pressure_integrity_test.measurement.streaming.MeasurementVectorStream;
-import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -20,6 +16,10 @@ import java.util.List;
  * #AVG_PRESSURE_SOURCE_ID}). If the filtered vector has no pressure measurements, the vector is not
  * published.
  *
+ * <p>Optionally the mean is weighted by inverse variance, wᵢ = 1/σᵢ² from each sensor's configured
+ * sigma (see {@link SensorWeights}). Sensors named by an error of the vector (e.g. out of valid
+ * range) are then left out and the remaining weights renormalised.
+ *
  * <p>Sensor list is delegated to the source stream. Use {@link #stop()} to unsubscribe from the
  * source and stop publishing.
  */
@@ -29,7 +29,7 @@ public class AveragePressureMeasurementVectorStream extends MeasurementVectorStr
   public static final String AVG_PRESSURE_SOURCE_ID = "AVG_PRESSURE";
 
   private final MeasurementVectorStream source;
-  private final SiteConfig siteConfig;
+  private final AveragePressureStep step;
   private MeasurementVectorStream.Subscription sourceSubscription;
 
   /**
@@ -41,8 +41,22 @@ public class AveragePressureMeasurementVectorStream extends MeasurementVectorStr
    */
   public AveragePressureMeasurementVectorStream(
       MeasurementVectorStream source, SiteConfig siteConfig) {
+    this(source, siteConfig, false);
+  }
+
+  /**
+   * Creates an average-pressure stream that uses only site-config sensors for the average,
+   * optionally weighting each sensor by 1/σ².
+   *
+   * @param source the stream to read measurement vectors from
+   * @param siteConfig site configuration; only its pressure sensors are used for the average
+   * @param sigmaWeighted if true, the inverse-variance weighted mean of the pressure sensors
+   *     without errors is published instead of the arithmetic mean
+   */
+  public AveragePressureMeasurementVectorStream(
+      MeasurementVectorStream source, SiteConfig siteConfig, boolean sigmaWeighted) {
     this.source = source;
-    this.siteConfig = siteConfig;
+    this.step = new AveragePressureStep(siteConfig, sigmaWeighted);
     this.sourceSubscription = source.subscribe(this::computeAndPublish);
   }
 
@@ -51,33 +65,10 @@ public class AveragePressureMeasurementVectorStream extends MeasurementVectorStr
       publish(vector);
       return;
     }
-    MeasurementVector filtered = MeasurementFilter.filter(vector, siteConfig);
-    List<Pressure> pressures = new ArrayList<>();
-    for (Measurement m : filtered.getMeasurementsMap().values()) {
-      if (m instanceof Pressure) {
-        pressures.add((Pressure) m);
-      }
-    }
-    if (pressures.isEmpty()) {
-      return;
-    }
-    BigDecimal sum = BigDecimal.ZERO;
-    int count = 0;
-    for (Pressure p : pressures) {
-      BigDecimal v = p.getValueInDefaultUnit();
-      if (v != null) {
-        sum = sum.add(v);
-        count++;
-      }
-    }
-    if (count == 0) {
-      return;
+    PipelineVector working = new PipelineVector(vector);
+    if (step.process(working)) {
+      publish(working.toVector());
     }
-    BigDecimal avg = sum.divide(BigDecimal.valueOf(count), 10, RoundingMode.HALF_UP);
-    Pressure avgPressure = new Pressure(vector.getTimeUtc(), AVG_PRESSURE_SOURCE_ID, avg);
-    List<Measurement> out = new ArrayList<>(vector.getMeasurements());
-    out.add(avgPressure);
-    publish(new MeasurementVector(vector.getTimeUtc(), out, vector.getErrors()));
   }
 
   @Override
@@ -0,0 +1,82 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
+
+import ca.lajthabalazs.pressure_integrity_test.config.PressureSensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.SiteConfig;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Measurement;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Pressure;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Adds the mean of the site-config pressure sensors as {@link
+ * AveragePressureMeasurementVectorStream#AVG_PRESSURE_SOURCE_ID}: the arithmetic mean, or the
+ * inverse-variance weighted mean of the sensors without errors. Drops vectors without a usable
+ * pressure. Used by {@link AveragePressureMeasurementVectorStream} and {@link Pipeline}.
+ */
+final class AveragePressureStep implements PipelineStep {
+
+  private final Set<String> siteSensorIds;
+  private final SensorWeights weights; // null for the plain arithmetic mean
+
+  /**
+   * @param siteConfig site configuration; only its pressure sensors are used for the average
+   * @param sigmaWeighted if true, sensors are weighted by 1/σ² and flagged sensors left out
+   */
+  AveragePressureStep(SiteConfig siteConfig, boolean sigmaWeighted) {
+    this.siteSensorIds = MeasurementFilter.sensorIds(siteConfig);
+    this.weights =
+        sigmaWeighted
+            ? SensorWeights.compile(siteConfig, PressureSensorConfig.class, Map.of())
+            : null;
+  }
+
+  @Override
+  public String getName() {
+    return "averagePressure";
+  }
+
+  @Override
+  public boolean isStateless() {
+    return true;
+  }
+
+  @Override
+  public boolean process(PipelineVector vector) {
+    BigDecimal avg = weights != null ? weightedMean(vector) : arithmeticMean(vector);
+    if (avg == null) {
+      return false;
+    }
+    vector.putMeasurement(
+        new Pressure(
+            vector.getTimeUtc(),
+            AveragePressureMeasurementVectorStream.AVG_PRESSURE_SOURCE_ID,
+            avg));
+    return true;
+  }
+
+  private BigDecimal weightedMean(PipelineVector vector) {
+    weights.load(vector.getMeasurementsMap(), vector.getErrors(), Pressure.class);
+    double mean = weights.weightedMean();
+    return Double.isNaN(mean) ? null : BigDecimal.valueOf(mean).setScale(10, RoundingMode.HALF_UP);
+  }
+
+  private BigDecimal arithmeticMean(PipelineVector vector) {
+    BigDecimal sum = BigDecimal.ZERO;
+    int count = 0;
+    for (Measurement m : vector.getMeasurementsMap().values()) {
+      if (m instanceof Pressure && siteSensorIds.contains(m.getSourceId())) {
+        BigDecimal v = m.getValueInDefaultUnit();
+        if (v != null) {
+          sum = sum.add(v);
+          count++;
+        }
+      }
+    }
+    if (count == 0) {
+      return null;
+    }
+    return sum.divide(BigDecimal.valueOf(count), 10, RoundingMode.HALF_UP);
+  }
+}
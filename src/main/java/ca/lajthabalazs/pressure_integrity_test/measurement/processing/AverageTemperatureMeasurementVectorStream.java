@@ -2,15 +2,9 @@ package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
 
 import ca.lajthabalazs.pressure_integrity_test.config.LocationConfig;
 import ca.lajthabalazs.pressure_integrity_test.config.SiteConfig;
-import ca.lajthabalazs.pressure_integrity_test.measurement.Measurement;
 import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
 import ca.lajthabalazs.pressure_integrity_test.measurement.Temperature;
 import ca.lajthabalazs.pressure_integrity_test.measurement.streaming.MeasurementVectorStream;
-import java.math.BigDecimal;
-import java.math.MathContext;
-import java.math.RoundingMode;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -39,6 +33,10 @@ import java.util.Map;
  * <p>If a vector has no credible temperature measurements or no usable volume factors, it is not
  * published.
  *
+ * <p>Optionally each weight is the volume factor divided by the sensor's variance, vⱼ/σⱼ² (see
+ * {@link SensorWeights}), compiled once at construction. Sensors named by an error of the vector
+ * (e.g. out of valid range) are then left out and the remaining weights renormalised.
+ *
  * <p>Note: callers can obtain the Kelvin value via {@link Temperature#getKelvinValue()} on the
  * synthetic measurement, mirroring the original ILRT behaviour of returning temperature in Kelvin.
  */
@@ -47,22 +45,8 @@ public class AverageTemperatureMeasurementVectorStream extends MeasurementVector
   /** Source id of the synthetic average temperature measurement emitted by this stream. */
   public static final String AVG_TEMPERATURE_SOURCE_ID = "AVG_TEMPERATURE";
 
-  /** Credible temperature range in Celsius, matching the original ILRT implementation. */
-  private static final BigDecimal MIN_C = BigDecimal.ZERO;
-
-  private static final BigDecimal MAX_C = new BigDecimal("100.0");
-
-  /** Math context used for BigDecimal operations (sufficient precision for engineering use). */
-  private static final MathContext MC = new MathContext(16, RoundingMode.HALF_UP);
-
   private final MeasurementVectorStream source;
-  private final SiteConfig siteConfig;
-
-  /**
-   * Mapping from sensor id to its {@link LocationConfig}. The {@code volumeFactor} on the location
-   * is used as the volumetric weight for all temperature sensors in that location.
-   */
-  private final Map<String, LocationConfig> locationBySensorId;
+  private final AverageTemperatureStep step;
 
   private MeasurementVectorStream.Subscription sourceSubscription;
 
@@ -80,9 +64,26 @@ public class AverageTemperatureMeasurementVectorStream extends MeasurementVector
       MeasurementVectorStream source,
       Map<String, LocationConfig> locationBySensorId,
       SiteConfig siteConfig) {
+    this(source, locationBySensorId, siteConfig, false);
+  }
+
+  /**
+   * Creates an average‑temperature stream that uses only site-config sensors for the average,
+   * optionally weighting each sensor by its volume factor divided by σ².
+   *
+   * @param source the underlying measurement stream
+   * @param locationBySensorId mapping from sensor source id to its {@link LocationConfig}
+   * @param siteConfig site configuration; only its sensors are used for the average
+   * @param sigmaWeighted if true, each weight is divided by the sensor's σ² and temperature sensors
+   *     named by an error of the vector are left out
+   */
+  public AverageTemperatureMeasurementVectorStream(
+      MeasurementVectorStream source,
+      Map<String, LocationConfig> locationBySensorId,
+      SiteConfig siteConfig,
+      boolean sigmaWeighted) {
     this.source = source;
-    this.locationBySensorId = locationBySensorId != null ? locationBySensorId : Map.of();
-    this.siteConfig = siteConfig;
+    this.step = new AverageTemperatureStep(locationBySensorId, siteConfig, sigmaWeighted);
     this.sourceSubscription = source.subscribe(this::computeAndPublish);
   }
 
@@ -91,58 +92,10 @@ public class AverageTemperatureMeasurementVectorStream extends MeasurementVector
       publish(vector);
       return;
     }
-    MeasurementVector filtered = MeasurementFilter.filter(vector, siteConfig);
-    Temperature avg = computeAverageTemperature(filtered);
-    if (avg == null) {
-      return;
-    }
-    List<Measurement> out = new ArrayList<>(vector.getMeasurements());
-    out.add(avg);
-    publish(new MeasurementVector(vector.getTimeUtc(), out, vector.getErrors()));
-  }
-
-  private Temperature computeAverageTemperature(MeasurementVector vector) {
-    List<Temperature> temps = new ArrayList<>();
-    for (Measurement m : vector.getMeasurementsMap().values()) {
-      if (m instanceof Temperature) {
-        temps.add((Temperature) m);
-      }
-    }
-    if (temps.isEmpty()) {
-      return null;
-    }
-
-    BigDecimal vSum = BigDecimal.ZERO;
-    BigDecimal denom = BigDecimal.ZERO;
-
-    for (Temperature t : temps) {
-      BigDecimal tempC = t.getCelsiusValue();
-      if (tempC == null) {
-        continue;
-      }
-      // Credibility check: 0 <= T <= 100 °C, like the original CF_Temp filter
-      if (tempC.compareTo(MIN_C) < 0 || tempC.compareTo(MAX_C) > 0) {
-        continue;
-      }
-      LocationConfig location = locationBySensorId.get(t.getSourceId());
-      BigDecimal v = location.getVolumeFactor();
-      if (v == null) {
-        v = BigDecimal.ONE; // fallback weight if missing
-      }
-      vSum = vSum.add(v, MC);
-      // denom += v_j / T_j
-      if (tempC.signum() != 0) {
-        denom = denom.add(v.divide(tempC, MC), MC);
-      }
+    PipelineVector working = new PipelineVector(vector);
+    if (step.process(working)) {
+      publish(working.toVector());
     }
-
-    if (vSum.signum() == 0 || denom.signum() == 0) {
-      return null;
-    }
-
-    // Harmonic mean in Celsius (equivalent to original ILRT algorithm before +273.15)
-    BigDecimal avgC = vSum.divide(denom, MC);
-    return new Temperature(vector.getTimeUtc(), AVG_TEMPERATURE_SOURCE_ID, avgC);
   }
 
   @Override
@@ -0,0 +1,126 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
+
+import ca.lajthabalazs.pressure_integrity_test.config.LocationConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.SiteConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.TemperatureSensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Measurement;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Temperature;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Adds the volume-weighted harmonic mean of the credible site-config temperatures as {@link
+ * AverageTemperatureMeasurementVectorStream#AVG_TEMPERATURE_SOURCE_ID}, optionally with the
+ * weights divided by σ². Drops vectors without a usable temperature. Used by {@link
+ * AverageTemperatureMeasurementVectorStream} and {@link Pipeline}.
+ */
+final class AverageTemperatureStep implements PipelineStep {
+
+  /** Credible temperature range in Celsius, matching the original ILRT implementation. */
+  private static final BigDecimal MIN_C = BigDecimal.ZERO;
+
+  private static final BigDecimal MAX_C = new BigDecimal("100.0");
+
+  /** Math context used for BigDecimal operations (sufficient precision for engineering use). */
+  private static final MathContext MC = new MathContext(16, RoundingMode.HALF_UP);
+
+  private final Set<String> siteSensorIds;
+  private final Map<String, LocationConfig> locationBySensorId;
+  private final SensorWeights weights; // null for volume weights only
+
+  /**
+   * @param locationBySensorId mapping from sensor source id to its {@link LocationConfig}; may be
+   *     null
+   * @param siteConfig site configuration; only its sensors are used for the average
+   * @param sigmaWeighted if true, each weight is divided by σ² and flagged sensors are left out
+   */
+  AverageTemperatureStep(
+      Map<String, LocationConfig> locationBySensorId,
+      SiteConfig siteConfig,
+      boolean sigmaWeighted) {
+    this.locationBySensorId = locationBySensorId != null ? locationBySensorId : Map.of();
+    this.siteSensorIds = MeasurementFilter.sensorIds(siteConfig);
+    this.weights =
+        sigmaWeighted
+            ? SensorWeights.compile(
+                siteConfig, TemperatureSensorConfig.class, this.locationBySensorId)
+            : null;
+  }
+
+  @Override
+  public String getName() {
+    return "averageTemperature";
+  }
+
+  @Override
+  public boolean isStateless() {
+    return true;
+  }
+
+  @Override
+  public boolean process(PipelineVector vector) {
+    BigDecimal avgC =
+        weights != null ? weightedAverageCelsius(vector) : volumeWeightedAverageCelsius(vector);
+    if (avgC == null) {
+      return false;
+    }
+    vector.putMeasurement(
+        new Temperature(
+            vector.getTimeUtc(),
+            AverageTemperatureMeasurementVectorStream.AVG_TEMPERATURE_SOURCE_ID,
+            avgC));
+    return true;
+  }
+
+  private BigDecimal volumeWeightedAverageCelsius(PipelineVector vector) {
+    BigDecimal vSum = BigDecimal.ZERO;
+    BigDecimal denom = BigDecimal.ZERO;
+
+    for (Measurement m : vector.getMeasurementsMap().values()) {
+      if (!(m instanceof Temperature t) || !siteSensorIds.contains(t.getSourceId())) {
+        continue;
+      }
+      BigDecimal tempC = t.getCelsiusValue();
+      if (tempC == null) {
+        continue;
+      }
+      // Credibility check: 0 <= T <= 100 °C, like the original CF_Temp filter
+      if (tempC.compareTo(MIN_C) < 0 || tempC.compareTo(MAX_C) > 0) {
+        continue;
+      }
+      LocationConfig location = locationBySensorId.get(t.getSourceId());
+      BigDecimal v = location.getVolumeFactor();
+      if (v == null) {
+        v = BigDecimal.ONE; // fallback weight if missing
+      }
+      vSum = vSum.add(v, MC);
+      // denom += v_j / T_j
+      if (tempC.signum() != 0) {
+        denom = denom.add(v.divide(tempC, MC), MC);
+      }
+    }
+
+    if (vSum.signum() == 0 || denom.signum() == 0) {
+      return null;
+    }
+
+    // Harmonic mean in Celsius (equivalent to original ILRT algorithm before +273.15)
+    return vSum.divide(denom, MC);
+  }
+
+  private BigDecimal weightedAverageCelsius(PipelineVector vector) {
+    weights.load(vector.getMeasurementsMap(), vector.getErrors(), Temperature.class);
+    for (int i = 0; i < weights.size(); i++) {
+      double tempC = weights.value(i);
+      // Credibility check: 0 <= T <= 100 °C, like the original CF_Temp filter
+      if (tempC < 0.0 || tempC > 100.0) {
+        weights.exclude(i);
+      }
+    }
+    double avgC = weights.weightedHarmonicMean();
+    return Double.isNaN(avgC) ? null : new BigDecimal(avgC, MC);
+  }
+}
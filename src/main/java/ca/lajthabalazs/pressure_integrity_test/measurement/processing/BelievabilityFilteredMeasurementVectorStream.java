@@ -1,20 +1,12 @@
 package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
 
-import ca.lajthabalazs.pressure_integrity_test.config.HumiditySensorConfig;
 import ca.lajthabalazs.pressure_integrity_test.config.SensorConfig;
 import ca.lajthabalazs.pressure_integrity_test.config.SiteConfig;
-import ca.lajthabalazs.pressure_integrity_test.config.TemperatureSensorConfig;
 import ca.lajthabalazs.pressure_integrity_test.config.ValidRange;
-import ca.lajthabalazs.pressure_integrity_test.measurement.ErrorSeverity;
-import ca.lajthabalazs.pressure_integrity_test.measurement.Measurement;
 import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementError;
 import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
 import ca.lajthabalazs.pressure_integrity_test.measurement.streaming.MeasurementVectorStream;
-import java.math.BigDecimal;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
 
 /**
  * A measurement vector stream that adds errors for site-config sensors whose value is outside the
@@ -25,6 +17,12 @@ import java.util.stream.Collectors;
  * MeasurementError} (WARNING) is added. All measurements are kept; no values are dropped. Severe
  * error vectors are passed through unchanged.
  *
+ * <p>Optionally, a spike detector runs per sensor: with {@link SpikeDetectionSettings}, each
+ * in-range value is compared with the rolling median and MAD of the sensor's previous values (see
+ * {@link RollingMedian}) and a WARNING is added if it deviates too far. This catches spikes that
+ * stay within the valid range. Every in-range value then enters the window; each update is O(log
+ * w) and allocates nothing.
+ *
  * <p>Sensor list is delegated to the source stream. Use {@link #stop()} to unsubscribe from the
  * source and stop publishing.
  */
@@ -32,7 +30,7 @@ public class BelievabilityFilteredMeasurementVectorStream extends MeasurementVec
 
   private final MeasurementVectorStream source;
   private MeasurementVectorStream.Subscription sourceSubscription;
-  private Map<String, SensorConfig> sensorsById;
+  private final BelievabilityStep step;
 
   /**
    * Creates a believability-filtered stream that wraps the given source and applies valid-range
@@ -44,11 +42,24 @@ public class BelievabilityFilteredMeasurementVectorStream extends MeasurementVec
    */
   public BelievabilityFilteredMeasurementVectorStream(
       MeasurementVectorStream source, SiteConfig siteConfig) {
+    this(source, siteConfig, null);
+  }
+
+  /**
+   * Creates a believability-filtered stream with valid-range filtering and, optionally, rolling
+   * median spike detection for every site-config sensor.
+   *
+   * @param source the stream to read measurement vectors from
+   * @param siteConfig site configuration containing sensors
+   * @param spikeSettings spike detector settings; if null, no spike detection is done
+   */
+  public BelievabilityFilteredMeasurementVectorStream(
+      MeasurementVectorStream source,
+      SiteConfig siteConfig,
+      SpikeDetectionSettings spikeSettings) {
     this.source = source;
     this.sourceSubscription = source.subscribe(this::computeAndPublish);
-    this.sensorsById =
-        siteConfig.getSensors().stream()
-            .collect(Collectors.toMap(SensorConfig::getId, sensorConfig -> sensorConfig));
+    this.step = new BelievabilityStep(siteConfig, spikeSettings);
   }
 
   private void computeAndPublish(MeasurementVector vector) {
@@ -56,37 +67,9 @@ public class BelievabilityFilteredMeasurementVectorStream extends MeasurementVec
       publish(vector);
       return;
     }
-    List<MeasurementError> errors = new ArrayList<>(vector.getErrors());
-    for (Measurement m : vector.getMeasurementsMap().values()) {
-      if (sensorsById.containsKey(m.getSourceId()) && !isWithinValidRange(m)) {
-        errors.add(
-            new MeasurementError(m.getSourceId(), ErrorSeverity.WARNING, "Out of valid range"));
-      }
-    }
-    publish(new MeasurementVector(vector.getTimeUtc(), vector.getMeasurements(), errors));
-  }
-
-  private boolean isWithinValidRange(Measurement m) {
-    SensorConfig sensor = sensorsById.get(m.getSourceId());
-    ValidRange range = getValidRange(sensor);
-    if (range == null || range.getMin() == null || range.getMax() == null) {
-      return true;
-    }
-    BigDecimal value = m.getValueInDefaultUnit();
-    if (value == null) {
-      return false;
-    }
-    return value.compareTo(range.getMin()) >= 0 && value.compareTo(range.getMax()) <= 0;
-  }
-
-  private static ValidRange getValidRange(SensorConfig sensor) {
-    if (sensor instanceof TemperatureSensorConfig) {
-      return ((TemperatureSensorConfig) sensor).getValidRange();
-    }
-    if (sensor instanceof HumiditySensorConfig) {
-      return ((HumiditySensorConfig) sensor).getValidRange();
-    }
-    return null;
+    PipelineVector working = new PipelineVector(vector);
+    step.process(working);
+    publish(working.toVector());
   }
 
   @Override
@@ -100,6 +83,7 @@ public class BelievabilityFilteredMeasurementVectorStream extends MeasurementVec
       sourceSubscription.unsubscribe();
       sourceSubscription = null;
     }
+    step.reset();
     clearSubscribers();
   }
 }
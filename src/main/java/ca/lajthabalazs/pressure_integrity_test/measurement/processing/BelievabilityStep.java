@@ -0,0 +1,148 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
+
+import ca.lajthabalazs.pressure_integrity_test.config.HumiditySensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.SensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.SiteConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.TemperatureSensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.ValidRange;
+import ca.lajthabalazs.pressure_integrity_test.measurement.ErrorSeverity;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Measurement;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementError;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Adds a WARNING for every site-config sensor whose value is outside its {@link ValidRange} and,
+ * with {@link SpikeDetectionSettings}, for every in-range value too far from the sensor's rolling
+ * median. Measurements are never removed. Stateless unless spike detection is on. Used by {@link
+ * BelievabilityFilteredMeasurementVectorStream} and {@link Pipeline}.
+ */
+final class BelievabilityStep implements PipelineStep {
+
+  private final Map<String, SensorConfig> sensorsById;
+  private final SpikeDetectionSettings spikeSettings; // null when spike detection is off
+  private final Map<String, RollingMedian> windowsBySensorId = new HashMap<>();
+
+  /**
+   * @param siteConfig site configuration containing sensors
+   * @param spikeSettings spike detector settings; if null, no spike detection is done
+   */
+  BelievabilityStep(SiteConfig siteConfig, SpikeDetectionSettings spikeSettings) {
+    this.spikeSettings = spikeSettings;
+    this.sensorsById =
+        siteConfig.getSensors().stream()
+            .collect(Collectors.toMap(SensorConfig::getId, sensorConfig -> sensorConfig));
+  }
+
+  @Override
+  public String getName() {
+    return "believability";
+  }
+
+  @Override
+  public boolean isStateless() {
+    return spikeSettings == null;
+  }
+
+  @Override
+  public boolean process(PipelineVector vector) {
+    for (Measurement m : vector.getMeasurementsMap().values()) {
+      if (!sensorsById.containsKey(m.getSourceId())) {
+        continue;
+      }
+      if (!isWithinValidRange(m)) {
+        vector.addError(
+            new MeasurementError(m.getSourceId(), ErrorSeverity.WARNING, "Out of valid range"));
+      } else if (spikeSettings != null && isSpike(m)) {
+        vector.addError(
+            new MeasurementError(
+                m.getSourceId(), ErrorSeverity.WARNING, "Spike: too far from rolling median"));
+      }
+    }
+    return true;
+  }
+
+  /** Checks the value against the sensor's window, then adds it to the window. */
+  private boolean isSpike(Measurement m) {
+    BigDecimal value = m.getValueInDefaultUnit();
+    if (value == null) {
+      return false;
+    }
+    RollingMedian window = windowsBySensorId.get(m.getSourceId());
+    if (window == null) {
+      window = new RollingMedian(spikeSettings.windowSize());
+      windowsBySensorId.put(m.getSourceId(), window);
+    }
+    double v = value.doubleValue();
+    boolean spike =
+        window.size() >= spikeSettings.minSamples()
+            && spikeSettings.isSpike(v, window.median(), window.medianAbsoluteDeviation());
+    window.add(v);
+    return spike;
+  }
+
+  private boolean isWithinValidRange(Measurement m) {
+    SensorConfig sensor = sensorsById.get(m.getSourceId());
+    ValidRange range = getValidRange(sensor);
+    if (range == null || range.getMin() == null || range.getMax() == null) {
+      return true;
+    }
+    BigDecimal value = m.getValueInDefaultUnit();
+    if (value == null) {
+      return false;
+    }
+    return value.compareTo(range.getMin()) >= 0 && value.compareTo(range.getMax()) <= 0;
+  }
+
+  private static ValidRange getValidRange(SensorConfig sensor) {
+    if (sensor instanceof TemperatureSensorConfig) {
+      return ((TemperatureSensorConfig) sensor).getValidRange();
+    }
+    if (sensor instanceof HumiditySensorConfig) {
+      return ((HumiditySensorConfig) sensor).getValidRange();
+    }
+    return null;
+  }
+
+  /** Writes the spike windows as sensor id and values, oldest first. */
+  @Override
+  public void writeState(DataOutput out) throws IOException {
+    out.writeInt(windowsBySensorId.size());
+    for (Map.Entry<String, RollingMedian> entry : windowsBySensorId.entrySet()) {
+      out.writeUTF(entry.getKey());
+      double[] values = entry.getValue().toArray();
+      out.writeInt(values.length);
+      for (double value : values) {
+        out.writeDouble(value);
+      }
+    }
+  }
+
+  @Override
+  public void readState(DataInput in) throws IOException {
+    windowsBySensorId.clear();
+    int windows = in.readInt();
+    if (windows > 0 && spikeSettings == null) {
+      throw new IOException("Spike windows in the state of a step without spike detection");
+    }
+    for (int i = 0; i < windows; i++) {
+      String sensorId = in.readUTF();
+      int count = in.readInt();
+      RollingMedian window = new RollingMedian(spikeSettings.windowSize());
+      for (int j = 0; j < count; j++) {
+        window.add(in.readDouble());
+      }
+      windowsBySensorId.put(sensorId, window);
+    }
+  }
+
+  @Override
+  public void reset() {
+    windowsBySensorId.clear();
+  }
+}
@@ -0,0 +1,97 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
+
+import java.util.Arrays;
+
+/**
+ * Min, max, mean and last value per sensor over one closed time bucket of a {@link
+ * TimeBucketAggregator}.
+ *
+ * <p>Values are in each sensor's default unit. Sensors are addressed by index, in the aggregator's
+ * slot order; only sensors with at least one value in the bucket are included. Instances are
+ * immutable.
+ */
+public final class BucketSummary {
+
+  private final long bucketMs;
+  private final long startTimeUtc;
+  private final String[] sensorIds;
+  private final int[] counts;
+  private final double[] min;
+  private final double[] max;
+  private final double[] mean;
+  private final double[] last;
+
+  BucketSummary(
+      long bucketMs,
+      long startTimeUtc,
+      String[] sensorIds,
+      int[] counts,
+      double[] min,
+      double[] max,
+      double[] mean,
+      double[] last) {
+    this.bucketMs = bucketMs;
+    this.startTimeUtc = startTimeUtc;
+    this.sensorIds = sensorIds;
+    this.counts = counts;
+    this.min = min;
+    this.max = max;
+    this.mean = mean;
+    this.last = last;
+  }
+
+  /** Returns the bucket width in milliseconds. */
+  public long bucketMs() {
+    return bucketMs;
+  }
+
+  /** Returns the start of the bucket (ms since epoch, a multiple of the bucket width). */
+  public long startTimeUtc() {
+    return startTimeUtc;
+  }
+
+  /** Returns the end of the bucket (exclusive). */
+  public long endTimeUtc() {
+    return startTimeUtc + bucketMs;
+  }
+
+  /** Returns the number of sensors in the summary. */
+  public int size() {
+    return sensorIds.length;
+  }
+
+  /** Returns the sensor id at the given index. */
+  public String sensorId(int index) {
+    return sensorIds[index];
+  }
+
+  /** Returns the index of the given sensor id, or {@code -1} if it had no value in the bucket. */
+  public int indexOf(String sensorId) {
+    return Arrays.asList(sensorIds).indexOf(sensorId);
+  }
+
+  /** Returns the number of values of the sensor at the given index. */
+  public int count(int index) {
+    return counts[index];
+  }
+
+  /** Returns the smallest value of the sensor at the given index. */
+  public double min(int index) {
+    return min[index];
+  }
+
+  /** Returns the largest value of the sensor at the given index. */
+  public double max(int index) {
+    return max[index];
+  }
+
+  /** Returns the arithmetic mean of the sensor at the given index. */
+  public double mean(int index) {
+    return mean[index];
+  }
+
+  /** Returns the latest value of the sensor at the given index. */
+  public double last(int index) {
+    return last[index];
+  }
+}
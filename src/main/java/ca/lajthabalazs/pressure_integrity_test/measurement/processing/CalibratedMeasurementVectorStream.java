@@ -3,13 +3,9 @@ package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
 import ca.lajthabalazs.pressure_integrity_test.config.CalibrationConfig;
 import ca.lajthabalazs.pressure_integrity_test.config.LinearCalibration;
 import ca.lajthabalazs.pressure_integrity_test.config.SensorConfig;
-import ca.lajthabalazs.pressure_integrity_test.measurement.Measurement;
 import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
 import ca.lajthabalazs.pressure_integrity_test.measurement.streaming.MeasurementVectorStream;
-import java.math.BigDecimal;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 /**
  * A measurement vector stream that applies a calibration configuration to another stream.
@@ -25,7 +21,7 @@ import java.util.Map;
 public class CalibratedMeasurementVectorStream extends MeasurementVectorStream {
 
   private final MeasurementVectorStream source;
-  private final CalibrationConfig calibrationConfig;
+  private final CalibrationStep step;
   private MeasurementVectorStream.Subscription sourceSubscription;
 
   /**
@@ -39,8 +35,7 @@ public class CalibratedMeasurementVectorStream extends MeasurementVectorStream {
   public CalibratedMeasurementVectorStream(
       MeasurementVectorStream source, CalibrationConfig calibrationConfig) {
     this.source = source;
-    this.calibrationConfig =
-        calibrationConfig != null ? calibrationConfig : new CalibrationConfig();
+    this.step = new CalibrationStep(calibrationConfig);
     this.sourceSubscription = source.subscribe(this::computeAndPublish);
   }
 
@@ -49,22 +44,9 @@ public class CalibratedMeasurementVectorStream extends MeasurementVectorStream {
       publish(vector);
       return;
     }
-    Map<String, Measurement> raw = vector.getMeasurementsMap();
-    List<Measurement> calibrated = new ArrayList<>(raw.size());
-    for (Measurement m : raw.values()) {
-      LinearCalibration cal = this.calibrationConfig.getCalibrationForSensor(m.getSourceId());
-      if (cal != null) {
-        BigDecimal calibratedValue = cal.getCalibratedValue(m.getValueInDefaultUnit());
-        if (calibratedValue != null) {
-          calibrated.add(m.withNewValueInDefaultUnit(calibratedValue));
-        } else {
-          calibrated.add(m);
-        }
-      } else {
-        calibrated.add(m);
-      }
-    }
-    publish(new MeasurementVector(vector.getTimeUtc(), calibrated, vector.getErrors()));
+    PipelineVector working = new PipelineVector(vector);
+    step.process(working);
+    publish(working.toVector());
   }
 
   @Override
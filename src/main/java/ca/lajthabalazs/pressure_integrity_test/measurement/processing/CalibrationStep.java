@@ -0,0 +1,54 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
+
+import ca.lajthabalazs.pressure_integrity_test.config.CalibrationConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.LinearCalibration;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Measurement;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Applies the {@link LinearCalibration} of each sensor to its measurement; sensors without a
+ * calibration are left unchanged. Used by {@link CalibratedMeasurementVectorStream} and {@link
+ * Pipeline}.
+ */
+final class CalibrationStep implements PipelineStep {
+
+  private final CalibrationConfig calibrationConfig;
+
+  /**
+   * @param calibrationConfig calibration per sensor id; may be null (values are then unchanged)
+   */
+  CalibrationStep(CalibrationConfig calibrationConfig) {
+    this.calibrationConfig =
+        calibrationConfig != null ? calibrationConfig : new CalibrationConfig();
+  }
+
+  @Override
+  public String getName() {
+    return "calibration";
+  }
+
+  @Override
+  public boolean isStateless() {
+    return true;
+  }
+
+  @Override
+  public boolean process(PipelineVector vector) {
+    List<Measurement> calibrated = new ArrayList<>();
+    for (Measurement m : vector.getMeasurementsMap().values()) {
+      LinearCalibration cal = calibrationConfig.getCalibrationForSensor(m.getSourceId());
+      if (cal != null) {
+        BigDecimal calibratedValue = cal.getCalibratedValue(m.getValueInDefaultUnit());
+        if (calibratedValue != null) {
+          calibrated.add(m.withNewValueInDefaultUnit(calibratedValue));
+        }
+      }
+    }
+    for (Measurement m : calibrated) {
+      vector.putMeasurement(m);
+    }
+    return true;
+  }
+}
@@ -6,7 +6,9 @@ import ca.lajthabalazs.pressure_integrity_test.config.LocationConfig;
 import ca.lajthabalazs.pressure_integrity_test.config.SensorConfig;
 import ca.lajthabalazs.pressure_integrity_test.config.SiteConfig;
 import ca.lajthabalazs.pressure_integrity_test.config.TemperatureSensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.TestConfig;
 import ca.lajthabalazs.pressure_integrity_test.measurement.streaming.MeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.tracing.LatencyTracer;
 import com.google.common.annotations.VisibleForTesting;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
@@ -16,9 +18,10 @@ import java.util.Map;
 /**
  * A measurement vector stream that wraps a source stream and chains site-config–driven processing
  * steps: believability (add errors), optional calibration, average pressure, average temperature,
- * average gas constant (R), and leakage. Each step that needs site-config sensors uses {@link
- * MeasurementFilter#filter} before computation and adds results/errors to the input vector, leaving
- * all values intact.
+ * average gas constant (R), and leakage. Each step that needs site-config sensors only uses the
+ * sensors of the site config and adds results/errors to the input vector, leaving all values
+ * intact. The chain runs as one {@link Pipeline}, which produces the same vectors as the streams
+ * listed below connected one after the other.
  *
  * <p>Construction requires a {@link SiteConfig}, an optional {@link CalibrationConfig}, and a
  * source {@link MeasurementVectorStream}. The chain is:
@@ -29,26 +32,34 @@ import java.util.Map;
  *   <li>{@link AveragePressureMeasurementVectorStream}
  *   <li>{@link AverageTemperatureMeasurementVectorStream}
  *   <li>{@link AverageGasConstantMeasurementVectorStream}
+ *   <li>{@link StageMeasurementVectorStream} – only when a test config is given; the leakage step
+ *       then restarts at every stage boundary
  *   <li>{@link LeakageMeasurementVectorStream}
  * </ol>
  *
  * <p>Subscribers register via {@link #subscribe(MeasurementVectorHandler)} and receive vectors
  * emitted by the final (leakage) stage. {@link #listSensors()} returns the site's sensor list in
- * order. {@link #stop()} unsubscribes from the tail and stops every stream in the chain from tail
- * to head so that all subscriptions are cleared.
+ * order. {@link #stop()} unsubscribes from the pipeline and stops it so that all subscriptions
+ * are cleared.
+ *
+ * <p>The averages are the arithmetic mean of the pressure sensors and the volume-weighted mean of
+ * the temperature sensors, or, when the stream is built with {@code sigmaWeighted}, means weighted
+ * by each sensor's 1/σ² that leave flagged sensors out.
+ *
+ * <p>The site and calibration configuration can be replaced while vectors arrive with {@link
+ * #updateConfig}: the steps up to the average gas constant are compiled from the new configuration
+ * and take effect from the next vector, while the stage and leakage steps keep their state.
+ *
+ * <p>The state of the chain can be saved with {@link #checkpoint()}, or periodically by giving a
+ * checkpoint sink at construction, and a new stream built with the same configuration can resume
+ * from it; see {@link Pipeline}.
  */
 public final class FullStackLeakageMeasurementVectorStream extends MeasurementVectorStream {
 
-  private final SiteConfig siteConfig;
+  private final SiteConfigSteps configSteps;
+  private final Pipeline pipeline;
   private MeasurementVectorStream.Subscription tailSubscription;
 
-  private final BelievabilityFilteredMeasurementVectorStream believability;
-  private final CalibratedMeasurementVectorStream calibrated; // null when no calibration config
-  private final AveragePressureMeasurementVectorStream averagePressure;
-  private final AverageTemperatureMeasurementVectorStream averageTemperature;
-  private final AverageGasConstantMeasurementVectorStream averageGasConstant;
-  private final LeakageMeasurementVectorStream leakage;
-
   /**
    * Builds the chain and returns a stream that delegates to the leakage stream and exposes the
    * site's sensor list.
@@ -59,34 +70,122 @@ public final class FullStackLeakageMeasurementVectorStream extends MeasurementVe
    */
   public FullStackLeakageMeasurementVectorStream(
       SiteConfig siteConfig, CalibrationConfig calibrationConfig, MeasurementVectorStream source) {
-    this.siteConfig = siteConfig;
-
-    Map<String, LocationConfig> locationBySensorId = buildLocationBySensorId(siteConfig);
-    Map<String, String> humidityToTemperatureSensorId =
-        buildHumidityToTemperatureSensorId(siteConfig);
-
-    this.believability = new BelievabilityFilteredMeasurementVectorStream(source, siteConfig);
-    MeasurementVectorStream afterBelievability;
-    if (calibrationConfig != null) {
-      this.calibrated = new CalibratedMeasurementVectorStream(believability, calibrationConfig);
-      afterBelievability = calibrated;
-    } else {
-      this.calibrated = null;
-      afterBelievability = believability;
+    this(siteConfig, calibrationConfig, null, source);
+  }
+
+  /**
+   * Builds the chain with stage tracking and returns a stream that delegates to the leakage stream
+   * and exposes the site's sensor list.
+   *
+   * @param siteConfig site configuration (sensors, locations, humidity pairing); must not be null
+   * @param calibrationConfig optional calibration; if null, no calibration step is applied
+   * @param testConfig optional test configuration; if null, no stage step is applied
+   * @param source the measurement vector stream to feed the chain
+   */
+  public FullStackLeakageMeasurementVectorStream(
+      SiteConfig siteConfig,
+      CalibrationConfig calibrationConfig,
+      TestConfig testConfig,
+      MeasurementVectorStream source) {
+    this(siteConfig, calibrationConfig, testConfig, source, null, 0L, null);
+  }
+
+  /**
+   * Builds the chain with stage tracking, resuming from a checkpoint and saving new ones
+   * periodically (see {@link Pipeline.Builder#resumeFrom} and {@link
+   * Pipeline.Builder#checkpointEvery}).
+   *
+   * @param siteConfig site configuration (sensors, locations, humidity pairing); must not be null
+   * @param calibrationConfig optional calibration; if null, no calibration step is applied
+   * @param testConfig optional test configuration; if null, no stage step is applied
+   * @param source the measurement vector stream to feed the chain
+   * @param resumeCheckpoint a {@link #checkpoint()} of a stream built with the same configuration,
+   *     or null to start from scratch; source vectors up to its time are ignored
+   * @param checkpointIntervalMs measurement time between periodic checkpoints, in milliseconds
+   * @param checkpointSink receives the periodic checkpoints and a last one when the stream is
+   *     stopped; if null, no checkpoints are taken
+   * @throws IllegalArgumentException if the checkpoint is damaged or was taken with another
+   *     configuration, or if a sink is given with an interval that is not positive
+   */
+  public FullStackLeakageMeasurementVectorStream(
+      SiteConfig siteConfig,
+      CalibrationConfig calibrationConfig,
+      TestConfig testConfig,
+      MeasurementVectorStream source,
+      byte[] resumeCheckpoint,
+      long checkpointIntervalMs,
+      Pipeline.CheckpointSink checkpointSink) {
+    this(
+        siteConfig,
+        calibrationConfig,
+        testConfig,
+        false,
+        source,
+        resumeCheckpoint,
+        checkpointIntervalMs,
+        checkpointSink);
+  }
+
+  /**
+   * Builds the chain with stage tracking and checkpoints, choosing how the sensors are averaged.
+   *
+   * @param siteConfig site configuration (sensors, locations, humidity pairing); must not be null
+   * @param calibrationConfig optional calibration; if null, no calibration step is applied
+   * @param testConfig optional test configuration; if null, no stage step is applied
+   * @param sigmaWeighted if true, the average pressure and temperature weight each sensor by 1/σ²
+   *     and leave flagged sensors out; if false, they are the arithmetic and volume-weighted means.
+   *     Kept by {@link #updateConfig}
+   * @param source the measurement vector stream to feed the chain
+   * @param resumeCheckpoint a {@link #checkpoint()} of a stream built with the same configuration,
+   *     or null to start from scratch; source vectors up to its time are ignored
+   * @param checkpointIntervalMs measurement time between periodic checkpoints, in milliseconds
+   * @param checkpointSink receives the periodic checkpoints and a last one when the stream is
+   *     stopped; if null, no checkpoints are taken
+   * @throws IllegalArgumentException if the checkpoint is damaged or was taken with another
+   *     configuration, or if a sink is given with an interval that is not positive
+   */
+  public FullStackLeakageMeasurementVectorStream(
+      SiteConfig siteConfig,
+      CalibrationConfig calibrationConfig,
+      TestConfig testConfig,
+      boolean sigmaWeighted,
+      MeasurementVectorStream source,
+      byte[] resumeCheckpoint,
+      long checkpointIntervalMs,
+      Pipeline.CheckpointSink checkpointSink) {
+    this.configSteps = new SiteConfigSteps(siteConfig, calibrationConfig, sigmaWeighted);
+    Pipeline.Builder builder =
+        pipelineBuilder(configSteps, testConfig).resumeFrom(resumeCheckpoint);
+    if (checkpointSink != null) {
+      builder.checkpointEvery(checkpointIntervalMs, checkpointSink);
     }
-    this.averagePressure =
-        new AveragePressureMeasurementVectorStream(afterBelievability, siteConfig);
-    this.averageTemperature =
-        new AverageTemperatureMeasurementVectorStream(
-            averagePressure, locationBySensorId, siteConfig);
-    this.averageGasConstant =
-        new AverageGasConstantMeasurementVectorStream(
-            averageTemperature, locationBySensorId, humidityToTemperatureSensorId, siteConfig);
-    this.leakage = new LeakageMeasurementVectorStream(averageGasConstant);
-    this.tailSubscription = leakage.subscribe(this::publish);
+    this.pipeline = builder.build(source);
+    this.tailSubscription = pipeline.subscribe(this::publish);
+  }
+
+  /**
+   * Declares the chain listed in the class documentation; each call returns a builder with new step
+   * instances.
+   */
+  static Pipeline.Builder pipelineBuilder(
+      SiteConfig siteConfig, CalibrationConfig calibrationConfig, TestConfig testConfig) {
+    return pipelineBuilder(new SiteConfigSteps(siteConfig, calibrationConfig), testConfig);
   }
 
-  private static Map<String, LocationConfig> buildLocationBySensorId(SiteConfig siteConfig) {
+  private static Pipeline.Builder pipelineBuilder(
+      SiteConfigSteps configSteps, TestConfig testConfig) {
+    Pipeline.Builder builder = Pipeline.builder();
+    for (PipelineStep step : configSteps.steps()) {
+      builder.step(step);
+    }
+    if (testConfig != null) {
+      builder.testStages(testConfig);
+    }
+    return builder.leakage();
+  }
+
+  /** Maps every site-config sensor id to the location that contains it. */
+  static Map<String, LocationConfig> buildLocationBySensorId(SiteConfig siteConfig) {
     Map<String, LocationConfig> map = new LinkedHashMap<>();
     List<LocationConfig> locations = siteConfig.getLocations();
     for (LocationConfig loc : locations) {
@@ -130,24 +229,62 @@ public final class FullStackLeakageMeasurementVectorStream extends MeasurementVe
   @Override
   public List<SensorConfig> listSensors() {
     // SiteConfig#getSensors never returns null; always provide a mutable copy.
-    return new ArrayList<>(siteConfig.getSensors());
+    return new ArrayList<>(configSteps.getSiteConfig().getSensors());
+  }
+
+  /**
+   * Replaces the site and calibration configuration from the next vector on, without pausing the
+   * source or resetting the stage and leakage state. May be called from any thread; the sensor
+   * list of the new site configuration is returned by {@link #listSensors()} from then on.
+   *
+   * @param siteConfig new site configuration; must not be null and must not be modified afterwards
+   * @param calibrationConfig new calibration; if null, no calibration step is applied
+   */
+  public void updateConfig(SiteConfig siteConfig, CalibrationConfig calibrationConfig) {
+    configSteps.swap(siteConfig, calibrationConfig);
+  }
+
+  /**
+   * Returns the state of the chain (see {@link Pipeline#checkpoint()}). Call it from the thread
+   * that publishes to the source, or while the source is idle.
+   */
+  public byte[] checkpoint() {
+    return pipeline.checkpoint();
   }
 
   /**
-   * Stops the entire chain: unsubscribes from the tail, then stops each stream from tail to head so
-   * that no events are delivered and all subscriptions are cleared.
+   * Returns the time of the last vector taken from the source, or of the checkpoint the stream
+   * resumed from; {@link Long#MIN_VALUE} before either. Call it from the thread that publishes to
+   * the source, or while the source is idle.
+   */
+  public long getLastTimeUtc() {
+    return pipeline.getLastTimeUtc();
+  }
+
+  /** Returns the compiled nodes of the chain; see {@link Pipeline#getPlan()}. */
+  public List<String> getPlan() {
+    return pipeline.getPlan();
+  }
+
+  /**
+   * Records the latency of every vector after the config-driven steps, the stage step and the
+   * leakage step; see {@link Pipeline#setLatencyTracer}.
+   *
+   * @param tracer the tracer to record to, or null to stop recording
+   */
+  public void setLatencyTracer(LatencyTracer tracer) {
+    pipeline.setLatencyTracer(tracer);
+  }
+
+  /**
+   * Stops the entire chain: unsubscribes from the pipeline, then stops it so that no events are
+   * delivered, a last checkpoint is handed to the checkpoint sink (if any), all step state is
+   * discarded and all subscriptions are cleared.
    */
   public void stop() {
     tailSubscription.unsubscribe();
     tailSubscription = null;
-    leakage.stop();
-    averageGasConstant.stop();
-    averageTemperature.stop();
-    averagePressure.stop();
-    if (calibrated != null) {
-      calibrated.stop();
-    }
-    believability.stop();
+    pipeline.stop();
     clearSubscribers();
   }
 }
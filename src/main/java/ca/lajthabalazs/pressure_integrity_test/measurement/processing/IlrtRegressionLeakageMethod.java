@@ -0,0 +1,53 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * ILRT regression leakage: least-squares slope of y = ln(ρ/ρ∞ − 1) over all points since the
+ * first, evaluated at the first point, as in {@link RegressionLeakageMeasurementVectorStream}
+ * without a window.
+ */
+public final class IlrtRegressionLeakageMethod implements LeakageMethod {
+
+  /** Source id of the ILRT regression leakage rate. */
+  public static final String SOURCE_ID = "LEAKAGE_ILRT";
+
+  private final LinearRegressionAccumulator fit = new LinearRegressionAccumulator();
+  private long originUtc;
+
+  @Override
+  public String getSourceId() {
+    return SOURCE_ID;
+  }
+
+  @Override
+  public double update(long timeUtc, double rho) {
+    if (fit.count() == 0) {
+      originUtc = timeUtc;
+    }
+    fit.add((timeUtc - originUtc) / 1000.0, LeakageMath.regressionVariable(rho));
+    if (!fit.hasFit()) {
+      return Double.NaN;
+    }
+    return LeakageMath.leakageFromSlope(fit.slope(), fit.intercept());
+  }
+
+  @Override
+  public void reset() {
+    fit.clear();
+  }
+
+  @Override
+  public void writeState(DataOutput out) throws IOException {
+    fit.writeState(out);
+    out.writeLong(originUtc);
+  }
+
+  @Override
+  public void readState(DataInput in) throws IOException {
+    fit.readState(in);
+    originUtc = in.readLong();
+  }
+}
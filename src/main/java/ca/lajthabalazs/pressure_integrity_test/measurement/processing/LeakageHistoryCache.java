@@ -0,0 +1,519 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
+
+import ca.lajthabalazs.pressure_integrity_test.config.CalibrationConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.HumiditySensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.LinearCalibration;
+import ca.lajthabalazs.pressure_integrity_test.config.LocationConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.PressureSensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.SensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.SiteConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.TemperatureSensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.TestConfig;
+import ca.lajthabalazs.pressure_integrity_test.measurement.GasConstant;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Humidity;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Measurement;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Pressure;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Temperature;
+import ca.lajthabalazs.pressure_integrity_test.measurement.streaming.MeasurementVectorStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * Columnar history of a test that can be recomputed after a calibration or site-config change.
+ *
+ * <p>Subscribes to the raw source stream (the one feeding {@link
+ * FullStackLeakageMeasurementVectorStream}) and keeps, per vector, the raw value of every
+ * site-config sensor and the intermediate quantities of the leakage chain: average pressure,
+ * average temperature, average gas constant, density, stage and leakage. Every value is a primitive
+ * in a growable per-quantity array; missing values are NaN.
+ *
+ * <p>Each average column is tagged with a fingerprint of the configuration it depends on (see
+ * {@link Column}). {@link #recompute} compares the fingerprints of the new configuration with the
+ * cached ones and recomputes only the columns that changed. The averages of one vector do not
+ * depend on any other vector, so they are recomputed in parallel chunks of {@link #CHUNK_SIZE}
+ * vectors, each chunk running its own copy of the existing average streams. Stage and leakage are
+ * stateful and are then replayed sequentially from the cached averages, which is cheap.
+ *
+ * <p>The values match those of a {@link FullStackLeakageMeasurementVectorStream} without spike
+ * detection built from the same configuration, up to double rounding of the cached averages.
+ * Believability warnings are not cached: they never change the averages. This class is not
+ * thread-safe; call {@link #recompute} from the thread that delivers the source vectors.
+ */
+public final class LeakageHistoryCache {
+
+  /** Cached average quantities, each recomputed only when its own inputs change. */
+  public enum Column {
+    /** Average pressure; depends on the calibration of the pressure sensors. */
+    AVERAGE_PRESSURE,
+    /**
+     * Average temperature; depends on the calibration of the temperature sensors and on the volume
+     * factors of their locations.
+     */
+    AVERAGE_TEMPERATURE,
+    /**
+     * Average gas constant; depends on the calibration of every sensor, on the humidity pairing
+     * and on the volume factors of the paired temperature sensors.
+     */
+    AVERAGE_GAS_CONSTANT
+  }
+
+  /** Number of vectors recomputed by one parallel task. */
+  static final int CHUNK_SIZE = 1024;
+
+  private static final int INITIAL_CAPACITY = 256;
+
+  private final TestConfig testConfig; // null when stages are not tracked
+  private final List<SensorConfig> sensors;
+  private final Map<String, Integer> columnBySensorId;
+  private MeasurementVectorStream.Subscription sourceSubscription;
+
+  private SiteConfig siteConfig;
+  private CalibrationConfig calibrationConfig;
+  private Map<String, LocationConfig> locationBySensorId;
+  private Map<String, String> humidityToTemperatureSensorId;
+  private final long[] fingerprints = new long[Column.values().length];
+
+  private int size;
+  private long[] timeUtc = new long[INITIAL_CAPACITY];
+  private boolean[] severe = new boolean[INITIAL_CAPACITY];
+  private double[][] raw;
+  private double[] averagePressure = new double[INITIAL_CAPACITY];
+  private double[] averageTemperature = new double[INITIAL_CAPACITY];
+  private double[] averageGasConstant = new double[INITIAL_CAPACITY];
+  private double[] density = new double[INITIAL_CAPACITY];
+  private double[] leakage = new double[INITIAL_CAPACITY];
+  private int[] stage = new int[INITIAL_CAPACITY];
+
+  private AverageChain liveAverages;
+  private TailChain tail;
+
+  /**
+   * Creates a cache that records every vector of the source from now on.
+   *
+   * @param siteConfig site configuration; its sensors are the raw columns
+   * @param calibrationConfig calibration applied before averaging; may be null
+   * @param testConfig test configuration for stage tracking; may be null
+   * @param source the raw measurement vector stream
+   */
+  public LeakageHistoryCache(
+      SiteConfig siteConfig,
+      CalibrationConfig calibrationConfig,
+      TestConfig testConfig,
+      MeasurementVectorStream source) {
+    this.testConfig = testConfig;
+    this.sensors = List.copyOf(siteConfig.getSensors());
+    this.columnBySensorId = new HashMap<>();
+    for (int i = 0; i < sensors.size(); i++) {
+      columnBySensorId.put(sensors.get(i).getId(), i);
+    }
+    this.raw = new double[sensors.size()][INITIAL_CAPACITY];
+    applyConfig(siteConfig, calibrationConfig);
+    for (Column column : Column.values()) {
+      fingerprints[column.ordinal()] = fingerprint(column);
+    }
+    this.liveAverages = new AverageChain(EnumSet.allOf(Column.class));
+    this.tail = new TailChain();
+    this.sourceSubscription = source.subscribe(this::append);
+  }
+
+  private void applyConfig(SiteConfig siteConfig, CalibrationConfig calibrationConfig) {
+    this.siteConfig = siteConfig;
+    this.calibrationConfig =
+        calibrationConfig != null ? calibrationConfig : new CalibrationConfig();
+    this.locationBySensorId =
+        FullStackLeakageMeasurementVectorStream.buildLocationBySensorId(siteConfig);
+    this.humidityToTemperatureSensorId =
+        FullStackLeakageMeasurementVectorStream.buildHumidityToTemperatureSensorId(siteConfig);
+  }
+
+  private void append(MeasurementVector vector) {
+    if (size == timeUtc.length) {
+      grow();
+    }
+    int row = size++;
+    timeUtc[row] = vector.getTimeUtc();
+    severe[row] = vector.hasSevereError();
+    for (double[] column : raw) {
+      column[row] = Double.NaN;
+    }
+    for (Measurement m : vector.getMeasurementsMap().values()) {
+      Integer column = columnBySensorId.get(m.getSourceId());
+      if (column != null && m.getValueInDefaultUnit() != null) {
+        raw[column][row] = m.getValueInDefaultUnit().doubleValue();
+      }
+    }
+    liveAverages.compute(row);
+    tail.replay(row);
+  }
+
+  private void grow() {
+    int capacity = timeUtc.length * 2;
+    timeUtc = Arrays.copyOf(timeUtc, capacity);
+    severe = Arrays.copyOf(severe, capacity);
+    for (int i = 0; i < raw.length; i++) {
+      raw[i] = Arrays.copyOf(raw[i], capacity);
+    }
+    averagePressure = Arrays.copyOf(averagePressure, capacity);
+    averageTemperature = Arrays.copyOf(averageTemperature, capacity);
+    averageGasConstant = Arrays.copyOf(averageGasConstant, capacity);
+    density = Arrays.copyOf(density, capacity);
+    leakage = Arrays.copyOf(leakage, capacity);
+    stage = Arrays.copyOf(stage, capacity);
+  }
+
+  /**
+   * Switches to a corrected configuration and recomputes the history it affects.
+   *
+   * <p>Average columns whose fingerprint is unchanged are kept; the others are recomputed in
+   * parallel chunks. If any column changed, density, stage and leakage are replayed over the whole
+   * history. Vectors arriving afterwards are processed with the new configuration.
+   *
+   * @param newSiteConfig corrected site configuration; must list the same sensors in the same order
+   * @param newCalibrationConfig corrected calibration; may be null
+   * @return the recomputed columns (empty if the change does not affect the averages)
+   * @throws IllegalArgumentException if the site config lists different sensors
+   */
+  public Set<Column> recompute(SiteConfig newSiteConfig, CalibrationConfig newCalibrationConfig) {
+    List<String> newIds = newSiteConfig.getSensors().stream().map(SensorConfig::getId).toList();
+    if (!newIds.equals(sensors.stream().map(SensorConfig::getId).toList())) {
+      throw new IllegalArgumentException("Site config sensors differ from the cached history");
+    }
+    applyConfig(newSiteConfig, newCalibrationConfig);
+    EnumSet<Column> changed = EnumSet.noneOf(Column.class);
+    for (Column column : Column.values()) {
+      long fingerprint = fingerprint(column);
+      if (fingerprint != fingerprints[column.ordinal()]) {
+        fingerprints[column.ordinal()] = fingerprint;
+        changed.add(column);
+      }
+    }
+    liveAverages.stop();
+    liveAverages = new AverageChain(EnumSet.allOf(Column.class));
+    if (changed.isEmpty()) {
+      return changed;
+    }
+    int chunks = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    IntStream.range(0, chunks)
+        .parallel()
+        .forEach(
+            chunk -> {
+              AverageChain chain = new AverageChain(changed);
+              int end = Math.min(size, (chunk + 1) * CHUNK_SIZE);
+              for (int row = chunk * CHUNK_SIZE; row < end; row++) {
+                chain.compute(row);
+              }
+              chain.stop();
+            });
+    tail.stop();
+    tail = new TailChain();
+    for (int row = 0; row < size; row++) {
+      tail.replay(row);
+    }
+    return changed;
+  }
+
+  /**
+   * Returns the fingerprint of the configuration the given column was computed with. Equal
+   * fingerprints mean the column's inputs are unchanged.
+   */
+  public long getFingerprint(Column column) {
+    return fingerprints[column.ordinal()];
+  }
+
+  /** Returns the number of cached vectors. */
+  public int size() {
+    return size;
+  }
+
+  /** Returns the timestamp (ms since epoch) of the given vector. */
+  public long getTimeUtc(int row) {
+    return timeUtc[Objects.checkIndex(row, size)];
+  }
+
+  /** Returns the average pressure [Pa] of the given vector, or NaN if it has none. */
+  public double getAveragePressure(int row) {
+    return averagePressure[Objects.checkIndex(row, size)];
+  }
+
+  /** Returns the average temperature [°C] of the given vector, or NaN if it has none. */
+  public double getAverageTemperature(int row) {
+    return averageTemperature[Objects.checkIndex(row, size)];
+  }
+
+  /** Returns the average gas constant [Nm/(kg·K)] of the given vector, or NaN if it has none. */
+  public double getAverageGasConstant(int row) {
+    return averageGasConstant[Objects.checkIndex(row, size)];
+  }
+
+  /** Returns the density [kg/m³] of the given vector, or NaN if it is not above ρ∞. */
+  public double getDensity(int row) {
+    return density[Objects.checkIndex(row, size)];
+  }
+
+  /**
+   * Returns the leakage rate [v/v%/d] published for the given vector ({@code -1} for the first
+   * point of a stage), or NaN if none was published.
+   */
+  public double getLeakage(int row) {
+    return leakage[Objects.checkIndex(row, size)];
+  }
+
+  /**
+   * Returns the stage the given vector belongs to, or {@link
+   * StageMeasurementVectorStream#NO_STAGE}.
+   */
+  public int getStage(int row) {
+    return stage[Objects.checkIndex(row, size)];
+  }
+
+  /** Stops recording: unsubscribes from the source and stops the internal streams. */
+  public void stop() {
+    if (sourceSubscription != null) {
+      sourceSubscription.unsubscribe();
+      sourceSubscription = null;
+    }
+    liveAverages.stop();
+    tail.stop();
+  }
+
+  /** Rebuilds the raw vector of the given row in default units. */
+  private MeasurementVector rawVector(int row) {
+    long t = timeUtc[row];
+    List<Measurement> measurements = new ArrayList<>(sensors.size());
+    for (int i = 0; i < sensors.size(); i++) {
+      double value = raw[i][row];
+      if (Double.isNaN(value)) {
+        continue;
+      }
+      SensorConfig sensor = sensors.get(i);
+      BigDecimal v = BigDecimal.valueOf(value);
+      if (sensor instanceof PressureSensorConfig) {
+        measurements.add(new Pressure(t, sensor.getId(), v));
+      } else if (sensor instanceof TemperatureSensorConfig) {
+        measurements.add(new Temperature(t, sensor.getId(), v));
+      } else if (sensor instanceof HumiditySensorConfig) {
+        measurements.add(new Humidity(t, sensor.getId(), v));
+      }
+    }
+    return new MeasurementVector(t, measurements);
+  }
+
+  private static double valueOf(MeasurementVector vector, String sourceId) {
+    Measurement m = vector.getMeasurementsMap().get(sourceId);
+    return m != null ? m.getValueInDefaultUnit().doubleValue() : Double.NaN;
+  }
+
+  /**
+   * Returns a 64-bit FNV-1a hash of the configuration the column depends on: the calibration of
+   * the relevant sensors and, for the temperature and gas constant, the volume factors and pairing.
+   */
+  private long fingerprint(Column column) {
+    StringBuilder key = new StringBuilder();
+    for (SensorConfig sensor : sensors) {
+      boolean relevant =
+          switch (column) {
+            case AVERAGE_PRESSURE -> sensor instanceof PressureSensorConfig;
+            case AVERAGE_TEMPERATURE -> sensor instanceof TemperatureSensorConfig;
+            case AVERAGE_GAS_CONSTANT -> true;
+          };
+      if (!relevant) {
+        continue;
+      }
+      key.append(sensor.getId()).append('=');
+      LinearCalibration cal = calibrationConfig.getCalibrationForSensor(sensor.getId());
+      if (cal != null) {
+        key.append(plain(cal.getA())).append('x').append(plain(cal.getB()));
+      }
+      if (column == Column.AVERAGE_TEMPERATURE) {
+        key.append('@').append(volumeFactor(sensor.getId()));
+      }
+      key.append(';');
+    }
+    if (column == Column.AVERAGE_GAS_CONSTANT) {
+      for (Map.Entry<String, String> pair : humidityToTemperatureSensorId.entrySet()) {
+        key.append(pair.getKey()).append('>').append(pair.getValue());
+        key.append('@').append(volumeFactor(pair.getValue())).append(';');
+      }
+    }
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < key.length(); i++) {
+      hash = (hash ^ key.charAt(i)) * 0x100000001b3L;
+    }
+    return hash;
+  }
+
+  private String volumeFactor(String sensorId) {
+    LocationConfig location = locationBySensorId.get(sensorId);
+    return location != null ? plain(location.getVolumeFactor()) : "";
+  }
+
+  private static String plain(BigDecimal value) {
+    return value != null ? value.stripTrailingZeros().toPlainString() : "";
+  }
+
+  /** A source that publishes vectors handed to it, feeding a private copy of a chain. */
+  private static final class ReplaySource extends MeasurementVectorStream {
+    void push(MeasurementVector vector) {
+      publish(vector);
+    }
+  }
+
+  /**
+   * Private copy of the calibration and average streams that writes the requested columns of one
+   * row at a time. Only the streams needed for the requested columns are created.
+   */
+  private final class AverageChain {
+
+    private final ReplaySource input = new ReplaySource();
+    private final CalibratedMeasurementVectorStream calibrated;
+    private final AveragePressureMeasurementVectorStream pressure;
+    private final AverageTemperatureMeasurementVectorStream temperature;
+    private final AverageGasConstantMeasurementVectorStream gasConstant;
+    private final Set<Column> columns;
+    private int row;
+
+    AverageChain(Set<Column> columns) {
+      this.columns = columns;
+      calibrated = new CalibratedMeasurementVectorStream(input, calibrationConfig);
+      boolean needsPressure =
+          columns.contains(Column.AVERAGE_PRESSURE)
+              || columns.contains(Column.AVERAGE_GAS_CONSTANT);
+      pressure =
+          needsPressure ? new AveragePressureMeasurementVectorStream(calibrated, siteConfig) : null;
+      if (columns.contains(Column.AVERAGE_PRESSURE)) {
+        pressure.subscribe(
+            v ->
+                averagePressure[row] =
+                    valueOf(v, AveragePressureMeasurementVectorStream.AVG_PRESSURE_SOURCE_ID));
+      }
+      if (columns.contains(Column.AVERAGE_TEMPERATURE)) {
+        temperature =
+            new AverageTemperatureMeasurementVectorStream(
+                calibrated, locationBySensorId, siteConfig);
+        temperature.subscribe(
+            v ->
+                averageTemperature[row] =
+                    valueOf(
+                        v, AverageTemperatureMeasurementVectorStream.AVG_TEMPERATURE_SOURCE_ID));
+      } else {
+        temperature = null;
+      }
+      if (columns.contains(Column.AVERAGE_GAS_CONSTANT)) {
+        gasConstant =
+            new AverageGasConstantMeasurementVectorStream(
+                pressure, locationBySensorId, humidityToTemperatureSensorId, siteConfig);
+        gasConstant.subscribe(
+            v ->
+                averageGasConstant[row] =
+                    valueOf(v, AverageGasConstantMeasurementVectorStream.AVG_R_SOURCE_ID));
+      } else {
+        gasConstant = null;
+      }
+    }
+
+    void compute(int row) {
+      this.row = row;
+      if (columns.contains(Column.AVERAGE_PRESSURE)) {
+        averagePressure[row] = Double.NaN;
+      }
+      if (columns.contains(Column.AVERAGE_TEMPERATURE)) {
+        averageTemperature[row] = Double.NaN;
+      }
+      if (columns.contains(Column.AVERAGE_GAS_CONSTANT)) {
+        averageGasConstant[row] = Double.NaN;
+      }
+      if (!severe[row]) {
+        input.push(rawVector(row));
+      }
+    }
+
+    void stop() {
+      if (gasConstant != null) {
+        gasConstant.stop();
+      }
+      if (temperature != null) {
+        temperature.stop();
+      }
+      if (pressure != null) {
+        pressure.stop();
+      }
+      calibrated.stop();
+    }
+  }
+
+  /**
+   * Private copy of the stage and leakage streams, fed with vectors that hold only the cached
+   * averages. Like the live chain, it only sees vectors that have all three averages.
+   */
+  private final class TailChain {
+
+    private final ReplaySource input = new ReplaySource();
+    private final StageMeasurementVectorStream stages;
+    private final LeakageMeasurementVectorStream leakages;
+    private int row;
+
+    TailChain() {
+      if (testConfig != null) {
+        stages = new StageMeasurementVectorStream(input, testConfig);
+        stages.subscribe(v -> stage[row] = StageMeasurementVectorStream.stageOf(v));
+        leakages = new LeakageMeasurementVectorStream(stages);
+      } else {
+        stages = null;
+        leakages = new LeakageMeasurementVectorStream(input);
+      }
+      leakages.subscribe(
+          v -> leakage[row] = valueOf(v, LeakageMeasurementVectorStream.LEAKAGE_SOURCE_ID));
+    }
+
+    void replay(int row) {
+      this.row = row;
+      stage[row] = StageMeasurementVectorStream.NO_STAGE;
+      leakage[row] = Double.NaN;
+      density[row] = Double.NaN;
+      double p = averagePressure[row];
+      double t = averageTemperature[row];
+      double r = averageGasConstant[row];
+      if (Double.isNaN(p) || Double.isNaN(t) || Double.isNaN(r)) {
+        return;
+      }
+      long time = timeUtc[row];
+      MeasurementVector vector =
+          new MeasurementVector(
+              time,
+              List.of(
+                  new Pressure(
+                      time,
+                      AveragePressureMeasurementVectorStream.AVG_PRESSURE_SOURCE_ID,
+                      BigDecimal.valueOf(p)),
+                  new Temperature(
+                      time,
+                      AverageTemperatureMeasurementVectorStream.AVG_TEMPERATURE_SOURCE_ID,
+                      BigDecimal.valueOf(t)),
+                  new GasConstant(
+                      time,
+                      AverageGasConstantMeasurementVectorStream.AVG_R_SOURCE_ID,
+                      BigDecimal.valueOf(r))));
+      Double rho = LeakageMath.densityFromVector(vector);
+      if (rho != null) {
+        density[row] = rho;
+      }
+      input.push(vector);
+    }
+
+    void stop() {
+      leakages.stop();
+      if (stages != null) {
+        stages.stop();
+      }
+    }
+  }
+}
@@ -0,0 +1,121 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
+
+import ca.lajthabalazs.pressure_integrity_test.measurement.GasConstant;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Measurement;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Pressure;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Temperature;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Map;
+
+/**
+ * Density and leakage-rate formulas from the ILRT reference, shared by the leakage stages.
+ *
+ * <p>Density is ρ = P/(R·T). The regression variable is y = ln(ρ/ρ∞ − 1); for a leaking
+ * containment y falls linearly in time, y = A·t + B, and the leakage rate in v/v%/d is L =
+ * 8640000·A·(1/(1+exp(B)) − 1) with A in 1/s.
+ */
+final class LeakageMath {
+
+  /** Reference density ρ∞ [kg/m³] near P_inf = 0.1 MPa, T_inf = 300 K, from the ILRT reference. */
+  static final double RHO_INF = 1.16144;
+
+  /** Factor for leakage rate in v/v%/d: 8640000 = 86400 s/day × 100 for percent, from Calc_L. */
+  static final double L_SCALE = 8640000.0;
+
+  private LeakageMath() {}
+
+  /**
+   * Computes density ρ = P/(R·T) from the vector's average pressure (Pa), average temperature (K),
+   * and average gas constant R (Nm/(kg·K)). Returns null if any value is missing or invalid, or if
+   * the density is not above ρ∞ (the regression variable would be undefined).
+   */
+  static Double densityFromVector(MeasurementVector vector) {
+    return densityFromMeasurements(vector.getMeasurementsMap());
+  }
+
+  /** Same as {@link #densityFromVector} for measurements by source id. */
+  static Double densityFromMeasurements(Map<String, Measurement> measurements) {
+    BigDecimal pPa = null;
+    BigDecimal tK = null;
+    BigDecimal r = null;
+    for (Measurement m : measurements.values()) {
+      if (m instanceof Pressure
+          && AveragePressureMeasurementVectorStream.AVG_PRESSURE_SOURCE_ID.equals(
+              m.getSourceId())) {
+        pPa = ((Pressure) m).getPascalValue();
+      } else if (m instanceof Temperature
+          && AverageTemperatureMeasurementVectorStream.AVG_TEMPERATURE_SOURCE_ID.equals(
+              m.getSourceId())) {
+        tK = ((Temperature) m).getKelvinValue();
+      } else if (m instanceof GasConstant
+          && AverageGasConstantMeasurementVectorStream.AVG_R_SOURCE_ID.equals(m.getSourceId())) {
+        r = ((GasConstant) m).getValueInDefaultUnit();
+      }
+    }
+    if (pPa == null
+        || tK == null
+        || r == null
+        || pPa.signum() <= 0
+        || tK.signum() <= 0
+        || r.signum() <= 0) {
+      return null;
+    }
+    double rho = pPa.doubleValue() / (r.doubleValue() * tK.doubleValue());
+    return rho > RHO_INF ? rho : null;
+  }
+
+  /** Returns the regression variable y = ln(ρ/ρ∞ − 1). */
+  static double regressionVariable(double rho) {
+    return Math.log(rho / RHO_INF - 1.0);
+  }
+
+  /**
+   * Returns the leakage rate L = 8640000·A·(1/(1+exp(B)) − 1) in v/v%/d.
+   *
+   * @param slopePerSecond A, the slope of y over time in 1/s
+   * @param y B, the regression variable at the start of the interval
+   */
+  static double leakageFromSlope(double slopePerSecond, double y) {
+    return L_SCALE * slopePerSecond * (1.0 / (1.0 + Math.exp(y)) - 1.0);
+  }
+
+  /**
+   * Returns the one-sided 95% upper confidence limit of the leakage rate: L + t(0.95, df)·SE(A)·
+   * |∂L/∂A|, where SE(A) is the standard error of the fitted slope.
+   *
+   * @param slopePerSecond A, the fitted slope of y over time in 1/s
+   * @param slopeStandardError standard error of A in 1/s
+   * @param y B, the fitted regression variable at the start of the interval
+   * @param degreesOfFreedom degrees of freedom of the fit (points − 2)
+   */
+  static double leakageUpperConfidenceLimit(
+      double slopePerSecond, double slopeStandardError, double y, long degreesOfFreedom) {
+    return leakageFromSlope(slopePerSecond, y)
+        + StudentTDistribution.oneSided95(degreesOfFreedom)
+            * leakageStandardError(slopeStandardError, y);
+  }
+
+  /**
+   * Returns the standard error of the leakage rate in v/v%/d, SE(A)·|∂L/∂A| with |∂L/∂A| =
+   * 8640000·|1/(1+exp(B)) − 1|.
+   *
+   * @param slopeStandardError standard error of the fitted slope A in 1/s
+   * @param y B, the fitted regression variable at the start of the interval
+   */
+  static double leakageStandardError(double slopeStandardError, double y) {
+    return slopeStandardError * L_SCALE * Math.abs(1.0 / (1.0 + Math.exp(y)) - 1.0);
+  }
+
+  /**
+   * Converts a leakage rate to the published value: rounded to 6 decimals, or {@code -1} if the
+   * rate is not defined (NaN or infinite).
+   */
+  static BigDecimal toLeakageValue(double value) {
+    if (!Double.isFinite(value)) {
+      return BigDecimal.ONE.negate();
+    }
+    return BigDecimal.valueOf(value).setScale(6, RoundingMode.HALF_UP);
+  }
+}
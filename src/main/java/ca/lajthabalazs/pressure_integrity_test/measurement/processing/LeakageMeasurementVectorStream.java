@@ -1,16 +1,9 @@
 package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
 
 import ca.lajthabalazs.pressure_integrity_test.config.SensorConfig;
-import ca.lajthabalazs.pressure_integrity_test.measurement.GasConstant;
 import ca.lajthabalazs.pressure_integrity_test.measurement.Leakage;
-import ca.lajthabalazs.pressure_integrity_test.measurement.Measurement;
 import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
-import ca.lajthabalazs.pressure_integrity_test.measurement.Pressure;
-import ca.lajthabalazs.pressure_integrity_test.measurement.Temperature;
 import ca.lajthabalazs.pressure_integrity_test.measurement.streaming.MeasurementVectorStream;
-import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -32,25 +25,19 @@ import java.util.List;
  * AverageTemperatureMeasurementVectorStream#AVG_TEMPERATURE_SOURCE_ID}, and {@link
  * AverageGasConstantMeasurementVectorStream#AVG_R_SOURCE_ID}. If any of these are missing or
  * invalid, that vector is not published.
+ *
+ * <p>If the vectors are tagged by {@link StageMeasurementVectorStream}, the previous point is
+ * discarded whenever the stage changes, so the first vector of each stage publishes {@code -1}.
  */
 public class LeakageMeasurementVectorStream extends MeasurementVectorStream {
 
   /** Source id of the synthetic leakage measurement emitted by this stream. */
   public static final String LEAKAGE_SOURCE_ID = "LEAKAGE";
 
-  /** Reference density ρ∞ [kg/m³] near P_inf = 0.1 MPa, T_inf = 300 K, from the ILRT reference. */
-  private static final double RHO_INF = 1.16144;
-
-  /** Factor for leakage rate in v/v%/d: 8640000 = 86400 s/day × 100 for percent, from Calc_L. */
-  private static final double L_SCALE = 8640000.0;
-
   private final MeasurementVectorStream source;
   private MeasurementVectorStream.Subscription sourceSubscription;
 
-  /** Previous vector's timestamp (ms) and density (kg/m³); null until first vector is processed. */
-  private Long prevTimeUtc;
-
-  private Double prevRho;
+  private final LeakageStep step = new LeakageStep();
 
   /**
    * Creates a leakage stream that wraps the given source (e.g. output of {@link
@@ -70,79 +57,10 @@ public class LeakageMeasurementVectorStream extends MeasurementVectorStream {
       publish(vector);
       return;
     }
-    Double rho = densityFromVector(vector);
-    if (rho == null) {
-      return;
-    }
-    long t = vector.getTimeUtc();
-    BigDecimal leakageValue;
-    if (prevTimeUtc == null) {
-      leakageValue = BigDecimal.ONE.negate();
-    } else {
-      Double L = leakageFromTwoPoints(prevRho, prevTimeUtc, rho, t);
-      if (L == null) {
-        return;
-      }
-      leakageValue = BigDecimal.valueOf(L).setScale(6, RoundingMode.HALF_UP);
-    }
-    prevTimeUtc = t;
-    prevRho = rho;
-    Leakage leakage = new Leakage(vector.getTimeUtc(), LEAKAGE_SOURCE_ID, leakageValue);
-    List<Measurement> out = new ArrayList<>(vector.getMeasurements());
-    out.add(leakage);
-    publish(new MeasurementVector(vector.getTimeUtc(), out, vector.getErrors()));
-  }
-
-  /**
-   * Computes density ρ = P/(R·T) from the vector's average pressure (Pa), average temperature (K),
-   * and average gas constant R (Nm/(kg·K)). Returns null if any value is missing or invalid.
-   */
-  private static Double densityFromVector(MeasurementVector vector) {
-    BigDecimal pPa = null;
-    BigDecimal tK = null;
-    BigDecimal r = null;
-    for (Measurement m : vector.getMeasurementsMap().values()) {
-      if (m instanceof Pressure
-          && AveragePressureMeasurementVectorStream.AVG_PRESSURE_SOURCE_ID.equals(
-              m.getSourceId())) {
-        pPa = ((Pressure) m).getPascalValue();
-      } else if (m instanceof Temperature
-          && AverageTemperatureMeasurementVectorStream.AVG_TEMPERATURE_SOURCE_ID.equals(
-              m.getSourceId())) {
-        tK = ((Temperature) m).getKelvinValue();
-      } else if (m instanceof GasConstant
-          && AverageGasConstantMeasurementVectorStream.AVG_R_SOURCE_ID.equals(m.getSourceId())) {
-        r = ((GasConstant) m).getValueInDefaultUnit();
-      }
-    }
-    if (pPa == null
-        || tK == null
-        || r == null
-        || pPa.signum() <= 0
-        || tK.signum() <= 0
-        || r.signum() <= 0) {
-      return null;
-    }
-    double rho = pPa.doubleValue() / (r.doubleValue() * tK.doubleValue());
-    return rho > RHO_INF ? rho : null;
-  }
-
-  /**
-   * Two-point leakage rate L in v/v%/d: yi = ln(ρ/ρ∞ − 1), Arn = (yi_curr − yi_prev)/dt_sec, Brn =
-   * yi_prev, L = 8640000·Arn·(1/(1+exp(Brn)) − 1). Returns null if the formula is undefined.
-   */
-  private static Double leakageFromTwoPoints(
-      double rhoPrev, long tPrev, double rhoCurr, long tCurr) {
-    double yPrev = Math.log(rhoPrev / RHO_INF - 1.0);
-    double yCurr = Math.log(rhoCurr / RHO_INF - 1.0);
-    double dtSec = (tCurr - tPrev) / 1000.0;
-    if (dtSec <= 0 || !Double.isFinite(yPrev) || !Double.isFinite(yCurr)) {
-      return null;
+    PipelineVector working = new PipelineVector(vector);
+    if (step.process(working)) {
+      publish(working.toVector());
     }
-    double Arn = (yCurr - yPrev) / dtSec;
-    double Brn = yPrev;
-    double term = 1.0 / (1.0 + Math.exp(Brn)) - 1.0;
-    return L_SCALE * Arn * term;
   }
 
   @Override
@@ -156,8 +74,7 @@ public class LeakageMeasurementVectorStream extends MeasurementVectorStream {
       sourceSubscription.unsubscribe();
       sourceSubscription = null;
     }
-    prevTimeUtc = null;
-    prevRho = null;
+    step.reset();
     clearSubscribers();
   }
 }
@@ -0,0 +1,45 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * One way of turning a series of containment air densities into a leakage rate.
+ *
+ * <p>Implementations are fed by {@link MultiMethodLeakageMeasurementVectorStream}, which computes
+ * the density once per vector and hands the same value to every method. Each implementation keeps
+ * its own incremental state, so an update is O(1) and never revisits earlier points.
+ * Implementations are not thread-safe.
+ */
+public interface LeakageMethod {
+
+  /** Returns the source id under which this method's leakage rate is published. */
+  String getSourceId();
+
+  /**
+   * Adds a density point and returns the leakage rate including it.
+   *
+   * @param timeUtc timestamp of the point (ms since epoch); points arrive in time order
+   * @param rho air density [kg/m³], above the reference density ρ∞
+   * @return leakage rate in v/v%/d, or NaN while the method does not have enough points
+   */
+  double update(long timeUtc, double rho);
+
+  /** Discards all points. */
+  void reset();
+
+  /**
+   * Writes the state kept from earlier points, e.g. for a checkpoint.
+   *
+   * @throws IOException if the output fails
+   */
+  void writeState(DataOutput out) throws IOException;
+
+  /**
+   * Replaces the state with one written by {@link #writeState} of the same kind of method.
+   *
+   * @throws IOException if the input ends early
+   */
+  void readState(DataInput in) throws IOException;
+}
@@ -0,0 +1,108 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
+
+import ca.lajthabalazs.pressure_integrity_test.measurement.Leakage;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Adds the two-point leakage rate between the previous and the current vector, as described in
+ * {@link LeakageMeasurementVectorStream}. Drops vectors without a usable density. Stateful. Used by
+ * {@link LeakageMeasurementVectorStream} and {@link Pipeline}.
+ */
+final class LeakageStep implements PipelineStep {
+
+  /** Previous vector's timestamp (ms) and density (kg/m³); null until first vector is processed. */
+  private Long prevTimeUtc;
+
+  private Double prevRho;
+
+  private final StageTracker stage = new StageTracker();
+
+  @Override
+  public String getName() {
+    return "leakage";
+  }
+
+  @Override
+  public boolean isStateless() {
+    return false;
+  }
+
+  @Override
+  public boolean process(PipelineVector vector) {
+    if (stage.changed(vector.getMeasurementsMap())) {
+      resetPoints();
+    }
+    Double rho = LeakageMath.densityFromMeasurements(vector.getMeasurementsMap());
+    if (rho == null) {
+      return false;
+    }
+    long t = vector.getTimeUtc();
+    BigDecimal leakageValue;
+    if (prevTimeUtc == null) {
+      leakageValue = BigDecimal.ONE.negate();
+    } else {
+      Double L = leakageFromTwoPoints(prevRho, prevTimeUtc, rho, t);
+      if (L == null) {
+        return false;
+      }
+      leakageValue = BigDecimal.valueOf(L).setScale(6, RoundingMode.HALF_UP);
+    }
+    prevTimeUtc = t;
+    prevRho = rho;
+    vector.putMeasurement(
+        new Leakage(t, LeakageMeasurementVectorStream.LEAKAGE_SOURCE_ID, leakageValue));
+    return true;
+  }
+
+  /**
+   * Two-point leakage rate L in v/v%/d: yi = ln(ρ/ρ∞ − 1), Arn = (yi_curr − yi_prev)/dt_sec, Brn =
+   * yi_prev, L = 8640000·Arn·(1/(1+exp(Brn)) − 1). Returns null if the formula is undefined.
+   */
+  private static Double leakageFromTwoPoints(
+      double rhoPrev, long tPrev, double rhoCurr, long tCurr) {
+    double yPrev = LeakageMath.regressionVariable(rhoPrev);
+    double yCurr = LeakageMath.regressionVariable(rhoCurr);
+    double dtSec = (tCurr - tPrev) / 1000.0;
+    if (dtSec <= 0 || !Double.isFinite(yPrev) || !Double.isFinite(yCurr)) {
+      return null;
+    }
+    double Arn = (yCurr - yPrev) / dtSec;
+    double Brn = yPrev;
+    return LeakageMath.leakageFromSlope(Arn, Brn);
+  }
+
+  @Override
+  public void writeState(DataOutput out) throws IOException {
+    out.writeBoolean(prevTimeUtc != null);
+    if (prevTimeUtc != null) {
+      out.writeLong(prevTimeUtc);
+      out.writeDouble(prevRho);
+    }
+    stage.writeState(out);
+  }
+
+  @Override
+  public void readState(DataInput in) throws IOException {
+    resetPoints();
+    if (in.readBoolean()) {
+      prevTimeUtc = in.readLong();
+      prevRho = in.readDouble();
+    }
+    stage.readState(in);
+  }
+
+  @Override
+  public void reset() {
+    resetPoints();
+    stage.reset();
+  }
+
+  private void resetPoints() {
+    prevTimeUtc = null;
+    prevRho = null;
+  }
+}
@@ -0,0 +1,167 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Running least-squares fit of y = slope·x + intercept over a set of points that can grow and
+ * shrink one point at a time.
+ *
+ * <p>Keeps Welford-style co-moments instead of raw sums: the means of x and y and the centred sums
+ * Sxx = Σ(x − x̄)², Syy = Σ(y − ȳ)² and Sxy = Σ(x − x̄)(y − ȳ). Each {@link #add(double, double)}
+ * and {@link #remove(double, double)} updates them in O(1) without forming large intermediate sums,
+ * so the fit stays accurate over hundreds of thousands of points even when x is far from zero and
+ * the slope is tiny. The residual variance and the standard error of the slope follow from the same
+ * moments, which is what the leakage confidence limit needs.
+ *
+ * <p>Not thread-safe; each stream owns its accumulator.
+ */
+public final class LinearRegressionAccumulator {
+
+  private long count;
+  private double meanX;
+  private double meanY;
+  private double sxx;
+  private double syy;
+  private double sxy;
+
+  /** Adds a point to the fit. */
+  public void add(double x, double y) {
+    count++;
+    double dx = x - meanX;
+    double dy = y - meanY;
+    meanX += dx / count;
+    meanY += dy / count;
+    sxx += dx * (x - meanX);
+    syy += dy * (y - meanY);
+    sxy += dx * (y - meanY);
+  }
+
+  /**
+   * Removes a point that was previously added, reversing the Welford update. Removing a point that
+   * was never added gives undefined results.
+   *
+   * @throws IllegalStateException if the accumulator is empty
+   */
+  public void remove(double x, double y) {
+    if (count == 0) {
+      throw new IllegalStateException("Cannot remove from an empty accumulator");
+    }
+    if (count == 1) {
+      clear();
+      return;
+    }
+    double meanXBefore = meanX;
+    double meanYBefore = meanY;
+    count--;
+    meanX -= (x - meanX) / count;
+    meanY -= (y - meanY) / count;
+    sxx = Math.max(0.0, sxx - (x - meanX) * (x - meanXBefore));
+    syy = Math.max(0.0, syy - (y - meanY) * (y - meanYBefore));
+    sxy -= (x - meanX) * (y - meanYBefore);
+  }
+
+  /** Removes all points. */
+  public void clear() {
+    count = 0;
+    meanX = 0;
+    meanY = 0;
+    sxx = 0;
+    syy = 0;
+    sxy = 0;
+  }
+
+  /** Returns the number of points in the fit. */
+  public long count() {
+    return count;
+  }
+
+  /**
+   * Returns true if the slope is defined: at least two points with different x values.
+   *
+   * @return whether {@link #slope()} and {@link #intercept()} return finite values
+   */
+  public boolean hasFit() {
+    return count >= 2 && sxx > 0;
+  }
+
+  /** Returns the mean of x over the points in the fit (0 if empty). */
+  public double meanX() {
+    return meanX;
+  }
+
+  /** Returns Sxx = Σ(x − x̄)², the spread of x around its mean. */
+  public double sumSquaredDeviationsX() {
+    return sxx;
+  }
+
+  /** Returns the fitted slope, or NaN if {@link #hasFit()} is false. */
+  public double slope() {
+    if (!hasFit()) {
+      return Double.NaN;
+    }
+    return sxy / sxx;
+  }
+
+  /** Returns the fitted intercept (y at x = 0), or NaN if {@link #hasFit()} is false. */
+  public double intercept() {
+    if (!hasFit()) {
+      return Double.NaN;
+    }
+    return meanY - slope() * meanX;
+  }
+
+  /** Returns the fitted y at the given x, or NaN if {@link #hasFit()} is false. */
+  public double valueAt(double x) {
+    if (!hasFit()) {
+      return Double.NaN;
+    }
+    return meanY + slope() * (x - meanX);
+  }
+
+  /**
+   * Returns the residual variance s² = (Syy − Sxy²/Sxx)/(n − 2), or NaN with fewer than three
+   * points or no fit.
+   */
+  public double residualVariance() {
+    if (count < 3 || !hasFit()) {
+      return Double.NaN;
+    }
+    double residualSumOfSquares = Math.max(0.0, syy - sxy * sxy / sxx);
+    return residualSumOfSquares / (count - 2);
+  }
+
+  /** Returns the standard error of the slope, sqrt(s²/Sxx), or NaN if s² is undefined. */
+  public double slopeStandardError() {
+    return Math.sqrt(residualVariance() / sxx);
+  }
+
+  /**
+   * Writes the moments of the fit, e.g. for a checkpoint.
+   *
+   * @throws IOException if the output fails
+   */
+  public void writeState(DataOutput out) throws IOException {
+    out.writeLong(count);
+    out.writeDouble(meanX);
+    out.writeDouble(meanY);
+    out.writeDouble(sxx);
+    out.writeDouble(syy);
+    out.writeDouble(sxy);
+  }
+
+  /**
+   * Replaces the fit with one written by {@link #writeState}.
+   *
+   * @throws IOException if the input ends early
+   */
+  public void readState(DataInput in) throws IOException {
+    count = in.readLong();
+    meanX = in.readDouble();
+    meanY = in.readDouble();
+    sxx = in.readDouble();
+    syy = in.readDouble();
+    sxy = in.readDouble();
+  }
+}
@@ -0,0 +1,55 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Mass-point leakage (ANSI/ANS-56.8): least-squares line through the air mass over time, W(t) = A
+ * + B·t, and L = −B/A as a percentage per day.
+ *
+ * <p>The containment volume is constant, so density stands in for mass. A is the fitted density
+ * at the first point and B its slope, so L = −8640000·B/A with B in kg/m³/s.
+ */
+public final class MassPointLeakageMethod implements LeakageMethod {
+
+  /** Source id of the mass-point leakage rate. */
+  public static final String SOURCE_ID = "LEAKAGE_MASS_POINT";
+
+  private final LinearRegressionAccumulator fit = new LinearRegressionAccumulator();
+  private long originUtc;
+
+  @Override
+  public String getSourceId() {
+    return SOURCE_ID;
+  }
+
+  @Override
+  public double update(long timeUtc, double rho) {
+    if (fit.count() == 0) {
+      originUtc = timeUtc;
+    }
+    fit.add((timeUtc - originUtc) / 1000.0, rho);
+    if (!fit.hasFit()) {
+      return Double.NaN;
+    }
+    return -LeakageMath.L_SCALE * fit.slope() / fit.intercept();
+  }
+
+  @Override
+  public void reset() {
+    fit.clear();
+  }
+
+  @Override
+  public void writeState(DataOutput out) throws IOException {
+    fit.writeState(out);
+    out.writeLong(originUtc);
+  }
+
+  @Override
+  public void readState(DataInput in) throws IOException {
+    fit.readState(in);
+    originUtc = in.readLong();
+  }
+}
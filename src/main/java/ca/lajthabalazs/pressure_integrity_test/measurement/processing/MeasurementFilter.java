@@ -32,8 +32,7 @@ public final class MeasurementFilter {
    * @return a new vector with the same timestamp and errors but only allowed measurements
    */
   public static MeasurementVector filter(MeasurementVector vector, SiteConfig siteConfig) {
-    Set<String> allowed =
-        siteConfig.getSensors().stream().map(SensorConfig::getId).collect(Collectors.toSet());
+    Set<String> allowed = sensorIds(siteConfig);
     List<Measurement> kept = new ArrayList<>();
     for (Measurement m : vector.getMeasurementsMap().values()) {
       if (allowed.contains(m.getSourceId())) {
@@ -42,4 +41,15 @@ public final class MeasurementFilter {
     }
     return new MeasurementVector(vector.getTimeUtc(), kept, vector.getErrors());
   }
+
+  /**
+   * Returns the ids of the sensors in the given site config. Steps that filter every vector compute
+   * this set once instead of calling {@link #filter} per vector.
+   *
+   * @param siteConfig site configuration
+   * @return set of sensor ids (mutable copy)
+   */
+  public static Set<String> sensorIds(SiteConfig siteConfig) {
+    return siteConfig.getSensors().stream().map(SensorConfig::getId).collect(Collectors.toSet());
+  }
 }
@@ -0,0 +1,159 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
+
+import ca.lajthabalazs.pressure_integrity_test.config.SensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Leakage;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Measurement;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import ca.lajthabalazs.pressure_integrity_test.measurement.streaming.MeasurementVectorStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A measurement vector stream that computes several leakage rates side by side.
+ *
+ * <p>For each incoming vector the density ρ = P/(R·T) is computed once from the average pressure,
+ * temperature and gas constant, then handed to every configured {@link LeakageMethod}. Each method
+ * updates its own incremental state in O(1) and its result is added to the vector as a {@link
+ * Leakage} measurement under the method's source id ({@code -1} while the method does not have
+ * enough points). Adding a method therefore adds one O(1) update per vector, never a pass over
+ * history.
+ *
+ * <p>By default the two-point, ILRT regression, mass-point and total-time methods are run. Vectors
+ * with a severe error are passed through unchanged; vectors without valid averages are not
+ * published. If the vectors are tagged by {@link StageMeasurementVectorStream}, every method is
+ * reset whenever the stage changes. Expects the same inputs as {@link
+ * LeakageMeasurementVectorStream}. {@link #writeState} and {@link #readState} save and restore the
+ * state of every method, so a restarted test can go on where it stopped.
+ */
+public class MultiMethodLeakageMeasurementVectorStream extends MeasurementVectorStream {
+
+  private final MeasurementVectorStream source;
+  private final LeakageMethod[] methods;
+  private final String[] sourceIds;
+  private MeasurementVectorStream.Subscription sourceSubscription;
+
+  private final StageTracker stage = new StageTracker();
+
+  /**
+   * Creates a stream running the two-point, ILRT regression, mass-point and total-time methods.
+   *
+   * @param source the stream that provides average pressure, average temperature, and average gas
+   *     constant per vector
+   */
+  public MultiMethodLeakageMeasurementVectorStream(MeasurementVectorStream source) {
+    this(
+        source,
+        List.of(
+            new TwoPointLeakageMethod(),
+            new IlrtRegressionLeakageMethod(),
+            new MassPointLeakageMethod(),
+            new TotalTimeLeakageMethod()));
+  }
+
+  /**
+   * Creates a stream running the given methods, publishing their results in list order.
+   *
+   * @param source the stream that provides average pressure, average temperature, and average gas
+   *     constant per vector
+   * @param methods leakage methods (not empty); source ids must be unique
+   * @throws IllegalArgumentException if {@code methods} is empty or has duplicate source ids
+   */
+  public MultiMethodLeakageMeasurementVectorStream(
+      MeasurementVectorStream source, List<? extends LeakageMethod> methods) {
+    if (methods.isEmpty()) {
+      throw new IllegalArgumentException("At least one leakage method is required");
+    }
+    this.methods = methods.toArray(new LeakageMethod[0]);
+    this.sourceIds = new String[this.methods.length];
+    Set<String> seen = new HashSet<>();
+    for (int i = 0; i < this.methods.length; i++) {
+      sourceIds[i] = this.methods[i].getSourceId();
+      if (!seen.add(sourceIds[i])) {
+        throw new IllegalArgumentException("Duplicate leakage source id: " + sourceIds[i]);
+      }
+    }
+    this.source = source;
+    this.sourceSubscription = source.subscribe(this::computeAndPublish);
+  }
+
+  private void computeAndPublish(MeasurementVector vector) {
+    if (vector.hasSevereError()) {
+      // Do not attempt leakage calculation on invalid vectors – pass through.
+      publish(vector);
+      return;
+    }
+    if (stage.changed(vector)) {
+      resetMethods();
+    }
+    Double rho = LeakageMath.densityFromVector(vector);
+    if (rho == null) {
+      return;
+    }
+    long t = vector.getTimeUtc();
+    double density = rho;
+    List<Measurement> out = new ArrayList<>(vector.getMeasurementsMap().size() + methods.length);
+    out.addAll(vector.getMeasurements());
+    for (int i = 0; i < methods.length; i++) {
+      double leakage = methods[i].update(t, density);
+      out.add(new Leakage(t, sourceIds[i], LeakageMath.toLeakageValue(leakage)));
+    }
+    publish(new MeasurementVector(t, out, vector.getErrors()));
+  }
+
+  /** Returns the source ids of the published leakage rates, in publication order. */
+  public List<String> getLeakageSourceIds() {
+    return List.of(sourceIds);
+  }
+
+  /**
+   * Writes the state of every method and the current stage. Call it on the thread that publishes
+   * to the source, or while the source is idle.
+   *
+   * @throws IOException if the output fails
+   */
+  public void writeState(DataOutput out) throws IOException {
+    for (LeakageMethod method : methods) {
+      method.writeState(out);
+    }
+    stage.writeState(out);
+  }
+
+  /**
+   * Replaces the state with one written by {@link #writeState} of a stream with the same methods.
+   *
+   * @throws IOException if the input ends early
+   */
+  public void readState(DataInput in) throws IOException {
+    for (LeakageMethod method : methods) {
+      method.readState(in);
+    }
+    stage.readState(in);
+  }
+
+  @Override
+  public List<SensorConfig> listSensors() {
+    return source.listSensors();
+  }
+
+  /** Stops publishing: unsubscribes from the source stream and resets every method. */
+  public void stop() {
+    if (sourceSubscription != null) {
+      sourceSubscription.unsubscribe();
+      sourceSubscription = null;
+    }
+    resetMethods();
+    stage.reset();
+    clearSubscribers();
+  }
+
+  private void resetMethods() {
+    for (LeakageMethod method : methods) {
+      method.reset();
+    }
+  }
+}
@@ -0,0 +1,103 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
+
+import ca.lajthabalazs.pressure_integrity_test.config.CalibrationConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.SiteConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.TestConfig;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * Processes a whole recording through a {@link Pipeline} declaration at once, using all cores.
+ *
+ * <p>The leading stateless steps (believability without spike detection, calibration and the
+ * averages in the full stack) look at one vector at a time, so the recording is split into chunks
+ * of {@link #CHUNK_SIZE} vectors that run on the common {@link java.util.concurrent.ForkJoinPool},
+ * each chunk with its own step instances. The remaining steps (stage tagging and leakage) carry
+ * state from one vector to the next; they only read the averages, so they run as one sequential
+ * scan over the prepared working vectors. The immutable output vectors are then built in parallel.
+ *
+ * <p>The result is exactly what the streaming pipeline publishes for the same vectors, in the same
+ * order: the same step code runs with the same drop and severe-error rules.
+ */
+public final class OfflinePipelineEngine {
+
+  /** Number of vectors per parallel task. */
+  static final int CHUNK_SIZE = 4096;
+
+  private OfflinePipelineEngine() {}
+
+  /**
+   * Runs the {@link FullStackLeakageMeasurementVectorStream} chain over a recording.
+   *
+   * @param siteConfig site configuration (sensors, locations, humidity pairing); must not be null
+   * @param calibrationConfig optional calibration; if null, no calibration step is applied
+   * @param testConfig optional test configuration; if null, no stage step is applied
+   * @param recording the vectors in playback order
+   * @return the vectors the full stack stream would publish
+   * @throws IllegalArgumentException if the test configuration has stages but no ambient pressure
+   */
+  public static List<MeasurementVector> processFullStack(
+      SiteConfig siteConfig,
+      CalibrationConfig calibrationConfig,
+      TestConfig testConfig,
+      List<MeasurementVector> recording) {
+    return process(
+        () ->
+            FullStackLeakageMeasurementVectorStream.pipelineBuilder(
+                siteConfig, calibrationConfig, testConfig),
+        recording);
+  }
+
+  /**
+   * Runs the steps of a pipeline declaration over a recording. Taps and threads of the declaration
+   * are ignored.
+   *
+   * @param declaration returns a builder with new step instances on every call; it is called once
+   *     per chunk and once for the sequential steps
+   * @param recording the vectors in playback order
+   * @return the vectors the pipeline would publish
+   */
+  public static List<MeasurementVector> process(
+      Supplier<Pipeline.Builder> declaration, List<MeasurementVector> recording) {
+    List<PipelineStep> steps = declaration.get().steps();
+    int stateless = leadingStatelessSteps(steps);
+    PipelineVector[] working = new PipelineVector[recording.size()];
+    int chunks = (recording.size() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    IntStream.range(0, chunks)
+        .parallel()
+        .forEach(
+            chunk -> {
+              PipelineStep[] chunkSteps =
+                  declaration.get().steps().subList(0, stateless).toArray(new PipelineStep[0]);
+              int end = Math.min(recording.size(), (chunk + 1) * CHUNK_SIZE);
+              for (int i = chunk * CHUNK_SIZE; i < end; i++) {
+                PipelineVector vector = new PipelineVector(recording.get(i));
+                working[i] = Pipeline.runSteps(chunkSteps, vector) ? vector : null;
+              }
+            });
+    PipelineStep[] sequentialSteps =
+        steps.subList(stateless, steps.size()).toArray(new PipelineStep[0]);
+    for (int i = 0; i < working.length; i++) {
+      if (working[i] != null && !Pipeline.runSteps(sequentialSteps, working[i])) {
+        working[i] = null;
+      }
+    }
+    return Arrays.stream(working)
+        .parallel()
+        .filter(Objects::nonNull)
+        .map(PipelineVector::toVector)
+        .toList();
+  }
+
+  private static int leadingStatelessSteps(List<PipelineStep> steps) {
+    int count = 0;
+    while (count < steps.size() && steps.get(count).isStateless()) {
+      count++;
+    }
+    return count;
+  }
+}
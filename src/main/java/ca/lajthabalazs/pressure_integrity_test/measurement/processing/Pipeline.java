@@ -0,0 +1,811 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
+
+import ca.lajthabalazs.pressure_integrity_test.config.CalibrationConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.SensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.SiteConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.TestConfig;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import ca.lajthabalazs.pressure_integrity_test.measurement.streaming.MeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.tracing.LatencyTracer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+/**
+ * A measurement vector stream that runs a declared list of {@link PipelineStep}s on one working
+ * copy of each source vector, instead of chaining one stream per step.
+ *
+ * <p>A chain of streams builds and publishes a new {@link MeasurementVector} after every step. The
+ * pipeline keeps one {@link PipelineVector} per source vector and builds an immutable vector only
+ * where it is observed: at a {@link Builder#tap(String) tap} that has subscribers, and at the end
+ * of the pipeline if the pipeline itself has subscribers. Runs of adjacent stateless steps are
+ * fused into one node of the plan; a stateful step or a tap closes the current node. {@link
+ * #getPlan()} describes the compiled nodes.
+ *
+ * <p>The output equals that of the equivalent chain of streams: a step that drops a vector stops
+ * it for the rest of the pipeline and its later taps, and a vector with a severe error skips the
+ * remaining steps and is passed through unchanged.
+ *
+ * <p>By default every step runs on the thread that publishes to the source. {@link
+ * Builder#thread(String, int)} hands the working vectors to a new thread through a preallocated
+ * {@link SpscRingBuffer}; the steps, taps and subscribers after it run on that thread, in source
+ * order. The publishing thread waits while the buffer is full. A thread with an empty buffer spins
+ * briefly and then blocks until the next vector is handed to it. {@link #drain()} waits until all
+ * threads are idle.
+ *
+ * <p>{@link #checkpoint()} saves the state of every step and the time of the last source vector
+ * in a compact binary form. A pipeline built with {@link Builder#resumeFrom(byte[])} starts from
+ * that state and ignores source vectors up to that time, so a restarted test goes on where it
+ * stopped even if its source replays the recording from the start. With {@link
+ * Builder#checkpointEvery(long, CheckpointSink)} the pipeline hands a checkpoint to a sink
+ * periodically and when it is stopped. A periodic checkpoint does not wait for the threads of the
+ * pipeline: a marker follows the vectors through the ring buffers, every thread writes the state of
+ * its own steps when the marker reaches them, and the thread of the last node hands the checkpoint
+ * to the sink. The state of each step is therefore taken on the thread that runs the step, after
+ * exactly the vectors published before the checkpoint.
+ *
+ * <pre>{@code
+ * Pipeline pipeline =
+ *     Pipeline.builder()
+ *         .believability(siteConfig)
+ *         .calibration(calibrationConfig)
+ *         .averagePressure(siteConfig)
+ *         .tap("pressure")
+ *         .averageTemperature(siteConfig)
+ *         .averageGasConstant(siteConfig)
+ *         .thread("leakage", 1024)
+ *         .leakage()
+ *         .thread("sinks", 1024)
+ *         .build(source);
+ * }</pre>
+ */
+public final class Pipeline extends MeasurementVectorStream {
+
+  private static final int SPINS_BEFORE_PARK = 100;
+  private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+  private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+  private static final long THREAD_JOIN_MS = 1000L;
+  private static final int CHECKPOINT_MAGIC = 0x504C4331; // "PLC1"
+  private static final long NO_TIME = Long.MIN_VALUE;
+
+  private final MeasurementVectorStream source;
+  private final Node[] nodes;
+  private final Map<String, Tap> tapsByName;
+  private final Handoff[] handoffByNode; // null entries where the next node runs on this thread
+  private final List<Handoff> handoffs;
+  private final CheckpointSink checkpointSink; // null without periodic checkpoints
+  private final long checkpointIntervalMs;
+  private final PipelineVector checkpointMarker =
+      new PipelineVector(new MeasurementVector(NO_TIME, List.of()));
+  private MeasurementVectorStream.Subscription sourceSubscription;
+  private volatile boolean stopped;
+  private long lastTimeUtc = NO_TIME; // time of the last source vector taken
+  private long resumeAfterUtc = NO_TIME; // source vectors up to this time were processed before
+  private long nextCheckpointUtc = NO_TIME;
+  private volatile PendingCheckpoint pendingCheckpoint; // periodic checkpoint on its way
+  private volatile LatencyTracer.Hop[] hopByNode; // null while latency tracing is off
+
+  private Pipeline(MeasurementVectorStream source, List<Node> nodes, Builder builder) {
+    this.source = source;
+    this.nodes = nodes.toArray(new Node[0]);
+    this.checkpointSink = builder.checkpointSink;
+    this.checkpointIntervalMs = builder.checkpointIntervalMs;
+    this.tapsByName = new LinkedHashMap<>();
+    this.handoffByNode = new Handoff[this.nodes.length];
+    this.handoffs = new ArrayList<>();
+    for (int i = 0; i < this.nodes.length; i++) {
+      Node node = this.nodes[i];
+      for (Tap tap : node.taps) {
+        tapsByName.put(tap.name, tap);
+      }
+      if (node.threadName != null) {
+        handoffByNode[i] = new Handoff(node.threadName, node.threadCapacity, i + 1);
+        handoffs.add(handoffByNode[i]);
+      }
+    }
+    if (builder.resumeCheckpoint != null) {
+      restore(builder.resumeCheckpoint);
+    }
+    for (Handoff handoff : handoffs) {
+      handoff.thread.start();
+    }
+    this.sourceSubscription = source.subscribe(this::process);
+  }
+
+  /** Returns a builder for a new pipeline. */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  private void process(MeasurementVector vector) {
+    long t = vector.getTimeUtc();
+    if (t <= resumeAfterUtc) {
+      return; // already processed before the checkpoint
+    }
+    lastTimeUtc = t;
+    run(new PipelineVector(vector), 0);
+    if (checkpointSink != null && t >= nextCheckpointUtc && pendingCheckpoint == null) {
+      pendingCheckpoint = new PendingCheckpoint(t);
+      runCheckpointMarker(0);
+      nextCheckpointUtc = t + checkpointIntervalMs;
+    }
+  }
+
+  /**
+   * Writes the state of the steps from {@code firstNode} on until the end or the next thread, then
+   * hands the marker to that thread or the finished checkpoint to the sink.
+   */
+  private void runCheckpointMarker(int firstNode) {
+    PendingCheckpoint pending = pendingCheckpoint;
+    try {
+      if (firstNode == 0) {
+        pending.writeHeader(steps().size());
+      }
+      for (int i = firstNode; i < nodes.length; i++) {
+        for (PipelineStep step : nodes[i].steps) {
+          writeStepState(pending.out, step);
+        }
+        if (handoffByNode[i] != null) {
+          handoffByNode[i].put(checkpointMarker);
+          return;
+        }
+      }
+      checkpointSink.write(finishCheckpoint(pending.bytes, pending.out));
+    } catch (Exception e) {
+      System.err.println("Error writing pipeline checkpoint: " + e.getMessage());
+    }
+    pendingCheckpoint = null;
+  }
+
+  /** Runs the nodes from {@code firstNode} on until the end or the next thread. */
+  private void run(PipelineVector working, int firstNode) {
+    LatencyTracer.Hop[] hops = hopByNode;
+    for (int i = firstNode; i < nodes.length; i++) {
+      Node node = nodes[i];
+      if (!runSteps(node.steps, working)) {
+        return;
+      }
+      if (hops != null && hops[i] != null) {
+        hops[i].record(working.getIngestNanos());
+      }
+      for (Tap tap : node.taps) {
+        tap.offer(working);
+      }
+      if (handoffByNode[i] != null) {
+        handoffByNode[i].put(working);
+        return;
+      }
+    }
+    if (!getSubscribers().isEmpty()) {
+      publish(working.toVector());
+    }
+  }
+
+  /**
+   * Runs steps on a vector in order, skipping the rest once the vector carries a severe error.
+   *
+   * @return false if a step dropped the vector
+   */
+  static boolean runSteps(PipelineStep[] steps, PipelineVector working) {
+    for (PipelineStep step : steps) {
+      if (working.hasSevereError()) {
+        return true;
+      }
+      if (!step.process(working)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Blocks until every vector received so far has passed all threads of the pipeline. Returns at
+   * once when the pipeline has no threads or is stopped.
+   */
+  public void drain() {
+    for (Handoff handoff : handoffs) {
+      int idle = 0;
+      while (!stopped && handoff.completed != handoff.offered) {
+        idle = idle(idle);
+      }
+    }
+  }
+
+  /**
+   * Spins briefly, then parks for twice as long each time, up to {@link #MAX_PARK_NANOS}; returns
+   * the updated idle count.
+   */
+  private static int idle(int idle) {
+    if (idle < SPINS_BEFORE_PARK) {
+      Thread.onSpinWait();
+    } else {
+      int doublings = Math.min(idle - SPINS_BEFORE_PARK, 5);
+      LockSupport.parkNanos(Math.min(PARK_NANOS << doublings, MAX_PARK_NANOS));
+    }
+    return idle + 1;
+  }
+
+  /**
+   * Returns the state of every step and the time of the last source vector, after waiting for the
+   * threads of the pipeline to finish the vectors received so far. Call it from the thread that
+   * publishes to the source, or while the source is idle. The calling thread waits until every
+   * ring buffer is empty; periodic checkpoints ({@link Builder#checkpointEvery}) do not.
+   *
+   * @throws UncheckedIOException if a step fails to write its state
+   */
+  public byte[] checkpoint() {
+    drain();
+    try {
+      List<PipelineStep> steps = steps();
+      PendingCheckpoint checkpoint = new PendingCheckpoint(lastTimeUtc);
+      checkpoint.writeHeader(steps.size());
+      for (PipelineStep step : steps) {
+        writeStepState(checkpoint.out, step);
+      }
+      return finishCheckpoint(checkpoint.bytes, checkpoint.out);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to write pipeline checkpoint", e);
+    }
+  }
+
+  private static void writeStepState(DataOutputStream out, PipelineStep step) throws IOException {
+    ByteArrayOutputStream state = new ByteArrayOutputStream();
+    step.writeState(new DataOutputStream(state));
+    out.writeUTF(step.getName());
+    out.writeInt(state.size());
+    state.writeTo(out);
+  }
+
+  /** Appends the checksum of the checkpoint body and returns the checkpoint. */
+  private static byte[] finishCheckpoint(ByteArrayOutputStream bytes, DataOutputStream out)
+      throws IOException {
+    CRC32 crc = new CRC32();
+    crc.update(bytes.toByteArray());
+    out.writeInt((int) crc.getValue());
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Replaces the state of every step with the one in a checkpoint.
+   *
+   * @throws IllegalArgumentException if the checkpoint is damaged or was taken from a pipeline
+   *     with other steps
+   */
+  private void restore(byte[] checkpoint) {
+    int bodyLength = checkpoint.length - Integer.BYTES;
+    CRC32 crc = new CRC32();
+    crc.update(checkpoint, 0, Math.max(bodyLength, 0));
+    try {
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(checkpoint));
+      if (bodyLength < 0 || in.readInt() != CHECKPOINT_MAGIC) {
+        throw new IllegalArgumentException("Not a pipeline checkpoint");
+      }
+      in.skipNBytes(bodyLength - Integer.BYTES);
+      if (in.readInt() != (int) crc.getValue()) {
+        throw new IllegalArgumentException("Damaged pipeline checkpoint");
+      }
+      in = new DataInputStream(new ByteArrayInputStream(checkpoint, Integer.BYTES, bodyLength));
+      long time = in.readLong();
+      List<PipelineStep> steps = steps();
+      if (in.readInt() != steps.size()) {
+        throw new IllegalArgumentException("Checkpoint has a different number of steps");
+      }
+      for (PipelineStep step : steps) {
+        String name = in.readUTF();
+        if (!name.equals(step.getName())) {
+          throw new IllegalArgumentException(
+              "Checkpoint has step " + name + " where the pipeline has " + step.getName());
+        }
+        byte[] state = in.readNBytes(in.readInt());
+        step.readState(new DataInputStream(new ByteArrayInputStream(state)));
+      }
+      lastTimeUtc = time;
+      resumeAfterUtc = time;
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Damaged pipeline checkpoint", e);
+    }
+  }
+
+  private void writeCheckpoint() {
+    try {
+      checkpointSink.write(checkpoint());
+    } catch (IOException e) {
+      System.err.println("Error writing pipeline checkpoint: " + e.getMessage());
+    }
+  }
+
+  private List<PipelineStep> steps() {
+    List<PipelineStep> steps = new ArrayList<>();
+    for (Node node : nodes) {
+      steps.addAll(List.of(node.steps));
+    }
+    return steps;
+  }
+
+  /**
+   * Returns the time of the last source vector taken, or of the checkpoint the pipeline resumed
+   * from; {@link Long#MIN_VALUE} before either. Call it from the thread that publishes to the
+   * source, or while the source is idle.
+   */
+  public long getLastTimeUtc() {
+    return lastTimeUtc;
+  }
+
+  /**
+   * Records the latency of every vector at the end of each node with steps, on a hop named like
+   * the node's steps in {@link #getPlan()}. May be called from any thread.
+   *
+   * @param tracer the tracer to record to, or null to stop recording
+   */
+  public void setLatencyTracer(LatencyTracer tracer) {
+    if (tracer == null) {
+      hopByNode = null;
+      return;
+    }
+    LatencyTracer.Hop[] hops = new LatencyTracer.Hop[nodes.length];
+    for (int i = 0; i < nodes.length; i++) {
+      if (nodes[i].steps.length > 0) {
+        hops[i] = tracer.hop(stepNames(nodes[i]));
+      }
+    }
+    hopByNode = hops;
+  }
+
+  /**
+   * Returns the stream of vectors as they are after the steps declared before the tap.
+   *
+   * @param name the name given to {@link Builder#tap(String)}
+   * @throws IllegalArgumentException if the pipeline has no tap with that name
+   */
+  public MeasurementVectorStream tap(String name) {
+    Tap tap = tapsByName.get(name);
+    if (tap == null) {
+      throw new IllegalArgumentException("Unknown tap: " + name);
+    }
+    return tap;
+  }
+
+  /**
+   * Returns one line per compiled node: the names of its steps joined by {@code " + "}, followed by
+   * {@code " -> tap:<name>"} for each tap after the node and {@code " => thread:<name>"} if the
+   * next node runs on a new thread.
+   */
+  public List<String> getPlan() {
+    List<String> plan = new ArrayList<>();
+    for (Node node : nodes) {
+      StringBuilder line = new StringBuilder(stepNames(node));
+      for (Tap tap : node.taps) {
+        line.append(line.isEmpty() ? "" : " ").append("-> tap:").append(tap.name);
+      }
+      if (node.threadName != null) {
+        line.append(line.isEmpty() ? "" : " ").append("=> thread:").append(node.threadName);
+      }
+      plan.add(line.toString());
+    }
+    return plan;
+  }
+
+  private static String stepNames(Node node) {
+    List<String> names = new ArrayList<>();
+    for (PipelineStep step : node.steps) {
+      names.add(step.getName());
+    }
+    return String.join(" + ", names);
+  }
+
+  @Override
+  public List<SensorConfig> listSensors() {
+    return source.listSensors();
+  }
+
+  /**
+   * Stops publishing: unsubscribes from the source stream, hands a last checkpoint to the sink of
+   * {@link Builder#checkpointEvery}, stops the threads of the pipeline (vectors still in their
+   * buffers are discarded), discards the state of every step and clears the subscribers of the
+   * pipeline and its taps.
+   */
+  public void stop() {
+    if (sourceSubscription != null) {
+      sourceSubscription.unsubscribe();
+      sourceSubscription = null;
+      if (checkpointSink != null) {
+        writeCheckpoint();
+      }
+    }
+    stopped = true;
+    for (Handoff handoff : handoffs) {
+      handoff.thread.interrupt();
+      try {
+        handoff.thread.join(THREAD_JOIN_MS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    for (Node node : nodes) {
+      for (PipelineStep step : node.steps) {
+        step.reset();
+      }
+      for (Tap tap : node.taps) {
+        tap.stop();
+      }
+    }
+    clearSubscribers();
+  }
+
+  /**
+   * Receives the checkpoints of a pipeline, e.g. to store them in a file. Periodic checkpoints are
+   * handed over on the thread of the last node of the pipeline (the thread that publishes to the
+   * source if the pipeline has no threads), the last one on the thread that calls {@link #stop()}.
+   */
+  @FunctionalInterface
+  public interface CheckpointSink {
+
+    /**
+     * Stores a checkpoint; it replaces the previous one.
+     *
+     * @throws IOException if the checkpoint cannot be stored; the pipeline reports it and goes on
+     */
+    void write(byte[] checkpoint) throws IOException;
+  }
+
+  /** Checkpoint body being written, step by step, as its marker passes the nodes. */
+  private static final class PendingCheckpoint {
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final DataOutputStream out = new DataOutputStream(bytes);
+    private final long lastTimeUtc;
+
+    private PendingCheckpoint(long lastTimeUtc) {
+      this.lastTimeUtc = lastTimeUtc;
+    }
+
+    private void writeHeader(int stepCount) throws IOException {
+      out.writeInt(CHECKPOINT_MAGIC);
+      out.writeLong(lastTimeUtc);
+      out.writeInt(stepCount);
+    }
+  }
+
+  /**
+   * Steps run back to back without building a vector, the taps observing the result, and the
+   * thread the result is handed to (null to continue on the same thread).
+   */
+  private record Node(
+      PipelineStep[] steps, List<Tap> taps, String threadName, int threadCapacity) {}
+
+  /** Ring buffer to a new thread that runs the nodes from {@code firstNode} on. */
+  private final class Handoff implements Runnable {
+
+    private final SpscRingBuffer<PipelineVector> buffer;
+    private final int firstNode;
+    private final Thread thread;
+    private volatile long offered; // written by the producer thread only
+    private volatile long completed; // written by the consumer thread only
+    private volatile boolean waiting; // the consumer thread is about to park until unparked
+
+    private Handoff(String name, int capacity, int firstNode) {
+      this.buffer = new SpscRingBuffer<>(capacity);
+      this.firstNode = firstNode;
+      this.thread = new Thread(this, "pipeline-" + name);
+      this.thread.setDaemon(true);
+    }
+
+    /** Hands a vector to the thread, waiting while the buffer is full. */
+    private void put(PipelineVector vector) {
+      int idle = 0;
+      while (!buffer.offer(vector)) {
+        if (stopped) {
+          return;
+        }
+        idle = idle(idle);
+      }
+      offered++;
+      if (waiting) {
+        LockSupport.unpark(thread);
+      }
+    }
+
+    @Override
+    public void run() {
+      int idle = 0;
+      while (!stopped) {
+        PipelineVector vector = buffer.poll();
+        if (vector == null) {
+          if (idle < SPINS_BEFORE_PARK) {
+            Thread.onSpinWait();
+            idle++;
+          } else {
+            await();
+          }
+          continue;
+        }
+        idle = 0;
+        try {
+          if (vector == checkpointMarker) {
+            runCheckpointMarker(firstNode);
+          } else {
+            Pipeline.this.run(vector, firstNode);
+          }
+        } catch (Exception e) {
+          System.err.println(
+              "Error in pipeline thread " + thread.getName() + ": " + e.getMessage());
+        }
+        completed++;
+      }
+    }
+
+    /**
+     * Parks until {@link #put} hands over a vector or the pipeline is stopped. The flag is set
+     * before the last look at {@code offered}, and {@code put} reads it after raising {@code
+     * offered}, so one of the two sees the other and no vector is left waiting.
+     */
+    private void await() {
+      waiting = true;
+      if (!stopped && completed == offered) {
+        LockSupport.park(this);
+      }
+      waiting = false;
+    }
+  }
+
+  /** Named view of the pipeline after a node; builds vectors only while it has subscribers. */
+  private static final class Tap extends MeasurementVectorStream {
+
+    private final String name;
+    private final MeasurementVectorStream source;
+
+    private Tap(String name, MeasurementVectorStream source) {
+      this.name = name;
+      this.source = source;
+    }
+
+    private void offer(PipelineVector vector) {
+      if (!getSubscribers().isEmpty()) {
+        publish(vector.toVector());
+      }
+    }
+
+    @Override
+    public List<SensorConfig> listSensors() {
+      return source.listSensors();
+    }
+
+    private void stop() {
+      clearSubscribers();
+    }
+  }
+
+  /**
+   * Declares the steps and taps of a {@link Pipeline} in processing order. The config-driven
+   * methods add the same step as the matching stream of this package.
+   */
+  public static final class Builder {
+
+    private final List<List<PipelineStep>> nodeSteps = new ArrayList<>();
+    private final List<List<String>> nodeTaps = new ArrayList<>();
+    private final List<String> tapNames = new ArrayList<>();
+    private final List<String> nodeThreads = new ArrayList<>();
+    private final List<Integer> nodeCapacities = new ArrayList<>();
+    private boolean nodeOpen; // true while the last node accepts more stateless steps
+    private CheckpointSink checkpointSink;
+    private long checkpointIntervalMs;
+    private byte[] resumeCheckpoint;
+
+    private Builder() {}
+
+    /** Adds the step of {@link BelievabilityFilteredMeasurementVectorStream}, without spikes. */
+    public Builder believability(SiteConfig siteConfig) {
+      return believability(siteConfig, null);
+    }
+
+    /**
+     * Adds the step of {@link BelievabilityFilteredMeasurementVectorStream}.
+     *
+     * @param spikeSettings spike detector settings; if null, no spike detection is done
+     */
+    public Builder believability(SiteConfig siteConfig, SpikeDetectionSettings spikeSettings) {
+      return step(new BelievabilityStep(siteConfig, spikeSettings));
+    }
+
+    /** Adds the step of {@link CalibratedMeasurementVectorStream}. */
+    public Builder calibration(CalibrationConfig calibrationConfig) {
+      return step(new CalibrationStep(calibrationConfig));
+    }
+
+    /** Adds the arithmetic-mean step of {@link AveragePressureMeasurementVectorStream}. */
+    public Builder averagePressure(SiteConfig siteConfig) {
+      return averagePressure(siteConfig, false);
+    }
+
+    /** Adds the step of {@link AveragePressureMeasurementVectorStream}. */
+    public Builder averagePressure(SiteConfig siteConfig, boolean sigmaWeighted) {
+      return step(new AveragePressureStep(siteConfig, sigmaWeighted));
+    }
+
+    /**
+     * Adds the volume-weighted step of {@link AverageTemperatureMeasurementVectorStream}, with the
+     * locations of the site config.
+     */
+    public Builder averageTemperature(SiteConfig siteConfig) {
+      return averageTemperature(siteConfig, false);
+    }
+
+    /**
+     * Adds the step of {@link AverageTemperatureMeasurementVectorStream}, with the locations of
+     * the site config.
+     */
+    public Builder averageTemperature(SiteConfig siteConfig, boolean sigmaWeighted) {
+      return step(
+          new AverageTemperatureStep(
+              FullStackLeakageMeasurementVectorStream.buildLocationBySensorId(siteConfig),
+              siteConfig,
+              sigmaWeighted));
+    }
+
+    /**
+     * Adds the step of {@link AverageGasConstantMeasurementVectorStream}, with the locations and
+     * the humidity-temperature pairing of the site config.
+     */
+    public Builder averageGasConstant(SiteConfig siteConfig) {
+      return step(
+          new AverageGasConstantStep(
+              FullStackLeakageMeasurementVectorStream.buildLocationBySensorId(siteConfig),
+              FullStackLeakageMeasurementVectorStream.buildHumidityToTemperatureSensorId(
+                  siteConfig),
+              siteConfig));
+    }
+
+    /**
+     * Adds the step of {@link StageMeasurementVectorStream} with the default plateau tolerance and
+     * exit sample count.
+     *
+     * @throws IllegalArgumentException if the configuration has stages but no ambient pressure
+     */
+    public Builder testStages(TestConfig testConfig) {
+      return step(
+          new StageTaggingStep(
+              testConfig,
+              StageMeasurementVectorStream.DEFAULT_PLATEAU_TOLERANCE_PA,
+              StageMeasurementVectorStream.DEFAULT_PLATEAU_EXIT_SAMPLES));
+    }
+
+    /** Adds the step of {@link LeakageMeasurementVectorStream}. */
+    public Builder leakage() {
+      return step(new LeakageStep());
+    }
+
+    /**
+     * Runs the steps, taps and subscribers declared after this call on a new thread, fed through
+     * a ring buffer.
+     *
+     * @param name name of the thread, shown in {@link Pipeline#getPlan()}
+     * @param capacity number of vectors the buffer holds; rounded up to a power of two
+     * @throws IllegalArgumentException if the capacity is not positive
+     */
+    public Builder thread(String name, int capacity) {
+      if (capacity < 1) {
+        throw new IllegalArgumentException("capacity must be positive");
+      }
+      if (nodeSteps.isEmpty() || nodeThreads.getLast() != null) {
+        startNode();
+      }
+      nodeThreads.set(nodeThreads.size() - 1, name);
+      nodeCapacities.set(nodeCapacities.size() - 1, capacity);
+      nodeOpen = false;
+      return this;
+    }
+
+    /** Adds a step; stateless steps are fused with the stateless steps right before them. */
+    public Builder step(PipelineStep step) {
+      if (!nodeOpen || !step.isStateless()) {
+        startNode();
+      }
+      nodeSteps.get(nodeSteps.size() - 1).add(step);
+      nodeOpen = step.isStateless();
+      return this;
+    }
+
+    /**
+     * Adds a named tap that observes the vectors as they are after the steps declared so far.
+     *
+     * @throws IllegalArgumentException if a tap with the same name was already added
+     */
+    public Builder tap(String name) {
+      if (tapNames.contains(name)) {
+        throw new IllegalArgumentException("Duplicate tap: " + name);
+      }
+      if (nodeSteps.isEmpty() || nodeThreads.getLast() != null) {
+        startNode();
+      }
+      tapNames.add(name);
+      nodeTaps.get(nodeTaps.size() - 1).add(name);
+      nodeOpen = false;
+      return this;
+    }
+
+    /**
+     * Hands checkpoints to a sink: a periodic one after the first vector, then after the first
+     * vector at least {@code intervalMs} of measurement time after the previous one, and a last
+     * one ({@link Pipeline#checkpoint()}) when the pipeline is stopped. A periodic checkpoint does
+     * not drain the pipeline: a marker follows the vector through the threads and every thread
+     * writes the state of its own steps. While one is on its way no other is started, so a
+     * checkpoint may come later than the interval.
+     *
+     * @param intervalMs measurement time between checkpoints, in milliseconds
+     * @param sink receives the periodic checkpoints on the thread of the last node (the thread that
+     *     publishes to the source if the pipeline has no threads) and the last one on the thread
+     *     that calls {@link Pipeline#stop()}
+     * @throws IllegalArgumentException if the interval is not positive
+     */
+    public Builder checkpointEvery(long intervalMs, CheckpointSink sink) {
+      if (intervalMs < 1) {
+        throw new IllegalArgumentException("intervalMs must be positive");
+      }
+      this.checkpointIntervalMs = intervalMs;
+      this.checkpointSink = sink;
+      return this;
+    }
+
+    /**
+     * Starts the pipeline from a {@link Pipeline#checkpoint()} of a pipeline declared the same way:
+     * the steps get their saved state and source vectors up to the time of the checkpoint are
+     * ignored. The checkpoint is checked in {@link #build}.
+     *
+     * @param checkpoint the saved checkpoint, or null to start from scratch
+     */
+    public Builder resumeFrom(byte[] checkpoint) {
+      this.resumeCheckpoint = checkpoint;
+      return this;
+    }
+
+    /** Returns the steps declared so far, in order. */
+    List<PipelineStep> steps() {
+      List<PipelineStep> steps = new ArrayList<>();
+      for (List<PipelineStep> node : nodeSteps) {
+        steps.addAll(node);
+      }
+      return steps;
+    }
+
+    private void startNode() {
+      nodeSteps.add(new ArrayList<>());
+      nodeTaps.add(new ArrayList<>());
+      nodeThreads.add(null);
+      nodeCapacities.add(0);
+    }
+
+    /**
+     * Builds the pipeline and subscribes it to the source.
+     *
+     * @param source the stream to process
+     * @throws IllegalArgumentException if the checkpoint given to {@link #resumeFrom} is damaged or
+     *     was taken from a pipeline with other steps
+     */
+    public Pipeline build(MeasurementVectorStream source) {
+      List<Node> nodes = new ArrayList<>();
+      for (int i = 0; i < nodeSteps.size(); i++) {
+        List<Tap> taps = new ArrayList<>();
+        for (String name : nodeTaps.get(i)) {
+          taps.add(new Tap(name, source));
+        }
+        nodes.add(
+            new Node(
+                nodeSteps.get(i).toArray(new PipelineStep[0]),
+                taps,
+                nodeThreads.get(i),
+                nodeCapacities.get(i)));
+      }
+      return new Pipeline(source, nodes, this);
+    }
+  }
+}
@@ -0,0 +1,135 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
+
+import ca.lajthabalazs.pressure_integrity_test.config.CalibrationConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.SiteConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.TestConfig;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import ca.lajthabalazs.pressure_integrity_test.measurement.streaming.MeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.tracing.LatencyStats;
+import ca.lajthabalazs.pressure_integrity_test.measurement.tracing.LatencyTracer;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the throughput and latency of the full-stack {@link Pipeline} on a recording, laid out
+ * on the publishing thread only or on extra threads linked by ring buffers.
+ *
+ * <p>{@link #run} replays the recording as fast as the pipeline accepts it and waits until the last
+ * vector has left the pipeline. Every vector is stamped by a {@link LatencyTracer} when it is
+ * published and recorded when it reaches the subscriber at the end, so the latencies include the
+ * time vectors wait in full ring buffers. The layouts in {@link #LAYOUTS} run the same steps:
+ *
+ * <ul>
+ *   <li>0 threads: every step on the publishing thread
+ *   <li>1 thread: the stage and leakage steps and the subscriber on a second thread
+ *   <li>3 threads: the averages, the stage and leakage steps, and the subscriber on one thread each
+ * </ul>
+ *
+ * <p>The first runs of a JVM include class loading and JIT compilation; run each layout a few times
+ * and compare the later results.
+ */
+public final class PipelineBenchmark {
+
+  /** Numbers of extra threads that {@link #run} supports. */
+  public static final List<Integer> LAYOUTS = List.of(0, 1, 3);
+
+  /** Capacity of the ring buffer in front of every extra thread. */
+  static final int RING_CAPACITY = 1024;
+
+  private PipelineBenchmark() {}
+
+  /**
+   * Runs a recording once through the full-stack pipeline.
+   *
+   * @param siteConfig site configuration (sensors, locations, humidity pairing); must not be null
+   * @param calibrationConfig optional calibration; if null, no calibration step is applied
+   * @param testConfig optional test configuration; if null, no stage step is applied
+   * @param recording the vectors in playback order
+   * @param threads number of extra threads, one of {@link #LAYOUTS}
+   * @throws IllegalArgumentException if {@code threads} is not one of {@link #LAYOUTS}
+   */
+  public static Result run(
+      SiteConfig siteConfig,
+      CalibrationConfig calibrationConfig,
+      TestConfig testConfig,
+      List<MeasurementVector> recording,
+      int threads) {
+    if (!LAYOUTS.contains(threads)) {
+      throw new IllegalArgumentException("Unsupported number of threads: " + threads);
+    }
+    Pipeline.Builder builder = Pipeline.builder().believability(siteConfig);
+    if (calibrationConfig != null) {
+      builder.calibration(calibrationConfig);
+    }
+    if (threads == 3) {
+      builder.thread("averages", RING_CAPACITY);
+    }
+    builder
+        .averagePressure(siteConfig)
+        .averageTemperature(siteConfig)
+        .averageGasConstant(siteConfig);
+    if (threads > 0) {
+      builder.thread("leakage", RING_CAPACITY);
+    }
+    if (testConfig != null) {
+      builder.testStages(testConfig);
+    }
+    builder.leakage();
+    if (threads == 3) {
+      builder.thread("sink", RING_CAPACITY);
+    }
+
+    LatencyTracer tracer = new LatencyTracer();
+    tracer.setEnabled(true);
+    AtomicLong delivered = new AtomicLong();
+    ReplaySource source = new ReplaySource();
+    Pipeline pipeline = builder.build(source);
+    pipeline.subscribe(tracer.traced("end", vector -> delivered.incrementAndGet()));
+    long start = System.nanoTime();
+    for (MeasurementVector vector : recording) {
+      source.replay(tracer.stamp(vector));
+    }
+    pipeline.drain();
+    long elapsedNanos = System.nanoTime() - start;
+    pipeline.stop();
+    return new Result(
+        threads, recording.size(), delivered.get(), elapsedNanos, tracer.snapshot().getFirst());
+  }
+
+  /**
+   * Outcome of one {@link #run}.
+   *
+   * @param threads number of extra threads
+   * @param vectors number of vectors published to the pipeline
+   * @param delivered number of vectors that reached the end of the pipeline
+   * @param elapsedNanos time from the first published vector until the pipeline was drained
+   * @param latency latency from publishing to the end of the pipeline
+   */
+  public record Result(
+      int threads, long vectors, long delivered, long elapsedNanos, LatencyStats latency) {
+
+    /** Returns the number of published vectors per second of elapsed time. */
+    public double vectorsPerSecond() {
+      return elapsedNanos > 0 ? vectors * 1e9 / elapsedNanos : 0.0;
+    }
+
+    /** Returns e.g. {@code "3 threads: 412345 vectors/s, end n=1440 p50=0.02ms ..."}. */
+    public String format() {
+      return String.format(
+          Locale.ROOT,
+          "%d threads: %.0f vectors/s, %s",
+          threads,
+          vectorsPerSecond(),
+          latency.format());
+    }
+  }
+
+  /** Publishes the vectors of the recording on the calling thread. */
+  private static final class ReplaySource extends MeasurementVectorStream {
+
+    private void replay(MeasurementVector vector) {
+      publish(vector);
+    }
+  }
+}
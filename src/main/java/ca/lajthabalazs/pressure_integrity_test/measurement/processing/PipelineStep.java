@@ -0,0 +1,54 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * One processing step of a {@link Pipeline}: updates a {@link PipelineVector} in place.
+ *
+ * <p>Steps are never called with a vector that carries a severe error; such vectors pass through
+ * the rest of the pipeline unchanged. A step that only looks at the vector it is given is
+ * stateless, and the pipeline fuses runs of adjacent stateless steps into one loop. Steps are not
+ * thread-safe.
+ *
+ * <p>A stateful step overrides {@link #writeState} and {@link #readState} so that {@link
+ * Pipeline#checkpoint()} can save it and a restarted pipeline can go on where it stopped.
+ */
+public interface PipelineStep {
+
+  /** Returns a short name of the step, used in {@link Pipeline#getPlan()}. */
+  String getName();
+
+  /**
+   * Returns true if the result for a vector depends only on that vector, false if the step keeps
+   * state between vectors.
+   */
+  boolean isStateless();
+
+  /**
+   * Processes one vector in place.
+   *
+   * @param vector the vector to update; never carries a severe error
+   * @return true to pass the vector on, false to drop it
+   */
+  boolean process(PipelineVector vector);
+
+  /** Discards state kept from earlier vectors. Stateless steps have nothing to discard. */
+  default void reset() {}
+
+  /**
+   * Writes the state kept from earlier vectors. Stateless steps write nothing.
+   *
+   * @throws IOException if the output fails
+   */
+  default void writeState(DataOutput out) throws IOException {}
+
+  /**
+   * Replaces the state with one written by {@link #writeState} of a step built with the same
+   * configuration.
+   *
+   * @throws IOException if the input ends early
+   */
+  default void readState(DataInput in) throws IOException {}
+}
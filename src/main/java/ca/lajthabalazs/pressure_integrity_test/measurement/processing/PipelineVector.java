@@ -0,0 +1,113 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
+
+import ca.lajthabalazs.pressure_integrity_test.measurement.ErrorChain;
+import ca.lajthabalazs.pressure_integrity_test.measurement.ErrorSeverity;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Measurement;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementError;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mutable working copy of a {@link MeasurementVector} that {@link PipelineStep}s update in place.
+ *
+ * <p>The measurements of the input vector are copied on the first change only, and an immutable
+ * vector is built only when {@link #toVector()} is called, so a chain of steps that each add a
+ * measurement costs one copy instead of one per step. Errors are never copied: added errors are
+ * collected on their own and appended to the {@link ErrorChain} of the input vector. {@link
+ * #toVector()} returns the input vector itself while nothing has changed, and the same instance on
+ * repeated calls without changes in between.
+ */
+public final class PipelineVector {
+
+  private static final int SEVERE_MASK = ErrorSeverity.SEVERE.mask();
+
+  private final MeasurementVector input;
+  private Map<String, Measurement> measurements; // null until the first change
+  private Map<String, Measurement> measurementsView;
+  private List<MeasurementError> addedErrors; // null until the first error is added
+  private ErrorChain errors; // input errors plus added errors; null until needed again
+  private int severityMask;
+  private MeasurementVector snapshot;
+
+  /**
+   * Creates a working copy of the given vector.
+   *
+   * @param input the vector to start from
+   */
+  public PipelineVector(MeasurementVector input) {
+    this.input = input;
+    this.measurementsView = input.getMeasurementsMap();
+    this.errors = input.getErrors();
+    this.severityMask = input.getSeverityMask();
+    this.snapshot = input;
+  }
+
+  /** Returns the timestamp of the vector in milliseconds since epoch. */
+  public long getTimeUtc() {
+    return input.getTimeUtc();
+  }
+
+  /** Returns the ingest time of the source vector ({@link MeasurementVector#getIngestNanos()}). */
+  public long getIngestNanos() {
+    return input.getIngestNanos();
+  }
+
+  /** Returns an unmodifiable live view of the measurements by source id. */
+  public Map<String, Measurement> getMeasurementsMap() {
+    return measurementsView;
+  }
+
+  /** Returns the errors of the input vector followed by the added errors. */
+  public ErrorChain getErrors() {
+    if (errors == null) {
+      errors = input.getErrors().append(addedErrors);
+    }
+    return errors;
+  }
+
+  /** Returns true if the vector carries at least one severe error. */
+  public boolean hasSevereError() {
+    return (severityMask & SEVERE_MASK) != 0;
+  }
+
+  /**
+   * Adds a measurement, replacing any measurement with the same source id in place (keeping its
+   * position).
+   */
+  public void putMeasurement(Measurement measurement) {
+    if (measurements == null) {
+      measurements = new LinkedHashMap<>(input.getMeasurementsMap());
+      measurementsView = Collections.unmodifiableMap(measurements);
+    }
+    measurements.put(measurement.getSourceId(), measurement);
+    snapshot = null;
+  }
+
+  /** Adds an error. */
+  public void addError(MeasurementError error) {
+    if (addedErrors == null) {
+      addedErrors = new ArrayList<>();
+    }
+    addedErrors.add(error);
+    errors = null;
+    severityMask |= error.severity().mask();
+    snapshot = null;
+  }
+
+  /** Returns the vector as an immutable {@link MeasurementVector}, building it only if changed. */
+  public MeasurementVector toVector() {
+    if (snapshot == null) {
+      snapshot =
+          new MeasurementVector(
+              input.getTimeUtc(),
+              measurementsView,
+              getErrors(),
+              input.getIngestNanos());
+    }
+    return snapshot;
+  }
+}
@@ -0,0 +1,244 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
+
+import ca.lajthabalazs.pressure_integrity_test.config.SensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Leakage;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Measurement;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import ca.lajthabalazs.pressure_integrity_test.measurement.streaming.MeasurementVectorStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A measurement vector stream that adds a regression-based leakage rate to each incoming vector.
+ *
+ * <p>Where {@link LeakageMeasurementVectorStream} uses only the previous and current points, this
+ * stage fits y = ln(ρ/ρ∞ − 1) = A·t + B by least squares over every point seen so far, or over the
+ * points of the last {@code windowMs} milliseconds, as in the ILRT mass-point practice. The fit is
+ * kept in a {@link LinearRegressionAccumulator}, so each vector is an O(1) update: the new point is
+ * added and, in windowed mode, points that fall out of the window are subtracted again. Windowed
+ * points are kept in a primitive ring buffer for eviction.
+ *
+ * <p>The leakage rate L in v/v%/d is computed from the fitted slope A (1/s) and the fitted y at
+ * the oldest point of the fit. Next to it the stage publishes the one-sided 95% upper confidence
+ * limit, L + t(0.95, n − 2)·SE(A)·|∂L/∂A|, from the residual variance that the accumulator keeps
+ * incrementally. Until the fit has two points with different timestamps (three for the confidence
+ * limit), {@link Leakage} measurements with value {@code -1} are published. Vectors with a severe
+ * error are passed through unchanged; vectors without valid averages are not published.
+ *
+ * <p>If the vectors are tagged by {@link StageMeasurementVectorStream}, the fit restarts whenever
+ * the stage changes. Expects the same inputs as {@link LeakageMeasurementVectorStream}. {@link
+ * #writeState} and {@link #readState} save and restore the fit, so a restarted test can go on
+ * where it stopped.
+ */
+public class RegressionLeakageMeasurementVectorStream extends MeasurementVectorStream {
+
+  /** Source id of the synthetic regression leakage measurement emitted by this stream. */
+  public static final String REGRESSION_LEAKAGE_SOURCE_ID = "REGRESSION_LEAKAGE";
+
+  /** Source id of the 95% upper confidence limit of the regression leakage. */
+  public static final String REGRESSION_LEAKAGE_UCL_SOURCE_ID = "REGRESSION_LEAKAGE_UCL";
+
+  /** Window length meaning "all points since the stream started". */
+  public static final long NO_WINDOW = Long.MAX_VALUE;
+
+  private final MeasurementVectorStream source;
+  private final long windowMs;
+  private final LinearRegressionAccumulator fit = new LinearRegressionAccumulator();
+  private MeasurementVectorStream.Subscription sourceSubscription;
+
+  /** Timestamp (ms) that t = 0 of the fit corresponds to; set by the first accepted vector. */
+  private long originUtc = Long.MIN_VALUE;
+
+  // Points currently in the fit (ring buffer), oldest at head; only used to evict and find t0.
+  private long[] pointTimes = new long[16];
+  private double[] pointYs = new double[16];
+  private int head;
+  private int size;
+
+  private final StageTracker stage = new StageTracker();
+
+  /**
+   * Creates a regression leakage stream that fits all points since the first vector.
+   *
+   * @param source the stream that provides average pressure, average temperature, and average gas
+   *     constant per vector
+   */
+  public RegressionLeakageMeasurementVectorStream(MeasurementVectorStream source) {
+    this(source, NO_WINDOW);
+  }
+
+  /**
+   * Creates a regression leakage stream over a sliding time window.
+   *
+   * @param source the stream that provides average pressure, average temperature, and average gas
+   *     constant per vector
+   * @param windowMs length of the fit window in milliseconds, or {@link #NO_WINDOW}; points older
+   *     than the newest point minus {@code windowMs} are removed from the fit
+   * @throws IllegalArgumentException if {@code windowMs} is not positive
+   */
+  public RegressionLeakageMeasurementVectorStream(MeasurementVectorStream source, long windowMs) {
+    if (windowMs <= 0) {
+      throw new IllegalArgumentException("windowMs must be positive");
+    }
+    this.source = source;
+    this.windowMs = windowMs;
+    this.sourceSubscription = source.subscribe(this::computeAndPublish);
+  }
+
+  private void computeAndPublish(MeasurementVector vector) {
+    if (vector.hasSevereError()) {
+      // Do not attempt leakage calculation on invalid vectors – pass through.
+      publish(vector);
+      return;
+    }
+    if (stage.changed(vector)) {
+      resetFit();
+    }
+    Double rho = LeakageMath.densityFromVector(vector);
+    if (rho == null) {
+      return;
+    }
+    double y = LeakageMath.regressionVariable(rho);
+    if (!Double.isFinite(y)) {
+      return;
+    }
+    long t = vector.getTimeUtc();
+    if (originUtc == Long.MIN_VALUE) {
+      originUtc = t;
+    }
+    addPoint(t, y);
+    if (windowMs != NO_WINDOW) {
+      while (size > 1 && t - pointTimes[head] > windowMs) {
+        removeOldestPoint();
+      }
+    }
+
+    BigDecimal leakageValue = BigDecimal.ONE.negate();
+    BigDecimal uclValue = BigDecimal.ONE.negate();
+    if (fit.hasFit()) {
+      double slopePerSecond = fit.slope();
+      double yAtStart = fit.valueAt(seconds(pointTimes[head]));
+      double leakage = LeakageMath.leakageFromSlope(slopePerSecond, yAtStart);
+      leakageValue = LeakageMath.toLeakageValue(leakage);
+      if (fit.count() >= 3) {
+        double ucl =
+            LeakageMath.leakageUpperConfidenceLimit(
+                slopePerSecond, fit.slopeStandardError(), yAtStart, fit.count() - 2);
+        uclValue = LeakageMath.toLeakageValue(ucl);
+      }
+    }
+    List<Measurement> out = new ArrayList<>(vector.getMeasurements());
+    out.add(new Leakage(t, REGRESSION_LEAKAGE_SOURCE_ID, leakageValue));
+    out.add(new Leakage(t, REGRESSION_LEAKAGE_UCL_SOURCE_ID, uclValue));
+    publish(new MeasurementVector(t, out, vector.getErrors()));
+  }
+
+  private double seconds(long timeUtc) {
+    return (timeUtc - originUtc) / 1000.0;
+  }
+
+  private void addPoint(long t, double y) {
+    fit.add(seconds(t), y);
+    if (windowMs == NO_WINDOW) {
+      // Only the oldest point is needed to evaluate y at the start of the fit.
+      if (size == 0) {
+        pointTimes[0] = t;
+        pointYs[0] = y;
+        size = 1;
+      }
+      return;
+    }
+    if (size == pointTimes.length) {
+      grow();
+    }
+    int tail = (head + size) % pointTimes.length;
+    pointTimes[tail] = t;
+    pointYs[tail] = y;
+    size++;
+  }
+
+  private void removeOldestPoint() {
+    fit.remove(seconds(pointTimes[head]), pointYs[head]);
+    head = (head + 1) % pointTimes.length;
+    size--;
+  }
+
+  private void grow() {
+    long[] times = new long[pointTimes.length * 2];
+    double[] ys = new double[pointYs.length * 2];
+    for (int i = 0; i < size; i++) {
+      int idx = (head + i) % pointTimes.length;
+      times[i] = pointTimes[idx];
+      ys[i] = pointYs[idx];
+    }
+    pointTimes = times;
+    pointYs = ys;
+    head = 0;
+  }
+
+  /**
+   * Writes the fit, the points in the window and the current stage. Call it on the thread that
+   * publishes to the source, or while the source is idle.
+   *
+   * @throws IOException if the output fails
+   */
+  public void writeState(DataOutput out) throws IOException {
+    fit.writeState(out);
+    out.writeLong(originUtc);
+    out.writeInt(size);
+    for (int i = 0; i < size; i++) {
+      int idx = (head + i) % pointTimes.length;
+      out.writeLong(pointTimes[idx]);
+      out.writeDouble(pointYs[idx]);
+    }
+    stage.writeState(out);
+  }
+
+  /**
+   * Replaces the state with one written by {@link #writeState} of a stream with the same window.
+   *
+   * @throws IOException if the input ends early
+   */
+  public void readState(DataInput in) throws IOException {
+    resetFit();
+    fit.readState(in);
+    originUtc = in.readLong();
+    int points = in.readInt();
+    for (int i = 0; i < points; i++) {
+      if (size == pointTimes.length) {
+        grow();
+      }
+      pointTimes[size] = in.readLong();
+      pointYs[size] = in.readDouble();
+      size++;
+    }
+    stage.readState(in);
+  }
+
+  @Override
+  public List<SensorConfig> listSensors() {
+    return source.listSensors();
+  }
+
+  /** Stops publishing: unsubscribes from the source stream and clears the fit. */
+  public void stop() {
+    if (sourceSubscription != null) {
+      sourceSubscription.unsubscribe();
+      sourceSubscription = null;
+    }
+    resetFit();
+    stage.reset();
+    clearSubscribers();
+  }
+
+  private void resetFit() {
+    fit.clear();
+    originUtc = Long.MIN_VALUE;
+    head = 0;
+    size = 0;
+  }
+}
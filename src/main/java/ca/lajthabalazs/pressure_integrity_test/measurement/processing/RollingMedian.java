@@ -0,0 +1,244 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
+
+/**
+ * Median and median absolute deviation (MAD) of the last {@code windowSize} values.
+ *
+ * <p>Values are kept in an indexable skip list whose nodes live in preallocated arrays: every link
+ * stores how many positions it skips, so inserting, removing and finding the k-th smallest value
+ * take O(log w) and nothing is allocated after construction. Insertion order is kept in a ring of
+ * node indices so that the oldest value can be evicted. Equal values are ordered by node index,
+ * which keeps every key unique.
+ *
+ * <p>The MAD, the median of |x − median|, is the median of two sorted runs, the values below the
+ * median mirrored around it and the values from the median up, found by bisecting how many
+ * elements are taken from each run: O(log² w) per query. Not thread-safe.
+ */
+public final class RollingMedian {
+
+  private static final int NIL = -1;
+
+  private final int windowSize;
+  private final int maxLevel;
+  private final int head;
+  private final double[] values;
+  private final int[] levels;
+  private final int[][] next;
+  private final int[][] width;
+  private final int[] ring;
+  private final int[] freeNodes;
+  private final int[] chain;
+  private final int[] chainSteps;
+  private int freeCount;
+  private int ringHead;
+  private int size;
+  private int seed = 0x2545F491;
+
+  /**
+   * Creates an empty rolling median.
+   *
+   * @param windowSize number of most recent values kept (at least 1)
+   * @throws IllegalArgumentException if {@code windowSize} is less than 1
+   */
+  public RollingMedian(int windowSize) {
+    if (windowSize < 1) {
+      throw new IllegalArgumentException("windowSize must be at least 1");
+    }
+    this.windowSize = windowSize;
+    this.maxLevel = 32 - Integer.numberOfLeadingZeros(windowSize) + 1;
+    this.head = windowSize;
+    this.values = new double[windowSize + 1];
+    this.levels = new int[windowSize + 1];
+    this.next = new int[maxLevel][windowSize + 1];
+    this.width = new int[maxLevel][windowSize + 1];
+    this.ring = new int[windowSize];
+    this.freeNodes = new int[windowSize];
+    this.chain = new int[maxLevel];
+    this.chainSteps = new int[maxLevel];
+    clear();
+  }
+
+  /** Removes all values. */
+  public void clear() {
+    for (int level = 0; level < maxLevel; level++) {
+      next[level][head] = NIL;
+      width[level][head] = 1;
+    }
+    for (int i = 0; i < windowSize; i++) {
+      freeNodes[i] = windowSize - 1 - i;
+    }
+    freeCount = windowSize;
+    ringHead = 0;
+    size = 0;
+  }
+
+  /** Returns the number of values in the window. */
+  public int size() {
+    return size;
+  }
+
+  /** Returns the window size given at construction. */
+  public int windowSize() {
+    return windowSize;
+  }
+
+  /** Returns the values of the window, oldest first; adding them to an empty window restores it. */
+  public double[] toArray() {
+    double[] result = new double[size];
+    for (int i = 0; i < size; i++) {
+      result[i] = values[ring[(ringHead + i) % windowSize]];
+    }
+    return result;
+  }
+
+  /**
+   * Adds a value, evicting the oldest one if the window is full.
+   *
+   * @param value the value (not NaN)
+   */
+  public void add(double value) {
+    if (size == windowSize) {
+      int oldest = ring[ringHead];
+      remove(oldest);
+      ringHead = (ringHead + 1) % windowSize;
+    }
+    int node = freeNodes[--freeCount];
+    values[node] = value;
+    insert(node);
+    ring[(ringHead + size - 1) % windowSize] = node;
+  }
+
+  /** Returns the median of the window, or NaN if it is empty. */
+  public double median() {
+    if (size == 0) {
+      return Double.NaN;
+    }
+    if ((size & 1) == 1) {
+      return select(size / 2);
+    }
+    return (select(size / 2 - 1) + select(size / 2)) / 2.0;
+  }
+
+  /** Returns the median absolute deviation from the median, or NaN if the window is empty. */
+  public double medianAbsoluteDeviation() {
+    if (size == 0) {
+      return Double.NaN;
+    }
+    double median = median();
+    int below = countLess(median);
+    if ((size & 1) == 1) {
+      return deviation(size / 2, median, below);
+    }
+    return (deviation(size / 2 - 1, median, below) + deviation(size / 2, median, below)) / 2.0;
+  }
+
+  /**
+   * Returns the k-th smallest |x − median| (0-based). Run A holds median − x for the {@code below}
+   * values under the median, run B holds x − median for the rest; both are ascending.
+   */
+  private double deviation(int k, double median, int below) {
+    int above = size - below;
+    int taken = k + 1;
+    int lo = Math.max(0, taken - above);
+    int hi = Math.min(taken, below);
+    while (lo < hi) {
+      int fromA = (lo + hi) >>> 1;
+      int fromB = taken - fromA;
+      if (median - select(below - 1 - fromA) < select(below + fromB - 1) - median) {
+        lo = fromA + 1;
+      } else {
+        hi = fromA;
+      }
+    }
+    int fromA = lo;
+    int fromB = taken - fromA;
+    double a = fromA > 0 ? median - select(below - fromA) : Double.NEGATIVE_INFINITY;
+    double b = fromB > 0 ? select(below + fromB - 1) - median : Double.NEGATIVE_INFINITY;
+    return Math.max(a, b);
+  }
+
+  /** Returns the k-th smallest value (0-based). */
+  private double select(int k) {
+    int node = head;
+    int remaining = k + 1;
+    for (int level = maxLevel - 1; level >= 0; level--) {
+      while (next[level][node] != NIL && width[level][node] <= remaining) {
+        remaining -= width[level][node];
+        node = next[level][node];
+      }
+    }
+    return values[node];
+  }
+
+  /** Returns the number of values strictly less than {@code x}. */
+  private int countLess(double x) {
+    int node = head;
+    int count = 0;
+    for (int level = maxLevel - 1; level >= 0; level--) {
+      while (next[level][node] != NIL && values[next[level][node]] < x) {
+        count += width[level][node];
+        node = next[level][node];
+      }
+    }
+    return count;
+  }
+
+  private boolean before(int a, int b) {
+    return values[a] < values[b] || (values[a] == values[b] && a < b);
+  }
+
+  private void insert(int node) {
+    int current = head;
+    int steps = 0;
+    for (int level = maxLevel - 1; level >= 0; level--) {
+      while (next[level][current] != NIL && before(next[level][current], node)) {
+        steps += width[level][current];
+        current = next[level][current];
+      }
+      chain[level] = current;
+      chainSteps[level] = steps;
+    }
+    int nodeLevel = randomLevel();
+    levels[node] = nodeLevel;
+    for (int level = 0; level < nodeLevel; level++) {
+      int prev = chain[level];
+      int skipped = steps - chainSteps[level];
+      next[level][node] = next[level][prev];
+      next[level][prev] = node;
+      width[level][node] = width[level][prev] - skipped;
+      width[level][prev] = skipped + 1;
+    }
+    for (int level = nodeLevel; level < maxLevel; level++) {
+      width[level][chain[level]]++;
+    }
+    size++;
+  }
+
+  private void remove(int node) {
+    int current = head;
+    for (int level = maxLevel - 1; level >= 0; level--) {
+      while (next[level][current] != NIL && before(next[level][current], node)) {
+        current = next[level][current];
+      }
+      chain[level] = current;
+    }
+    for (int level = 0; level < levels[node]; level++) {
+      int prev = chain[level];
+      width[level][prev] += width[level][node] - 1;
+      next[level][prev] = next[level][node];
+    }
+    for (int level = levels[node]; level < maxLevel; level++) {
+      width[level][chain[level]]--;
+    }
+    freeNodes[freeCount++] = node;
+    size--;
+  }
+
+  /** Geometric level in [1, maxLevel] from an xorshift generator. */
+  private int randomLevel() {
+    seed ^= seed << 13;
+    seed ^= seed >>> 17;
+    seed ^= seed << 5;
+    int level = 1 + Integer.numberOfTrailingZeros(seed | (1 << (maxLevel - 1)));
+    return Math.min(level, maxLevel);
+  }
+}
@@ -0,0 +1,58 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
+
+/**
+ * Precomputed saturation pressure of water vapour over the credible 0–100 °C range.
+ *
+ * <p>Values come from the Antoine equation of the ILRT reference, log₁₀(P/bar) = A − B/(T + C) with
+ * T in kelvin (A = 6.20963, B = 2354.731, C = 7.559), tabulated every 0.1 °C and converted to Pa.
+ * Between grid points the pressure is interpolated linearly. The relative interpolation error is at
+ * most 5.4·10⁻⁶ (largest near 0 °C), far below the uncertainty of the humidity sensors. A lookup
+ * costs a few floating-point operations instead of a {@code Math.pow}.
+ */
+final class SaturationPressureTable {
+
+  /** Lowest tabulated temperature [°C]. */
+  static final double MIN_CELSIUS = 0.0;
+
+  /** Highest tabulated temperature [°C]. */
+  static final double MAX_CELSIUS = 100.0;
+
+  private static final double A = 6.20963;
+  private static final double B = 2354.731;
+  private static final double C = 7.559;
+  private static final double KELVIN_OFFSET = 273.15;
+  private static final double PASCAL_PER_BAR = 100000.0;
+
+  private static final double STEP_CELSIUS = 0.1;
+  private static final int STEPS = (int) Math.round((MAX_CELSIUS - MIN_CELSIUS) / STEP_CELSIUS);
+  private static final double[] PASCAL = new double[STEPS + 1];
+
+  static {
+    for (int i = 0; i <= STEPS; i++) {
+      PASCAL[i] = antoinePascal(MIN_CELSIUS + i * STEP_CELSIUS);
+    }
+  }
+
+  private SaturationPressureTable() {}
+
+  /**
+   * Returns the saturation pressure [Pa] at the given temperature from the table.
+   *
+   * @param celsius temperature in °C, within [{@link #MIN_CELSIUS}, {@link #MAX_CELSIUS}]
+   * @return saturation pressure in Pa, or NaN if the temperature is outside the table
+   */
+  static double pascal(double celsius) {
+    double position = (celsius - MIN_CELSIUS) / STEP_CELSIUS;
+    if (!(position >= 0 && position <= STEPS)) {
+      return Double.NaN;
+    }
+    int i = Math.min((int) position, STEPS - 1);
+    double fraction = position - i;
+    return PASCAL[i] + (PASCAL[i + 1] - PASCAL[i]) * fraction;
+  }
+
+  /** Evaluates the Antoine equation directly; returns the saturation pressure in Pa. */
+  static double antoinePascal(double celsius) {
+    return PASCAL_PER_BAR * Math.pow(10.0, A - B / (celsius + KELVIN_OFFSET + C));
+  }
+}
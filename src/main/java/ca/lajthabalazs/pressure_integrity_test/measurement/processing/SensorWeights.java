@@ -0,0 +1,135 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
+
+import ca.lajthabalazs.pressure_integrity_test.config.LocationConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.SensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.SiteConfig;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Measurement;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementError;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inverse-variance weights of one kind of site-config sensor, compiled once into a primitive array.
+ *
+ * <p>The weight of sensor i is wᵢ = vᵢ/σᵢ², where vᵢ is the volume factor of its location (1 when
+ * volume factors are not used or not set) and σᵢ its configured sigma (1 when not set or not
+ * positive). {@link #load} writes a vector's values into a scratch array aligned with the weights;
+ * sensors that are missing or flagged with an error are left NaN, and the means below skip them,
+ * so the remaining weights are renormalised by dividing by their own sum. A mean is one loop over
+ * two arrays and allocates nothing. Instances are not thread-safe.
+ */
+final class SensorWeights {
+
+  private final Map<String, Integer> indexBySensorId = new HashMap<>();
+  private final double[] weights;
+  private final double[] values;
+
+  private SensorWeights(List<SensorConfig> sensors, Map<String, LocationConfig> locations) {
+    weights = new double[sensors.size()];
+    values = new double[sensors.size()];
+    for (int i = 0; i < weights.length; i++) {
+      SensorConfig sensor = sensors.get(i);
+      indexBySensorId.put(sensor.getId(), i);
+      double volume = 1.0;
+      LocationConfig location = locations.get(sensor.getId());
+      if (location != null && location.getVolumeFactor() != null) {
+        volume = location.getVolumeFactor().doubleValue();
+      }
+      double sigma = sensor.getSigma() != null ? sensor.getSigma().doubleValue() : 0.0;
+      weights[i] = sigma > 0 ? volume / (sigma * sigma) : volume;
+    }
+  }
+
+  /**
+   * Compiles the weights of the site's sensors of the given kind.
+   *
+   * @param siteConfig site configuration
+   * @param kind sensor config class to include (e.g. {@code PressureSensorConfig.class})
+   * @param locationBySensorId locations providing volume factors; empty to use 1/σ² only
+   */
+  static SensorWeights compile(
+      SiteConfig siteConfig,
+      Class<? extends SensorConfig> kind,
+      Map<String, LocationConfig> locationBySensorId) {
+    List<SensorConfig> sensors = siteConfig.getSensors().stream().filter(kind::isInstance).toList();
+    return new SensorWeights(sensors, locationBySensorId);
+  }
+
+  /** Returns the number of sensors. */
+  int size() {
+    return weights.length;
+  }
+
+  /** Returns the weight of the sensor with the given index. */
+  double weight(int index) {
+    return weights[index];
+  }
+
+  /**
+   * Loads a vector's values of measurements of the given type into the scratch array, in the
+   * measurement's default unit. Sensors without such a measurement, or named by one of the vector's
+   * errors, are set to NaN.
+   */
+  void load(
+      Map<String, Measurement> measurements,
+      List<MeasurementError> errors,
+      Class<? extends Measurement> type) {
+    Arrays.fill(values, Double.NaN);
+    for (Measurement m : measurements.values()) {
+      Integer index = indexBySensorId.get(m.getSourceId());
+      BigDecimal value = m.getValueInDefaultUnit();
+      if (index != null && type.isInstance(m) && value != null) {
+        values[index] = value.doubleValue();
+      }
+    }
+    for (MeasurementError error : errors) {
+      Integer index = indexBySensorId.get(error.sensorId());
+      if (index != null) {
+        values[index] = Double.NaN;
+      }
+    }
+  }
+
+  /** Sets the loaded value of the given sensor to NaN, excluding it from the means. */
+  void exclude(int index) {
+    values[index] = Double.NaN;
+  }
+
+  /** Returns the loaded value of the given sensor (NaN if excluded). */
+  double value(int index) {
+    return values[index];
+  }
+
+  /** Returns Σwᵢxᵢ / Σwᵢ over the loaded values, or NaN if none is left. */
+  double weightedMean() {
+    double sum = 0.0;
+    double weightSum = 0.0;
+    for (int i = 0; i < values.length; i++) {
+      double x = values[i];
+      if (!Double.isNaN(x)) {
+        sum += weights[i] * x;
+        weightSum += weights[i];
+      }
+    }
+    return weightSum > 0 ? sum / weightSum : Double.NaN;
+  }
+
+  /** Returns Σwᵢ / Σ(wᵢ/xᵢ) over the loaded non-zero values, or NaN if none is left. */
+  double weightedHarmonicMean() {
+    double weightSum = 0.0;
+    double denominator = 0.0;
+    for (int i = 0; i < values.length; i++) {
+      double x = values[i];
+      if (!Double.isNaN(x)) {
+        weightSum += weights[i];
+        if (x != 0) {
+          denominator += weights[i] / x;
+        }
+      }
+    }
+    return weightSum > 0 && denominator != 0 ? weightSum / denominator : Double.NaN;
+  }
+}
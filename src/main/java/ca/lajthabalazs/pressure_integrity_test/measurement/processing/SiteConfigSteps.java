@@ -0,0 +1,131 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
+
+import ca.lajthabalazs.pressure_integrity_test.config.CalibrationConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.LocationConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.SiteConfig;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The steps that depend on the site and calibration configuration: believability, calibration,
+ * average pressure, average temperature and average gas constant, with the same results as the
+ * steps added by the matching {@link Pipeline.Builder} methods.
+ *
+ * <p>The steps are compiled from one pair of configurations into an immutable snapshot, shared by
+ * the steps of {@link #steps()} through an atomic reference. The first step reads the reference
+ * once per vector and the others use the snapshot it read, so every vector is processed with one
+ * snapshot even if {@link #swap} publishes a new one meanwhile; the vectors after the swap use the
+ * new one. The steps are stateless, so the pipeline fuses them into one node and the later,
+ * stateful steps keep their state across swaps. They must run on one thread: declare no {@link
+ * Pipeline.Builder#thread thread} between them.
+ */
+final class SiteConfigSteps {
+
+  private final boolean sigmaWeighted;
+  private final AtomicReference<Compiled> compiled;
+  private Compiled current; // snapshot of the vector being processed, set by the first step
+
+  /**
+   * @param siteConfig site configuration; must not be null and must not be modified afterwards
+   * @param calibrationConfig optional calibration; if null, the calibration step passes vectors
+   *     through
+   */
+  SiteConfigSteps(SiteConfig siteConfig, CalibrationConfig calibrationConfig) {
+    this(siteConfig, calibrationConfig, false);
+  }
+
+  /**
+   * @param siteConfig site configuration; must not be null and must not be modified afterwards
+   * @param calibrationConfig optional calibration; if null, the calibration step passes vectors
+   *     through
+   * @param sigmaWeighted if true, the average pressure and temperature weight each sensor by 1/σ²
+   *     and leave flagged sensors out; kept across {@link #swap}
+   */
+  SiteConfigSteps(
+      SiteConfig siteConfig, CalibrationConfig calibrationConfig, boolean sigmaWeighted) {
+    this.sigmaWeighted = sigmaWeighted;
+    this.compiled = new AtomicReference<>(compile(siteConfig, calibrationConfig));
+  }
+
+  private Compiled compile(SiteConfig siteConfig, CalibrationConfig calibrationConfig) {
+    Map<String, LocationConfig> locationBySensorId =
+        FullStackLeakageMeasurementVectorStream.buildLocationBySensorId(siteConfig);
+    return new Compiled(
+        siteConfig,
+        new PipelineStep[] {
+          new BelievabilityStep(siteConfig, null),
+          calibrationConfig != null ? new CalibrationStep(calibrationConfig) : null,
+          new AveragePressureStep(siteConfig, sigmaWeighted),
+          new AverageTemperatureStep(locationBySensorId, siteConfig, sigmaWeighted),
+          new AverageGasConstantStep(
+              locationBySensorId,
+              FullStackLeakageMeasurementVectorStream.buildHumidityToTemperatureSensorId(
+                  siteConfig),
+              siteConfig)
+        });
+  }
+
+  /** Returns the steps in processing order; add them to one pipeline only. */
+  List<PipelineStep> steps() {
+    return List.of(
+        new ConfigStep("believability", 0),
+        new ConfigStep("calibration", 1),
+        new ConfigStep("averagePressure", 2),
+        new ConfigStep("averageTemperature", 3),
+        new ConfigStep("averageGasConstant", 4));
+  }
+
+  /**
+   * Replaces the configuration from the next vector on. May be called from any thread.
+   *
+   * @param siteConfig site configuration; must not be null and must not be modified afterwards
+   * @param calibrationConfig optional calibration; if null, the calibration step passes vectors
+   *     through
+   */
+  void swap(SiteConfig siteConfig, CalibrationConfig calibrationConfig) {
+    compiled.set(compile(siteConfig, calibrationConfig));
+  }
+
+  /** Returns the site configuration of the current snapshot. */
+  SiteConfig getSiteConfig() {
+    return compiled.get().siteConfig();
+  }
+
+  /** Runs one step of the snapshot; the first one takes the snapshot for the vector. */
+  private final class ConfigStep implements PipelineStep {
+
+    private final String name;
+    private final int index;
+
+    private ConfigStep(String name, int index) {
+      this.name = name;
+      this.index = index;
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+
+    @Override
+    public boolean isStateless() {
+      return true;
+    }
+
+    @Override
+    public boolean process(PipelineVector vector) {
+      if (index == 0) {
+        current = compiled.get();
+      }
+      PipelineStep step = current.steps()[index];
+      return step == null || step.process(vector);
+    }
+  }
+
+  /**
+   * Site configuration and the steps compiled from it, by position in {@link #steps()}; null where
+   * a step is not configured. Neither is changed after compilation.
+   */
+  private record Compiled(SiteConfig siteConfig, PipelineStep[] steps) {}
+}
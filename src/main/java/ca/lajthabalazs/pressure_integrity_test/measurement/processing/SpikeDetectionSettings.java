@@ -0,0 +1,43 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
+
+/**
+ * Settings of the rolling-median spike detector of {@link
+ * BelievabilityFilteredMeasurementVectorStream}.
+ *
+ * <p>A value is a spike when it deviates from the median of the sensor's previous {@code
+ * windowSize} values by more than {@code threshold} robust standard deviations (1.4826·MAD), and by
+ * more than {@code minDeviation}, which keeps a perfectly flat signal from flagging every small
+ * step. Detection starts once half the window is filled.
+ *
+ * @param windowSize number of previous values per sensor (at least 3)
+ * @param threshold deviation limit in robust standard deviations (positive)
+ * @param minDeviation smallest deviation flagged, in the sensor's default unit (not negative)
+ */
+public record SpikeDetectionSettings(int windowSize, double threshold, double minDeviation) {
+
+  /** Scale factor turning the MAD into a standard deviation estimate for normal data. */
+  public static final double MAD_TO_SIGMA = 1.4826;
+
+  public SpikeDetectionSettings {
+    if (windowSize < 3) {
+      throw new IllegalArgumentException("windowSize must be at least 3");
+    }
+    if (!(threshold > 0)) {
+      throw new IllegalArgumentException("threshold must be positive");
+    }
+    if (!(minDeviation >= 0)) {
+      throw new IllegalArgumentException("minDeviation must not be negative");
+    }
+  }
+
+  /** Returns the number of values needed before detection starts. */
+  public int minSamples() {
+    return (windowSize + 1) / 2;
+  }
+
+  /** Returns whether {@code value} is a spike relative to the window's median and MAD. */
+  boolean isSpike(double value, double median, double mad) {
+    double deviation = Math.abs(value - median);
+    return deviation > minDeviation && deviation > threshold * MAD_TO_SIGMA * mad;
+  }
+}
@@ -0,0 +1,86 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded FIFO queue for exactly one producer thread and one consumer thread, used between the
+ * threads of a {@link Pipeline}.
+ *
+ * <p>The slots are allocated once; {@link #offer} and {@link #poll} never allocate, lock or block.
+ * Each side publishes its position with a release write and caches the other side's position, so
+ * the shared positions are only read when the cached one says the buffer is full or empty.
+ */
+final class SpscRingBuffer<T> {
+
+  private final Object[] slots;
+  private final int mask;
+  private final AtomicLong head = new AtomicLong(); // next position to write; producer only
+  private final AtomicLong tail = new AtomicLong(); // next position to read; consumer only
+  private long cachedTail; // producer's last view of tail
+  private long cachedHead; // consumer's last view of head
+
+  /**
+   * @param capacity minimum number of slots; rounded up to a power of two
+   * @throws IllegalArgumentException if the capacity is not positive or above 2^30
+   */
+  SpscRingBuffer(int capacity) {
+    if (capacity < 1 || capacity > 1 << 30) {
+      throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+    }
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity) {
+      size <<= 1;
+    }
+    this.slots = new Object[size];
+    this.mask = size - 1;
+  }
+
+  /** Returns the number of slots. */
+  int capacity() {
+    return slots.length;
+  }
+
+  /** Returns the number of items waiting; exact only when neither side is running. */
+  int size() {
+    return (int) (head.get() - tail.get());
+  }
+
+  /**
+   * Adds an item. Producer thread only.
+   *
+   * @return false if the buffer is full
+   */
+  boolean offer(T item) {
+    long h = head.getPlain();
+    if (h - cachedTail >= slots.length) {
+      cachedTail = tail.getAcquire();
+      if (h - cachedTail >= slots.length) {
+        return false;
+      }
+    }
+    slots[(int) h & mask] = item;
+    head.setRelease(h + 1);
+    return true;
+  }
+
+  /**
+   * Removes the oldest item. Consumer thread only.
+   *
+   * @return the item, or null if the buffer is empty
+   */
+  @SuppressWarnings("unchecked")
+  T poll() {
+    long t = tail.getPlain();
+    if (t >= cachedHead) {
+      cachedHead = head.getAcquire();
+      if (t >= cachedHead) {
+        return null;
+      }
+    }
+    int index = (int) t & mask;
+    T item = (T) slots[index];
+    slots[index] = null;
+    tail.setRelease(t + 1);
+    return item;
+  }
+}
@@ -0,0 +1,202 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
+
+import ca.lajthabalazs.pressure_integrity_test.config.Duration;
+import ca.lajthabalazs.pressure_integrity_test.config.SensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.TestConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.TestConfigStage;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Leakage;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Measurement;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import ca.lajthabalazs.pressure_integrity_test.measurement.streaming.MeasurementVectorStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A measurement vector stream that predicts, while a stage is running, the regression leakage
+ * rate and its 95% upper confidence limit at the configured end of the stage.
+ *
+ * <p>Expects vectors tagged by {@link StageMeasurementVectorStream} and the inputs of {@link
+ * LeakageMeasurementVectorStream}. Within a stage, y = ln(ρ/ρ∞ − 1) is fitted against time since
+ * the first vector of the stage in a {@link LinearRegressionAccumulator}, as in {@link
+ * RegressionLeakageMeasurementVectorStream}. Assuming the density keeps following the fitted line
+ * and is sampled at the average interval so far until the stage's {@link
+ * TestConfigStage#getDuration() duration} is reached, the final fit has the same slope, the same
+ * residual variance and a larger spread of sample times. The spread of the remaining evenly spaced
+ * samples has a closed form, so every vector is an O(1) update. Three measurements are added:
+ *
+ * <ul>
+ *   <li>{@link #PREDICTED_LEAKAGE_SOURCE_ID} – the predicted final leakage rate (the current fit)
+ *   <li>{@link #PREDICTED_LEAKAGE_SE_SOURCE_ID} – the standard error of the current estimate, the
+ *       uncertainty of the prediction
+ *   <li>{@link #PREDICTED_LEAKAGE_UCL_SOURCE_ID} – the upper confidence limit expected at the end
+ *       of the stage, to compare against the acceptance criterion
+ * </ul>
+ *
+ * <p>Values are {@code -1} outside stages and until the fit has enough points (two for the rate,
+ * three for the others). Vectors with a severe error are passed through unchanged; vectors without
+ * valid averages are not published. {@link #writeState} and {@link #readState} save and restore the
+ * fit of the current stage, so a restarted test can go on where it stopped.
+ */
+public class StageEndPredictionMeasurementVectorStream extends MeasurementVectorStream {
+
+  /** Source id of the predicted end-of-stage leakage rate. */
+  public static final String PREDICTED_LEAKAGE_SOURCE_ID = "PREDICTED_LEAKAGE";
+
+  /** Source id of the standard error of the predicted leakage rate. */
+  public static final String PREDICTED_LEAKAGE_SE_SOURCE_ID = "PREDICTED_LEAKAGE_SE";
+
+  /** Source id of the predicted end-of-stage 95% upper confidence limit. */
+  public static final String PREDICTED_LEAKAGE_UCL_SOURCE_ID = "PREDICTED_LEAKAGE_UCL";
+
+  private final MeasurementVectorStream source;
+  private final double[] stageSeconds;
+  private final LinearRegressionAccumulator fit = new LinearRegressionAccumulator();
+  private MeasurementVectorStream.Subscription sourceSubscription;
+
+  private Integer stage;
+  private long stageOriginUtc;
+  private double lastX;
+
+  /**
+   * Creates a prediction stream for the stages of the given test configuration.
+   *
+   * @param source the stream that provides stage tags, average pressure, average temperature and
+   *     average gas constant per vector
+   * @param testConfig test configuration whose stage durations define the stage ends
+   */
+  public StageEndPredictionMeasurementVectorStream(
+      MeasurementVectorStream source, TestConfig testConfig) {
+    List<TestConfigStage> stages =
+        testConfig.getStages() == null ? List.of() : testConfig.getStages();
+    this.stageSeconds = new double[stages.size()];
+    for (int i = 0; i < stages.size(); i++) {
+      Duration d = stages.get(i).getDuration();
+      stageSeconds[i] = (d.getHours() * 60.0 + d.getMinutes()) * 60.0;
+    }
+    this.source = source;
+    this.sourceSubscription = source.subscribe(this::computeAndPublish);
+  }
+
+  private void computeAndPublish(MeasurementVector vector) {
+    if (vector.hasSevereError()) {
+      publish(vector);
+      return;
+    }
+    Integer vectorStage = StageMeasurementVectorStream.stageOf(vector);
+    if (!Objects.equals(vectorStage, stage)) {
+      stage = vectorStage;
+      fit.clear();
+    }
+    Double rho = LeakageMath.densityFromVector(vector);
+    if (rho == null) {
+      return;
+    }
+    long t = vector.getTimeUtc();
+    double leakage = Double.NaN;
+    double standardError = Double.NaN;
+    double ucl = Double.NaN;
+    double y = LeakageMath.regressionVariable(rho);
+    if (stage != null && stage >= 0 && stage < stageSeconds.length && Double.isFinite(y)) {
+      if (fit.count() == 0) {
+        stageOriginUtc = t;
+      }
+      lastX = (t - stageOriginUtc) / 1000.0;
+      fit.add(lastX, y);
+      if (fit.hasFit()) {
+        double yAtStart = fit.valueAt(0.0);
+        leakage = LeakageMath.leakageFromSlope(fit.slope(), yAtStart);
+        if (fit.count() >= 3) {
+          standardError = LeakageMath.leakageStandardError(fit.slopeStandardError(), yAtStart);
+          ucl = predictUpperConfidenceLimit(yAtStart, stageSeconds[stage]);
+        }
+      }
+    }
+    List<Measurement> out = new ArrayList<>(vector.getMeasurements());
+    out.add(new Leakage(t, PREDICTED_LEAKAGE_SOURCE_ID, LeakageMath.toLeakageValue(leakage)));
+    out.add(
+        new Leakage(t, PREDICTED_LEAKAGE_SE_SOURCE_ID, LeakageMath.toLeakageValue(standardError)));
+    out.add(new Leakage(t, PREDICTED_LEAKAGE_UCL_SOURCE_ID, LeakageMath.toLeakageValue(ucl)));
+    publish(new MeasurementVector(t, out, vector.getErrors()));
+  }
+
+  private double predictUpperConfidenceLimit(double yAtStart, double endX) {
+    long n = fit.count();
+    double interval = lastX / (n - 1);
+    long remaining = 0;
+    if (interval > 0 && lastX < endX) {
+      remaining = (long) Math.floor((endX - lastX) / interval);
+    }
+    double sxx =
+        projectedSumSquaredDeviationsX(
+            n, fit.meanX(), fit.sumSquaredDeviationsX(), lastX, interval, remaining);
+    double slopeStandardError = Math.sqrt(fit.residualVariance() / sxx);
+    return LeakageMath.leakageUpperConfidenceLimit(
+        fit.slope(), slopeStandardError, yAtStart, n + remaining - 2);
+  }
+
+  /**
+   * Returns Σ(x − x̄)² of {@code n} samples with mean {@code meanX} and spread {@code sxx} after
+   * appending {@code m} samples at {@code lastX + interval}, {@code lastX + 2·interval}, … Combines
+   * the two spreads, the new one being interval²·m(m² − 1)/12, with the term for the distance
+   * between the two means.
+   */
+  static double projectedSumSquaredDeviationsX(
+      long n, double meanX, double sxx, double lastX, double interval, long m) {
+    if (m == 0) {
+      return sxx;
+    }
+    double futureMean = lastX + interval * (m + 1) / 2.0;
+    double futureSxx = interval * interval * m * ((double) m * m - 1) / 12.0;
+    double d = meanX - futureMean;
+    return sxx + futureSxx + (double) n * m / (n + m) * d * d;
+  }
+
+  /**
+   * Writes the current stage and its fit. Call it on the thread that publishes to the source, or
+   * while the source is idle.
+   *
+   * @throws IOException if the output fails
+   */
+  public void writeState(DataOutput out) throws IOException {
+    out.writeBoolean(stage != null);
+    if (stage != null) {
+      out.writeInt(stage);
+    }
+    out.writeLong(stageOriginUtc);
+    out.writeDouble(lastX);
+    fit.writeState(out);
+  }
+
+  /**
+   * Replaces the state with one written by {@link #writeState} of a stream with the same test
+   * configuration.
+   *
+   * @throws IOException if the input ends early
+   */
+  public void readState(DataInput in) throws IOException {
+    stage = in.readBoolean() ? in.readInt() : null;
+    stageOriginUtc = in.readLong();
+    lastX = in.readDouble();
+    fit.readState(in);
+  }
+
+  @Override
+  public List<SensorConfig> listSensors() {
+    return source.listSensors();
+  }
+
+  /** Stops publishing: unsubscribes from the source stream and clears the fit. */
+  public void stop() {
+    if (sourceSubscription != null) {
+      sourceSubscription.unsubscribe();
+      sourceSubscription = null;
+    }
+    fit.clear();
+    stage = null;
+    clearSubscribers();
+  }
+}
@@ -0,0 +1,147 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
+
+import ca.lajthabalazs.pressure_integrity_test.config.SensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.TestConfig;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Measurement;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import ca.lajthabalazs.pressure_integrity_test.measurement.streaming.MeasurementVectorStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A measurement vector stream that segments the incoming vectors into the stages of a {@link
+ * TestConfig} and tags each vector with a {@link StageIndex} measurement.
+ *
+ * <p>Each stage has a target absolute pressure, the test's ambient pressure plus the stage's
+ * overpressure, and a duration. Stages are entered in configuration order: between stages the
+ * stream waits for the average pressure ({@link
+ * AveragePressureMeasurementVectorStream#AVG_PRESSURE_SOURCE_ID}) to reach the plateau of the next
+ * stage, that is, to come within the plateau tolerance of its target. A stage ends when its
+ * duration has elapsed since the plateau was reached, or earlier when the pressure stays off the
+ * plateau for several consecutive vectors (e.g. on depressurisation; {@link
+ * #DEFAULT_PLATEAU_EXIT_SAMPLES} by default). A single outlier therefore does not end the stage;
+ * the off-plateau vectors before the stage ends are still tagged with it. Vectors outside any stage
+ * are tagged with {@link #NO_STAGE}. Vectors without an average pressure keep the current stage
+ * unless its duration has elapsed.
+ *
+ * <p>Stateful downstream stages (regression sums, previous density) read the tag with {@link
+ * #stageOf(MeasurementVector)} and reset when it changes, so every stage is evaluated on its own
+ * points in the same single pass. Vectors with a severe error are passed through unchanged.
+ */
+public class StageMeasurementVectorStream extends MeasurementVectorStream {
+
+  /** Source id of the synthetic stage index measurement emitted by this stream. */
+  public static final String STAGE_SOURCE_ID = "STAGE";
+
+  /** Stage index of vectors that do not belong to any stage. */
+  public static final int NO_STAGE = -1;
+
+  /** Default half-width of the pressure plateau around a stage's target, in Pa (20 mbar). */
+  public static final double DEFAULT_PLATEAU_TOLERANCE_PA = 2000.0;
+
+  /** Default number of consecutive vectors off the plateau that end a stage early. */
+  public static final int DEFAULT_PLATEAU_EXIT_SAMPLES = 3;
+
+  private final MeasurementVectorStream source;
+  private final StageTaggingStep step;
+  private MeasurementVectorStream.Subscription sourceSubscription;
+
+  /**
+   * Creates a stage stream with the {@link #DEFAULT_PLATEAU_TOLERANCE_PA default} plateau
+   * tolerance.
+   *
+   * @param source the stream that provides the average pressure per vector
+   * @param testConfig test configuration with the stages and ambient pressure
+   */
+  public StageMeasurementVectorStream(MeasurementVectorStream source, TestConfig testConfig) {
+    this(source, testConfig, DEFAULT_PLATEAU_TOLERANCE_PA);
+  }
+
+  /**
+   * Creates a stage stream that ends a stage early after {@link #DEFAULT_PLATEAU_EXIT_SAMPLES}
+   * vectors off the plateau.
+   *
+   * @param source the stream that provides the average pressure per vector
+   * @param testConfig test configuration with the stages and ambient pressure
+   * @param plateauTolerancePa half-width of the plateau around each stage's target pressure, in Pa
+   * @throws IllegalArgumentException if the tolerance is not positive, or the configuration has
+   *     stages but no ambient pressure
+   */
+  public StageMeasurementVectorStream(
+      MeasurementVectorStream source, TestConfig testConfig, double plateauTolerancePa) {
+    this(source, testConfig, plateauTolerancePa, DEFAULT_PLATEAU_EXIT_SAMPLES);
+  }
+
+  /**
+   * Creates a stage stream.
+   *
+   * @param source the stream that provides the average pressure per vector
+   * @param testConfig test configuration with the stages and ambient pressure
+   * @param plateauTolerancePa half-width of the plateau around each stage's target pressure, in Pa
+   * @param plateauExitSamples number of consecutive vectors off the plateau that end a stage
+   *     before its duration has elapsed
+   * @throws IllegalArgumentException if the tolerance or the exit sample count is not positive, or
+   *     the configuration has stages but no ambient pressure
+   */
+  public StageMeasurementVectorStream(
+      MeasurementVectorStream source,
+      TestConfig testConfig,
+      double plateauTolerancePa,
+      int plateauExitSamples) {
+    this.step = new StageTaggingStep(testConfig, plateauTolerancePa, plateauExitSamples);
+    this.source = source;
+    this.sourceSubscription = source.subscribe(this::tagAndPublish);
+  }
+
+  /**
+   * Returns the stage index a vector was tagged with, or null if the vector carries no {@link
+   * #STAGE_SOURCE_ID} measurement.
+   */
+  public static Integer stageOf(MeasurementVector vector) {
+    return stageOf(vector.getMeasurementsMap());
+  }
+
+  /** Same as {@link #stageOf(MeasurementVector)} for measurements by source id. */
+  static Integer stageOf(Map<String, Measurement> measurements) {
+    Measurement m = measurements.get(STAGE_SOURCE_ID);
+    if (m == null || m.getValueInDefaultUnit() == null) {
+      return null;
+    }
+    return m.getValueInDefaultUnit().intValue();
+  }
+
+  private void tagAndPublish(MeasurementVector vector) {
+    if (vector.hasSevereError()) {
+      publish(vector);
+      return;
+    }
+    PipelineVector working = new PipelineVector(vector);
+    step.process(working);
+    publish(working.toVector());
+  }
+
+  /** Returns the index of the stage the last vector belonged to, or {@link #NO_STAGE}. */
+  public int getCurrentStage() {
+    return step.getCurrentStage();
+  }
+
+  /** Returns the number of configured stages. */
+  public int getStageCount() {
+    return step.getStageCount();
+  }
+
+  @Override
+  public List<SensorConfig> listSensors() {
+    return source.listSensors();
+  }
+
+  /** Stops publishing: unsubscribes from the source stream and returns before the first stage. */
+  public void stop() {
+    if (sourceSubscription != null) {
+      sourceSubscription.unsubscribe();
+      sourceSubscription = null;
+    }
+    step.reset();
+    clearSubscribers();
+  }
+}
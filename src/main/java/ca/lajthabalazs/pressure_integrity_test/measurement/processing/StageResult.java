@@ -0,0 +1,25 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Summary of one test stage, taken from the last vector of the stage.
+ *
+ * @param stageIndex 0-based stage index in test configuration order
+ * @param startTimeUtc timestamp of the first vector of the stage (ms since epoch)
+ * @param endTimeUtc timestamp of the last vector of the stage (ms since epoch)
+ * @param vectorCount number of vectors tagged with this stage
+ * @param leakageBySourceId leakage rates (v/v%/d) of the last vector, by source id
+ */
+public record StageResult(
+    int stageIndex,
+    long startTimeUtc,
+    long endTimeUtc,
+    int vectorCount,
+    Map<String, BigDecimal> leakageBySourceId) {
+
+  public StageResult {
+    leakageBySourceId = Map.copyOf(leakageBySourceId);
+  }
+}
@@ -0,0 +1,76 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
+
+import ca.lajthabalazs.pressure_integrity_test.measurement.Leakage;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Measurement;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import ca.lajthabalazs.pressure_integrity_test.measurement.streaming.MeasurementVectorStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects a {@link StageResult} per test stage from vectors tagged by {@link
+ * StageMeasurementVectorStream}, as they stream by.
+ *
+ * <p>Only the last vector of the running stage is kept; when the stage tag changes, a result is
+ * snapshotted from it. Because the leakage stages reset at stage boundaries, the leakage rates of
+ * that vector are the per-stage results, so no second pass over the data is needed. Vectors
+ * without a stage tag, outside any stage, or with a severe error are ignored. Not thread-safe;
+ * subscribe it to a single stream.
+ */
+public class StageResultCollector implements MeasurementVectorStream.MeasurementVectorHandler {
+
+  private final List<StageResult> results = new ArrayList<>();
+  private int openStage = StageMeasurementVectorStream.NO_STAGE;
+  private long openStartUtc;
+  private int openCount;
+  private MeasurementVector lastVector;
+
+  @Override
+  public void handle(MeasurementVector vector) {
+    if (vector.hasSevereError()) {
+      return;
+    }
+    Integer stage = StageMeasurementVectorStream.stageOf(vector);
+    if (stage == null) {
+      return;
+    }
+    if (stage != openStage) {
+      flush();
+      if (stage == StageMeasurementVectorStream.NO_STAGE) {
+        return;
+      }
+      openStage = stage;
+      openStartUtc = vector.getTimeUtc();
+    }
+    if (openStage != StageMeasurementVectorStream.NO_STAGE) {
+      openCount++;
+      lastVector = vector;
+    }
+  }
+
+  /** Closes the running stage, if any, and records its result (e.g. at the end of the test). */
+  public void flush() {
+    if (openStage == StageMeasurementVectorStream.NO_STAGE) {
+      return;
+    }
+    Map<String, BigDecimal> leakages = new LinkedHashMap<>();
+    for (Measurement m : lastVector.getMeasurements()) {
+      if (m instanceof Leakage) {
+        leakages.put(m.getSourceId(), m.getValueInDefaultUnit());
+      }
+    }
+    results.add(
+        new StageResult(openStage, openStartUtc, lastVector.getTimeUtc(), openCount, leakages));
+    openStage = StageMeasurementVectorStream.NO_STAGE;
+    openCount = 0;
+    lastVector = null;
+  }
+
+  /** Returns the results of the stages closed so far, in the order they ended. */
+  public List<StageResult> getResults() {
+    return List.copyOf(results);
+  }
+}
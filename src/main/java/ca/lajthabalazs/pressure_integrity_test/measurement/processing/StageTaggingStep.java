@@ -0,0 +1,156 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
+
+import ca.lajthabalazs.pressure_integrity_test.config.Duration;
+import ca.lajthabalazs.pressure_integrity_test.config.Quantity;
+import ca.lajthabalazs.pressure_integrity_test.config.TestConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.TestConfigStage;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Measurement;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Pressure;
+import ca.lajthabalazs.pressure_integrity_test.measurement.StageIndex;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Tags each vector with the index of the {@link TestConfig} stage it belongs to, as described in
+ * {@link StageMeasurementVectorStream}. Stateful. Used by {@link StageMeasurementVectorStream} and
+ * {@link Pipeline}.
+ */
+final class StageTaggingStep implements PipelineStep {
+
+  private final double[] targetPa;
+  private final long[] durationMs;
+  private final double plateauTolerancePa;
+  private final int plateauExitSamples;
+
+  private int currentStage = StageMeasurementVectorStream.NO_STAGE;
+  private int nextStage;
+  private long stageStartUtc;
+  private int offPlateauSamples; // consecutive vectors of the current stage off its plateau
+
+  /**
+   * @param testConfig test configuration with the stages and ambient pressure
+   * @param plateauTolerancePa half-width of the plateau around each stage's target pressure, in Pa
+   * @param plateauExitSamples number of consecutive vectors off the plateau that end a stage early
+   * @throws IllegalArgumentException if the tolerance or the exit sample count is not positive, or
+   *     the configuration has stages but no ambient pressure
+   */
+  StageTaggingStep(TestConfig testConfig, double plateauTolerancePa, int plateauExitSamples) {
+    if (!(plateauTolerancePa > 0)) {
+      throw new IllegalArgumentException("plateauTolerancePa must be positive");
+    }
+    if (plateauExitSamples < 1) {
+      throw new IllegalArgumentException("plateauExitSamples must be positive");
+    }
+    List<TestConfigStage> stages =
+        testConfig.getStages() == null ? List.of() : testConfig.getStages();
+    this.targetPa = new double[stages.size()];
+    this.durationMs = new long[stages.size()];
+    if (!stages.isEmpty()) {
+      if (testConfig.getAmbientPressure() == null) {
+        throw new IllegalArgumentException("Test config has stages but no ambient pressure");
+      }
+      double ambientPa = toPascal(testConfig.getAmbientPressure());
+      for (int i = 0; i < stages.size(); i++) {
+        targetPa[i] = ambientPa + toPascal(stages.get(i).getOverpressure());
+        durationMs[i] = toMillis(stages.get(i).getDuration());
+      }
+    }
+    this.plateauTolerancePa = plateauTolerancePa;
+    this.plateauExitSamples = plateauExitSamples;
+  }
+
+  private static double toPascal(Quantity quantity) {
+    return new Pressure(0L, "", quantity.getValue(), quantity.getUnit())
+        .getPascalValue()
+        .doubleValue();
+  }
+
+  private static long toMillis(Duration duration) {
+    return (duration.getHours() * 60L + duration.getMinutes()) * 60_000L;
+  }
+
+  @Override
+  public String getName() {
+    return "testStages";
+  }
+
+  @Override
+  public boolean isStateless() {
+    return false;
+  }
+
+  @Override
+  public boolean process(PipelineVector vector) {
+    long t = vector.getTimeUtc();
+    Measurement avg =
+        vector
+            .getMeasurementsMap()
+            .get(AveragePressureMeasurementVectorStream.AVG_PRESSURE_SOURCE_ID);
+    Double pressurePa =
+        avg == null || avg.getValueInDefaultUnit() == null
+            ? null
+            : avg.getValueInDefaultUnit().doubleValue();
+    advance(t, pressurePa);
+    vector.putMeasurement(
+        new StageIndex(t, StageMeasurementVectorStream.STAGE_SOURCE_ID, currentStage));
+    return true;
+  }
+
+  private void advance(long t, Double pressurePa) {
+    if (currentStage != StageMeasurementVectorStream.NO_STAGE) {
+      boolean elapsed = t - stageStartUtc > durationMs[currentStage];
+      if (pressurePa != null) {
+        offPlateauSamples = onPlateau(currentStage, pressurePa) ? 0 : offPlateauSamples + 1;
+      }
+      if (!elapsed && offPlateauSamples < plateauExitSamples) {
+        return;
+      }
+      nextStage = currentStage + 1;
+      currentStage = StageMeasurementVectorStream.NO_STAGE;
+      offPlateauSamples = 0;
+    }
+    if (nextStage < targetPa.length && pressurePa != null && onPlateau(nextStage, pressurePa)) {
+      currentStage = nextStage;
+      stageStartUtc = t;
+    }
+  }
+
+  private boolean onPlateau(int stage, double pressurePa) {
+    return Math.abs(pressurePa - targetPa[stage]) <= plateauTolerancePa;
+  }
+
+  /** Returns the index of the stage the last vector belonged to, or {@code NO_STAGE}. */
+  int getCurrentStage() {
+    return currentStage;
+  }
+
+  /** Returns the number of configured stages. */
+  int getStageCount() {
+    return targetPa.length;
+  }
+
+  @Override
+  public void writeState(DataOutput out) throws IOException {
+    out.writeInt(currentStage);
+    out.writeInt(nextStage);
+    out.writeLong(stageStartUtc);
+    out.writeInt(offPlateauSamples);
+  }
+
+  @Override
+  public void readState(DataInput in) throws IOException {
+    currentStage = in.readInt();
+    nextStage = in.readInt();
+    stageStartUtc = in.readLong();
+    offPlateauSamples = in.readInt();
+  }
+
+  @Override
+  public void reset() {
+    currentStage = StageMeasurementVectorStream.NO_STAGE;
+    nextStage = 0;
+    offPlateauSamples = 0;
+  }
+}
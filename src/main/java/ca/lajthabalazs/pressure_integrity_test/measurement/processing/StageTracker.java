@@ -0,0 +1,53 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
+
+import ca.lajthabalazs.pressure_integrity_test.measurement.Measurement;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Follows the stage tag of the vectors seen by a leakage stage (see {@link
+ * StageMeasurementVectorStream}), so the stage can restart its computation when the test stage
+ * changes: the leakage of a stage is computed from its own points only. Vectors without a stage
+ * tag keep the current stage.
+ */
+final class StageTracker {
+
+  /** Stage tag of the last tagged vector; null while vectors carry no stage tag. */
+  private Integer stage;
+
+  /** Returns true if the vector is tagged with a different stage than the previous tagged one. */
+  boolean changed(MeasurementVector vector) {
+    return changed(vector.getMeasurementsMap());
+  }
+
+  /** Same as {@link #changed(MeasurementVector)} for measurements by source id. */
+  boolean changed(Map<String, Measurement> measurements) {
+    Integer vectorStage = StageMeasurementVectorStream.stageOf(measurements);
+    if (vectorStage == null || vectorStage.equals(stage)) {
+      return false;
+    }
+    stage = vectorStage;
+    return true;
+  }
+
+  /** Forgets the current stage. */
+  void reset() {
+    stage = null;
+  }
+
+  /** Writes the current stage for a checkpoint. */
+  void writeState(DataOutput out) throws IOException {
+    out.writeBoolean(stage != null);
+    if (stage != null) {
+      out.writeInt(stage);
+    }
+  }
+
+  /** Restores the stage written by {@link #writeState}. */
+  void readState(DataInput in) throws IOException {
+    stage = in.readBoolean() ? in.readInt() : null;
+  }
+}
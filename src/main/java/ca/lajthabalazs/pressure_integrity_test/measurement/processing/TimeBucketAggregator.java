@@ -0,0 +1,446 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
+
+import ca.lajthabalazs.pressure_integrity_test.config.SensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.measurement.ErrorSeverity;
+import ca.lajthabalazs.pressure_integrity_test.measurement.GasConstant;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Humidity;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Leakage;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Measurement;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementError;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Pressure;
+import ca.lajthabalazs.pressure_integrity_test.measurement.StageIndex;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Temperature;
+import ca.lajthabalazs.pressure_integrity_test.measurement.streaming.MeasurementVectorStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Downsamples a measurement vector stream into fixed time buckets, for several bucket widths in
+ * parallel (e.g. 1 min, 10 min and 1 h).
+ *
+ * <p>Every sensor has a slot: slots follow the source's {@link
+ * MeasurementVectorStream#listSensors() schema}, and sensors outside the schema get a slot appended
+ * on first sight. For each bucket width the open bucket keeps primitive per-slot accumulators
+ * (count, min, max, sum, last), so adding a vector costs one array update per measurement and width
+ * and nothing is allocated per value.
+ *
+ * <p>Buckets are aligned to multiples of their width since the epoch and are closed on time: when a
+ * vector falls into a later bucket, or when {@link #advanceTo(long)} moves past the bucket's end.
+ * Empty buckets are skipped. Vectors earlier than the open bucket are counted as late and ignored.
+ * Measurements of sensors with a severe error in their vector and measurements without a value are
+ * not aggregated.
+ *
+ * <p>Each closed bucket is delivered to {@link #subscribe(BucketSummaryHandler) summary handlers}
+ * and, as a vector of per-sensor means stamped with the bucket start, to the subscribers of {@link
+ * #meanStream(long)}, so existing vector consumers such as charts and CSV writers can be fed the
+ * downsampled data unchanged. All methods are synchronized.
+ *
+ * <p>{@link #writeState} and {@link #readState} save and restore the slots and the open buckets,
+ * so a restarted test can go on with the buckets it was filling.
+ */
+public final class TimeBucketAggregator {
+
+  private final MeasurementVectorStream source;
+  private final Map<String, Integer> slotBySensorId = new HashMap<>();
+  private final List<String> sensorIds = new ArrayList<>();
+  private final Bucket[] buckets;
+  private final List<BucketSummaryHandler> handlers = new CopyOnWriteArrayList<>();
+  private MeasurementVectorStream.Subscription sourceSubscription;
+  private long lateCount;
+
+  /**
+   * Creates an aggregator and subscribes it to the source.
+   *
+   * @param source the stream to downsample
+   * @param bucketSizesMs bucket widths in milliseconds (not empty, positive, distinct)
+   * @throws IllegalArgumentException if the widths are empty, not positive or not distinct
+   */
+  public TimeBucketAggregator(MeasurementVectorStream source, List<Long> bucketSizesMs) {
+    if (bucketSizesMs.isEmpty()) {
+      throw new IllegalArgumentException("At least one bucket size is required");
+    }
+    Set<Long> seen = new HashSet<>();
+    this.buckets = new Bucket[bucketSizesMs.size()];
+    for (int i = 0; i < buckets.length; i++) {
+      long size = bucketSizesMs.get(i);
+      if (size <= 0 || !seen.add(size)) {
+        throw new IllegalArgumentException("Bucket sizes must be positive and distinct: " + size);
+      }
+      buckets[i] = new Bucket(size, source);
+    }
+    for (SensorConfig sensor : source.listSensors()) {
+      slotOf(sensor.getId());
+    }
+    this.source = source;
+    this.sourceSubscription = source.subscribe(this::add);
+  }
+
+  private int slotOf(String sensorId) {
+    Integer slot = slotBySensorId.get(sensorId);
+    if (slot == null) {
+      slot = sensorIds.size();
+      slotBySensorId.put(sensorId, slot);
+      sensorIds.add(sensorId);
+    }
+    return slot;
+  }
+
+  private synchronized void add(MeasurementVector vector) {
+    long t = vector.getTimeUtc();
+    advanceTo(t);
+    Set<String> severe = severeSensorIds(vector);
+    boolean late = false;
+    for (Bucket bucket : buckets) {
+      long start = Math.floorDiv(t, bucket.sizeMs) * bucket.sizeMs;
+      if (start < bucket.floorUtc) {
+        late = true;
+        continue;
+      }
+      if (!bucket.open) {
+        bucket.openAt(start);
+      }
+      for (Measurement m : vector.getMeasurementsMap().values()) {
+        BigDecimal value = m.getValueInDefaultUnit();
+        if (value == null || severe.contains(m.getSourceId())) {
+          continue;
+        }
+        int slot = slotOf(m.getSourceId());
+        bucket.add(slot, m, value.doubleValue());
+      }
+    }
+    if (late) {
+      lateCount++;
+    }
+  }
+
+  private static Set<String> severeSensorIds(MeasurementVector vector) {
+    if (!vector.hasSevereError()) {
+      return Set.of();
+    }
+    Set<String> ids = new HashSet<>();
+    for (MeasurementError error : vector.getErrors()) {
+      if (error.severity() == ErrorSeverity.SEVERE) {
+        ids.add(error.sensorId());
+      }
+    }
+    return ids;
+  }
+
+  /**
+   * Closes every open bucket that ends at or before the given time (e.g. driven by a clock when
+   * the source is quiet).
+   *
+   * @param timeUtc current time (ms since epoch)
+   */
+  public synchronized void advanceTo(long timeUtc) {
+    for (Bucket bucket : buckets) {
+      if (bucket.open && timeUtc >= bucket.startUtc + bucket.sizeMs) {
+        close(bucket);
+      }
+    }
+  }
+
+  /** Closes every open bucket regardless of time, e.g. at the end of a test or replay. */
+  public synchronized void flush() {
+    for (Bucket bucket : buckets) {
+      if (bucket.open) {
+        close(bucket);
+      }
+    }
+  }
+
+  private void close(Bucket bucket) {
+    BucketSummary summary = bucket.summarize(sensorIds);
+    bucket.reset();
+    bucket.floorUtc = bucket.startUtc + bucket.sizeMs;
+    for (BucketSummaryHandler handler : handlers) {
+      try {
+        handler.handle(summary);
+      } catch (Exception e) {
+        System.err.println("Error in bucket summary handler: " + e.getMessage());
+      }
+    }
+    bucket.means.publishMeans(summary, bucket.templates, slotBySensorId);
+  }
+
+  /**
+   * Returns the stream of per-sensor mean vectors for the given bucket width.
+   *
+   * @param bucketMs one of the bucket widths given at construction
+   * @throws IllegalArgumentException if the width was not configured
+   */
+  public MeasurementVectorStream meanStream(long bucketMs) {
+    for (Bucket bucket : buckets) {
+      if (bucket.sizeMs == bucketMs) {
+        return bucket.means;
+      }
+    }
+    throw new IllegalArgumentException("Bucket size not configured: " + bucketMs);
+  }
+
+  /**
+   * Subscribes to closed buckets of every width.
+   *
+   * @param handler receives each bucket summary once it is closed
+   * @return a subscription that can be used to unsubscribe
+   */
+  public MeasurementVectorStream.Subscription subscribe(BucketSummaryHandler handler) {
+    handlers.add(handler);
+    return () -> handlers.remove(handler);
+  }
+
+  /** Returns the number of vectors that arrived after their bucket had been closed. */
+  public synchronized long getLateCount() {
+    return lateCount;
+  }
+
+  /**
+   * Writes the sensor slots, the open buckets and the late count.
+   *
+   * @throws IOException if the output fails
+   */
+  public synchronized void writeState(DataOutput out) throws IOException {
+    out.writeInt(sensorIds.size());
+    for (String sensorId : sensorIds) {
+      out.writeUTF(sensorId);
+    }
+    for (Bucket bucket : buckets) {
+      bucket.writeState(out);
+    }
+    out.writeLong(lateCount);
+  }
+
+  /**
+   * Replaces the state with one written by {@link #writeState} of an aggregator with the same
+   * bucket widths.
+   *
+   * @throws IOException if the input ends early or holds an unknown measurement type
+   */
+  public synchronized void readState(DataInput in) throws IOException {
+    slotBySensorId.clear();
+    sensorIds.clear();
+    int sensors = in.readInt();
+    for (int i = 0; i < sensors; i++) {
+      slotOf(in.readUTF());
+    }
+    for (Bucket bucket : buckets) {
+      bucket.readState(in, sensorIds);
+    }
+    lateCount = in.readLong();
+  }
+
+  /**
+   * Stops aggregating: unsubscribes from the source, discards open buckets without publishing them
+   * and clears all subscribers.
+   */
+  public synchronized void stop() {
+    if (sourceSubscription != null) {
+      sourceSubscription.unsubscribe();
+      sourceSubscription = null;
+    }
+    for (Bucket bucket : buckets) {
+      bucket.reset();
+      bucket.floorUtc = Long.MIN_VALUE;
+      bucket.means.stop();
+    }
+    handlers.clear();
+    lateCount = 0;
+  }
+
+  /** Per-width open bucket with primitive per-slot accumulators. */
+  private static final class Bucket {
+    final long sizeMs;
+    final MeanStream means;
+    boolean open;
+    long startUtc;
+
+    /** Start of the earliest bucket that may still receive values. */
+    long floorUtc = Long.MIN_VALUE;
+    int[] counts = new int[0];
+    double[] min = new double[0];
+    double[] max = new double[0];
+    double[] sum = new double[0];
+    double[] last = new double[0];
+
+    /** Latest measurement per slot, kept to rebuild typed measurements for the mean stream. */
+    Measurement[] templates = new Measurement[0];
+
+    Bucket(long sizeMs, MeasurementVectorStream source) {
+      this.sizeMs = sizeMs;
+      this.means = new MeanStream(source);
+    }
+
+    void openAt(long start) {
+      open = true;
+      startUtc = start;
+      floorUtc = start;
+    }
+
+    void add(int slot, Measurement m, double value) {
+      if (slot >= counts.length) {
+        grow(slot + 1);
+      }
+      if (counts[slot] == 0 || value < min[slot]) {
+        min[slot] = value;
+      }
+      if (counts[slot] == 0 || value > max[slot]) {
+        max[slot] = value;
+      }
+      counts[slot]++;
+      sum[slot] += value;
+      last[slot] = value;
+      templates[slot] = m;
+    }
+
+    private void grow(int needed) {
+      int capacity = Math.max(needed, counts.length * 2);
+      counts = Arrays.copyOf(counts, capacity);
+      min = Arrays.copyOf(min, capacity);
+      max = Arrays.copyOf(max, capacity);
+      sum = Arrays.copyOf(sum, capacity);
+      last = Arrays.copyOf(last, capacity);
+      templates = Arrays.copyOf(templates, capacity);
+    }
+
+    BucketSummary summarize(List<String> sensorIds) {
+      int n = 0;
+      for (int count : counts) {
+        if (count > 0) {
+          n++;
+        }
+      }
+      String[] ids = new String[n];
+      int[] c = new int[n];
+      double[] mn = new double[n];
+      double[] mx = new double[n];
+      double[] mean = new double[n];
+      double[] lst = new double[n];
+      int k = 0;
+      for (int slot = 0; slot < counts.length; slot++) {
+        if (counts[slot] == 0) {
+          continue;
+        }
+        ids[k] = sensorIds.get(slot);
+        c[k] = counts[slot];
+        mn[k] = min[slot];
+        mx[k] = max[slot];
+        mean[k] = sum[slot] / counts[slot];
+        lst[k] = last[slot];
+        k++;
+      }
+      return new BucketSummary(sizeMs, startUtc, ids, c, mn, mx, mean, lst);
+    }
+
+    void reset() {
+      open = false;
+      Arrays.fill(counts, 0);
+      Arrays.fill(sum, 0.0);
+    }
+
+    /** Writes the bucket; slots without values are written as a zero count. */
+    void writeState(DataOutput out) throws IOException {
+      out.writeBoolean(open);
+      out.writeLong(startUtc);
+      out.writeLong(floorUtc);
+      out.writeInt(counts.length);
+      for (int slot = 0; slot < counts.length; slot++) {
+        out.writeInt(counts[slot]);
+        if (counts[slot] > 0) {
+          out.writeDouble(min[slot]);
+          out.writeDouble(max[slot]);
+          out.writeDouble(sum[slot]);
+          out.writeDouble(last[slot]);
+          out.writeUTF(templates[slot].getClass().getSimpleName());
+        }
+      }
+    }
+
+    void readState(DataInput in, List<String> sensorIds) throws IOException {
+      reset();
+      open = in.readBoolean();
+      startUtc = in.readLong();
+      floorUtc = in.readLong();
+      int slots = in.readInt();
+      if (slots > counts.length) {
+        grow(slots);
+      }
+      for (int slot = 0; slot < slots; slot++) {
+        counts[slot] = in.readInt();
+        if (counts[slot] > 0) {
+          min[slot] = in.readDouble();
+          max[slot] = in.readDouble();
+          sum[slot] = in.readDouble();
+          last[slot] = in.readDouble();
+          templates[slot] = template(in.readUTF(), startUtc, sensorIds.get(slot));
+        }
+      }
+    }
+
+    /** Returns a measurement of the given type, to be used as a template for the mean stream. */
+    private static Measurement template(String type, long timeUtc, String sensorId)
+        throws IOException {
+      return switch (type) {
+        case "Pressure" -> new Pressure(timeUtc, sensorId, BigDecimal.ZERO);
+        case "Temperature" -> new Temperature(timeUtc, sensorId, BigDecimal.ZERO);
+        case "Humidity" -> new Humidity(timeUtc, sensorId, BigDecimal.ZERO);
+        case "GasConstant" -> new GasConstant(timeUtc, sensorId, BigDecimal.ZERO);
+        case "Leakage" -> new Leakage(timeUtc, sensorId, BigDecimal.ZERO);
+        case "StageIndex" -> new StageIndex(timeUtc, sensorId, BigDecimal.ZERO);
+        default -> throw new IOException("Unknown measurement type: " + type);
+      };
+    }
+  }
+
+  /** Publishes one vector of per-sensor means per closed bucket. */
+  private static final class MeanStream extends MeasurementVectorStream {
+    private final MeasurementVectorStream source;
+
+    MeanStream(MeasurementVectorStream source) {
+      this.source = source;
+    }
+
+    void publishMeans(
+        BucketSummary summary, Measurement[] templates, Map<String, Integer> slotBySensorId) {
+      if (getSubscribers().isEmpty()) {
+        return;
+      }
+      long t = summary.startTimeUtc();
+      List<Measurement> out = new ArrayList<>(summary.size());
+      for (int i = 0; i < summary.size(); i++) {
+        Measurement template = templates[slotBySensorId.get(summary.sensorId(i))];
+        out.add(
+            template
+                .withNewValueInDefaultUnit(BigDecimal.valueOf(summary.mean(i)))
+                .withNewTimestamp(t));
+      }
+      publish(new MeasurementVector(t, out));
+    }
+
+    @Override
+    public List<SensorConfig> listSensors() {
+      return source.listSensors();
+    }
+
+    void stop() {
+      clearSubscribers();
+    }
+  }
+
+  /** Handler for closed bucket summaries. */
+  @FunctionalInterface
+  public interface BucketSummaryHandler {
+    /** Handles a closed bucket. */
+    void handle(BucketSummary summary);
+  }
+}
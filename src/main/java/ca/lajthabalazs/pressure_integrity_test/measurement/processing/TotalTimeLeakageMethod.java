@@ -0,0 +1,66 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Total-time leakage (ANSI/ANS-56.8): every point after the first gives a measured leakage rate
+ * relative to the first point, Lᵢ = (W₁ − Wᵢ)/(W₁·Δtᵢ); the method fits a line through the
+ * (tᵢ, Lᵢ) pairs and reports its value at the latest point.
+ *
+ * <p>The containment volume is constant, so density stands in for mass. Rates are in v/v%/d.
+ */
+public final class TotalTimeLeakageMethod implements LeakageMethod {
+
+  /** Source id of the total-time leakage rate. */
+  public static final String SOURCE_ID = "LEAKAGE_TOTAL_TIME";
+
+  private final LinearRegressionAccumulator fit = new LinearRegressionAccumulator();
+  private long firstTimeUtc;
+  private double firstRho = Double.NaN;
+
+  @Override
+  public String getSourceId() {
+    return SOURCE_ID;
+  }
+
+  @Override
+  public double update(long timeUtc, double rho) {
+    if (Double.isNaN(firstRho)) {
+      firstTimeUtc = timeUtc;
+      firstRho = rho;
+      return Double.NaN;
+    }
+    double elapsedSeconds = (timeUtc - firstTimeUtc) / 1000.0;
+    if (elapsedSeconds <= 0) {
+      return Double.NaN;
+    }
+    double measured = LeakageMath.L_SCALE * (firstRho - rho) / (firstRho * elapsedSeconds);
+    fit.add(elapsedSeconds, measured);
+    if (!fit.hasFit()) {
+      return measured;
+    }
+    return fit.valueAt(elapsedSeconds);
+  }
+
+  @Override
+  public void reset() {
+    fit.clear();
+    firstRho = Double.NaN;
+  }
+
+  @Override
+  public void writeState(DataOutput out) throws IOException {
+    fit.writeState(out);
+    out.writeLong(firstTimeUtc);
+    out.writeDouble(firstRho);
+  }
+
+  @Override
+  public void readState(DataInput in) throws IOException {
+    fit.readState(in);
+    firstTimeUtc = in.readLong();
+    firstRho = in.readDouble();
+  }
+}
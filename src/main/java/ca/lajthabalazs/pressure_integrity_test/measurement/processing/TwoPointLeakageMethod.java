@@ -0,0 +1,53 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Two-point leakage: the slope of y = ln(ρ/ρ∞ − 1) between the previous and the current point, as
+ * in {@link LeakageMeasurementVectorStream}.
+ */
+public final class TwoPointLeakageMethod implements LeakageMethod {
+
+  /** Source id of the two-point leakage rate. */
+  public static final String SOURCE_ID = "LEAKAGE_TWO_POINT";
+
+  private long prevTimeUtc;
+  private double prevY = Double.NaN;
+
+  @Override
+  public String getSourceId() {
+    return SOURCE_ID;
+  }
+
+  @Override
+  public double update(long timeUtc, double rho) {
+    double y = LeakageMath.regressionVariable(rho);
+    double leakage = Double.NaN;
+    if (!Double.isNaN(prevY) && timeUtc > prevTimeUtc) {
+      double slopePerSecond = (y - prevY) / ((timeUtc - prevTimeUtc) / 1000.0);
+      leakage = LeakageMath.leakageFromSlope(slopePerSecond, prevY);
+    }
+    prevTimeUtc = timeUtc;
+    prevY = y;
+    return leakage;
+  }
+
+  @Override
+  public void reset() {
+    prevY = Double.NaN;
+  }
+
+  @Override
+  public void writeState(DataOutput out) throws IOException {
+    out.writeLong(prevTimeUtc);
+    out.writeDouble(prevY);
+  }
+
+  @Override
+  public void readState(DataInput in) throws IOException {
+    prevTimeUtc = in.readLong();
+    prevY = in.readDouble();
+  }
+}
@@ -0,0 +1,258 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.streaming;
+
+import ca.lajthabalazs.pressure_integrity_test.config.SensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.measurement.ErrorSeverity;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Measurement;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementError;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges a data stream into a timing stream, aligning every sensor's value to the tick time.
+ *
+ * <p>Unlike {@link MeasurementVectorStreamMerger}, which holds the latest sample regardless of its
+ * age, this merger keeps the last few samples of each sensor in a fixed-size ring buffer and
+ * produces the value at the tick time:
+ *
+ * <ul>
+ *   <li>If a sample exists exactly at the tick time, it is used unchanged.
+ *   <li>If the tick lies between two buffered samples, the value is linearly interpolated.
+ *   <li>If the tick lies outside the buffered samples but within {@code maxExtrapolationMs} of the
+ *       nearest one, the value is linearly extrapolated from the two nearest samples (or held, if
+ *       only one sample exists) and a {@link ErrorSeverity#WARNING} {@link MeasurementError} is
+ *       added for the sensor.
+ *   <li>Otherwise the sensor is omitted from the merged vector and a WARNING is added.
+ * </ul>
+ *
+ * <p>In live acquisition a tick usually arrives before the next sample of a slower device, so its
+ * values are extrapolated (and flagged). When the timing stream is replayed or delayed behind the
+ * data stream, ticks fall between samples and are interpolated.
+ *
+ * <p>Memory is constant: each sensor has {@code ringCapacity} samples. Each tick costs
+ * O(sensors × ringCapacity). Samples that are older than the newest buffered sample of the same
+ * sensor are ignored, as are samples without a value; a sample with the same timestamp replaces
+ * the newest one. Merged measurements are ordered like the data stream's {@link #listSensors()},
+ * then by first arrival.
+ */
+public class InterpolatingMeasurementVectorStreamMerger extends MeasurementVectorStream {
+
+  /** Default number of samples kept per sensor. */
+  public static final int DEFAULT_RING_CAPACITY = 4;
+
+  private final MeasurementVectorStream dataStream;
+  private final int ringCapacity;
+  private final long maxExtrapolationMs;
+  private final Object slotLock = new Object();
+  private final Map<String, SampleRing> ringBySensorId = new HashMap<>();
+  private volatile SampleRing[] rings;
+
+  private MeasurementVectorStream.Subscription timingSubscription;
+  private MeasurementVectorStream.Subscription dataSubscription;
+
+  /**
+   * Creates an interpolating merger with {@link #DEFAULT_RING_CAPACITY} samples per sensor.
+   *
+   * @param timingStream stream whose vectors define the tick times
+   * @param dataStream stream providing sensor samples
+   * @param maxExtrapolationMs how far (ms) beyond the nearest sample a value may be extrapolated
+   */
+  public InterpolatingMeasurementVectorStreamMerger(
+      MeasurementVectorStream timingStream,
+      MeasurementVectorStream dataStream,
+      long maxExtrapolationMs) {
+    this(timingStream, dataStream, maxExtrapolationMs, DEFAULT_RING_CAPACITY);
+  }
+
+  /**
+   * Creates an interpolating merger.
+   *
+   * @param timingStream stream whose vectors define the tick times
+   * @param dataStream stream providing sensor samples
+   * @param maxExtrapolationMs how far (ms) beyond the nearest sample a value may be extrapolated;
+   *     must not be negative
+   * @param ringCapacity samples kept per sensor; must be at least 2
+   * @throws IllegalArgumentException if an argument is out of range
+   */
+  public InterpolatingMeasurementVectorStreamMerger(
+      MeasurementVectorStream timingStream,
+      MeasurementVectorStream dataStream,
+      long maxExtrapolationMs,
+      int ringCapacity) {
+    if (maxExtrapolationMs < 0) {
+      throw new IllegalArgumentException("maxExtrapolationMs must not be negative");
+    }
+    if (ringCapacity < 2) {
+      throw new IllegalArgumentException("ringCapacity must be at least 2");
+    }
+    this.dataStream = dataStream;
+    this.maxExtrapolationMs = maxExtrapolationMs;
+    this.ringCapacity = ringCapacity;
+    List<SampleRing> initial = new ArrayList<>();
+    for (SensorConfig sensor : dataStream.listSensors()) {
+      String id = sensor.getId();
+      if (id != null && !ringBySensorId.containsKey(id)) {
+        SampleRing ring = new SampleRing(id, ringCapacity);
+        ringBySensorId.put(id, ring);
+        initial.add(ring);
+      }
+    }
+    this.rings = initial.toArray(new SampleRing[0]);
+
+    this.dataSubscription =
+        dataStream.subscribe(
+            vector -> {
+              for (Measurement m : vector.getMeasurementsMap().values()) {
+                if (m.getValueInDefaultUnit() != null) {
+                  ringFor(m.getSourceId()).add(m);
+                }
+              }
+            });
+    this.timingSubscription =
+        timingStream.subscribe(timingVector -> publish(align(timingVector.getTimeUtc())));
+  }
+
+  private SampleRing ringFor(String sensorId) {
+    synchronized (slotLock) {
+      SampleRing ring = ringBySensorId.get(sensorId);
+      if (ring == null) {
+        ring = new SampleRing(sensorId, ringCapacity);
+        ringBySensorId.put(sensorId, ring);
+        SampleRing[] grown = new SampleRing[rings.length + 1];
+        System.arraycopy(rings, 0, grown, 0, rings.length);
+        grown[rings.length] = ring;
+        rings = grown;
+      }
+      return ring;
+    }
+  }
+
+  private MeasurementVector align(long tickTime) {
+    SampleRing[] current = rings;
+    List<Measurement> aligned = new ArrayList<>(current.length);
+    List<MeasurementError> errors = new ArrayList<>();
+    for (SampleRing ring : current) {
+      ring.alignTo(tickTime, maxExtrapolationMs, aligned, errors);
+    }
+    return new MeasurementVector(tickTime, aligned, errors);
+  }
+
+  /** Returns the data stream's sensor list, which defines the order of merged measurements. */
+  @Override
+  public List<SensorConfig> listSensors() {
+    return dataStream.listSensors();
+  }
+
+  /** Stops merging: unsubscribes from both streams and drops all buffered samples. */
+  public void stop() {
+    if (timingSubscription != null) {
+      timingSubscription.unsubscribe();
+      timingSubscription = null;
+    }
+    if (dataSubscription != null) {
+      dataSubscription.unsubscribe();
+      dataSubscription = null;
+    }
+    for (SampleRing ring : rings) {
+      ring.clear();
+    }
+    clearSubscribers();
+  }
+
+  /** Fixed-capacity, time-ordered ring of the most recent samples of one sensor. */
+  private static final class SampleRing {
+    private final String sensorId;
+    private final long[] times;
+    private final double[] values;
+    private final Measurement[] samples;
+    private int newest = -1;
+    private int count;
+
+    SampleRing(String sensorId, int capacity) {
+      this.sensorId = sensorId;
+      this.times = new long[capacity];
+      this.values = new double[capacity];
+      this.samples = new Measurement[capacity];
+    }
+
+    synchronized void add(Measurement m) {
+      long t = m.getTimeUtc();
+      if (count > 0 && t < times[newest]) {
+        return;
+      }
+      if (count == 0 || t > times[newest]) {
+        newest = (newest + 1) % times.length;
+        count = Math.min(count + 1, times.length);
+      }
+      times[newest] = t;
+      values[newest] = m.getValueInDefaultUnit().doubleValue();
+      samples[newest] = m;
+    }
+
+    synchronized void clear() {
+      count = 0;
+      newest = -1;
+      Arrays.fill(samples, null);
+    }
+
+    /** Index of the i-th sample counted from the oldest (0) to the newest (count - 1). */
+    private int at(int i) {
+      return Math.floorMod(newest - (count - 1) + i, times.length);
+    }
+
+    synchronized void alignTo(
+        long t, long maxExtrapolationMs, List<Measurement> out, List<MeasurementError> errors) {
+      if (count == 0) {
+        return;
+      }
+      int oldestIdx = at(0);
+      if (t > times[newest] || t < times[oldestIdx]) {
+        boolean after = t > times[newest];
+        long gap = after ? t - times[newest] : times[oldestIdx] - t;
+        if (gap > maxExtrapolationMs) {
+          errors.add(
+              new MeasurementError(
+                  sensorId, ErrorSeverity.WARNING, "No sample within " + gap + " ms of tick"));
+          return;
+        }
+        int near = after ? newest : oldestIdx;
+        double value = values[near];
+        if (count > 1) {
+          int other = after ? at(count - 2) : at(1);
+          value = interpolate(times[near], values[near], times[other], values[other], t);
+        }
+        out.add(valueAt(samples[near], value, t));
+        errors.add(
+            new MeasurementError(
+                sensorId, ErrorSeverity.WARNING, "Extrapolated " + gap + " ms beyond sample"));
+        return;
+      }
+      // Oldest <= t <= newest: find the bracketing pair, scanning from the newest sample.
+      for (int i = count - 1; i >= 0; i--) {
+        int idx = at(i);
+        if (times[idx] == t) {
+          out.add(samples[idx]);
+          return;
+        }
+        if (times[idx] < t) {
+          int next = at(i + 1);
+          double value = interpolate(times[idx], values[idx], times[next], values[next], t);
+          out.add(valueAt(samples[idx], value, t));
+          return;
+        }
+      }
+    }
+
+    private static double interpolate(long t0, double v0, long t1, double v1, long t) {
+      return v0 + (v1 - v0) * (double) (t - t0) / (double) (t1 - t0);
+    }
+
+    private static Measurement valueAt(Measurement template, double value, long t) {
+      return template.withNewValueInDefaultUnit(BigDecimal.valueOf(value)).withNewTimestamp(t);
+    }
+  }
+}
@@ -0,0 +1,287 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.streaming;
+
+import ca.lajthabalazs.pressure_integrity_test.config.SensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Measurement;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Merges any number of source streams into one stream ordered by timestamp.
+ *
+ * <p>Every source has a bounded buffer of pending vectors, kept sorted by timestamp. A min-heap
+ * holds the index of each source whose buffer is not empty, keyed by the timestamp of that
+ * buffer's head, so the globally earliest pending vector is found in O(log N). Vectors are released
+ * once they fall behind the <em>watermark</em>: the latest timestamp seen from any source minus the
+ * configured lateness window. A vector that arrives with a timestamp earlier than the last released
+ * one can no longer be placed in order; it is dropped and counted (see {@link #getLateCount()}). If
+ * a source's buffer fills up, the earliest vectors are released before the watermark reaches them,
+ * so memory stays bounded even if another source stalls.
+ *
+ * <p>The merger can emit in two modes:
+ *
+ * <ul>
+ *   <li>{@link Mode#INTERLEAVED}: every source vector is published unchanged, in timestamp order.
+ *       Vectors with equal timestamps are published in source order.
+ *   <li>{@link Mode#TICK_ALIGNED}: the first source is the timing source. Vectors of the other
+ *       sources update a {@link LatestValueBoard}; each timing vector publishes one combined vector
+ *       with the timing timestamp and errors, holding the latest value of every sensor seen so far.
+ *       Because data is released in timestamp order, a combined vector contains exactly the samples
+ *       taken at or before its tick, regardless of the order in which the sources delivered them.
+ * </ul>
+ *
+ * <p>Vectors are released from whichever source thread delivered the vector that advanced the
+ * watermark; delivery to subscribers is serialized. Call {@link #flush()} at the end of a recording
+ * to release vectors still held back by the lateness window.
+ */
+public class KWayMeasurementVectorStreamMerger extends MeasurementVectorStream {
+
+  /** How merged vectors are emitted. */
+  public enum Mode {
+    /** Publish every source vector unchanged, in timestamp order. */
+    INTERLEAVED,
+    /** Publish one combined vector per vector of the first (timing) source. */
+    TICK_ALIGNED
+  }
+
+  /** Default number of vectors buffered per source. */
+  public static final int DEFAULT_BUFFER_CAPACITY = 64;
+
+  private final List<MeasurementVectorStream> sources;
+  private final Mode mode;
+  private final long latenessMs;
+  private final int bufferCapacity;
+  private final List<ArrayDeque<MeasurementVector>> buffers;
+  private final PriorityQueue<Integer> heads;
+  private final LatestValueBoard board;
+  private final LatestValueBoard.Snapshot snapshot = new LatestValueBoard.Snapshot(); // under lock
+  private final List<MeasurementVectorStream.Subscription> subscriptions = new ArrayList<>();
+  private final Object lock = new Object();
+
+  private long maxSeenTime = Long.MIN_VALUE;
+  private long lastReleasedTime = Long.MIN_VALUE;
+  private long lateCount;
+
+  /**
+   * Creates a merger with {@link #DEFAULT_BUFFER_CAPACITY} vectors per source.
+   *
+   * @param sources source streams; in {@link Mode#TICK_ALIGNED} the first one is the timing source
+   * @param mode how merged vectors are emitted
+   * @param latenessMs how long (ms) a vector is held back waiting for earlier vectors
+   */
+  public KWayMeasurementVectorStreamMerger(
+      List<? extends MeasurementVectorStream> sources, Mode mode, long latenessMs) {
+    this(sources, mode, latenessMs, DEFAULT_BUFFER_CAPACITY);
+  }
+
+  /**
+   * Creates a merger that subscribes to all sources immediately; use {@link #stop()} to
+   * unsubscribe.
+   *
+   * @param sources source streams (not empty); in {@link Mode#TICK_ALIGNED} the first one is the
+   *     timing source
+   * @param mode how merged vectors are emitted
+   * @param latenessMs how long (ms) a vector is held back waiting for earlier vectors; must not be
+   *     negative
+   * @param bufferCapacity maximum number of vectors buffered per source; must be positive
+   * @throws IllegalArgumentException if an argument is out of range
+   */
+  public KWayMeasurementVectorStreamMerger(
+      List<? extends MeasurementVectorStream> sources,
+      Mode mode,
+      long latenessMs,
+      int bufferCapacity) {
+    if (sources == null || sources.isEmpty()) {
+      throw new IllegalArgumentException("At least one source is required");
+    }
+    if (latenessMs < 0) {
+      throw new IllegalArgumentException("latenessMs must not be negative");
+    }
+    if (bufferCapacity < 1) {
+      throw new IllegalArgumentException("bufferCapacity must be positive");
+    }
+    this.sources = List.copyOf(sources);
+    this.mode = mode;
+    this.latenessMs = latenessMs;
+    this.bufferCapacity = bufferCapacity;
+    this.buffers = new ArrayList<>(this.sources.size());
+    for (int i = 0; i < this.sources.size(); i++) {
+      buffers.add(new ArrayDeque<>());
+    }
+    this.heads = new PriorityQueue<>(this.sources.size(), this::compareHeads);
+    List<String> schema = new ArrayList<>();
+    for (SensorConfig sensor : listSensors()) {
+      schema.add(sensor.getId());
+    }
+    this.board = new LatestValueBoard(schema);
+
+    for (int i = 0; i < this.sources.size(); i++) {
+      int sourceIndex = i;
+      subscriptions.add(this.sources.get(i).subscribe(v -> accept(sourceIndex, v)));
+    }
+  }
+
+  /**
+   * Orders sources by the timestamp of their buffer head, then by source index. In tick-aligned
+   * mode the timing source sorts after data sources with the same timestamp, so a tick includes
+   * samples taken at the tick time.
+   */
+  private int compareHeads(Integer a, Integer b) {
+    int byTime = Long.compare(headTime(a), headTime(b));
+    if (byTime != 0) {
+      return byTime;
+    }
+    return Integer.compare(rank(a), rank(b));
+  }
+
+  private long headTime(int sourceIndex) {
+    return buffers.get(sourceIndex).peekFirst().getTimeUtc();
+  }
+
+  private int rank(int sourceIndex) {
+    return mode == Mode.TICK_ALIGNED && sourceIndex == 0 ? Integer.MAX_VALUE : sourceIndex;
+  }
+
+  private void accept(int sourceIndex, MeasurementVector vector) {
+    synchronized (lock) {
+      long time = vector.getTimeUtc();
+      if (time < lastReleasedTime) {
+        lateCount++;
+        return;
+      }
+      ArrayDeque<MeasurementVector> buffer = buffers.get(sourceIndex);
+      boolean headChanges = buffer.isEmpty() || time < buffer.peekFirst().getTimeUtc();
+      if (headChanges && !buffer.isEmpty()) {
+        heads.remove(sourceIndex);
+      }
+      insertSorted(buffer, vector);
+      if (headChanges) {
+        heads.add(sourceIndex);
+      }
+      maxSeenTime = Math.max(maxSeenTime, time);
+
+      while (buffer.size() > bufferCapacity) {
+        releaseHead();
+      }
+      long watermark = maxSeenTime - latenessMs;
+      while (!heads.isEmpty() && headTime(heads.peek()) <= watermark) {
+        releaseHead();
+      }
+    }
+  }
+
+  /** Inserts keeping the buffer sorted by time; equal timestamps keep arrival order. */
+  private static void insertSorted(ArrayDeque<MeasurementVector> buffer, MeasurementVector vector) {
+    if (buffer.isEmpty() || buffer.peekLast().getTimeUtc() <= vector.getTimeUtc()) {
+      buffer.addLast(vector);
+      return;
+    }
+    // Out of order within the source (rare): move later vectors aside, then put them back.
+    ArrayDeque<MeasurementVector> later = new ArrayDeque<>();
+    while (!buffer.isEmpty() && buffer.peekLast().getTimeUtc() > vector.getTimeUtc()) {
+      later.addFirst(buffer.pollLast());
+    }
+    buffer.addLast(vector);
+    buffer.addAll(later);
+  }
+
+  private void releaseHead() {
+    int sourceIndex = heads.poll();
+    ArrayDeque<MeasurementVector> buffer = buffers.get(sourceIndex);
+    MeasurementVector vector = buffer.pollFirst();
+    if (!buffer.isEmpty()) {
+      heads.add(sourceIndex);
+    }
+    lastReleasedTime = vector.getTimeUtc();
+    emit(sourceIndex, vector);
+  }
+
+  private void emit(int sourceIndex, MeasurementVector vector) {
+    if (mode == Mode.INTERLEAVED) {
+      publish(vector);
+      return;
+    }
+    if (sourceIndex != 0) {
+      for (Measurement m : vector.getMeasurementsMap().values()) {
+        board.update(m);
+      }
+      return;
+    }
+    int n = board.snapshot(snapshot);
+    List<Measurement> combined = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      Measurement m = snapshot.value(i);
+      if (m != null) {
+        combined.add(m);
+      }
+    }
+    publish(new MeasurementVector(vector.getTimeUtc(), combined, vector.getErrors()));
+  }
+
+  /** Releases every buffered vector in timestamp order, ignoring the lateness window. */
+  public void flush() {
+    synchronized (lock) {
+      while (!heads.isEmpty()) {
+        releaseHead();
+      }
+    }
+  }
+
+  /** Returns the number of vectors dropped because later vectors had already been released. */
+  public long getLateCount() {
+    synchronized (lock) {
+      return lateCount;
+    }
+  }
+
+  /** Returns the number of vectors currently buffered across all sources. */
+  public int getBufferedCount() {
+    synchronized (lock) {
+      int count = 0;
+      for (ArrayDeque<MeasurementVector> buffer : buffers) {
+        count += buffer.size();
+      }
+      return count;
+    }
+  }
+
+  /**
+   * Returns the sensors of all sources in source order; a sensor id listed by several sources is
+   * returned once.
+   */
+  @Override
+  public List<SensorConfig> listSensors() {
+    List<SensorConfig> sensors = new ArrayList<>();
+    Set<String> seen = new HashSet<>();
+    for (MeasurementVectorStream source : sources) {
+      for (SensorConfig sensor : source.listSensors()) {
+        if (seen.add(sensor.getId())) {
+          sensors.add(sensor);
+        }
+      }
+    }
+    return sensors;
+  }
+
+  /** Stops merging: unsubscribes from all sources and discards buffered vectors. */
+  public void stop() {
+    Iterator<MeasurementVectorStream.Subscription> it = subscriptions.iterator();
+    while (it.hasNext()) {
+      it.next().unsubscribe();
+      it.remove();
+    }
+    synchronized (lock) {
+      heads.clear();
+      for (ArrayDeque<MeasurementVector> buffer : buffers) {
+        buffer.clear();
+      }
+    }
+    board.clear();
+    clearSubscribers();
+  }
+}
@@ -0,0 +1,263 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.streaming;
+
+import ca.lajthabalazs.pressure_integrity_test.measurement.Measurement;
+import java.lang.invoke.VarHandle;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free board holding the latest {@link Measurement} per sensor in a preallocated slot array.
+ *
+ * <p>Slots are ordered by the sensor schema given at construction (typically {@link
+ * MeasurementVectorStream#listSensors()}); sensors that are not in the schema get a slot appended
+ * on first sight. Each slot has a sequence counter: writers make it odd while they update the
+ * slot's measurement and timestamp and even again when done, and readers retry a slot whose counter
+ * was odd or changed while it was being read (a seqlock). Writers for different slots never
+ * contend, readers never block writers, and {@link #snapshot(Snapshot)} copies a consistent value
+ * for every slot without locking, sorting or allocating per sensor.
+ *
+ * <p>When appended sensors exceed the preallocated capacity the slot arrays are replaced by larger
+ * ones. This is expected to happen at most a few times during warm-up; during the copy a snapshot
+ * may briefly miss a sensor that has not been copied yet.
+ */
+public final class LatestValueBoard {
+
+  /** Extra slots reserved for sensors that are not in the schema. */
+  private static final int SPARE_SLOTS = 16;
+
+  private final Object growLock = new Object();
+  private final Map<String, Integer> slotBySensorId = new ConcurrentHashMap<>();
+  private volatile Slots slots;
+  private volatile int size;
+
+  /**
+   * Creates a board with one slot per sensor id, in the given order. Null and duplicate ids are
+   * ignored.
+   *
+   * @param sensorIds sensor ids defining the slot order (not null; may be empty)
+   */
+  public LatestValueBoard(List<String> sensorIds) {
+    Slots initial = new Slots(sensorIds.size() + SPARE_SLOTS);
+    int n = 0;
+    for (String id : sensorIds) {
+      if (id != null && !slotBySensorId.containsKey(id)) {
+        initial.ids[n] = id;
+        slotBySensorId.put(id, n);
+        n++;
+      }
+    }
+    this.slots = initial;
+    this.size = n;
+  }
+
+  /** Returns the number of slots (schema sensors plus sensors appended so far). */
+  public int size() {
+    return size;
+  }
+
+  /** Returns the slot index of the given sensor id, or {@code -1} if it has no slot. */
+  public int slotOf(String sensorId) {
+    Integer slot = slotBySensorId.get(sensorId);
+    return slot != null ? slot : -1;
+  }
+
+  /** Returns the sensor id of the given slot. */
+  public String sensorIdAt(int slot) {
+    return slots.ids[slot];
+  }
+
+  /**
+   * Stores the measurement as the latest value of its sensor, appending a slot if the sensor is
+   * new. The slot timestamp is the measurement's own timestamp.
+   *
+   * @param measurement the measurement (not null)
+   */
+  public void update(Measurement measurement) {
+    update(measurement, measurement.getTimeUtc());
+  }
+
+  /**
+   * Stores the measurement as the latest value of its sensor with the given timestamp, appending a
+   * slot if the sensor is new.
+   *
+   * @param measurement the measurement (not null)
+   * @param timeUtc timestamp to record for the slot (ms since epoch)
+   */
+  public void update(Measurement measurement, long timeUtc) {
+    Integer slot = slotBySensorId.get(measurement.getSourceId());
+    if (slot == null) {
+      slot = appendSlot(measurement.getSourceId());
+    }
+    Slots current = slots;
+    current.write(slot, measurement, timeUtc);
+    // If the arrays were replaced while we wrote, the copy may not contain this write.
+    while (slots != current) {
+      current = slots;
+      current.write(slot, measurement, timeUtc);
+    }
+  }
+
+  /**
+   * Copies a consistent view of every slot into {@code into}, growing its arrays if needed. Empty
+   * slots (no measurement yet) are copied as {@code null} with timestamp {@link Long#MIN_VALUE}.
+   *
+   * @param into the snapshot to fill (reused across calls to avoid allocation)
+   * @return the number of slots copied (also stored in {@link Snapshot#size()})
+   */
+  public int snapshot(Snapshot into) {
+    // Read size before slots: slots are replaced before size grows, so n always fits.
+    int n = size;
+    Slots current = slots;
+    into.ensureCapacity(n);
+    for (int i = 0; i < n; i++) {
+      current.read(i, into, i);
+    }
+    into.ids = current.ids;
+    into.size = n;
+    return n;
+  }
+
+  /** Clears all values; the slot layout is kept. */
+  public void clear() {
+    synchronized (growLock) {
+      Slots fresh = new Slots(slots.ids.length);
+      System.arraycopy(slots.ids, 0, fresh.ids, 0, size);
+      slots = fresh;
+    }
+  }
+
+  private int appendSlot(String sensorId) {
+    synchronized (growLock) {
+      Integer existing = slotBySensorId.get(sensorId);
+      if (existing != null) {
+        return existing;
+      }
+      int slot = size;
+      Slots current = slots;
+      if (slot == current.ids.length) {
+        Slots grown = new Slots(current.ids.length * 2);
+        System.arraycopy(current.ids, 0, grown.ids, 0, slot);
+        grown.ids[slot] = sensorId;
+        // Publish first so that concurrent writers retry into the new arrays, then carry over
+        // values that have not been overwritten there yet.
+        slots = grown;
+        for (int i = 0; i < slot; i++) {
+          grown.copyIfEmpty(i, current);
+        }
+      } else {
+        current.ids[slot] = sensorId;
+      }
+      slotBySensorId.put(sensorId, slot);
+      size = slot + 1;
+      return slot;
+    }
+  }
+
+  /** Fixed-capacity slot arrays. */
+  private static final class Slots {
+    final String[] ids;
+    final Measurement[] values;
+    final long[] timesUtc;
+    final AtomicLongArray sequences;
+
+    Slots(int capacity) {
+      ids = new String[capacity];
+      values = new Measurement[capacity];
+      timesUtc = new long[capacity];
+      sequences = new AtomicLongArray(capacity);
+    }
+
+    void write(int slot, Measurement measurement, long timeUtc) {
+      long seq = lockSlot(slot);
+      values[slot] = measurement;
+      timesUtc[slot] = timeUtc;
+      sequences.setRelease(slot, seq + 2);
+    }
+
+    void copyIfEmpty(int slot, Slots from) {
+      Snapshot one = new Snapshot();
+      one.ensureCapacity(1);
+      from.read(slot, one, 0);
+      if (one.values[0] == null) {
+        return;
+      }
+      long seq = lockSlot(slot);
+      if (seq == 0) {
+        values[slot] = one.values[0];
+        timesUtc[slot] = one.timesUtc[0];
+        sequences.setRelease(slot, 2);
+      } else {
+        sequences.setRelease(slot, seq + 2);
+      }
+    }
+
+    /** Makes the slot's sequence odd and returns its previous (even) value. */
+    private long lockSlot(int slot) {
+      while (true) {
+        long seq = sequences.get(slot);
+        if ((seq & 1) == 0 && sequences.compareAndSet(slot, seq, seq + 1)) {
+          return seq;
+        }
+        Thread.onSpinWait();
+      }
+    }
+
+    void read(int slot, Snapshot into, int index) {
+      while (true) {
+        long before = sequences.getAcquire(slot);
+        if ((before & 1) != 0) {
+          Thread.onSpinWait();
+          continue;
+        }
+        Measurement value = values[slot];
+        long time = timesUtc[slot];
+        VarHandle.acquireFence();
+        if (sequences.get(slot) == before) {
+          into.values[index] = value;
+          into.timesUtc[index] = value != null ? time : Long.MIN_VALUE;
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Reusable destination for {@link #snapshot(Snapshot)}. Arrays are indexed by slot; entries at or
+   * beyond {@link #size()} are undefined.
+   */
+  public static final class Snapshot {
+    private String[] ids = new String[0];
+    private Measurement[] values = new Measurement[0];
+    private long[] timesUtc = new long[0];
+    private int size;
+
+    /** Returns the number of slots copied by the last snapshot. */
+    public int size() {
+      return size;
+    }
+
+    /** Returns the sensor id of the given slot. */
+    public String sensorId(int slot) {
+      return ids[slot];
+    }
+
+    /** Returns the latest measurement of the given slot, or null if the sensor has not reported. */
+    public Measurement value(int slot) {
+      return values[slot];
+    }
+
+    /** Returns the timestamp of the given slot, or {@link Long#MIN_VALUE} if empty. */
+    public long timeUtc(int slot) {
+      return timesUtc[slot];
+    }
+
+    private void ensureCapacity(int capacity) {
+      if (values.length < capacity) {
+        values = new Measurement[capacity];
+        timesUtc = new long[capacity];
+      }
+    }
+  }
+}
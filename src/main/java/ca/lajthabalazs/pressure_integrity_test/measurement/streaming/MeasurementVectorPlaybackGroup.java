@@ -0,0 +1,377 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.streaming;
+
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plays back several recordings in lockstep on one shared virtual clock.
+ *
+ * <p>Each recording added via {@link #addRecording(List)} gets its own {@link Track}, which is a
+ * {@link MeasurementVectorStream} that processing chains and dashboards can subscribe to. Tracks
+ * are aligned by relative time from their first vector: a vector recorded {@code d} ms after the
+ * start of its recording is published when the group's virtual time reaches {@code d}, regardless
+ * of the recording's absolute start time.
+ *
+ * <p>A single {@link VirtualTimeTracker} and a single pacer task drive all tracks. The pacer only
+ * schedules the next due event across all tracks, so the number of scheduled tasks does not grow
+ * with the number or length of recordings. Due vectors are published in relative-time order across
+ * tracks (ties in track order) while the group lock is held, so {@link #pause()}, {@link
+ * #resume()}, {@link #setSpeed(double)} and {@link #seek(long)} take effect atomically for the
+ * whole group and never split a tick between tracks.
+ */
+public class MeasurementVectorPlaybackGroup {
+
+  private final ScheduledExecutorService scheduler;
+  private final long shutdownAwaitMs;
+  private final VirtualTimeTracker virtualTimeTracker = new VirtualTimeTracker();
+  private final List<Track> tracks = new ArrayList<>();
+  private final Object lock = new Object();
+
+  private ScheduledFuture<?> pacerTask;
+
+  /** Incremented whenever the pending pacer task is cancelled; stale pacer runs exit early. */
+  private long pacerEpoch;
+
+  private boolean playing;
+  private boolean paused;
+  private double speedFactor = 1.0;
+  private long startTime;
+  private boolean useOriginalTimestamps;
+
+  /** Creates a playback group with its own single pacer thread. */
+  public MeasurementVectorPlaybackGroup() {
+    this(Executors.newSingleThreadScheduledExecutor(), 5000L);
+  }
+
+  /**
+   * Creates a playback group with the given scheduler and shutdown await time. For testing or when
+   * the executor is managed externally.
+   *
+   * @param scheduler the executor used to run the pacer
+   * @param shutdownAwaitMs how long to wait for termination before calling shutdownNow
+   */
+  public MeasurementVectorPlaybackGroup(ScheduledExecutorService scheduler, long shutdownAwaitMs) {
+    this.scheduler = scheduler;
+    this.shutdownAwaitMs = shutdownAwaitMs;
+  }
+
+  /**
+   * Adds a recording to the group. Recordings must be added before {@link #startPlayback(long)}.
+   *
+   * @param vectors the recording's vectors in time order (each must have non-null measurements)
+   * @return the track stream that will publish this recording
+   * @throws IllegalStateException if playback is already in progress
+   * @throws IllegalArgumentException if vectors is null, empty, or contains a null vector
+   */
+  public Track addRecording(List<MeasurementVector> vectors) {
+    if (vectors == null || vectors.isEmpty()) {
+      throw new IllegalArgumentException("vectors must be non-empty");
+    }
+    for (MeasurementVector v : vectors) {
+      if (v == null || v.getMeasurementsMap() == null) {
+        throw new IllegalArgumentException("Each vector must have non-empty measurements");
+      }
+    }
+    synchronized (lock) {
+      if (playing) {
+        throw new IllegalStateException("Cannot add a recording while playback is in progress");
+      }
+      Track track = new Track(vectors);
+      tracks.add(track);
+      return track;
+    }
+  }
+
+  /** Returns the tracks in the order they were added. */
+  public List<Track> getTracks() {
+    synchronized (lock) {
+      return List.copyOf(tracks);
+    }
+  }
+
+  /**
+   * Starts playing all tracks. Equivalent to {@code startPlayback(startTime, false)}.
+   *
+   * @param startTime timestamp (ms since epoch) published for relative time zero
+   */
+  public void startPlayback(long startTime) {
+    startPlayback(startTime, false);
+  }
+
+  /**
+   * Starts playing all tracks from relative time zero.
+   *
+   * @param startTime timestamp (ms since epoch) published for relative time zero when {@code
+   *     useOriginalTimestamps} is false; ignored when true
+   * @param useOriginalTimestamps if true, vectors are published unchanged; if false, every track
+   *     is shifted so that its first vector is stamped {@code startTime}, which puts all tracks on
+   *     a common time axis
+   * @throws IllegalStateException if playback is already in progress or no recording was added
+   */
+  public void startPlayback(long startTime, boolean useOriginalTimestamps) {
+    synchronized (lock) {
+      if (playing) {
+        throw new IllegalStateException("Cannot start playback group twice");
+      }
+      if (tracks.isEmpty()) {
+        throw new IllegalStateException("No recordings added to the playback group");
+      }
+      this.startTime = startTime;
+      this.useOriginalTimestamps = useOriginalTimestamps;
+      for (Track track : tracks) {
+        track.nextIndex = 0;
+      }
+      long now = System.currentTimeMillis();
+      virtualTimeTracker.start(now);
+      virtualTimeTracker.setSpeed(now, speedFactor);
+      playing = true;
+      paused = false;
+      scheduleNextLocked();
+    }
+  }
+
+  /**
+   * Sets the playback speed factor for the whole group.
+   *
+   * @param factor speed factor (e.g. 2.0 = twice as fast, 0.5 = half speed). Must be positive.
+   */
+  public void setSpeed(double factor) {
+    synchronized (lock) {
+      virtualTimeTracker.setSpeed(System.currentTimeMillis(), factor);
+      this.speedFactor = factor;
+      if (playing && !paused) {
+        cancelPacerLocked();
+        scheduleNextLocked();
+      }
+    }
+  }
+
+  /** Returns the current speed factor. */
+  public double getSpeed() {
+    synchronized (lock) {
+      return speedFactor;
+    }
+  }
+
+  /** Pauses all tracks. No vector is published until {@link #resume()} is called. */
+  public void pause() {
+    synchronized (lock) {
+      if (!playing || paused) {
+        return;
+      }
+      virtualTimeTracker.pause(System.currentTimeMillis());
+      cancelPacerLocked();
+      paused = true;
+    }
+  }
+
+  /** Resumes all tracks from the current position. */
+  public void resume() {
+    synchronized (lock) {
+      if (!playing || !paused) {
+        return;
+      }
+      virtualTimeTracker.resume(System.currentTimeMillis());
+      paused = false;
+      scheduleNextLocked();
+    }
+  }
+
+  /** Returns true if playback is paused. */
+  public boolean isPaused() {
+    synchronized (lock) {
+      return paused;
+    }
+  }
+
+  /**
+   * Moves all tracks to the given relative time. The next vector published by each track is its
+   * first vector at or after {@code relativeTimeMs}; earlier vectors are skipped, and a backward
+   * seek replays vectors. Pause state and speed are preserved.
+   *
+   * @param relativeTimeMs position in ms from the start of the recordings
+   */
+  public void seek(long relativeTimeMs) {
+    synchronized (lock) {
+      if (!playing) {
+        return;
+      }
+      virtualTimeTracker.seek(System.currentTimeMillis(), relativeTimeMs);
+      for (Track track : tracks) {
+        track.nextIndex = track.firstIndexAtOrAfter(relativeTimeMs);
+      }
+      if (!paused) {
+        cancelPacerLocked();
+        scheduleNextLocked();
+      }
+    }
+  }
+
+  /** Returns the current position in ms from the start of the recordings. */
+  public long getPosition() {
+    synchronized (lock) {
+      return virtualTimeTracker.getCurrentVirtualTime(System.currentTimeMillis());
+    }
+  }
+
+  /** Returns true if playback was started and every track has published all of its vectors. */
+  public boolean isFinished() {
+    synchronized (lock) {
+      return playing && nextRelativeTimeLocked() == Long.MAX_VALUE;
+    }
+  }
+
+  /** Stops playback. Tracks keep their subscribers; playback can be started again. */
+  public void stopPlayback() {
+    synchronized (lock) {
+      cancelPacerLocked();
+      playing = false;
+      paused = false;
+      virtualTimeTracker.reset();
+      virtualTimeTracker.setSpeed(System.currentTimeMillis(), speedFactor);
+    }
+  }
+
+  /** Stops playback, clears all track subscribers and shuts down the pacer thread. */
+  public void shutdown() {
+    synchronized (lock) {
+      stopPlayback();
+      for (Track track : tracks) {
+        track.clear();
+      }
+    }
+    scheduler.shutdown();
+    try {
+      if (!scheduler.awaitTermination(shutdownAwaitMs, TimeUnit.MILLISECONDS)) {
+        scheduler.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      scheduler.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void cancelPacerLocked() {
+    pacerEpoch++;
+    if (pacerTask != null) {
+      pacerTask.cancel(false);
+      pacerTask = null;
+    }
+  }
+
+  private void scheduleNextLocked() {
+    long next = nextRelativeTimeLocked();
+    if (next == Long.MAX_VALUE) {
+      pacerTask = null;
+      return;
+    }
+    long now = System.currentTimeMillis();
+    long delay = virtualTimeTracker.calculateDelay(next, now);
+    if (delay == 0 && next > virtualTimeTracker.getCurrentVirtualTime(now)) {
+      // Less than one real millisecond to go; avoid spinning on zero-delay reschedules.
+      delay = 1;
+    }
+    long epoch = pacerEpoch;
+    pacerTask = scheduler.schedule(() -> tick(epoch), delay, TimeUnit.MILLISECONDS);
+  }
+
+  /** Returns the smallest pending relative time across all tracks, or MAX_VALUE if none. */
+  private long nextRelativeTimeLocked() {
+    long next = Long.MAX_VALUE;
+    for (Track track : tracks) {
+      if (track.hasNext()) {
+        next = Math.min(next, track.nextRelativeTime());
+      }
+    }
+    return next;
+  }
+
+  private void tick(long epoch) {
+    synchronized (lock) {
+      if (epoch != pacerEpoch || !playing || paused) {
+        return;
+      }
+      long virtualNow = virtualTimeTracker.getCurrentVirtualTime(System.currentTimeMillis());
+      while (true) {
+        Track due = null;
+        for (Track track : tracks) {
+          if (track.hasNext()
+              && track.nextRelativeTime() <= virtualNow
+              && (due == null || track.nextRelativeTime() < due.nextRelativeTime())) {
+            due = track;
+          }
+        }
+        if (due == null) {
+          break;
+        }
+        due.publishNext(useOriginalTimestamps, startTime);
+        if (epoch != pacerEpoch) {
+          // A subscriber paused, stopped, sought or changed speed from the pacer thread; that call
+          // already rescheduled the pacer if needed.
+          return;
+        }
+      }
+      scheduleNextLocked();
+    }
+  }
+
+  /** One recording within a {@link MeasurementVectorPlaybackGroup}. */
+  public static final class Track extends MeasurementVectorStream {
+
+    private final List<MeasurementVector> vectors;
+    private final long firstVectorTime;
+    private int nextIndex;
+
+    private Track(List<MeasurementVector> vectors) {
+      this.vectors = List.copyOf(vectors);
+      this.firstVectorTime = this.vectors.getFirst().getTimeUtc();
+    }
+
+    /** Returns the number of vectors in this recording. */
+    public int size() {
+      return vectors.size();
+    }
+
+    private boolean hasNext() {
+      return nextIndex < vectors.size();
+    }
+
+    private long nextRelativeTime() {
+      return vectors.get(nextIndex).getTimeUtc() - firstVectorTime;
+    }
+
+    private int firstIndexAtOrAfter(long relativeTimeMs) {
+      int lo = 0;
+      int hi = vectors.size();
+      while (lo < hi) {
+        int mid = (lo + hi) >>> 1;
+        if (vectors.get(mid).getTimeUtc() - firstVectorTime < relativeTimeMs) {
+          lo = mid + 1;
+        } else {
+          hi = mid;
+        }
+      }
+      return lo;
+    }
+
+    private void publishNext(boolean useOriginalTimestamps, long startTime) {
+      MeasurementVector vector = vectors.get(nextIndex);
+      nextIndex++;
+      if (useOriginalTimestamps) {
+        publish(vector);
+      } else {
+        long relative = vector.getTimeUtc() - firstVectorTime;
+        publish(MeasurementVectorPlaybackStream.shiftTimestamps(vector, startTime + relative));
+      }
+    }
+
+    private void clear() {
+      clearSubscribers();
+    }
+  }
+}
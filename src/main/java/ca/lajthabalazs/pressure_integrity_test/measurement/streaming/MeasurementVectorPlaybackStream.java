@@ -168,19 +168,7 @@ public class MeasurementVectorPlaybackStream extends MeasurementVectorStream {
     ScheduledFuture<?> task =
         scheduler.schedule(
             () -> {
-              MeasurementVector toPublish;
-              if (useOriginal) {
-                toPublish = vector;
-              } else {
-                long refTime = vector.getTimeUtc();
-                long delta = timestampBase - refTime;
-                List<Measurement> adjusted = new ArrayList<>(vector.getMeasurementsMap().size());
-                for (Measurement m : vector.getMeasurementsMap().values()) {
-                  adjusted.add(m.withNewTimestamp(m.getTimeUtc() + delta));
-                }
-                toPublish = new MeasurementVector(timestampBase, adjusted, vector.getErrors());
-              }
-              publish(toPublish);
+              publish(useOriginal ? vector : shiftTimestamps(vector, timestampBase));
               nextIndexToPublish.compareAndSet(index, index + 1);
             },
             delay,
@@ -188,6 +176,19 @@ public class MeasurementVectorPlaybackStream extends MeasurementVectorStream {
     scheduledTasks.add(task);
   }
 
+  /**
+   * Returns a copy of the vector with its timestamp set to {@code newTimeUtc}; each measurement's
+   * timestamp is shifted by the same delta, so relative offsets within the vector are preserved.
+   */
+  static MeasurementVector shiftTimestamps(MeasurementVector vector, long newTimeUtc) {
+    long delta = newTimeUtc - vector.getTimeUtc();
+    List<Measurement> adjusted = new ArrayList<>(vector.getMeasurementsMap().size());
+    for (Measurement m : vector.getMeasurementsMap().values()) {
+      adjusted.add(m.withNewTimestamp(m.getTimeUtc() + delta));
+    }
+    return new MeasurementVector(newTimeUtc, adjusted, vector.getErrors());
+  }
+
   /** Pauses playback. Remaining vectors are not published until {@link #resume()} is called. */
   public void pause() {
     if (paused || playbackVectors == null) {
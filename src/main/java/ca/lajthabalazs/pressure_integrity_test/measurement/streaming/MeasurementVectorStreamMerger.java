@@ -1,11 +1,16 @@
 package ca.lajthabalazs.pressure_integrity_test.measurement.streaming;
 
+import ca.lajthabalazs.pressure_integrity_test.config.SensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.measurement.ErrorSeverity;
 import ca.lajthabalazs.pressure_integrity_test.measurement.Measurement;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementError;
 import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Merges a data measurement stream into a timing stream.
@@ -13,16 +18,40 @@ import java.util.concurrent.ConcurrentHashMap;
  * <p>Subscribes to two streams: a <em>timing</em> stream and a <em>data</em> stream. Whenever the
  * timing stream emits a {@link MeasurementVector}, this merger publishes a new vector containing
  * the latest available value from the data stream for every sensor (sourceId) that has received at
- * least one measurement so far. The merged vector uses the timing vector's timestamp. Measurements
- * in the merged vector have their timestamps set to the timing vector's timestamp.
+ * least one measurement so far. The merged vector uses the timing vector's timestamp; each
+ * measurement keeps its own acquisition timestamp, so consumers can tell how old a value is.
  *
- * <p>Latest is defined as the most recently received measurement per sensor from the data stream.
- * If the data stream has not yet sent any measurement for a sensor, that sensor is omitted. If no
- * sensor has any data yet, a vector with an empty measurement list is published.
+ * <p>Latest values are kept in a {@link LatestValueBoard} whose slots follow the data stream's
+ * {@link MeasurementVectorStream#listSensors()} order; sensors outside that list are appended in
+ * order of first arrival. Data vectors update slots in place and timing ticks take a lock-free
+ * snapshot, so merged measurements come out in slot order without sorting. If the data stream has
+ * not yet sent any measurement for a sensor, that sensor is omitted. If no sensor has any data
+ * yet, a vector with an empty measurement list is published.
+ *
+ * <p>When created with {@link StalenessThresholds}, every tick compares the age of each latest
+ * value (tick time minus acquisition time) against per-slot thresholds compiled into primitive
+ * arrays from the sensor types. Stale values are still merged but get a {@link
+ * ErrorSeverity#WARNING} or, past the severe threshold, a {@link ErrorSeverity#SEVERE} {@link
+ * MeasurementError} on every tick, so downstream stages skip the vector rather than averaging a
+ * disconnected sensor's frozen value. Each stale period is reported as a {@link SensorGap} to
+ * handlers registered with {@link #subscribeGaps(SensorGapHandler)}: once when it opens and once
+ * when a fresh value closes it.
  */
 public class MeasurementVectorStreamMerger extends MeasurementVectorStream {
 
-  private final Map<String, Measurement> latestBySourceId = new ConcurrentHashMap<>();
+  private final MeasurementVectorStream dataStream;
+  private final LatestValueBoard board;
+  private final StalenessThresholds thresholds;
+  private final boolean checkStaleness;
+  private final Map<String, String> typeBySensorId = new HashMap<>();
+  private final List<SensorGapHandler> gapHandlers = new CopyOnWriteArrayList<>();
+
+  // Per-slot staleness state, guarded by tickLock and grown as the board grows.
+  private final Object tickLock = new Object();
+  private long[] warningAfterMs = new long[0];
+  private long[] severeAfterMs = new long[0];
+  private long[] gapStartUtc = new long[0];
+  private final LatestValueBoard.Snapshot snapshot = new LatestValueBoard.Snapshot();
 
   private MeasurementVectorStream.Subscription timingSubscription;
   private MeasurementVectorStream.Subscription dataSubscription;
@@ -33,31 +62,162 @@ public class MeasurementVectorStreamMerger extends MeasurementVectorStream {
    * use {@link #stop()} to unsubscribe.
    *
    * @param timingStream stream that drives when merged vectors are emitted
-   * @param dataStream stream from which latest per-sensor values are taken
+   * @param dataStream stream from which latest per-sensor values are taken; its sensor list
+   *     defines the order of merged measurements
    */
   public MeasurementVectorStreamMerger(
       MeasurementVectorStream timingStream, MeasurementVectorStream dataStream) {
+    this(timingStream, dataStream, StalenessThresholds.NONE);
+  }
+
+  /**
+   * Creates a merger that also checks the age of every merged value.
+   *
+   * @param timingStream stream that drives when merged vectors are emitted
+   * @param dataStream stream from which latest per-sensor values are taken; its sensor list
+   *     defines the order of merged measurements and the type of each sensor
+   * @param thresholds age limits per sensor type
+   */
+  public MeasurementVectorStreamMerger(
+      MeasurementVectorStream timingStream,
+      MeasurementVectorStream dataStream,
+      StalenessThresholds thresholds) {
+    this.dataStream = dataStream;
+    this.thresholds = thresholds;
+    this.checkStaleness = !thresholds.isDisabled();
+    List<String> schema = new ArrayList<>();
+    for (SensorConfig sensor : dataStream.listSensors()) {
+      schema.add(sensor.getId());
+      if (sensor.getId() != null) {
+        typeBySensorId.putIfAbsent(sensor.getId(), sensor.getType());
+      }
+    }
+    this.board = new LatestValueBoard(schema);
+
     this.dataSubscription =
         dataStream.subscribe(
             vector -> {
               for (Measurement m : vector.getMeasurementsMap().values()) {
-                latestBySourceId.put(m.getSourceId(), m);
+                board.update(m);
               }
             });
 
     this.timingSubscription =
-        timingStream.subscribe(
-            timingVector -> {
-              long timingTimestamp = timingVector.getTimeUtc();
+        timingStream.subscribe(timingVector -> publish(merge(timingVector.getTimeUtc())));
+  }
 
-              List<Measurement> merged = new ArrayList<>();
-              for (Measurement m : latestBySourceId.values()) {
-                merged.add(m.withNewTimestamp(timingTimestamp));
-              }
-              merged.sort((a, b) -> a.getSourceId().compareTo(b.getSourceId()));
+  private MeasurementVector merge(long timingTimestamp) {
+    List<SensorGap> gapEvents = null;
+    MeasurementVector merged;
+    synchronized (tickLock) {
+      int n = board.snapshot(snapshot);
+      List<Measurement> measurements = new ArrayList<>(n);
+      List<MeasurementError> errors = List.of();
+      if (checkStaleness && warningAfterMs.length < n) {
+        compileThresholds(n);
+      }
+      for (int i = 0; i < n; i++) {
+        Measurement m = snapshot.value(i);
+        if (m == null) {
+          continue;
+        }
+        measurements.add(m);
+        if (!checkStaleness) {
+          continue;
+        }
+        long valueTime = snapshot.timeUtc(i);
+        long age = timingTimestamp - valueTime;
+        if (age > warningAfterMs[i]) {
+          if (errors.isEmpty()) {
+            errors = new ArrayList<>();
+          }
+          errors.add(staleError(m.getSourceId(), age, age > severeAfterMs[i]));
+          if (gapStartUtc[i] == Long.MIN_VALUE) {
+            gapStartUtc[i] = valueTime;
+            gapEvents = addGap(gapEvents, m.getSourceId(), valueTime, SensorGap.OPEN);
+          }
+        } else if (gapStartUtc[i] != Long.MIN_VALUE) {
+          gapEvents = addGap(gapEvents, m.getSourceId(), gapStartUtc[i], valueTime);
+          gapStartUtc[i] = Long.MIN_VALUE;
+        }
+      }
+      merged = new MeasurementVector(timingTimestamp, measurements, errors);
+    }
+    if (gapEvents != null) {
+      for (SensorGap gap : gapEvents) {
+        publishGap(gap);
+      }
+    }
+    return merged;
+  }
 
-              publish(new MeasurementVector(timingTimestamp, merged));
-            });
+  private static List<SensorGap> addGap(
+      List<SensorGap> events, String sensorId, long startTimeUtc, long endTimeUtc) {
+    List<SensorGap> out = events != null ? events : new ArrayList<>();
+    out.add(new SensorGap(sensorId, startTimeUtc, endTimeUtc));
+    return out;
+  }
+
+  private static MeasurementError staleError(String sensorId, long ageMs, boolean severe) {
+    return new MeasurementError(
+        sensorId,
+        severe ? ErrorSeverity.SEVERE : ErrorSeverity.WARNING,
+        "Stale value: last sample " + ageMs + " ms old");
+  }
+
+  /** Compiles per-slot thresholds for slots added since the last tick. */
+  private void compileThresholds(int n) {
+    int from = warningAfterMs.length;
+    warningAfterMs = Arrays.copyOf(warningAfterMs, n);
+    severeAfterMs = Arrays.copyOf(severeAfterMs, n);
+    gapStartUtc = Arrays.copyOf(gapStartUtc, n);
+    for (int i = from; i < n; i++) {
+      String type = typeBySensorId.get(snapshot.sensorId(i));
+      warningAfterMs[i] = thresholds.warningMs(type);
+      severeAfterMs[i] = thresholds.severeMs(type);
+      gapStartUtc[i] = Long.MIN_VALUE;
+    }
+  }
+
+  private void publishGap(SensorGap gap) {
+    for (SensorGapHandler handler : gapHandlers) {
+      try {
+        handler.handle(gap);
+      } catch (Exception e) {
+        System.err.println("Error in sensor gap handler: " + e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Subscribes to sensor gap events. A handler receives an open {@link SensorGap} when a sensor's
+   * value first exceeds its warning age and the closed gap when a fresh value arrives.
+   *
+   * @param handler the callback (not null)
+   * @return a subscription that can be used to unsubscribe
+   */
+  public Subscription subscribeGaps(SensorGapHandler handler) {
+    gapHandlers.add(handler);
+    return () -> gapHandlers.remove(handler);
+  }
+
+  /** Returns the gaps that are currently open, in slot order. */
+  public List<SensorGap> getOpenGaps() {
+    synchronized (tickLock) {
+      List<SensorGap> open = new ArrayList<>();
+      for (int i = 0; i < gapStartUtc.length; i++) {
+        if (gapStartUtc[i] != Long.MIN_VALUE) {
+          open.add(new SensorGap(board.sensorIdAt(i), gapStartUtc[i], SensorGap.OPEN));
+        }
+      }
+      return open;
+    }
+  }
+
+  /** Returns the data stream's sensor list, which defines the order of merged measurements. */
+  @Override
+  public List<SensorConfig> listSensors() {
+    return dataStream.listSensors();
   }
 
   /**
@@ -73,7 +233,18 @@ public class MeasurementVectorStreamMerger extends MeasurementVectorStream {
       dataSubscription.unsubscribe();
       dataSubscription = null;
     }
-    latestBySourceId.clear();
+    board.clear();
+    synchronized (tickLock) {
+      Arrays.fill(gapStartUtc, Long.MIN_VALUE);
+    }
+    gapHandlers.clear();
     clearSubscribers();
   }
+
+  /** Handler for sensor gap events. */
+  @FunctionalInterface
+  public interface SensorGapHandler {
+    /** Handles a gap that was opened or closed. */
+    void handle(SensorGap gap);
+  }
 }
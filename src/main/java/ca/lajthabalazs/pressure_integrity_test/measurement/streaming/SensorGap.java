@@ -0,0 +1,28 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.streaming;
+
+/**
+ * Interval during which a sensor did not deliver fresh values.
+ *
+ * <p>The gap starts at the timestamp of the sensor's last value before it went stale and ends at
+ * the timestamp of the first value received after it. While the sensor is still silent the gap is
+ * open and {@code endTimeUtc} is {@link #OPEN}.
+ *
+ * @param sensorId sensor that stopped reporting
+ * @param startTimeUtc timestamp of the last value before the gap (ms since epoch)
+ * @param endTimeUtc timestamp of the first value after the gap, or {@link #OPEN}
+ */
+public record SensorGap(String sensorId, long startTimeUtc, long endTimeUtc) {
+
+  /** End time of a gap that has not been closed yet. */
+  public static final long OPEN = Long.MAX_VALUE;
+
+  /** Returns true if the sensor has not reported a fresh value since the gap started. */
+  public boolean isOpen() {
+    return endTimeUtc == OPEN;
+  }
+
+  /** Returns the gap length in milliseconds, measured up to {@code nowUtc} while it is open. */
+  public long durationMs(long nowUtc) {
+    return (isOpen() ? nowUtc : endTimeUtc) - startTimeUtc;
+  }
+}
@@ -0,0 +1,89 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.streaming;
+
+import ca.lajthabalazs.pressure_integrity_test.config.SensorConfig;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Age limits after which a sensor's latest value is considered stale, per sensor type.
+ *
+ * <p>Each type (see {@link SensorConfig#getType()}, e.g. {@code "temperature"}) has a warning and a
+ * severe threshold in milliseconds. Types without an explicit entry, and sensors that are not in
+ * the site config, use the default thresholds. A threshold of {@link Long#MAX_VALUE} disables that
+ * level. Instances are immutable; {@link #withType(String, long, long)} returns a copy.
+ */
+public final class StalenessThresholds {
+
+  /** Thresholds that never mark a value as stale. */
+  public static final StalenessThresholds NONE =
+      new StalenessThresholds(Long.MAX_VALUE, Long.MAX_VALUE);
+
+  private final long defaultWarningMs;
+  private final long defaultSevereMs;
+  private final Map<String, long[]> byType;
+
+  /**
+   * Creates thresholds that apply to every sensor type.
+   *
+   * @param warningMs age (ms) beyond which a value gets a WARNING
+   * @param severeMs age (ms) beyond which a value gets a SEVERE error; at least {@code warningMs}
+   * @throws IllegalArgumentException if a threshold is negative or severe is below warning
+   */
+  public StalenessThresholds(long warningMs, long severeMs) {
+    this(warningMs, severeMs, Map.of());
+  }
+
+  private StalenessThresholds(long warningMs, long severeMs, Map<String, long[]> byType) {
+    validate(warningMs, severeMs);
+    this.defaultWarningMs = warningMs;
+    this.defaultSevereMs = severeMs;
+    this.byType = byType;
+  }
+
+  private static void validate(long warningMs, long severeMs) {
+    if (warningMs < 0 || severeMs < warningMs) {
+      throw new IllegalArgumentException(
+          "Thresholds must satisfy 0 <= warning <= severe, got " + warningMs + ", " + severeMs);
+    }
+  }
+
+  /**
+   * Returns a copy with the given thresholds for one sensor type.
+   *
+   * @param type sensor type, as in {@link SensorConfig#getType()}
+   * @param warningMs age (ms) beyond which a value gets a WARNING
+   * @param severeMs age (ms) beyond which a value gets a SEVERE error; at least {@code warningMs}
+   * @return new thresholds
+   */
+  public StalenessThresholds withType(String type, long warningMs, long severeMs) {
+    validate(warningMs, severeMs);
+    Map<String, long[]> copy = new HashMap<>(byType);
+    copy.put(type, new long[] {warningMs, severeMs});
+    return new StalenessThresholds(defaultWarningMs, defaultSevereMs, Map.copyOf(copy));
+  }
+
+  /** Returns true if no threshold is set, so staleness checks can be skipped. */
+  public boolean isDisabled() {
+    if (defaultWarningMs != Long.MAX_VALUE) {
+      return false;
+    }
+    for (long[] limits : byType.values()) {
+      if (limits[0] != Long.MAX_VALUE) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns the warning threshold (ms) for the given sensor type; null means the default. */
+  public long warningMs(String type) {
+    long[] limits = type != null ? byType.get(type) : null;
+    return limits != null ? limits[0] : defaultWarningMs;
+  }
+
+  /** Returns the severe threshold (ms) for the given sensor type; null means the default. */
+  public long severeMs(String type) {
+    long[] limits = type != null ? byType.get(type) : null;
+    return limits != null ? limits[1] : defaultSevereMs;
+  }
+}
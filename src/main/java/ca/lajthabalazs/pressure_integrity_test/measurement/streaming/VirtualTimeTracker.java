@@ -86,6 +86,21 @@ public class VirtualTimeTracker {
     }
   }
 
+  /**
+   * Moves the virtual time to the given position. Pause state and speed are preserved; if playing,
+   * virtual time continues to advance from the new position.
+   *
+   * @param realTimeNow the current real time (ms since epoch)
+   * @param virtualTime the new virtual time (ms in original timeline); negative values are clamped
+   *     to zero
+   */
+  public void seek(long realTimeNow, long virtualTime) {
+    this.virtualTimeElapsed = Math.max(0, virtualTime);
+    if (realTimeStart != null) {
+      realTimeStart = realTimeNow;
+    }
+  }
+
   /**
    * Gets the current virtual time, accounting for any elapsed play time since the last update.
    *
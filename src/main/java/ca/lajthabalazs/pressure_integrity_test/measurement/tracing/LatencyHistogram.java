@@ -0,0 +1,106 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.tracing;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe histogram of latencies in nanoseconds.
+ *
+ * <p>Values below 8 ns have a bucket each; above that every power of two is split into 8 equal
+ * buckets, so a percentile is reported at most 12.5% above the true value. The buckets are
+ * allocated once and {@link #record} only increments counters.
+ */
+public final class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private final String name;
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong sum = new AtomicLong();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * @param name name of the measured hop, shown in reports
+   */
+  public LatencyHistogram(String name) {
+    this.name = name;
+  }
+
+  /** Returns the name of the measured hop. */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Adds one latency.
+   *
+   * @param nanos latency in nanoseconds; negative values count as 0
+   */
+  public void record(long nanos) {
+    long value = Math.max(nanos, 0L);
+    counts.incrementAndGet(bucket(value));
+    count.incrementAndGet();
+    sum.addAndGet(value);
+    max.accumulateAndGet(value, Math::max);
+  }
+
+  /** Returns the index of the bucket holding {@code nanos} (not negative). */
+  static int bucket(long nanos) {
+    if (nanos < SUB_BUCKETS) {
+      return (int) nanos;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+    int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return ((exponent - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) | subBucket;
+  }
+
+  /** Returns the largest value that falls into a bucket. */
+  static long upperBound(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int exponent = (bucket >>> SUB_BUCKET_BITS) + SUB_BUCKET_BITS - 1;
+    int shift = exponent - SUB_BUCKET_BITS;
+    long first = (long) (SUB_BUCKETS | (bucket & (SUB_BUCKETS - 1))) << shift;
+    return first + (1L << shift) - 1;
+  }
+
+  /** Returns the statistics of the latencies recorded so far. */
+  public LatencyStats snapshot() {
+    long n = count.get();
+    long maxNanos = max.get();
+    return new LatencyStats(
+        name,
+        n,
+        n == 0 ? 0L : sum.get() / n,
+        percentile(n, 0.5, maxNanos),
+        percentile(n, 0.99, maxNanos),
+        maxNanos);
+  }
+
+  /** Returns the upper bound of the bucket holding the q-quantile, capped at the maximum. */
+  private long percentile(long n, double q, long maxNanos) {
+    long rank = (long) Math.ceil(q * n);
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts.get(i);
+      if (seen >= rank && seen > 0) {
+        return Math.min(upperBound(i), maxNanos);
+      }
+    }
+    return 0L;
+  }
+
+  /** Removes all recorded latencies. */
+  public void reset() {
+    for (int i = 0; i < BUCKETS; i++) {
+      counts.set(i, 0L);
+    }
+    count.set(0L);
+    sum.set(0L);
+    max.set(0L);
+  }
+}
@@ -0,0 +1,31 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.tracing;
+
+import java.util.Locale;
+
+/**
+ * Latency statistics of one hop, from the ingest of a vector to the end of the hop.
+ *
+ * @param hop name of the hop
+ * @param count number of vectors measured
+ * @param meanNanos mean latency in nanoseconds (0 without vectors)
+ * @param p50Nanos median latency in nanoseconds, rounded up to its histogram bucket
+ * @param p99Nanos 99th percentile latency in nanoseconds, rounded up to its histogram bucket
+ * @param maxNanos largest latency in nanoseconds
+ */
+public record LatencyStats(
+    String hop, long count, long meanNanos, long p50Nanos, long p99Nanos, long maxNanos) {
+
+  private static final double NANOS_PER_MS = 1e6;
+
+  /** Returns e.g. {@code "dashboard n=120 p50=0.41ms p99=2.10ms max=3.02ms"}. */
+  public String format() {
+    return String.format(
+        Locale.ROOT,
+        "%s n=%d p50=%.2fms p99=%.2fms max=%.2fms",
+        hop,
+        count,
+        p50Nanos / NANOS_PER_MS,
+        p99Nanos / NANOS_PER_MS,
+        maxNanos / NANOS_PER_MS);
+  }
+}
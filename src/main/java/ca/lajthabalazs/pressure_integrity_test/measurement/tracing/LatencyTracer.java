@@ -0,0 +1,224 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.tracing;
+
+import ca.lajthabalazs.pressure_integrity_test.config.SensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import ca.lajthabalazs.pressure_integrity_test.measurement.streaming.MeasurementVectorStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Measures how long vectors take from acquisition to each processing stage and sink.
+ *
+ * <p>{@link #ingest} stamps every vector of a source stream with the current {@link
+ * System#nanoTime()} (see {@link MeasurementVector#getIngestNanos()}); the stamp travels with the
+ * vector through the steps of a {@code Pipeline}. Each stage and sink owns a {@link Hop} and
+ * records, when a vector has passed it, the time since the stamp into the hop's {@link
+ * LatencyHistogram}. {@link #snapshot()} and {@link #summaryLine()} report the hops in
+ * registration order; {@link #startLogging} prints the summary periodically.
+ *
+ * <p>Tracing is off until {@link #setEnabled(boolean)}. While it is off, vectors are passed on
+ * unchanged and hops return after one volatile read, so nothing is allocated per vector. While it
+ * is on, stamping allocates one small vector that shares the contents of the original, and
+ * recording increments a few atomic counters.
+ */
+public final class LatencyTracer {
+
+  private final LongSupplier nanoClock;
+  private final Map<String, Hop> hopsByName = new LinkedHashMap<>();
+  private volatile boolean enabled;
+  private ScheduledExecutorService logger;
+
+  /** Creates a disabled tracer on {@link System#nanoTime()}. */
+  public LatencyTracer() {
+    this(System::nanoTime);
+  }
+
+  /**
+   * Creates a disabled tracer.
+   *
+   * @param nanoClock source of the current time in nanoseconds
+   */
+  public LatencyTracer(LongSupplier nanoClock) {
+    this.nanoClock = nanoClock;
+  }
+
+  /** Turns tracing on or off; recorded latencies are kept. */
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  /** Returns true if tracing is on. */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Returns the vector stamped with the current time if tracing is on, else the vector itself.
+   * Stamping never replaces an earlier stamp.
+   */
+  public MeasurementVector stamp(MeasurementVector vector) {
+    if (!enabled || vector.getIngestNanos() != 0L) {
+      return vector;
+    }
+    long now = nanoClock.getAsLong();
+    return vector.withIngestNanos(now != 0L ? now : 1L);
+  }
+
+  /**
+   * Returns a stream that republishes the vectors of {@code source} stamped by {@link #stamp}.
+   * Subscribe the processing stages to it instead of the acquisition stream.
+   */
+  public Ingest ingest(MeasurementVectorStream source) {
+    return new Ingest(source);
+  }
+
+  /**
+   * Returns the hop with the given name, creating it on first use.
+   *
+   * @param name name of the stage or sink, shown in reports
+   */
+  public synchronized Hop hop(String name) {
+    return hopsByName.computeIfAbsent(name, n -> new Hop(new LatencyHistogram(n)));
+  }
+
+  /**
+   * Returns a handler that passes every vector to {@code sink} and then records it on the hop
+   * with the given name.
+   */
+  public MeasurementVectorStream.MeasurementVectorHandler traced(
+      String name, MeasurementVectorStream.MeasurementVectorHandler sink) {
+    Hop hop = hop(name);
+    return vector -> {
+      sink.handle(vector);
+      hop.record(vector);
+    };
+  }
+
+  /** Returns the statistics of every hop, in the order the hops were created. */
+  public synchronized List<LatencyStats> snapshot() {
+    List<LatencyStats> stats = new ArrayList<>();
+    for (Hop hop : hopsByName.values()) {
+      stats.add(hop.histogram.snapshot());
+    }
+    return stats;
+  }
+
+  /** Returns one line with the statistics of every hop that has recorded a vector. */
+  public String summaryLine() {
+    List<String> parts = new ArrayList<>();
+    for (LatencyStats stats : snapshot()) {
+      if (stats.count() > 0) {
+        parts.add(stats.format());
+      }
+    }
+    return "Latency: " + (parts.isEmpty() ? "no traced vectors" : String.join(", ", parts));
+  }
+
+  /** Removes the recorded latencies of every hop. */
+  public synchronized void reset() {
+    for (Hop hop : hopsByName.values()) {
+      hop.histogram.reset();
+    }
+  }
+
+  /**
+   * Passes {@link #summaryLine()} to {@code log} every {@code periodMs} on a daemon thread while
+   * tracing is on, replacing any earlier logging.
+   *
+   * @throws IllegalArgumentException if the period is not positive
+   */
+  public synchronized void startLogging(long periodMs, Consumer<String> log) {
+    if (periodMs < 1) {
+      throw new IllegalArgumentException("periodMs must be positive");
+    }
+    stopLogging();
+    logger =
+        Executors.newSingleThreadScheduledExecutor(
+            r -> {
+              Thread thread = new Thread(r, "latency-log");
+              thread.setDaemon(true);
+              return thread;
+            });
+    logger.scheduleAtFixedRate(
+        () -> {
+          if (enabled) {
+            log.accept(summaryLine());
+          }
+        },
+        periodMs,
+        periodMs,
+        TimeUnit.MILLISECONDS);
+  }
+
+  /** Stops the logging started by {@link #startLogging}, if any. */
+  public synchronized void stopLogging() {
+    if (logger != null) {
+      logger.shutdownNow();
+      logger = null;
+    }
+  }
+
+  /** A traced stage or sink. Thread-safe; recording never allocates. */
+  public final class Hop {
+
+    private final LatencyHistogram histogram;
+
+    private Hop(LatencyHistogram histogram) {
+      this.histogram = histogram;
+    }
+
+    /** Returns the name of the hop. */
+    public String getName() {
+      return histogram.getName();
+    }
+
+    /** Records the time since the vector was stamped, if tracing is on and it was stamped. */
+    public void record(MeasurementVector vector) {
+      record(vector.getIngestNanos());
+    }
+
+    /**
+     * Records the time since {@code ingestNanos}, if tracing is on and it is not 0.
+     *
+     * @param ingestNanos the ingest time of the vector that has passed the hop
+     */
+    public void record(long ingestNanos) {
+      if (ingestNanos != 0L && enabled) {
+        histogram.record(nanoClock.getAsLong() - ingestNanos);
+      }
+    }
+  }
+
+  /** Republishes the vectors of a source stream with an ingest stamp. */
+  public final class Ingest extends MeasurementVectorStream {
+
+    private final MeasurementVectorStream source;
+    private MeasurementVectorStream.Subscription sourceSubscription;
+
+    private Ingest(MeasurementVectorStream source) {
+      this.source = source;
+      this.sourceSubscription = source.subscribe(vector -> publish(stamp(vector)));
+    }
+
+    @Override
+    public List<SensorConfig> listSensors() {
+      return source.listSensors();
+    }
+
+    /** Unsubscribes from the source stream and clears all subscribers. */
+    public void stop() {
+      if (sourceSubscription != null) {
+        sourceSubscription.unsubscribe();
+        sourceSubscription = null;
+      }
+      clearSubscribers();
+    }
+  }
+}
@@ -0,0 +1,67 @@
+package ca.lajthabalazs.pressure_integrity_test.server;
+
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * Bounded queue of the vectors waiting to be sent to one client. {@link #offer} never waits: when
+ * the queue is full the oldest vector is dropped, so a slow client only loses its own vectors.
+ */
+final class ClientBuffer {
+
+  private final ArrayDeque<MeasurementVector> vectors;
+  private final int capacity;
+  private long dropped;
+  private boolean closed;
+
+  ClientBuffer(int capacity) {
+    this.vectors = new ArrayDeque<>(capacity);
+    this.capacity = capacity;
+  }
+
+  /** Adds a vector, dropping the oldest one if the buffer is full. Ignored once closed. */
+  synchronized void offer(MeasurementVector vector) {
+    if (closed) {
+      return;
+    }
+    if (vectors.size() == capacity) {
+      vectors.removeFirst();
+      dropped++;
+    }
+    vectors.addLast(vector);
+    notifyAll();
+  }
+
+  /**
+   * Waits for at least one vector and moves all queued vectors to {@code batch}.
+   *
+   * @return the number of vectors dropped since the previous call, or -1 if the buffer was closed
+   *     or the thread interrupted
+   */
+  synchronized long drainTo(List<MeasurementVector> batch) {
+    while (vectors.isEmpty() && !closed) {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return -1;
+      }
+    }
+    if (closed) {
+      return -1;
+    }
+    batch.addAll(vectors);
+    vectors.clear();
+    long result = dropped;
+    dropped = 0;
+    return result;
+  }
+
+  /** Wakes up {@link #drainTo} for good and drops the queued vectors. */
+  synchronized void close() {
+    closed = true;
+    vectors.clear();
+    notifyAll();
+  }
+}
@@ -0,0 +1,87 @@
+package ca.lajthabalazs.pressure_integrity_test.server;
+
+import ca.lajthabalazs.pressure_integrity_test.measurement.ErrorSeverity;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Measurement;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementError;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Encodes the vectors sent to one client as server-sent events. Keeps per-client state, so every
+ * client needs its own encoder.
+ *
+ * <p>Source ids are sent once, as a {@code key} event with the index that replaces the id in all
+ * later vectors, the id and the unit ({@code -} for ids that only occur in errors):
+ *
+ * <pre>
+ * event: key
+ * data: 0 P1 Pa
+ * </pre>
+ *
+ * <p>A vector is a plain {@code data} event: its time in ms since epoch for the first vector, then
+ * the ms since the previous vector; each measurement as {@code index=value}, or {@code index=} if
+ * it has no value; each error as {@code !index} followed by {@code W} (warning) or {@code S}
+ * (severe). Error messages are not sent.
+ *
+ * <pre>
+ * data: 60000 0=149998 1=20 2= !1W
+ * </pre>
+ *
+ * <p>If vectors were dropped because the client was too slow, a {@code dropped} event with their
+ * number precedes the next vector.
+ */
+public final class SseVectorEncoder {
+
+  private static final String NO_UNIT = "-";
+
+  private final Map<String, Integer> indexBySourceId = new HashMap<>();
+  private boolean first = true;
+  private long previousTimeUtc;
+
+  /**
+   * Returns the events for a vector.
+   *
+   * @param vector the vector to send
+   * @param droppedBefore number of vectors dropped since the previous one sent
+   */
+  public String encode(MeasurementVector vector, long droppedBefore) {
+    StringBuilder out = new StringBuilder();
+    if (droppedBefore > 0) {
+      out.append("event: dropped\ndata: ").append(droppedBefore).append("\n\n");
+    }
+    StringBuilder data = new StringBuilder("data: ");
+    data.append(first ? vector.getTimeUtc() : vector.getTimeUtc() - previousTimeUtc);
+    first = false;
+    previousTimeUtc = vector.getTimeUtc();
+    for (Measurement m : vector.getMeasurementsMap().values()) {
+      data.append(' ').append(index(out, m.getSourceId(), m.getDefaultUnit())).append('=');
+      if (m.getValueInDefaultUnit() != null) {
+        data.append(m.getValueInDefaultUnit().toPlainString());
+      }
+    }
+    for (MeasurementError error : vector.getErrors()) {
+      data.append(" !")
+          .append(index(out, error.sensorId(), NO_UNIT))
+          .append(error.severity() == ErrorSeverity.SEVERE ? 'S' : 'W');
+    }
+    return out.append(data).append("\n\n").toString();
+  }
+
+  /** Returns the index of a source id, appending its {@code key} event on first use. */
+  private int index(StringBuilder out, String sourceId, String unit) {
+    Integer index = indexBySourceId.get(sourceId);
+    if (index == null) {
+      index = indexBySourceId.size();
+      indexBySourceId.put(sourceId, index);
+      out.append("event: key\ndata: ")
+          .append(index)
+          .append(' ')
+          .append(sourceId)
+          .append(' ')
+          .append(unit)
+          .append("\n\n");
+    }
+    return index;
+  }
+}
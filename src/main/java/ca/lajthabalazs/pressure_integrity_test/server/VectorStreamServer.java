@@ -0,0 +1,160 @@
+package ca.lajthabalazs.pressure_integrity_test.server;
+
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import ca.lajthabalazs.pressure_integrity_test.measurement.streaming.MeasurementVectorStream;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves a vector stream to local clients as server-sent events on {@code GET /vectors}, bound to
+ * the loopback address.
+ *
+ * <p>Every client has its own {@link ClientBuffer} and a thread that encodes ({@link
+ * SseVectorEncoder}) and writes its vectors. Publishing a vector only adds it to the buffers, so
+ * the source never waits for a client; a client that cannot keep up loses its oldest vectors and
+ * is told how many with a {@code dropped} event.
+ */
+public final class VectorStreamServer implements AutoCloseable {
+
+  /** Path of the event stream. */
+  public static final String PATH = "/vectors";
+
+  private final MeasurementVectorStream source;
+  private final int clientBufferSize;
+  private final int maxClients;
+  private final List<ClientBuffer> clients = new CopyOnWriteArrayList<>();
+  private HttpServer server;
+  private ExecutorService handlers;
+  private MeasurementVectorStream.Subscription subscription;
+
+  /**
+   * Creates a server; nothing is served until {@link #start(int)}.
+   *
+   * @param source the stream whose vectors are served
+   * @param clientBufferSize number of vectors buffered per client before the oldest is dropped
+   * @param maxClients number of clients served at the same time; more are refused with 503
+   * @throws IllegalArgumentException if {@code clientBufferSize} or {@code maxClients} is not
+   *     positive
+   */
+  public VectorStreamServer(MeasurementVectorStream source, int clientBufferSize, int maxClients) {
+    if (clientBufferSize < 1) {
+      throw new IllegalArgumentException("clientBufferSize must be positive");
+    }
+    if (maxClients < 1) {
+      throw new IllegalArgumentException("maxClients must be positive");
+    }
+    this.source = source;
+    this.clientBufferSize = clientBufferSize;
+    this.maxClients = maxClients;
+  }
+
+  /**
+   * Starts serving and subscribes to the source.
+   *
+   * @param port the loopback port to listen on, or 0 for any free port (see {@link #getPort()})
+   * @throws IOException if the port cannot be bound
+   * @throws IllegalStateException if the server is running
+   */
+  public synchronized void start(int port) throws IOException {
+    if (server != null) {
+      throw new IllegalStateException("Server already started");
+    }
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    handlers =
+        Executors.newCachedThreadPool(
+            r -> {
+              Thread thread = new Thread(r, "vector-client");
+              thread.setDaemon(true);
+              return thread;
+            });
+    server.setExecutor(handlers);
+    server.createContext(PATH, this::handle);
+    server.start();
+    subscription = source.subscribe(this::broadcast);
+  }
+
+  /** Returns the port the server listens on. */
+  public synchronized int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  /** Returns the number of connected clients. */
+  public int getClientCount() {
+    return clients.size();
+  }
+
+  private void broadcast(MeasurementVector vector) {
+    for (ClientBuffer client : clients) {
+      client.offer(vector);
+    }
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    if (!"GET".equals(exchange.getRequestMethod())) {
+      exchange.sendResponseHeaders(405, -1);
+      exchange.close();
+      return;
+    }
+    ClientBuffer buffer = new ClientBuffer(clientBufferSize);
+    synchronized (this) {
+      if (clients.size() >= maxClients) {
+        exchange.sendResponseHeaders(503, -1);
+        exchange.close();
+        return;
+      }
+      clients.add(buffer);
+    }
+    try (exchange) {
+      exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+      exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+      exchange.sendResponseHeaders(200, 0);
+      Writer out =
+          new BufferedWriter(
+              new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8));
+      SseVectorEncoder encoder = new SseVectorEncoder();
+      List<MeasurementVector> batch = new ArrayList<>();
+      long dropped;
+      while ((dropped = buffer.drainTo(batch)) >= 0) {
+        for (MeasurementVector vector : batch) {
+          out.write(encoder.encode(vector, dropped));
+          dropped = 0;
+        }
+        out.flush();
+        batch.clear();
+      }
+    } catch (IOException e) {
+      // The client disconnected.
+    } finally {
+      clients.remove(buffer);
+      buffer.close();
+    }
+  }
+
+  /** Unsubscribes from the source, disconnects all clients and stops listening. */
+  @Override
+  public synchronized void close() {
+    if (server == null) {
+      return;
+    }
+    subscription.unsubscribe();
+    for (ClientBuffer client : clients) {
+      client.close();
+    }
+    clients.clear();
+    server.stop(0);
+    handlers.shutdownNow();
+    server = null;
+  }
+}
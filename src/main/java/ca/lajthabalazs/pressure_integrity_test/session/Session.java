@@ -0,0 +1,228 @@
+package ca.lajthabalazs.pressure_integrity_test.session;
+
+import ca.lajthabalazs.pressure_integrity_test.config.CalibrationConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.SiteConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.TestConfig;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.FullStackLeakageMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.Pipeline;
+import ca.lajthabalazs.pressure_integrity_test.measurement.streaming.MeasurementVectorPlaybackStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.streaming.MeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.tracing.LatencyTracer;
+import java.lang.management.ManagementFactory;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One test being monitored: a source stream, its own {@link
+ * FullStackLeakageMeasurementVectorStream} and the sinks subscribed to {@link #getOutput()}.
+ * Created by {@link SessionManager}.
+ *
+ * <p>Vectors of the source are queued and processed on the manager's worker threads, one at a
+ * time and in arrival order, at most {@link #BATCH} in a row before the worker moves on to other
+ * sessions. The pipeline and the sinks of a session therefore never run concurrently with
+ * themselves, but may run on a different worker thread for every batch. At most the lane capacity
+ * of the manager is queued: when a vector arrives at a full queue, the oldest queued vector is
+ * dropped and counted in {@link SessionStats#dropped()}, so a stalled session never blocks its
+ * source or the shared scheduler and its memory stays bounded.
+ *
+ * <p>A session opened with a checkpoint sink hands the state of its pipeline to the sink
+ * periodically and once more when it is closed, and a session opened with such a checkpoint goes
+ * on where the earlier one stopped (see {@link SessionManager#openPlayback(String, SiteConfig,
+ * CalibrationConfig, TestConfig, byte[], long, Pipeline.CheckpointSink)}).
+ */
+public final class Session {
+
+  /** Maximum number of vectors processed in a row before other sessions get the worker. */
+  static final int BATCH = 64;
+
+  private static final com.sun.management.ThreadMXBean THREADS =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  private final String name;
+  private final SessionManager manager;
+  private final MeasurementVectorPlaybackStream playback;
+  private final Lane lane;
+  private final FullStackLeakageMeasurementVectorStream output;
+  private final MeasurementVectorStream.Subscription sourceSubscription;
+  private final AtomicLong vectors = new AtomicLong();
+  private final AtomicLong cpuNanos = new AtomicLong();
+  private final AtomicLong allocatedBytes = new AtomicLong();
+  private final AtomicBoolean closed = new AtomicBoolean();
+  private volatile LatencyTracer latencyTracer;
+
+  Session(
+      String name,
+      SessionManager manager,
+      Executor workers,
+      int laneCapacity,
+      MeasurementVectorStream source,
+      MeasurementVectorPlaybackStream playback,
+      SiteConfig siteConfig,
+      CalibrationConfig calibrationConfig,
+      TestConfig testConfig,
+      byte[] resumeCheckpoint,
+      long checkpointIntervalMs,
+      Pipeline.CheckpointSink checkpointSink) {
+    this.name = name;
+    this.manager = manager;
+    this.playback = playback;
+    this.lane = new Lane(workers, laneCapacity);
+    this.output =
+        new FullStackLeakageMeasurementVectorStream(
+            siteConfig,
+            calibrationConfig,
+            testConfig,
+            lane,
+            resumeCheckpoint,
+            checkpointIntervalMs,
+            checkpointSink);
+    this.sourceSubscription = source.subscribe(lane::offer);
+  }
+
+  /** Returns the name of the session, unique within its manager. */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Returns the playback stream of a session opened with {@link SessionManager#openPlayback}, or
+   * null. Use {@link MeasurementVectorPlaybackStream#stopPlayback()} on it, never {@code
+   * shutdown()}, which would stop the scheduler shared by all sessions.
+   */
+  public MeasurementVectorPlaybackStream getPlayback() {
+    return playback;
+  }
+
+  /**
+   * Returns the processed vectors; subscribe the session's sinks here. Handlers run on the worker
+   * threads and should hand slow work (e.g. UI updates) to their own thread.
+   */
+  public FullStackLeakageMeasurementVectorStream getOutput() {
+    return output;
+  }
+
+  /**
+   * Stamps the vectors of the session when they arrive and records their latency at the end of
+   * every pipeline node, so the time spent waiting for a worker is included.
+   *
+   * @param tracer the tracer to record to, or null to stop recording
+   */
+  public void setLatencyTracer(LatencyTracer tracer) {
+    latencyTracer = tracer;
+    output.setLatencyTracer(tracer);
+  }
+
+  /**
+   * Returns the resource use of the session so far. A batch is counted once it is complete, so
+   * the counters may lag behind the sinks.
+   */
+  public SessionStats stats() {
+    return new SessionStats(
+        name,
+        vectors.get(),
+        lane.backlog.get(),
+        lane.dropped.get(),
+        cpuNanos.get(),
+        allocatedBytes.get());
+  }
+
+  /**
+   * Returns the state of the session's pipeline between two vectors (see {@link
+   * FullStackLeakageMeasurementVectorStream#checkpoint()}). May be called from any thread; waits
+   * while a worker processes a batch of the session.
+   */
+  public byte[] checkpoint() {
+    synchronized (lane) {
+      return output.checkpoint();
+    }
+  }
+
+  /** Returns true once {@link #close()} has been called. */
+  public boolean isClosed() {
+    return closed.get();
+  }
+
+  /**
+   * Stops the session: unsubscribes from the source, stops the playback if any, drops the queued
+   * vectors once the running batch (if any) is complete, stops the pipeline, which hands a last
+   * checkpoint to the checkpoint sink, and removes the session from its manager. Calling it again
+   * has no effect.
+   */
+  public void close() {
+    if (!closed.compareAndSet(false, true)) {
+      return;
+    }
+    sourceSubscription.unsubscribe();
+    if (playback != null) {
+      playback.stopPlayback();
+    }
+    lane.stop();
+    output.stop();
+    manager.remove(this);
+  }
+
+  /**
+   * Queue between the source and the pipeline, drained on the worker threads. A batch runs while
+   * holding the lane's lock, so {@link #checkpoint()} and {@link #stop()} wait for it.
+   */
+  private final class Lane extends MeasurementVectorStream implements Runnable {
+
+    private final Executor workers;
+    private final int capacity;
+    private final Queue<MeasurementVector> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger backlog = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private Lane(Executor workers, int capacity) {
+      this.workers = workers;
+      this.capacity = capacity;
+    }
+
+    /** Queues a vector, dropping the oldest queued one if the lane is full. */
+    private void offer(MeasurementVector vector) {
+      LatencyTracer tracer = latencyTracer;
+      pending.add(tracer != null ? tracer.stamp(vector) : vector);
+      if (backlog.incrementAndGet() > capacity && pending.poll() != null) {
+        backlog.decrementAndGet();
+        dropped.incrementAndGet();
+      }
+      if (scheduled.compareAndSet(false, true)) {
+        workers.execute(this);
+      }
+    }
+
+    @Override
+    public void run() {
+      long cpuStart = THREADS.getCurrentThreadCpuTime();
+      long allocatedStart = THREADS.getCurrentThreadAllocatedBytes();
+      int processed = 0;
+      synchronized (this) {
+        MeasurementVector vector;
+        while (processed < BATCH && (vector = pending.poll()) != null) {
+          backlog.decrementAndGet();
+          publish(vector);
+          processed++;
+        }
+      }
+      cpuNanos.addAndGet(THREADS.getCurrentThreadCpuTime() - cpuStart);
+      allocatedBytes.addAndGet(THREADS.getCurrentThreadAllocatedBytes() - allocatedStart);
+      vectors.addAndGet(processed); // last, so the counted vectors have their CPU time and bytes
+      scheduled.set(false);
+      if (!pending.isEmpty() && scheduled.compareAndSet(false, true)) {
+        workers.execute(this);
+      }
+    }
+
+    private synchronized void stop() {
+      clearSubscribers();
+      pending.clear();
+      backlog.set(0);
+    }
+  }
+}
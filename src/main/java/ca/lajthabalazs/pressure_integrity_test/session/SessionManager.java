@@ -0,0 +1,272 @@
+package ca.lajthabalazs.pressure_integrity_test.session;
+
+import ca.lajthabalazs.pressure_integrity_test.config.CalibrationConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.SiteConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.TestConfig;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.Pipeline;
+import ca.lajthabalazs.pressure_integrity_test.measurement.streaming.MeasurementVectorPlaybackStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.streaming.MeasurementVectorStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs several independent {@link Session}s in one process, e.g. several containments monitored
+ * from one workstation, or a live test alongside a replay.
+ *
+ * <p>Every session has its own pipeline and sinks. The sessions share one scheduler thread, which
+ * times the playback of replayed sessions, and a fixed number of worker threads, which run the
+ * pipelines; the thread count therefore does not grow with the number of sessions. {@link
+ * #stats()} reports the CPU time and the allocated bytes of each session. Every session queues at
+ * most a fixed number of vectors for the workers and drops the oldest ones beyond that (see {@link
+ * Session}).
+ */
+public final class SessionManager implements AutoCloseable {
+
+  /** Number of vectors a session queues for the workers by default: a week of 1-minute vectors. */
+  public static final int DEFAULT_LANE_CAPACITY = 10_080;
+
+  private static final long PLAYBACK_SHUTDOWN_AWAIT_MS = 5000L;
+
+  private final ScheduledExecutorService scheduler;
+  private final ExecutorService workers;
+  private final int laneCapacity;
+  private final Map<String, Session> sessionsByName = new LinkedHashMap<>();
+  private boolean closed;
+
+  /**
+   * Creates a session manager with its scheduler and worker threads (all daemon threads), whose
+   * sessions queue up to {@link #DEFAULT_LANE_CAPACITY} vectors each.
+   *
+   * @param workerThreads number of sessions that can process vectors at the same time
+   * @throws IllegalArgumentException if {@code workerThreads} is not positive
+   */
+  public SessionManager(int workerThreads) {
+    this(workerThreads, DEFAULT_LANE_CAPACITY);
+  }
+
+  /**
+   * Creates a session manager with its scheduler and worker threads (all daemon threads).
+   *
+   * @param workerThreads number of sessions that can process vectors at the same time
+   * @param laneCapacity number of vectors each session queues for the workers before it drops the
+   *     oldest
+   * @throws IllegalArgumentException if {@code workerThreads} or {@code laneCapacity} is not
+   *     positive
+   */
+  public SessionManager(int workerThreads, int laneCapacity) {
+    if (workerThreads < 1) {
+      throw new IllegalArgumentException("workerThreads must be positive");
+    }
+    if (laneCapacity < 1) {
+      throw new IllegalArgumentException("laneCapacity must be positive");
+    }
+    this.laneCapacity = laneCapacity;
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads("session-scheduler"));
+    this.workers = Executors.newFixedThreadPool(workerThreads, daemonThreads("session-worker"));
+  }
+
+  private static ThreadFactory daemonThreads(String prefix) {
+    AtomicInteger count = new AtomicInteger();
+    return r -> {
+      Thread thread = new Thread(r, prefix + "-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  /**
+   * Opens a session on a stream of live (or otherwise produced) vectors. The caller keeps owning
+   * the source; the session only subscribes to it.
+   *
+   * @param name unique name of the session
+   * @param source the stream whose vectors are processed
+   * @param siteConfig site configuration; must not be null
+   * @param calibrationConfig optional calibration; if null, no calibration step is applied
+   * @param testConfig optional test configuration; if null, no stage step is applied
+   * @throws IllegalArgumentException if a session with that name is open
+   * @throws IllegalStateException if the manager has been closed
+   */
+  public synchronized Session open(
+      String name,
+      MeasurementVectorStream source,
+      SiteConfig siteConfig,
+      CalibrationConfig calibrationConfig,
+      TestConfig testConfig) {
+    return open(name, source, siteConfig, calibrationConfig, testConfig, null, 0L, null);
+  }
+
+  /**
+   * Same as {@link #open(String, MeasurementVectorStream, SiteConfig, CalibrationConfig,
+   * TestConfig)}, resuming from a checkpoint and saving new ones periodically.
+   *
+   * @param resumeCheckpoint a {@link Session#checkpoint()} of a session opened with the same
+   *     configuration, or null to start from scratch; source vectors up to its time are ignored
+   * @param checkpointIntervalMs measurement time between periodic checkpoints, in milliseconds
+   * @param checkpointSink receives the periodic checkpoints on a worker thread and a last one when
+   *     the session is closed; if null, no checkpoints are taken
+   * @throws IllegalArgumentException if a session with that name is open, if the checkpoint is
+   *     damaged or was taken with another configuration, or if a sink is given with an interval
+   *     that is not positive
+   * @throws IllegalStateException if the manager has been closed
+   */
+  public synchronized Session open(
+      String name,
+      MeasurementVectorStream source,
+      SiteConfig siteConfig,
+      CalibrationConfig calibrationConfig,
+      TestConfig testConfig,
+      byte[] resumeCheckpoint,
+      long checkpointIntervalMs,
+      Pipeline.CheckpointSink checkpointSink) {
+    return open(
+        name,
+        source,
+        null,
+        siteConfig,
+        calibrationConfig,
+        testConfig,
+        resumeCheckpoint,
+        checkpointIntervalMs,
+        checkpointSink);
+  }
+
+  /**
+   * Opens a session that replays recorded vectors; start it with {@link
+   * MeasurementVectorPlaybackStream#startPlayback} on {@link Session#getPlayback()}. The playback
+   * runs on the shared scheduler.
+   *
+   * @param name unique name of the session
+   * @param siteConfig site configuration; must not be null
+   * @param calibrationConfig optional calibration; if null, no calibration step is applied
+   * @param testConfig optional test configuration; if null, no stage step is applied
+   * @throws IllegalArgumentException if a session with that name is open
+   * @throws IllegalStateException if the manager has been closed
+   */
+  public synchronized Session openPlayback(
+      String name,
+      SiteConfig siteConfig,
+      CalibrationConfig calibrationConfig,
+      TestConfig testConfig) {
+    return openPlayback(name, siteConfig, calibrationConfig, testConfig, null, 0L, null);
+  }
+
+  /**
+   * Same as {@link #openPlayback(String, SiteConfig, CalibrationConfig, TestConfig)}, resuming
+   * from a checkpoint and saving new ones periodically. To go on where the checkpointed session
+   * stopped, replay the same recording with its original timestamps; the vectors up to the time of
+   * the checkpoint are ignored.
+   *
+   * @param resumeCheckpoint a {@link Session#checkpoint()} of a session opened with the same
+   *     configuration, or null to start from scratch
+   * @param checkpointIntervalMs measurement time between periodic checkpoints, in milliseconds
+   * @param checkpointSink receives the periodic checkpoints on a worker thread and a last one when
+   *     the session is closed; if null, no checkpoints are taken
+   * @throws IllegalArgumentException if a session with that name is open, if the checkpoint is
+   *     damaged or was taken with another configuration, or if a sink is given with an interval
+   *     that is not positive
+   * @throws IllegalStateException if the manager has been closed
+   */
+  public synchronized Session openPlayback(
+      String name,
+      SiteConfig siteConfig,
+      CalibrationConfig calibrationConfig,
+      TestConfig testConfig,
+      byte[] resumeCheckpoint,
+      long checkpointIntervalMs,
+      Pipeline.CheckpointSink checkpointSink) {
+    MeasurementVectorPlaybackStream playback =
+        new MeasurementVectorPlaybackStream(scheduler, PLAYBACK_SHUTDOWN_AWAIT_MS);
+    return open(
+        name,
+        playback,
+        playback,
+        siteConfig,
+        calibrationConfig,
+        testConfig,
+        resumeCheckpoint,
+        checkpointIntervalMs,
+        checkpointSink);
+  }
+
+  private Session open(
+      String name,
+      MeasurementVectorStream source,
+      MeasurementVectorPlaybackStream playback,
+      SiteConfig siteConfig,
+      CalibrationConfig calibrationConfig,
+      TestConfig testConfig,
+      byte[] resumeCheckpoint,
+      long checkpointIntervalMs,
+      Pipeline.CheckpointSink checkpointSink) {
+    if (closed) {
+      throw new IllegalStateException("Session manager is closed");
+    }
+    if (sessionsByName.containsKey(name)) {
+      throw new IllegalArgumentException("Session already open: " + name);
+    }
+    Session session =
+        new Session(
+            name,
+            this,
+            workers,
+            laneCapacity,
+            source,
+            playback,
+            siteConfig,
+            calibrationConfig,
+            testConfig,
+            resumeCheckpoint,
+            checkpointIntervalMs,
+            checkpointSink);
+    sessionsByName.put(name, session);
+    return session;
+  }
+
+  /** Returns the open session with the given name, or null. */
+  public synchronized Session get(String name) {
+    return sessionsByName.get(name);
+  }
+
+  /** Returns the open sessions, in the order they were opened. */
+  public synchronized List<Session> sessions() {
+    return new ArrayList<>(sessionsByName.values());
+  }
+
+  /** Returns the resource use of every open session, in the order they were opened. */
+  public List<SessionStats> stats() {
+    List<SessionStats> stats = new ArrayList<>();
+    for (Session session : sessions()) {
+      stats.add(session.stats());
+    }
+    return stats;
+  }
+
+  /** Called by {@link Session#close()}. */
+  synchronized void remove(Session session) {
+    sessionsByName.remove(session.getName(), session);
+  }
+
+  /**
+   * Closes every session and stops the shared threads; vectors still queued are dropped, and
+   * sessions with a checkpoint sink hand it their last checkpoint. No session can be opened
+   * afterwards.
+   */
+  @Override
+  public void close() {
+    synchronized (this) {
+      closed = true;
+    }
+    for (Session session : sessions()) {
+      session.close();
+    }
+    scheduler.shutdownNow();
+    workers.shutdownNow();
+  }
+}
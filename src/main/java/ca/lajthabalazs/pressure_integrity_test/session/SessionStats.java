@@ -0,0 +1,38 @@
+package ca.lajthabalazs.pressure_integrity_test.session;
+
+import java.util.Locale;
+
+/**
+ * Resource use of one session since it was opened, measured on the worker threads.
+ *
+ * <p>{@code allocatedBytes} is the total of all heap allocations, most of them short-lived; it is
+ * not the memory the session holds. The JVM does not report retained memory per thread, so that is
+ * bounded instead: a session holds at most its lane capacity of queued vectors (see {@link
+ * SessionManager#SessionManager(int, int)}) plus the state of its pipeline.
+ *
+ * @param session name of the session
+ * @param vectors number of vectors processed
+ * @param backlog number of vectors waiting for a worker
+ * @param dropped number of vectors dropped because the backlog was full
+ * @param cpuNanos CPU time spent processing the vectors, including the session's sinks
+ * @param allocatedBytes heap bytes allocated while processing the vectors
+ */
+public record SessionStats(
+    String session, long vectors, int backlog, long dropped, long cpuNanos, long allocatedBytes) {
+
+  private static final double NANOS_PER_MS = 1e6;
+  private static final double BYTES_PER_MB = 1e6;
+
+  /** Returns e.g. {@code "Unit 1 n=1440 backlog=0 dropped=0 cpu=212.4ms allocated=38.1MB"}. */
+  public String format() {
+    return String.format(
+        Locale.ROOT,
+        "%s n=%d backlog=%d dropped=%d cpu=%.1fms allocated=%.1fMB",
+        session,
+        vectors,
+        backlog,
+        dropped,
+        cpuNanos / NANOS_PER_MS,
+        allocatedBytes / BYTES_PER_MB);
+  }
+}
@@ -10,6 +10,7 @@ import ca.lajthabalazs.pressure_integrity_test.measurement.processing.AveragePre
 import ca.lajthabalazs.pressure_integrity_test.measurement.processing.AverageTemperatureMeasurementVectorStream;
 import ca.lajthabalazs.pressure_integrity_test.measurement.processing.LeakageMeasurementVectorStream;
 import ca.lajthabalazs.pressure_integrity_test.measurement.streaming.MeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.tracing.LatencyTracer;
 import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.GridLayout;
@@ -71,6 +72,7 @@ public class DashboardPanel extends JPanel {
   private final Map<String, TimeSeries> leakageSeriesById = new HashMap<>();
 
   private MeasurementVectorStream.Subscription subscription;
+  private volatile LatencyTracer.Hop latencyHop; // null while not traced
 
   public DashboardPanel() {
     setLayout(new BorderLayout(8, 8));
@@ -398,9 +400,22 @@ public class DashboardPanel extends JPanel {
                       updateLabel(avgTemperatureLabel, avgTemperature);
                       updateLabel(rLabel, avgR);
                       updateLabel(leakageLabel, leakage);
+                      LatencyTracer.Hop hop = latencyHop;
+                      if (hop != null) {
+                        hop.record(vector);
+                      }
                     }));
   }
 
+  /**
+   * Records on the "dashboard" hop of the tracer when the labels show a vector.
+   *
+   * @param tracer the tracer, or null to stop recording
+   */
+  public void setLatencyTracer(LatencyTracer tracer) {
+    latencyHop = tracer != null ? tracer.hop("dashboard") : null;
+  }
+
   private static void updateLabel(JLabel label, Measurement m) {
     label.setText(
         m != null
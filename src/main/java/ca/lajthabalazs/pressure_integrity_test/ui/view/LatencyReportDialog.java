@@ -0,0 +1,100 @@
+package ca.lajthabalazs.pressure_integrity_test.ui.view;
+
+import ca.lajthabalazs.pressure_integrity_test.measurement.tracing.LatencyStats;
+import ca.lajthabalazs.pressure_integrity_test.measurement.tracing.LatencyTracer;
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.FlowLayout;
+import java.awt.Frame;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.Locale;
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JDialog;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.Timer;
+import javax.swing.table.DefaultTableModel;
+
+/**
+ * Non-modal dialog with the latency of every traced hop, from acquisition to the end of the hop.
+ * Refreshes once a second while open.
+ */
+public class LatencyReportDialog extends JDialog {
+
+  private static final int REFRESH_MS = 1000;
+  private static final double NANOS_PER_MS = 1e6;
+
+  private final LatencyTracer tracer;
+  private final DefaultTableModel tableModel;
+  private final Timer refreshTimer;
+
+  public LatencyReportDialog(Frame owner, LatencyTracer tracer) {
+    super(owner, "Latency Report", false);
+    this.tracer = tracer;
+    setLayout(new BorderLayout(10, 10));
+    setSize(560, 260);
+    setLocationRelativeTo(owner);
+    getContentPane().setBackground(Color.WHITE);
+
+    tableModel =
+        new DefaultTableModel(
+            new Object[] {"Hop", "Vectors", "Mean (ms)", "p50 (ms)", "p99 (ms)", "Max (ms)"}, 0) {
+          @Override
+          public boolean isCellEditable(int row, int column) {
+            return false;
+          }
+        };
+    add(new JScrollPane(new JTable(tableModel)), BorderLayout.CENTER);
+
+    JCheckBox enabledBox = new JCheckBox("Tracing enabled", tracer.isEnabled());
+    enabledBox.setOpaque(false);
+    enabledBox.addActionListener(e -> tracer.setEnabled(enabledBox.isSelected()));
+    JButton resetButton = new JButton("Reset");
+    resetButton.addActionListener(
+        e -> {
+          tracer.reset();
+          refresh();
+        });
+    JButton closeButton = new JButton("Close");
+    closeButton.addActionListener(e -> dispose());
+    JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+    buttons.setOpaque(false);
+    buttons.add(enabledBox);
+    buttons.add(resetButton);
+    buttons.add(closeButton);
+    add(buttons, BorderLayout.SOUTH);
+
+    refreshTimer = new Timer(REFRESH_MS, e -> refresh());
+    refreshTimer.start();
+    addWindowListener(
+        new WindowAdapter() {
+          @Override
+          public void windowClosed(WindowEvent e) {
+            refreshTimer.stop();
+          }
+        });
+    refresh();
+  }
+
+  private void refresh() {
+    tableModel.setRowCount(0);
+    for (LatencyStats stats : tracer.snapshot()) {
+      tableModel.addRow(
+          new Object[] {
+            stats.hop(),
+            stats.count(),
+            millis(stats.meanNanos()),
+            millis(stats.p50Nanos()),
+            millis(stats.p99Nanos()),
+            millis(stats.maxNanos())
+          });
+    }
+  }
+
+  private static String millis(long nanos) {
+    return String.format(Locale.ROOT, "%.3f", nanos / NANOS_PER_MS);
+  }
+}
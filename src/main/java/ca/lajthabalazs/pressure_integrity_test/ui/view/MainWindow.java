@@ -10,8 +10,11 @@ import ca.lajthabalazs.pressure_integrity_test.io.TextFileReader.FailedToReadFil
 import ca.lajthabalazs.pressure_integrity_test.measurement.Measurement;
 import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
 import ca.lajthabalazs.pressure_integrity_test.measurement.processing.AveragePressureMeasurementVectorStream;
-import ca.lajthabalazs.pressure_integrity_test.measurement.processing.FullStackLeakageMeasurementVectorStream;
 import ca.lajthabalazs.pressure_integrity_test.measurement.streaming.MeasurementVectorPlaybackStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.tracing.LatencyTracer;
+import ca.lajthabalazs.pressure_integrity_test.session.Session;
+import ca.lajthabalazs.pressure_integrity_test.session.SessionManager;
+import ca.lajthabalazs.pressure_integrity_test.session.SessionStats;
 import java.awt.BorderLayout;
 import java.awt.CardLayout;
 import java.awt.Color;
@@ -19,6 +22,8 @@ import java.awt.Dimension;
 import java.awt.FlowLayout;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.File;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
@@ -26,9 +31,13 @@ import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicReference;
+import javax.swing.BoxLayout;
 import javax.swing.JButton;
+import javax.swing.JComboBox;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JMenu;
@@ -60,20 +69,28 @@ public class MainWindow extends JFrame {
   private static final Dimension SPEED_BUTTON_SIZE = new Dimension(56, 26);
 
   private final File rootDirectory;
-  private final DefaultTableModel dataTableModel;
   private final JTable dataTable;
-  private final DefaultTableModel computedTableModel;
   private final JTable computedTable;
 
-  /**
-   * Sensor order from site config; used for column order and ITV key mapping when appending rows.
-   */
-  private final AtomicReference<List<SensorConfig>> dataSensorOrder = new AtomicReference<>(null);
+  /** Runs the pipelines of all sessions on shared threads; the window shows one session. */
+  private final SessionManager sessionManager = new SessionManager(SESSION_WORKER_THREADS);
+
+  private final AtomicReference<Session> currentSession = new AtomicReference<>(null);
+
+  /** Open sessions by name, in the order they were opened; used on the event thread only. */
+  private final Map<String, SessionView> sessionViews = new LinkedHashMap<>();
+
+  /** Session shown in the window; null while the welcome card is shown. */
+  private SessionView currentView;
+
+  private final JComboBox<String> sessionSelector = new JComboBox<>();
+  private boolean updatingSessionSelector;
 
-  private final AtomicReference<MeasurementVectorPlaybackStream> currentPlaybackStream =
-      new AtomicReference<>(null);
-  private final AtomicReference<FullStackLeakageMeasurementVectorStream> currentFullStack =
-      new AtomicReference<>(null);
+  /** Latency from playback to the pipeline steps and the dashboard; off until enabled. */
+  private final LatencyTracer latencyTracer = new LatencyTracer();
+
+  private static final long LATENCY_LOG_PERIOD_MS = 10_000L;
+  private static final int SESSION_WORKER_THREADS = 2;
   private final JPanel simulationControlPanel;
 
   private JButton simulationPauseResumeButton;
@@ -94,6 +111,18 @@ public class MainWindow extends JFrame {
         rootDirectory != null ? rootDirectory : new File(System.getProperty("user.dir"));
     setTitle("Pressure Integrity Test");
     setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+    addWindowListener(
+        new WindowAdapter() {
+          @Override
+          public void windowClosing(WindowEvent e) {
+            sessionManager.close();
+          }
+
+          @Override
+          public void windowClosed(WindowEvent e) {
+            sessionManager.close();
+          }
+        });
     setSize(800, 600);
     setLocationRelativeTo(null);
 
@@ -114,9 +143,17 @@ public class MainWindow extends JFrame {
     JMenuItem serialPortTesterItem = new JMenuItem("Serial Port Tester");
     serialPortTesterItem.addActionListener(e -> onOpenSerialPortTester());
     toolsMenu.add(serialPortTesterItem);
+    JMenuItem latencyReportItem = new JMenuItem("Latency report");
+    latencyReportItem.addActionListener(
+        e -> new LatencyReportDialog(this, latencyTracer).setVisible(true));
+    toolsMenu.add(latencyReportItem);
+    JMenuItem sessionUsageItem = new JMenuItem("Session usage");
+    sessionUsageItem.addActionListener(e -> showSessionUsage());
+    toolsMenu.add(sessionUsageItem);
     menuBar.add(toolsMenu);
 
     setJMenuBar(menuBar);
+    latencyTracer.startLogging(LATENCY_LOG_PERIOD_MS, System.out::println);
 
     contentCardLayout = new CardLayout();
     contentCards = new JPanel(contentCardLayout);
@@ -132,8 +169,7 @@ public class MainWindow extends JFrame {
     dashboardPanel = new DashboardPanel();
     tabbedPane.addTab("Dashboard", dashboardPanel);
 
-    dataTableModel = new DefaultTableModel();
-    dataTable = new JTable(dataTableModel);
+    dataTable = new JTable(new DefaultTableModel());
     dataTable.setAutoCreateRowSorter(false);
     dataTable.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
     JScrollPane dataScroll = new JScrollPane(dataTable);
@@ -142,8 +178,7 @@ public class MainWindow extends JFrame {
     dataPanel.add(dataScroll, BorderLayout.CENTER);
     tabbedPane.addTab("Data", dataPanel);
 
-    computedTableModel = new DefaultTableModel();
-    computedTable = new JTable(computedTableModel);
+    computedTable = new JTable(new DefaultTableModel());
     computedTable.setAutoCreateRowSorter(false);
     computedTable.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
     JScrollPane computedScroll = new JScrollPane(computedTable);
@@ -155,7 +190,11 @@ public class MainWindow extends JFrame {
     JPanel measurementPanel = new JPanel(new BorderLayout());
     simulationControlPanel = createSimulationControlPanel();
     simulationControlPanel.setVisible(false);
-    measurementPanel.add(simulationControlPanel, BorderLayout.NORTH);
+    JPanel controls = new JPanel();
+    controls.setLayout(new BoxLayout(controls, BoxLayout.Y_AXIS));
+    controls.add(createSessionPanel());
+    controls.add(simulationControlPanel);
+    measurementPanel.add(controls, BorderLayout.NORTH);
     measurementPanel.add(tabbedPane, BorderLayout.CENTER);
 
     contentCards.add(welcomePanel, CARD_WELCOME);
@@ -165,6 +204,29 @@ public class MainWindow extends JFrame {
     getContentPane().add(contentCards, BorderLayout.CENTER);
   }
 
+  /** Selector of the session shown on the dashboard and in the tables, and its close button. */
+  private JPanel createSessionPanel() {
+    JPanel panel = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 6));
+    sessionSelector.addActionListener(
+        e -> {
+          Object name = sessionSelector.getSelectedItem();
+          if (!updatingSessionSelector && name != null) {
+            showSession(sessionViews.get(name));
+          }
+        });
+    JButton closeButton = new JButton("Close session");
+    closeButton.addActionListener(
+        e -> {
+          if (currentView != null) {
+            closeSession(currentView);
+          }
+        });
+    panel.add(new JLabel("Session:"));
+    panel.add(sessionSelector);
+    panel.add(closeButton);
+    return panel;
+  }
+
   private JPanel createSimulationControlPanel() {
     JPanel panel = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 6));
     panel.setBorder(
@@ -177,7 +239,7 @@ public class MainWindow extends JFrame {
     simulationPauseResumeButton.setOpaque(true);
     simulationPauseResumeButton.addActionListener(
         e -> {
-          MeasurementVectorPlaybackStream stream = currentPlaybackStream.get();
+          MeasurementVectorPlaybackStream stream = currentPlayback();
           if (stream != null) {
             if (stream.isPaused()) {
               stream.resume();
@@ -200,10 +262,11 @@ public class MainWindow extends JFrame {
       speedBtn.setOpaque(true);
       speedBtn.addActionListener(
           e -> {
-            MeasurementVectorPlaybackStream stream = currentPlaybackStream.get();
+            MeasurementVectorPlaybackStream stream = currentPlayback();
             if (stream != null) {
               stream.setSpeed(speed);
               currentPlaybackSpeed = speed;
+              currentView.playbackSpeed = speed;
               updateSpeedButtonsAppearance();
               updateSimulationControlState(stream);
             }
@@ -230,6 +293,100 @@ public class MainWindow extends JFrame {
     }
   }
 
+  /** Returns the playback stream of the session shown in the window, or null. */
+  private MeasurementVectorPlaybackStream currentPlayback() {
+    Session session = currentSession.get();
+    return session != null ? session.getPlayback() : null;
+  }
+
+  /**
+   * Shows a session on the dashboard and in the tables. The tables keep the rows of every session;
+   * the dashboard starts from the vectors that arrive after the session is shown.
+   */
+  private void showSession(SessionView view) {
+    if (view == currentView) {
+      return;
+    }
+    currentView = view;
+    currentSession.set(view.session);
+    updatingSessionSelector = true;
+    sessionSelector.setSelectedItem(view.session.getName());
+    updatingSessionSelector = false;
+    dataTable.setModel(view.dataModel);
+    for (int i = 0; i < dataTable.getColumnCount(); i++) {
+      dataTable.getColumnModel().getColumn(i).setPreferredWidth(DEFAULT_COLUMN_WIDTH_PX);
+    }
+    computedTable.setModel(view.computedModel);
+    for (int i = 0; i < computedTable.getColumnCount(); i++) {
+      computedTable.getColumnModel().getColumn(i).setPreferredWidth(DEFAULT_COLUMN_WIDTH_PX);
+    }
+    scrollDataTableToBottom();
+    dashboardPanel.clear();
+    dashboardPanel.subscribe(view.session.getOutput());
+    currentPlaybackSpeed = view.playbackSpeed;
+    simulationControlPanel.setVisible(view.started);
+    if (view.started) {
+      updateSimulationControlState(view.session.getPlayback());
+    }
+    contentCardLayout.show(contentCards, CARD_MEASUREMENT);
+  }
+
+  /** Closes a session and shows the next open one, or the welcome card if none is left. */
+  private void closeSession(SessionView view) {
+    sessionViews.remove(view.session.getName());
+    updatingSessionSelector = true;
+    sessionSelector.removeItem(view.session.getName());
+    updatingSessionSelector = false;
+    view.session.close();
+    if (view != currentView) {
+      return;
+    }
+    currentView = null;
+    currentSession.set(null);
+    dashboardPanel.clear();
+    if (resumeBlinkTimer != null) {
+      resumeBlinkTimer.stop();
+      resumeBlinkTimer = null;
+    }
+    SessionView next = null;
+    for (SessionView open : sessionViews.values()) {
+      if (open.started) {
+        next = open;
+        break;
+      }
+    }
+    if (next != null) {
+      showSession(next);
+    } else {
+      simulationControlPanel.setVisible(false);
+      contentCardLayout.show(contentCards, CARD_WELCOME);
+    }
+  }
+
+  /** Returns a session name based on the file name that no open session uses. */
+  private String uniqueSessionName(String baseName) {
+    String name = baseName;
+    for (int i = 2; sessionViews.containsKey(name); i++) {
+      name = baseName + " (" + i + ")";
+    }
+    return name;
+  }
+
+  private void showSessionUsage() {
+    List<String> lines = new ArrayList<>();
+    for (SessionStats stats : sessionManager.stats()) {
+      lines.add(stats.format());
+    }
+    JOptionPane.showMessageDialog(
+        this,
+        lines.isEmpty()
+            ? "No open sessions."
+            : String.join("\n", lines)
+                + "\n\nallocated: heap bytes allocated so far, not memory held by the session",
+        "Session usage",
+        JOptionPane.INFORMATION_MESSAGE);
+  }
+
   private void updateSimulationControlState(MeasurementVectorPlaybackStream stream) {
     boolean paused = stream.isPaused();
     simulationPauseResumeButton.setText(paused ? "Resume" : "Pause");
@@ -292,29 +449,12 @@ public class MainWindow extends JFrame {
     startSimulationStream(itvFile, siteConfig);
   }
 
+  /**
+   * Opens a replay of an ITV file as a new session, next to the sessions already open, and shows it
+   * once the file is loaded.
+   */
   private void startSimulationStream(File itvFile, SiteConfig siteConfig) {
-    MeasurementVectorPlaybackStream previousPlayback = currentPlaybackStream.getAndSet(null);
-    if (previousPlayback != null) {
-      previousPlayback.stopPlayback();
-    }
-    FullStackLeakageMeasurementVectorStream previousFullStack = currentFullStack.getAndSet(null);
-    if (previousFullStack != null) {
-      previousFullStack.stop();
-    }
-    // Stop any existing blink timer
-    if (resumeBlinkTimer != null) {
-      resumeBlinkTimer.stop();
-      resumeBlinkTimer = null;
-    }
-    simulationControlPanel.setVisible(false);
-    contentCardLayout.show(contentCards, CARD_WELCOME);
-
-    dataSensorOrder.set(null);
-    dataTableModel.setRowCount(0);
-    computedTableModel.setRowCount(0);
-
     List<SensorConfig> sensors = siteConfig.getSensors();
-    dataSensorOrder.set(sensors);
     List<String> columnNames = new ArrayList<>();
     columnNames.add("Time");
     for (SensorConfig s : sensors) {
@@ -322,37 +462,41 @@ public class MainWindow extends JFrame {
         columnNames.add(s.getId());
       }
     }
-    dataTableModel.setColumnIdentifiers(columnNames.toArray());
-    for (int i = 0; i < dataTable.getColumnCount(); i++) {
-      dataTable.getColumnModel().getColumn(i).setPreferredWidth(DEFAULT_COLUMN_WIDTH_PX);
-    }
-
     // Computed table: currently shows average pressure only.
-    computedTableModel.setColumnIdentifiers(new Object[] {"Time", "Average pressure (Pa)"});
-    for (int i = 0; i < computedTable.getColumnCount(); i++) {
-      computedTable.getColumnModel().getColumn(i).setPreferredWidth(DEFAULT_COLUMN_WIDTH_PX);
-    }
+    SessionView view =
+        new SessionView(
+            sessionManager.openPlayback(
+                uniqueSessionName(itvFile.getName()), siteConfig, null, null),
+            sensors,
+            new DefaultTableModel(columnNames.toArray(), 0),
+            new DefaultTableModel(new Object[] {"Time", "Average pressure (Pa)"}, 0));
+    Session session = view.session;
+    sessionViews.put(session.getName(), view);
+    updatingSessionSelector = true;
+    sessionSelector.addItem(session.getName());
+    sessionSelector.setSelectedItem(currentView != null ? currentView.session.getName() : null);
+    updatingSessionSelector = false;
 
     String path = itvFile.toPath().toAbsolutePath().normalize().toString();
     Charset charset = charsetForItv();
 
-    MeasurementVectorPlaybackStream playbackStream = new MeasurementVectorPlaybackStream();
-    playbackStream.setSpeed(30.0);
-    currentPlaybackStream.set(playbackStream);
-    FullStackLeakageMeasurementVectorStream fullStack =
-        new FullStackLeakageMeasurementVectorStream(siteConfig, null, playbackStream);
-    currentFullStack.set(fullStack);
-    dashboardPanel.clear();
-    dashboardPanel.subscribe(fullStack);
-    fullStack.subscribe(
-        vector -> {
-          SwingUtilities.invokeLater(
-              () -> {
-                appendVectorToTable(vector);
-                appendComputedToTable(vector);
-                scrollDataTableToBottom();
-              });
-        });
+    MeasurementVectorPlaybackStream playbackStream = session.getPlayback();
+    playbackStream.setSpeed(view.playbackSpeed);
+    session.setLatencyTracer(latencyTracer);
+    dashboardPanel.setLatencyTracer(latencyTracer);
+    session
+        .getOutput()
+        .subscribe(
+            vector -> {
+              SwingUtilities.invokeLater(
+                  () -> {
+                    appendVectorToTable(view, vector);
+                    appendComputedToTable(view, vector);
+                    if (view == currentView) {
+                      scrollDataTableToBottom();
+                    }
+                  });
+            });
 
     Thread worker =
         new Thread(
@@ -363,7 +507,7 @@ public class MainWindow extends JFrame {
                 if (vectors == null || vectors.isEmpty()) {
                   SwingUtilities.invokeLater(
                       () -> {
-                        currentPlaybackStream.set(null);
+                        closeSession(view);
                         JOptionPane.showMessageDialog(
                             this,
                             "ITV file contains no measurement vectors.",
@@ -375,17 +519,18 @@ public class MainWindow extends JFrame {
                 long startTime = System.currentTimeMillis();
                 SwingUtilities.invokeLater(
                     () -> {
-                      currentPlaybackSpeed = 30.0;
+                      if (session.isClosed()) {
+                        return;
+                      }
                       playbackStream.startPlayback(vectors, startTime);
                       playbackStream.pause(); // Start paused
-                      contentCardLayout.show(contentCards, CARD_MEASUREMENT);
-                      simulationControlPanel.setVisible(true);
-                      updateSimulationControlState(playbackStream);
+                      view.started = true;
+                      showSession(view);
                     });
               } catch (FailedToReadFileException e) {
                 SwingUtilities.invokeLater(
                     () -> {
-                      currentPlaybackStream.set(null);
+                      closeSession(view);
                       JOptionPane.showMessageDialog(
                           this,
                           "Failed to read ITV file: " + e.getMessage(),
@@ -397,11 +542,8 @@ public class MainWindow extends JFrame {
     worker.start();
   }
 
-  private void appendVectorToTable(MeasurementVector vector) {
-    List<SensorConfig> sensorOrder = dataSensorOrder.get();
-    if (sensorOrder == null) {
-      return;
-    }
+  private void appendVectorToTable(SessionView view, MeasurementVector vector) {
+    List<SensorConfig> sensorOrder = view.sensorOrder;
     String timeStr = TIME_FORMAT.format(Instant.ofEpochMilli(vector.getTimeUtc()));
     Object[] row = new Object[sensorOrder.size() + 1];
     row[0] = timeStr;
@@ -410,10 +552,10 @@ public class MainWindow extends JFrame {
       Measurement m = sensorId != null ? vector.getMeasurementsMap().get(sensorId) : null;
       row[i + 1] = m != null ? m.getValueInDefaultUnit().toPlainString() : "";
     }
-    dataTableModel.addRow(row);
+    view.dataModel.addRow(row);
   }
 
-  private void appendComputedToTable(MeasurementVector vector) {
+  private void appendComputedToTable(SessionView view, MeasurementVector vector) {
     String timeStr = TIME_FORMAT.format(Instant.ofEpochMilli(vector.getTimeUtc()));
     Measurement avgPressure =
         vector.getMeasurementsMap().values().stream()
@@ -426,16 +568,41 @@ public class MainWindow extends JFrame {
     Object[] row = new Object[2];
     row[0] = timeStr;
     row[1] = avgPressure != null ? avgPressure.getValueInDefaultUnit().toPlainString() : "";
-    computedTableModel.addRow(row);
+    view.computedModel.addRow(row);
   }
 
   private void scrollDataTableToBottom() {
-    int last = dataTableModel.getRowCount() - 1;
+    int last = dataTable.getRowCount() - 1;
     if (last >= 0) {
       dataTable.scrollRectToVisible(dataTable.getCellRect(last, 0, true));
     }
   }
 
+  /** An open session with the table rows it has produced; used on the event thread only. */
+  private static final class SessionView {
+
+    private final Session session;
+
+    /** Sensor order from site config; used for the column order of the data table. */
+    private final List<SensorConfig> sensorOrder;
+
+    private final DefaultTableModel dataModel;
+    private final DefaultTableModel computedModel;
+    private double playbackSpeed = 30.0;
+    private boolean started; // true once the playback has started
+
+    private SessionView(
+        Session session,
+        List<SensorConfig> sensorOrder,
+        DefaultTableModel dataModel,
+        DefaultTableModel computedModel) {
+      this.session = session;
+      this.sensorOrder = sensorOrder;
+      this.dataModel = dataModel;
+      this.computedModel = computedModel;
+    }
+  }
+
   private static Charset charsetForItv() {
     try {
       return Charset.forName("Windows-1250");
@@ -0,0 +1,203 @@
+package ca.lajthabalazs.pressure_integity_test.batch;
+
+import ca.lajthabalazs.pressure_integrity_test.batch.BatchReport;
+import ca.lajthabalazs.pressure_integrity_test.batch.ItvBatchAnalyzer;
+import ca.lajthabalazs.pressure_integrity_test.batch.ItvFileSummary;
+import ca.lajthabalazs.pressure_integrity_test.config.Duration;
+import ca.lajthabalazs.pressure_integrity_test.config.HumiditySensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.LocationConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.PressureSensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.Quantity;
+import ca.lajthabalazs.pressure_integrity_test.config.SensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.SiteConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.TemperatureSensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.TestConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.TestConfigStage;
+import ca.lajthabalazs.pressure_integrity_test.io.FileSystemTextFileReader;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Pressure;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.StageResult;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Tests for {@link ItvBatchAnalyzer} and {@link BatchReport}. */
+public class ItvBatchAnalyzerTest {
+
+  @TempDir Path tempDir;
+
+  private SiteConfig siteConfig;
+
+  @BeforeEach
+  public void setUp() {
+    // The sensors of the sample site: p1, T24 and fi4 in one location
+    LocationConfig loc = new LocationConfig();
+    loc.setId("A301");
+    loc.setVolumeFactor(new BigDecimal("1.0"));
+    loc.setSensors(
+        new ArrayList<>(
+            List.of(
+                sensor(new PressureSensorConfig(), "p1"),
+                sensor(new TemperatureSensorConfig(), "T24"),
+                sensor(new HumiditySensorConfig(), "fi4"))));
+    siteConfig = new SiteConfig();
+    siteConfig.setLocations(List.of(loc));
+  }
+
+  private static SensorConfig sensor(SensorConfig sensor, String id) {
+    sensor.setId(id);
+    return sensor;
+  }
+
+  /** Ambient 1 bar and one 1 h stage at +10 Pa, which the sample file starts on. */
+  private static TestConfig oneStageConfig() {
+    Quantity ambient = new Quantity();
+    ambient.setValue(new BigDecimal("100000"));
+    ambient.setUnit(Pressure.PASCAL);
+    Quantity overpressure = new Quantity();
+    overpressure.setValue(new BigDecimal("10"));
+    overpressure.setUnit(Pressure.PASCAL);
+    Duration duration = new Duration();
+    duration.setHours(1);
+    TestConfigStage stage = new TestConfigStage();
+    stage.setOverpressure(overpressure);
+    stage.setDuration(duration);
+    TestConfig config = new TestConfig();
+    config.setAmbientPressure(ambient);
+    config.setStages(List.of(stage));
+    return config;
+  }
+
+  private Path copySample(String name) throws Exception {
+    Path target = tempDir.resolve(name);
+    try (InputStream in = ItvBatchAnalyzerTest.class.getResourceAsStream("/itv/itv-sample.ITV")) {
+      Files.copy(in, target);
+    }
+    return target;
+  }
+
+  @Test
+  public void analyzeDirectory_summarizesEveryItvFileInNameOrder() throws Exception {
+    copySample("b.itv");
+    copySample("a.ITV");
+    Files.writeString(tempDir.resolve("notes.txt"), "not an ITV file");
+    Files.createDirectory(tempDir.resolve("dir.itv"));
+    ItvBatchAnalyzer analyzer =
+        new ItvBatchAnalyzer(
+            siteConfig, null, oneStageConfig(), new FileSystemTextFileReader(), 2);
+
+    BatchReport report = analyzer.analyzeDirectory(tempDir);
+
+    Assertions.assertEquals(2, report.files().size());
+    ItvFileSummary a = report.files().get(0);
+    ItvFileSummary b = report.files().get(1);
+    Assertions.assertEquals("a.ITV", a.fileName());
+    Assertions.assertEquals("b.itv", b.fileName());
+    Assertions.assertNull(a.error());
+    Assertions.assertEquals(10, a.vectorCount());
+    Assertions.assertEquals(10, a.publishedCount());
+    Assertions.assertEquals(Files.size(tempDir.resolve("a.ITV")), a.bytes());
+    Assertions.assertNotNull(a.finalLeakage());
+    Assertions.assertNotNull(a.finalRegressionLeakage());
+    Assertions.assertNotNull(a.finalRegressionLeakageUcl());
+    Assertions.assertEquals(a.finalLeakage(), b.finalLeakage());
+    Assertions.assertEquals(1, a.stages().size());
+    StageResult stage = a.stages().getFirst();
+    Assertions.assertEquals(0, stage.stageIndex());
+    Assertions.assertEquals(10, stage.vectorCount());
+    Assertions.assertTrue(a.elapsedNanos() > 0);
+
+    Assertions.assertEquals(2 * a.bytes(), report.totalBytes());
+    Assertions.assertTrue(report.filesPerSecond() > 0);
+    Assertions.assertTrue(report.megabytesPerSecond() > 0);
+  }
+
+  @Test
+  public void analyze_unreadableFile_reportsErrorAndKeepsOthers() throws Exception {
+    Path sample = copySample("ok.ITV");
+    ItvBatchAnalyzer analyzer =
+        new ItvBatchAnalyzer(siteConfig, null, null, new FileSystemTextFileReader(), 1);
+
+    BatchReport report = analyzer.analyze(List.of(tempDir.resolve("missing.ITV"), sample));
+
+    Assertions.assertNotNull(report.files().get(0).error());
+    Assertions.assertEquals(0, report.files().get(0).vectorCount());
+    Assertions.assertNull(report.files().get(1).error());
+    Assertions.assertTrue(report.files().get(1).stages().isEmpty());
+  }
+
+  @Test
+  public void analyze_fileWithoutRows_hasNoFinalValues() throws Exception {
+    Path sample = copySample("full.ITV");
+    String text = Files.readString(sample);
+    Path headerOnly = tempDir.resolve("empty.ITV");
+    Files.writeString(headerOnly, text.substring(0, text.indexOf("\n1\t") + 1));
+    ItvBatchAnalyzer analyzer =
+        new ItvBatchAnalyzer(siteConfig, null, null, new FileSystemTextFileReader(), 1);
+
+    ItvFileSummary summary = analyzer.analyze(List.of(headerOnly)).files().getFirst();
+
+    Assertions.assertNull(summary.error());
+    Assertions.assertEquals(0, summary.vectorCount());
+    Assertions.assertEquals(0, summary.publishedCount());
+    Assertions.assertNull(summary.finalLeakage());
+    Assertions.assertNull(summary.finalRegressionLeakageUcl());
+  }
+
+  @Test
+  public void analyze_failingChain_reportsError() throws Exception {
+    Path sample = copySample("ok.ITV");
+    TestConfig noAmbient = oneStageConfig();
+    noAmbient.setAmbientPressure(null);
+    ItvBatchAnalyzer analyzer =
+        new ItvBatchAnalyzer(siteConfig, null, noAmbient, new FileSystemTextFileReader(), 1);
+
+    BatchReport report = analyzer.analyze(List.of(sample));
+
+    Assertions.assertTrue(report.files().getFirst().error().contains("ambient pressure"));
+  }
+
+  @Test
+  public void toCsvLines_writesHeaderAndOneRowPerFileWithStageColumns() throws Exception {
+    copySample("a.ITV");
+    BatchReport withStages =
+        new ItvBatchAnalyzer(
+                siteConfig, null, oneStageConfig(), new FileSystemTextFileReader(), 1)
+            .analyzeDirectory(tempDir);
+    ItvFileSummary ok = withStages.files().getFirst();
+    ItvFileSummary failed =
+        new ItvFileSummary(
+            "bad, file.ITV", 3L, 0, 0, null, null, null, List.of(), 2_000_000L, "Broken,\nfile");
+    BatchReport report = new BatchReport(List.of(ok, failed), 1_000_000_000L);
+
+    List<String> lines = report.toCsvLines();
+
+    Assertions.assertEquals(3, lines.size());
+    Assertions.assertEquals(
+        "file,bytes,vectors,published,leakage,regression_leakage,regression_leakage_ucl,"
+            + "elapsed_ms,error,stage0_start_utc,stage0_end_utc,stage0_vectors,stage0_leakage,"
+            + "stage0_regression_leakage,stage0_regression_leakage_ucl",
+        lines.get(0));
+    String[] okRow = lines.get(1).split(",", -1);
+    Assertions.assertEquals(15, okRow.length);
+    Assertions.assertEquals("a.ITV", okRow[0]);
+    Assertions.assertEquals(ok.finalLeakage().toPlainString(), okRow[4]);
+    Assertions.assertEquals("10", okRow[11]);
+    Assertions.assertEquals(
+        "bad  file.ITV,3,0,0,,,,2,Broken  file,,,,,,", lines.get(2));
+    Assertions.assertEquals(2.0, report.filesPerSecond(), 1e-9);
+  }
+
+  @Test
+  public void invalidThreadCount_throws() {
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> new ItvBatchAnalyzer(siteConfig, null, null, new FileSystemTextFileReader(), 0));
+  }
+}
@@ -0,0 +1,92 @@
+package ca.lajthabalazs.pressure_integity_test.io;
+
+import ca.lajthabalazs.pressure_integrity_test.io.CheckpointFile;
+import ca.lajthabalazs.pressure_integrity_test.io.TextFileReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Tests for {@link CheckpointFile}. */
+public class CheckpointFileTest {
+
+  @TempDir Path tempDir;
+
+  private CheckpointFile file(Path path) {
+    return new CheckpointFile(path);
+  }
+
+  @Test
+  public void read_missingFileReturnsNull() throws Exception {
+    Assertions.assertNull(file(tempDir.resolve("none.checkpoint")).read());
+  }
+
+  @Test
+  public void write_replacesPreviousCheckpoint() throws Exception {
+    CheckpointFile file = file(tempDir.resolve("test.checkpoint"));
+
+    file.write(new byte[] {1, 2, 3});
+    file.write(new byte[] {4, 5});
+
+    Assertions.assertArrayEquals(new byte[] {4, 5}, file.read());
+  }
+
+  @Test
+  public void write_leavesNoTemporaryFile() throws Exception {
+    Path path = tempDir.resolve("test.checkpoint");
+
+    file(path).write(new byte[] {1, 2, 3});
+
+    Assertions.assertTrue(Files.exists(path));
+    Assertions.assertFalse(
+        Files.exists(tempDir.resolve("test.checkpoint" + CheckpointFile.TEMP_SUFFIX)));
+  }
+
+  @Test
+  public void write_overwritesStaleTemporaryFile() throws Exception {
+    Path path = tempDir.resolve("test.checkpoint");
+    Files.writeString(tempDir.resolve("test.checkpoint" + CheckpointFile.TEMP_SUFFIX), "stale");
+
+    file(path).write(new byte[] {7});
+
+    Assertions.assertArrayEquals(new byte[] {7}, file(path).read());
+  }
+
+  @Test
+  public void write_failedReplaceKeepsPreviousFile() throws Exception {
+    Path path = tempDir.resolve("dir.checkpoint");
+    Files.createDirectories(path.resolve("child"));
+
+    Assertions.assertThrows(
+        TextFileReader.FailedToReadFileException.class, () -> file(path).write(new byte[] {1}));
+    Assertions.assertTrue(Files.isDirectory(path.resolve("child")));
+  }
+
+  @Test
+  public void write_createsMissingDirectories() throws Exception {
+    Path path = tempDir.resolve("runs").resolve("test.checkpoint");
+
+    file(path).write(new byte[] {9});
+
+    Assertions.assertArrayEquals(new byte[] {9}, file(path).read());
+  }
+
+  @Test
+  public void read_unreadableFileThrows() throws Exception {
+    Path path = tempDir.resolve("dir.checkpoint");
+    Files.createDirectories(path);
+
+    Assertions.assertThrows(
+        TextFileReader.FailedToReadFileException.class, () -> file(path).read());
+  }
+
+  @Test
+  public void read_invalidContentThrows() throws Exception {
+    Path path = tempDir.resolve("broken.checkpoint");
+    Files.writeString(path, "not base64!");
+
+    Assertions.assertThrows(
+        TextFileReader.FailedToReadFileException.class, () -> file(path).read());
+  }
+}
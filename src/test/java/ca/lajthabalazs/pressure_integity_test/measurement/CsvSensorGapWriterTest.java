@@ -0,0 +1,122 @@
+package ca.lajthabalazs.pressure_integity_test.measurement;
+
+import ca.lajthabalazs.pressure_integrity_test.io.FileSystemTextFileReader;
+import ca.lajthabalazs.pressure_integrity_test.io.FileSystemTextFileWriter;
+import ca.lajthabalazs.pressure_integrity_test.io.TextFileReader;
+import ca.lajthabalazs.pressure_integrity_test.io.TextFileReader.FailedToReadFileException;
+import ca.lajthabalazs.pressure_integrity_test.io.TextFileWriter;
+import ca.lajthabalazs.pressure_integrity_test.measurement.CsvSensorGapWriter;
+import ca.lajthabalazs.pressure_integrity_test.measurement.streaming.SensorGap;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Tests for {@link CsvSensorGapWriter}. */
+public class CsvSensorGapWriterTest {
+
+  @TempDir Path tempDir;
+
+  @Test
+  public void handle_newFile_writesHeaderThenAppendsClosedGaps() throws Exception {
+    Path csvPath = tempDir.resolve("gaps.csv");
+    CsvSensorGapWriter gapWriter =
+        new CsvSensorGapWriter(
+            csvPath.toString(), new FileSystemTextFileReader(), new FileSystemTextFileWriter());
+
+    gapWriter.handle(new SensorGap("T1", 1000L, SensorGap.OPEN));
+    Assertions.assertFalse(Files.exists(csvPath), "Open gaps are not written");
+
+    gapWriter.handle(new SensorGap("T1", 1000L, 61000L));
+    gapWriter.handle(new SensorGap("H1", 5000L, 6000L));
+
+    Assertions.assertEquals(
+        List.of(CsvSensorGapWriter.HEADER, "T1,1000,61000,60000", "H1,5000,6000,1000"),
+        Files.readAllLines(csvPath));
+  }
+
+  @Test
+  public void handle_existingFile_appendsWithoutHeader() throws Exception {
+    Path csvPath = tempDir.resolve("gaps.csv");
+    Files.write(csvPath, List.of(CsvSensorGapWriter.HEADER, "T1,1,2,1"));
+    CsvSensorGapWriter gapWriter =
+        new CsvSensorGapWriter(
+            csvPath.toString(), new FileSystemTextFileReader(), new FileSystemTextFileWriter());
+
+    gapWriter.handle(new SensorGap("T2", 10L, 30L));
+
+    Assertions.assertEquals(
+        List.of(CsvSensorGapWriter.HEADER, "T1,1,2,1", "T2,10,30,20"), Files.readAllLines(csvPath));
+  }
+
+  @Test
+  public void handle_existingFileWithSingleEmptyLine_writesHeader() throws Exception {
+    Path csvPath = tempDir.resolve("gaps.csv");
+    Files.write(csvPath, List.of(""));
+    CsvSensorGapWriter gapWriter =
+        new CsvSensorGapWriter(
+            csvPath.toString(), new FileSystemTextFileReader(), new FileSystemTextFileWriter());
+
+    gapWriter.handle(new SensorGap("T2", 10L, 30L));
+
+    Assertions.assertEquals(
+        List.of(CsvSensorGapWriter.HEADER, "T2,10,30,20"), Files.readAllLines(csvPath));
+  }
+
+  @Test
+  public void handle_unreadableFile_isTreatedAsEmpty() throws Exception {
+    Path csvPath = tempDir.resolve("gaps.csv");
+    TextFileReader failingReader =
+        new TextFileReader() {
+          @Override
+          public List<String> readAllLines(String path) throws FailedToReadFileException {
+            throw new FailedToReadFileException("Simulated read failure");
+          }
+
+          @Override
+          public String readAllText(String path) throws FailedToReadFileException {
+            throw new FailedToReadFileException("Simulated read failure");
+          }
+
+          @Override
+          public boolean exists(String path) {
+            return true;
+          }
+        };
+    CsvSensorGapWriter gapWriter =
+        new CsvSensorGapWriter(csvPath.toString(), failingReader, new FileSystemTextFileWriter());
+
+    gapWriter.handle(new SensorGap("T2", 10L, 30L));
+
+    Assertions.assertEquals(
+        List.of(CsvSensorGapWriter.HEADER, "T2,10,30,20"), Files.readAllLines(csvPath));
+  }
+
+  @Test
+  public void handle_writeFailure_throwsRuntimeException() {
+    TextFileWriter failingWriter =
+        new TextFileWriter() {
+          @Override
+          public void writeAllLines(String path, List<String> lines)
+              throws FailedToReadFileException {
+            throw new FailedToReadFileException("Simulated write failure");
+          }
+
+          @Override
+          public void appendLines(String path, List<String> lines)
+              throws FailedToReadFileException {
+            throw new FailedToReadFileException("Simulated write failure");
+          }
+        };
+    CsvSensorGapWriter gapWriter =
+        new CsvSensorGapWriter(
+            tempDir.resolve("gaps.csv").toString(), new FileSystemTextFileReader(), failingWriter);
+
+    RuntimeException ex =
+        Assertions.assertThrows(
+            RuntimeException.class, () -> gapWriter.handle(new SensorGap("T1", 1L, 2L)));
+    Assertions.assertInstanceOf(FailedToReadFileException.class, ex.getCause());
+  }
+}
@@ -0,0 +1,93 @@
+package ca.lajthabalazs.pressure_integity_test.measurement;
+
+import ca.lajthabalazs.pressure_integrity_test.measurement.ErrorChain;
+import ca.lajthabalazs.pressure_integrity_test.measurement.ErrorSeverity;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementError;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link ErrorChain}. */
+public class ErrorChainTest {
+
+  private static final MeasurementError W1 =
+      new MeasurementError("P1", ErrorSeverity.WARNING, "First warning");
+  private static final MeasurementError W2 =
+      new MeasurementError("T1", ErrorSeverity.WARNING, "Second warning");
+  private static final MeasurementError S1 =
+      new MeasurementError("H1", ErrorSeverity.SEVERE, "Sensor failure");
+
+  @Test
+  public void severityMask_oneBitPerSeverity() {
+    Assertions.assertEquals(1, ErrorSeverity.WARNING.mask());
+    Assertions.assertEquals(2, ErrorSeverity.SEVERE.mask());
+  }
+
+  @Test
+  public void empty_hasNoErrors() {
+    ErrorChain empty = ErrorChain.empty();
+
+    Assertions.assertTrue(empty.isEmpty());
+    Assertions.assertEquals(0, empty.getSeverityMask());
+    Assertions.assertSame(empty, ErrorChain.of(null));
+    Assertions.assertSame(empty, ErrorChain.of(List.of()));
+  }
+
+  @Test
+  public void of_copiesList_andReturnsChainItself() {
+    List<MeasurementError> source = new ArrayList<>(List.of(W1, S1));
+
+    ErrorChain chain = ErrorChain.of(source);
+    source.clear();
+
+    Assertions.assertEquals(List.of(W1, S1), chain);
+    Assertions.assertEquals(
+        ErrorSeverity.WARNING.mask() | ErrorSeverity.SEVERE.mask(), chain.getSeverityMask());
+    Assertions.assertSame(chain, ErrorChain.of(chain));
+  }
+
+  @Test
+  public void append_sharesParent_andLeavesItUnchanged() {
+    ErrorChain first = ErrorChain.of(List.of(W1));
+
+    ErrorChain second = first.append(List.of(W2));
+    ErrorChain third = second.append(List.of(S1));
+
+    Assertions.assertEquals(List.of(W1), first);
+    Assertions.assertEquals(List.of(W1, W2), second);
+    Assertions.assertEquals(List.of(W1, W2, S1), third);
+    Assertions.assertSame(W1, third.get(0));
+    Assertions.assertSame(W2, third.get(1));
+    Assertions.assertSame(S1, third.get(2));
+    Assertions.assertEquals(ErrorSeverity.WARNING.mask(), second.getSeverityMask());
+    Assertions.assertEquals(
+        ErrorSeverity.WARNING.mask() | ErrorSeverity.SEVERE.mask(), third.getSeverityMask());
+    Assertions.assertSame(third, third.append(List.of()));
+  }
+
+  @Test
+  public void get_outOfRange_throws() {
+    ErrorChain chain = ErrorChain.of(List.of(W1)).append(List.of(W2));
+
+    Assertions.assertThrows(IndexOutOfBoundsException.class, () -> chain.get(2));
+    Assertions.assertThrows(IndexOutOfBoundsException.class, () -> chain.get(-1));
+    Assertions.assertThrows(IndexOutOfBoundsException.class, () -> ErrorChain.empty().get(0));
+  }
+
+  @Test
+  public void nullError_throws() {
+    Assertions.assertThrows(
+        NullPointerException.class, () -> ErrorChain.empty().append(Arrays.asList(W1, null)));
+  }
+
+  @Test
+  public void chain_isUnmodifiable() {
+    ErrorChain chain = ErrorChain.of(List.of(W1));
+
+    Assertions.assertThrows(UnsupportedOperationException.class, () -> chain.add(W2));
+    Assertions.assertThrows(UnsupportedOperationException.class, () -> chain.remove(0));
+    Assertions.assertThrows(UnsupportedOperationException.class, chain::clear);
+  }
+}
@@ -63,4 +63,37 @@ public class MeasurementVectorTest {
     Assertions.assertTrue(v2.getErrors().isEmpty());
     Assertions.assertFalse(v2.hasSevereError());
   }
+
+  @Test
+  public void ingestNanos_zeroByDefault_withIngestNanosSharesContents() {
+    Measurement p = new Pressure(1000L, "P1", new BigDecimal("101325"));
+    MeasurementError warning = new MeasurementError("P1", ErrorSeverity.WARNING, "Minor issue");
+    MeasurementVector v = new MeasurementVector(1000L, Map.of("P1", p), List.of(warning));
+
+    MeasurementVector stamped = v.withIngestNanos(42L);
+
+    Assertions.assertEquals(0L, v.getIngestNanos());
+    Assertions.assertEquals(0L, new MeasurementVector(1000L, List.of(p)).getIngestNanos());
+    Assertions.assertEquals(42L, stamped.getIngestNanos());
+    Assertions.assertEquals(1000L, stamped.getTimeUtc());
+    Assertions.assertSame(v.getMeasurementsMap(), stamped.getMeasurementsMap());
+    Assertions.assertSame(v.getErrors(), stamped.getErrors());
+    Assertions.assertEquals(
+        7L, new MeasurementVector(1000L, Map.of("P1", p), null, 7L).getIngestNanos());
+  }
+
+  @Test
+  public void severityMask_precomputed_andErrorsSharedBetweenVectors() {
+    Measurement p = new Pressure(1000L, "P1", new BigDecimal("101325"));
+    MeasurementError warning = new MeasurementError("P1", ErrorSeverity.WARNING, "Minor issue");
+    MeasurementVector v = new MeasurementVector(1000L, Map.of("P1", p), List.of(warning));
+
+    MeasurementVector derived = new MeasurementVector(2000L, List.of(p), v.getErrors());
+
+    Assertions.assertEquals(ErrorSeverity.WARNING.mask(), v.getSeverityMask());
+    Assertions.assertTrue(v.hasError(ErrorSeverity.WARNING));
+    Assertions.assertFalse(v.hasError(ErrorSeverity.SEVERE));
+    Assertions.assertSame(v.getErrors(), derived.getErrors());
+    Assertions.assertEquals(0, new MeasurementVector(1000L, List.of(p)).getSeverityMask());
+  }
 }
@@ -0,0 +1,52 @@
+package ca.lajthabalazs.pressure_integity_test.measurement;
+
+import ca.lajthabalazs.pressure_integrity_test.measurement.Measurement;
+import ca.lajthabalazs.pressure_integrity_test.measurement.StageIndex;
+import java.math.BigDecimal;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link StageIndex}. */
+public class StageIndexTest {
+
+  @Test
+  public void intConstructor_storesIndex() {
+    var s = new StageIndex(1000L, "STAGE", 2);
+    Assertions.assertEquals(1000L, s.getTimeUtc());
+    Assertions.assertEquals("STAGE", s.getSourceId());
+    Assertions.assertEquals(StageIndex.INDEX, s.getDefaultUnit());
+    Assertions.assertEquals(2, s.getIndex());
+    Assertions.assertEquals(0, BigDecimal.valueOf(2).compareTo(s.getValueInDefaultUnit()));
+  }
+
+  @Test
+  public void noStage_isMinusOne() {
+    var s = new StageIndex(1000L, "STAGE", new BigDecimal("-1"));
+    Assertions.assertEquals(-1, s.getIndex());
+  }
+
+  @Test
+  public void withNewTimestamp_preservesOtherFields() {
+    var original = new StageIndex(1000L, "STAGE", 1);
+
+    Measurement copy = original.withNewTimestamp(2000L);
+
+    Assertions.assertInstanceOf(StageIndex.class, copy);
+    Assertions.assertEquals(2000L, copy.getTimeUtc());
+    Assertions.assertEquals("STAGE", copy.getSourceId());
+    Assertions.assertEquals(1, ((StageIndex) copy).getIndex());
+    Assertions.assertEquals(1000L, original.getTimeUtc());
+  }
+
+  @Test
+  public void withNewValueInDefaultUnit_preservesOtherFields() {
+    var original = new StageIndex(1000L, "STAGE", 1);
+
+    Measurement copy = original.withNewValueInDefaultUnit(new BigDecimal("3"));
+
+    Assertions.assertInstanceOf(StageIndex.class, copy);
+    Assertions.assertEquals(1000L, copy.getTimeUtc());
+    Assertions.assertEquals("STAGE", copy.getSourceId());
+    Assertions.assertEquals(3, ((StageIndex) copy).getIndex());
+  }
+}
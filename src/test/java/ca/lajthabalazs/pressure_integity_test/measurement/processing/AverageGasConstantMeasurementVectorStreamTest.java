@@ -208,11 +208,11 @@ public class AverageGasConstantMeasurementVectorStreamTest {
   }
 
   /**
-   * Temperature value that makes the Antoine denominator zero (T = -C) results in saturation
-   * pressure calculation returning null, so no R is published.
+   * Temperature outside the credible 0–100 °C range (and the saturation pressure table) causes the
+   * pair to be ignored, so no R is published.
    */
   @Test
-  public void saturationPressureDenominatorZero_noAveragePublished() {
+  public void temperatureOutsideCredibleRange_noAveragePublished() {
     locationsBySensorId.put("T1", location("L1", "1.0"));
     humidityToTemperature.put("H1", "T1");
 
@@ -224,17 +224,89 @@ public class AverageGasConstantMeasurementVectorStreamTest {
             1000L,
             AveragePressureMeasurementVectorStream.AVG_PRESSURE_SOURCE_ID,
             new BigDecimal("101325"));
-    // T = -C = -7.559 makes (T + C) = 0 in the Antoine equation
     Temperature t = new Temperature(1000L, "T1", new BigDecimal("-7.559"));
     Humidity h = new Humidity(1000L, "H1", new BigDecimal("50.0"));
+    source.publishToSubscribers(new MeasurementVector(1000L, List.of(avgP, t, h)));
 
+    t = new Temperature(1000L, "T1", new BigDecimal("100.1"));
     source.publishToSubscribers(new MeasurementVector(1000L, List.of(avgP, t, h)));
 
-    // Saturation pressure cannot be calculated → pair ignored → no R
     Assertions.assertEquals(0, received.size());
     avgR.stop();
   }
 
+  /** Humidity outside 0–100 % causes the pair to be ignored. */
+  @Test
+  public void humidityOutsideCredibleRange_noAveragePublished() {
+    locationsBySensorId.put("T1", location("L1", "1.0"));
+    humidityToTemperature.put("H1", "T1");
+
+    AverageGasConstantMeasurementVectorStream avgR = newStream(source);
+    avgR.subscribe(received::add);
+
+    Pressure avgP =
+        new Pressure(
+            1000L,
+            AveragePressureMeasurementVectorStream.AVG_PRESSURE_SOURCE_ID,
+            new BigDecimal("101325"));
+    Temperature t = new Temperature(1000L, "T1", new BigDecimal("20.0"));
+    source.publishToSubscribers(
+        new MeasurementVector(
+            1000L, List.of(avgP, t, new Humidity(1000L, "H1", new BigDecimal("100.5")))));
+    source.publishToSubscribers(
+        new MeasurementVector(
+            1000L, List.of(avgP, t, new Humidity(1000L, "H1", new BigDecimal("-0.5")))));
+
+    Assertions.assertEquals(0, received.size());
+    avgR.stop();
+  }
+
+  /** Expected R from the ILRT formula with the Antoine saturation pressure (T in K, P in bar). */
+  private static double expectedR(double pressurePa, double phi, double celsius) {
+    double presSat = 1e5 * Math.pow(10.0, 6.20963 - 2354.731 / (celsius + 273.15 + 7.559));
+    return 286.9 * pressurePa / (pressurePa - (1.0 - 286.9 / 460.7) * phi / 100.0 * presSat);
+  }
+
+  /** Two pairs: R is the volume-weighted harmonic mean of the per-location values. */
+  @Test
+  public void twoPairs_volumeWeightedHarmonicMeanOfHumidAirR() {
+    locationsBySensorId.put("T1", location("L1", "1.0"));
+    locationsBySensorId.put("T2", location("L2", "3.0"));
+    humidityToTemperature.put("H1", "T1");
+    humidityToTemperature.put("H2", "T2");
+
+    AverageGasConstantMeasurementVectorStream avgR = newStream(source);
+    avgR.subscribe(received::add);
+
+    source.publishToSubscribers(
+        new MeasurementVector(
+            1000L,
+            List.of(
+                new Pressure(
+                    1000L,
+                    AveragePressureMeasurementVectorStream.AVG_PRESSURE_SOURCE_ID,
+                    new BigDecimal("300000")),
+                new Temperature(1000L, "T1", new BigDecimal("20.0")),
+                new Humidity(1000L, "H1", new BigDecimal("50.0")),
+                new Temperature(1000L, "T2", new BigDecimal("45.0")),
+                new Humidity(1000L, "H2", new BigDecimal("90.0")))));
+
+    double r1 = expectedR(300000, 50.0, 20.0);
+    double r2 = expectedR(300000, 90.0, 45.0);
+    double expected = 4.0 / (1.0 / r1 + 3.0 / r2);
+    Assertions.assertTrue(r1 > 287.2 && r1 < 287.6, "Humid air R above dry air: " + r1);
+    Assertions.assertEquals(1, received.size());
+    double actual =
+        received
+            .get(0)
+            .getMeasurementsMap()
+            .get(AverageGasConstantMeasurementVectorStream.AVG_R_SOURCE_ID)
+            .getValueInDefaultUnit()
+            .doubleValue();
+    Assertions.assertEquals(expected, actual, expected * 1e-7);
+    avgR.stop();
+  }
+
   /** Constructor handles null maps by treating them as empty. */
   @Test
   public void constructor_nullMapsHandledAsEmpty() {
@@ -234,4 +234,51 @@ public class AveragePressureMeasurementVectorStreamTest {
     Assertions.assertEquals(1, out.getMeasurements().size());
     stream.stop();
   }
+
+  /**
+   * Sigma-weighted mean: weights 1/σ² (σ = 1 → 1, σ = 2 → 0.25, no sigma → 1); a sensor named by
+   * an error is left out and the remaining weights renormalised.
+   */
+  @Test
+  public void sigmaWeighted_inverseVarianceMeanWithoutFlaggedSensors() {
+    SiteConfig cfg = siteConfigWithPressureSensorIds("P1", "P2", "P3");
+    cfg.getSensors().get(0).setSigma(new BigDecimal("1"));
+    cfg.getSensors().get(1).setSigma(new BigDecimal("2"));
+    AveragePressureMeasurementVectorStream stream =
+        new AveragePressureMeasurementVectorStream(source, cfg, true);
+    stream.subscribe(received::add);
+
+    List<Measurement> pressures =
+        List.of(
+            new Pressure(1000L, "P1", new BigDecimal("100000")),
+            new Pressure(1000L, "P2", new BigDecimal("100500")),
+            new Pressure(1000L, "P3", new BigDecimal("100200")),
+            new Humidity(1000L, "P4", new BigDecimal("50")));
+    source.publishToSubscribers(new MeasurementVector(1000L, pressures));
+    source.publishToSubscribers(
+        new MeasurementVector(
+            2000L,
+            pressures,
+            List.of(new MeasurementError("P3", ErrorSeverity.WARNING, "Out of valid range"))));
+    source.publishToSubscribers(
+        new MeasurementVector(
+            3000L,
+            pressures.subList(0, 1),
+            List.of(new MeasurementError("P1", ErrorSeverity.WARNING, "Out of valid range"))));
+
+    Assertions.assertEquals(2, received.size());
+    // (100000 + 0.25·100500 + 100200) / 2.25
+    Assertions.assertEquals(
+        0, new BigDecimal("100144.4444444444").compareTo(averageOf(received.get(0))));
+    // (100000 + 0.25·100500) / 1.25
+    Assertions.assertEquals(0, new BigDecimal("100100").compareTo(averageOf(received.get(1))));
+    stream.stop();
+  }
+
+  private static BigDecimal averageOf(MeasurementVector vector) {
+    return vector
+        .getMeasurementsMap()
+        .get(AveragePressureMeasurementVectorStream.AVG_PRESSURE_SOURCE_ID)
+        .getValueInDefaultUnit();
+  }
 }
@@ -375,4 +375,52 @@ public class AverageTemperatureMeasurementVectorStreamTest {
     Assertions.assertEquals(1, out.getMeasurements().size());
     stream.stop();
   }
+
+  /**
+   * Sigma-weighted harmonic mean: weights vⱼ/σⱼ²; incredible and flagged sensors are left out and
+   * the remaining weights renormalised.
+   */
+  @Test
+  public void sigmaWeighted_volumeOverVarianceHarmonicMean() {
+    locationsBySensorId.put("T1", location("L1", "2.0"));
+    locationsBySensorId.put("T2", location("L2", "1.0"));
+    locationsBySensorId.put("T3", location("L3", "1.0"));
+    SiteConfig cfg = siteConfigFromLocationMap();
+    cfg.getSensors().forEach(s -> s.setSigma(new BigDecimal("0.5")));
+    locationsBySensorId.get("T2").getSensors().getFirst().setSigma(new BigDecimal("1.0"));
+    AverageTemperatureMeasurementVectorStream stream =
+        new AverageTemperatureMeasurementVectorStream(source, locationsBySensorId, cfg, true);
+    stream.subscribe(received::add);
+
+    List<Measurement> temps =
+        List.of(
+            new Temperature(1000L, "T1", new BigDecimal("20.0")),
+            new Temperature(1000L, "T2", new BigDecimal("40.0")),
+            new Temperature(1000L, "T3", new BigDecimal("150.0")));
+    source.publishToSubscribers(new MeasurementVector(1000L, temps));
+    source.publishToSubscribers(
+        new MeasurementVector(
+            2000L,
+            temps,
+            List.of(new MeasurementError("T2", ErrorSeverity.WARNING, "Out of valid range"))));
+    source.publishToSubscribers(
+        new MeasurementVector(
+            3000L,
+            temps.subList(2, 3),
+            List.of(new MeasurementError("T1", ErrorSeverity.WARNING, "Out of valid range"))));
+
+    Assertions.assertEquals(2, received.size());
+    // Weights 2/0.25 = 8 and 1/1 = 1: 9 / (8/20 + 1/40) = 21.17647...
+    Assertions.assertEquals(
+        9.0 / (8.0 / 20.0 + 1.0 / 40.0), averageOf(received.get(0)).doubleValue(), 1e-12);
+    Assertions.assertEquals(0, new BigDecimal("20").compareTo(averageOf(received.get(1))));
+    stream.stop();
+  }
+
+  private static BigDecimal averageOf(MeasurementVector vector) {
+    return vector
+        .getMeasurementsMap()
+        .get(AverageTemperatureMeasurementVectorStream.AVG_TEMPERATURE_SOURCE_ID)
+        .getValueInDefaultUnit();
+  }
 }
@@ -16,6 +16,7 @@ import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
 import ca.lajthabalazs.pressure_integrity_test.measurement.Pressure;
 import ca.lajthabalazs.pressure_integrity_test.measurement.Temperature;
 import ca.lajthabalazs.pressure_integrity_test.measurement.processing.BelievabilityFilteredMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.SpikeDetectionSettings;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
@@ -353,4 +354,78 @@ public class BelievabilityFilteredMeasurementVectorStreamTest {
     filter.stop();
     Assertions.assertDoesNotThrow(filter::stop);
   }
+
+  private List<MeasurementError> spikeErrors(int index) {
+    return received.get(index).getErrors().stream()
+        .filter(e -> e.message().startsWith("Spike"))
+        .toList();
+  }
+
+  /** An in-range spike gets a WARNING but is kept, and the next normal value is not flagged. */
+  @Test
+  public void spikeDetection_flagsInRangeSpike() {
+    TemperatureSensorConfig t24 =
+        temperatureSensorWithRange(new BigDecimal("0"), new BigDecimal("80"));
+    BelievabilityFilteredMeasurementVectorStream filter =
+        new BelievabilityFilteredMeasurementVectorStream(
+            source, siteConfigWithSensors(t24), new SpikeDetectionSettings(9, 3.0, 0.05));
+    filter.subscribe(received::add);
+
+    double[] values = {20.0, 20.1, 19.9, 20.0, 20.2, 19.8, 20.1, 35.0, 20.0, 20.05};
+    for (int i = 0; i < values.length; i++) {
+      long t = 1000L * i;
+      Temperature m = new Temperature(t, "T24", BigDecimal.valueOf(values[i]));
+      source.publishToSubscribers(new MeasurementVector(t, List.of(m)));
+    }
+
+    Assertions.assertEquals(values.length, received.size());
+    for (int i = 0; i < values.length; i++) {
+      List<MeasurementError> errors = spikeErrors(i);
+      if (i == 7) {
+        Assertions.assertEquals(1, errors.size());
+        Assertions.assertEquals("T24", errors.get(0).sensorId());
+        Assertions.assertEquals(ErrorSeverity.WARNING, errors.get(0).severity());
+        Assertions.assertEquals(1, received.get(i).getMeasurements().size(), "Value is kept");
+      } else {
+        Assertions.assertEquals(List.of(), errors, "i=" + i);
+      }
+    }
+    filter.stop();
+  }
+
+  /** Out-of-range values, null values and sensors outside the site config skip the detector. */
+  @Test
+  public void spikeDetection_skipsOutOfRangeNullAndUnknownSensors() {
+    TemperatureSensorConfig t24 =
+        temperatureSensorWithRange(new BigDecimal("0"), new BigDecimal("80"));
+    PressureSensorConfig p1 = new PressureSensorConfig();
+    p1.setId("P1");
+    BelievabilityFilteredMeasurementVectorStream filter =
+        new BelievabilityFilteredMeasurementVectorStream(
+            source, siteConfigWithSensors(t24, p1), new SpikeDetectionSettings(3, 3.0, 0.0));
+    filter.subscribe(received::add);
+
+    for (int i = 0; i < 3; i++) {
+      long t = 1000L * i;
+      source.publishToSubscribers(
+          new MeasurementVector(
+              t,
+              List.of(
+                  new Temperature(t, "T24", new BigDecimal("20")),
+                  new Pressure(t, "P1", (BigDecimal) null),
+                  new Pressure(t, "P_OTHER", BigDecimal.valueOf(100_000L * (i + 1))))));
+    }
+    source.publishToSubscribers(
+        new MeasurementVector(
+            5000L, List.of(new Temperature(5000L, "T24", new BigDecimal("90")))));
+    source.publishToSubscribers(
+        new MeasurementVector(
+            6000L, List.of(new Temperature(6000L, "T24", new BigDecimal("20")))));
+
+    for (int i = 0; i < received.size(); i++) {
+      Assertions.assertEquals(List.of(), spikeErrors(i), "i=" + i);
+    }
+    Assertions.assertEquals(1, received.get(3).getErrors().size(), "Only out of range");
+    filter.stop();
+  }
 }
@@ -3,15 +3,24 @@ package ca.lajthabalazs.pressure_integity_test.measurement.processing;
 import ca.lajthabalazs.pressure_integity_test.measurement.streaming.TestMeasurementVectorStream;
 import ca.lajthabalazs.pressure_integrity_test.config.CalibrationConfig;
 import ca.lajthabalazs.pressure_integrity_test.config.HumiditySensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.LinearCalibration;
 import ca.lajthabalazs.pressure_integrity_test.config.LocationConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.PressureSensorConfig;
 import ca.lajthabalazs.pressure_integrity_test.config.SensorConfig;
 import ca.lajthabalazs.pressure_integrity_test.config.SiteConfig;
 import ca.lajthabalazs.pressure_integrity_test.config.TemperatureSensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.TestConfig;
 import ca.lajthabalazs.pressure_integrity_test.measurement.ErrorSeverity;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Humidity;
 import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementError;
 import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Pressure;
 import ca.lajthabalazs.pressure_integrity_test.measurement.Temperature;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.AveragePressureMeasurementVectorStream;
 import ca.lajthabalazs.pressure_integrity_test.measurement.processing.FullStackLeakageMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.LeakageMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.tracing.LatencyStats;
+import ca.lajthabalazs.pressure_integrity_test.measurement.tracing.LatencyTracer;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
@@ -22,6 +31,10 @@ import org.junit.jupiter.api.Test;
 /** Tests for {@link FullStackLeakageMeasurementVectorStream}. */
 public class FullStackLeakageMeasurementVectorStreamTest {
 
+  /** The config-driven steps, fused into the first node of the chain. */
+  private static final String CONFIG_NODE =
+      "believability + calibration + averagePressure + averageTemperature + averageGasConstant";
+
   private TestMeasurementVectorStream source;
   private SiteConfig siteConfig;
 
@@ -118,4 +131,282 @@ public class FullStackLeakageMeasurementVectorStreamTest {
 
     chain.stop();
   }
+
+  @Test
+  public void constructorWithTestConfig_initializesAndStops() {
+    TestConfig testConfig = new TestConfig();
+    FullStackLeakageMeasurementVectorStream chain =
+        new FullStackLeakageMeasurementVectorStream(siteConfig, null, testConfig, source);
+    List<MeasurementVector> received = new ArrayList<>();
+    chain.subscribe(received::add);
+
+    MeasurementVector input =
+        new MeasurementVector(
+            1000L,
+            List.of(new Temperature(1000L, "T1", new BigDecimal("20"))),
+            List.of(new MeasurementError("T1", ErrorSeverity.SEVERE, "Test severe")));
+    source.publishToSubscribers(input);
+
+    Assertions.assertEquals(List.of(input), received);
+    Assertions.assertEquals(1, chain.listSensors().size());
+    chain.stop();
+    Assertions.assertTrue(source.getSubscribers().isEmpty());
+  }
+
+  /** One location with a pressure, a temperature and a humidity sensor. */
+  private static SiteConfig pressureSite(String volumeFactor) {
+    PressureSensorConfig p = new PressureSensorConfig();
+    p.setId("P1");
+    TemperatureSensorConfig t = new TemperatureSensorConfig();
+    t.setId("T1");
+    HumiditySensorConfig h = new HumiditySensorConfig();
+    h.setId("H1");
+    LocationConfig loc = new LocationConfig();
+    loc.setId("L1");
+    loc.setVolumeFactor(new BigDecimal(volumeFactor));
+    loc.setSensors(new ArrayList<>(List.of(p, t, h)));
+    SiteConfig site = new SiteConfig();
+    site.setLocations(List.of(loc));
+    return site;
+  }
+
+  /** Calibration that adds an offset to P1. */
+  private static CalibrationConfig pressureOffset(String offsetPa) {
+    LinearCalibration cal = new LinearCalibration();
+    cal.setA(BigDecimal.ONE);
+    cal.setB(new BigDecimal(offsetPa));
+    CalibrationConfig config = new CalibrationConfig();
+    config.setSensorCalibration("P1", cal);
+    return config;
+  }
+
+  /** Vector i is one minute after vector i−1, with a slowly falling pressure. */
+  private static MeasurementVector pressureVector(int i) {
+    long t = i * 60_000L;
+    return new MeasurementVector(
+        t,
+        List.of(
+            new Pressure(t, "P1", BigDecimal.valueOf(150_000.0 - 2.0 * i)),
+            new Temperature(t, "T1", new BigDecimal("20")),
+            new Humidity(t, "H1", new BigDecimal("40"))));
+  }
+
+  private static BigDecimal value(MeasurementVector vector, String sourceId) {
+    return vector.getMeasurementsMap().get(sourceId).getValueInDefaultUnit();
+  }
+
+  @Test
+  public void updateConfig_appliesFromNextVectorAndKeepsLeakageState() {
+    FullStackLeakageMeasurementVectorStream chain =
+        new FullStackLeakageMeasurementVectorStream(
+            pressureSite("1.0"), pressureOffset("0"), source);
+    List<MeasurementVector> received = new ArrayList<>();
+    chain.subscribe(received::add);
+
+    for (int i = 0; i < 5; i++) {
+      source.publishToSubscribers(pressureVector(i));
+    }
+    SiteConfig newSite = pressureSite("0.5");
+    chain.updateConfig(newSite, pressureOffset("100"));
+    for (int i = 5; i < 10; i++) {
+      source.publishToSubscribers(pressureVector(i));
+    }
+
+    Assertions.assertEquals(10, received.size());
+    for (int i = 0; i < 10; i++) {
+      double offset = i < 5 ? 0.0 : 100.0;
+      Assertions.assertEquals(
+          150_000.0 - 2.0 * i + offset,
+          value(received.get(i), AveragePressureMeasurementVectorStream.AVG_PRESSURE_SOURCE_ID)
+              .doubleValue(),
+          1e-9);
+    }
+    // The leakage is not restarted: the first vector after the swap is compared with the last
+    // one before it.
+    Assertions.assertEquals(
+        0,
+        BigDecimal.ONE
+            .negate()
+            .compareTo(value(received.get(0), LeakageMeasurementVectorStream.LEAKAGE_SOURCE_ID)));
+    Assertions.assertNotEquals(
+        0,
+        BigDecimal.ONE
+            .negate()
+            .compareTo(value(received.get(5), LeakageMeasurementVectorStream.LEAKAGE_SOURCE_ID)));
+    Assertions.assertSame(newSite.getSensors().getFirst(), chain.listSensors().getFirst());
+    chain.stop();
+  }
+
+  @Test
+  public void updateConfig_fromOtherThreadAppliesOneConfigPerVector() throws Exception {
+    FullStackLeakageMeasurementVectorStream chain =
+        new FullStackLeakageMeasurementVectorStream(
+            pressureSite("1.0"), pressureOffset("0"), source);
+    List<MeasurementVector> received = new ArrayList<>();
+    chain.subscribe(received::add);
+    Thread swapper =
+        new Thread(
+            () -> {
+              for (int i = 0; i < 2000; i++) {
+                chain.updateConfig(pressureSite("1.0"), pressureOffset(i % 2 == 0 ? "100" : "0"));
+              }
+            });
+
+    swapper.start();
+    for (int i = 0; i < 500; i++) {
+      source.publishToSubscribers(pressureVector(i));
+    }
+    swapper.join();
+
+    Assertions.assertEquals(500, received.size());
+    for (int i = 0; i < 500; i++) {
+      MeasurementVector v = received.get(i);
+      double offset = value(v, "P1").doubleValue() - (150_000.0 - 2.0 * i);
+      Assertions.assertTrue(offset == 0.0 || offset == 100.0, "offset " + offset);
+      Assertions.assertEquals(
+          value(v, "P1").doubleValue(),
+          value(v, AveragePressureMeasurementVectorStream.AVG_PRESSURE_SOURCE_ID).doubleValue(),
+          1e-9);
+    }
+    chain.stop();
+  }
+
+  @Test
+  public void checkpoint_resumedStreamGoesOnLikeUninterruptedOne() {
+    FullStackLeakageMeasurementVectorStream uninterrupted =
+        new FullStackLeakageMeasurementVectorStream(pressureSite("1.0"), null, null, source);
+    List<MeasurementVector> expected = new ArrayList<>();
+    uninterrupted.subscribe(expected::add);
+    for (int i = 0; i < 10; i++) {
+      source.publishToSubscribers(pressureVector(i));
+    }
+    uninterrupted.stop();
+
+    TestMeasurementVectorStream first = new TestMeasurementVectorStream();
+    List<byte[]> written = new ArrayList<>();
+    FullStackLeakageMeasurementVectorStream stopped =
+        new FullStackLeakageMeasurementVectorStream(
+            pressureSite("1.0"), null, null, first, null, 2 * 60_000L, written::add);
+    Assertions.assertEquals(Long.MIN_VALUE, stopped.getLastTimeUtc());
+    for (int i = 0; i < 5; i++) {
+      first.publishToSubscribers(pressureVector(i));
+    }
+    Assertions.assertEquals(4 * 60_000L, stopped.getLastTimeUtc());
+    byte[] checkpoint = stopped.checkpoint();
+    stopped.stop();
+    // Periodic checkpoints at 0, 2 and 4 minutes, and the last one on stop.
+    Assertions.assertEquals(4, written.size());
+    Assertions.assertArrayEquals(checkpoint, written.getLast());
+
+    TestMeasurementVectorStream second = new TestMeasurementVectorStream();
+    FullStackLeakageMeasurementVectorStream resumed =
+        new FullStackLeakageMeasurementVectorStream(
+            pressureSite("1.0"), null, null, second, checkpoint, 2 * 60_000L, null);
+    List<MeasurementVector> received = new ArrayList<>();
+    resumed.subscribe(received::add);
+    Assertions.assertEquals(4 * 60_000L, resumed.getLastTimeUtc());
+    for (int i = 0; i < 10; i++) {
+      second.publishToSubscribers(pressureVector(i));
+    }
+
+    Assertions.assertEquals(5, received.size());
+    for (int i = 0; i < 5; i++) {
+      Assertions.assertEquals(expected.get(5 + i).getTimeUtc(), received.get(i).getTimeUtc());
+      Assertions.assertEquals(
+          0,
+          value(expected.get(5 + i), LeakageMeasurementVectorStream.LEAKAGE_SOURCE_ID)
+              .compareTo(value(received.get(i), LeakageMeasurementVectorStream.LEAKAGE_SOURCE_ID)));
+    }
+    resumed.stop();
+  }
+
+  @Test
+  public void sigmaWeighted_weightsPressureSensorsAndKeepsWeightingAcrossUpdateConfig() {
+    FullStackLeakageMeasurementVectorStream chain =
+        new FullStackLeakageMeasurementVectorStream(
+            twoPressureSensorSite(), null, null, true, source, null, 0L, null);
+    List<MeasurementVector> received = new ArrayList<>();
+    chain.subscribe(received::add);
+
+    source.publishToSubscribers(twoPressureVector(0L));
+    chain.updateConfig(twoPressureSensorSite(), null);
+    source.publishToSubscribers(twoPressureVector(60_000L));
+
+    Assertions.assertEquals(2, received.size());
+    for (MeasurementVector vector : received) {
+      // (100000 + 0.25·100500) / 1.25; the arithmetic mean would be 100250
+      BigDecimal average =
+          value(vector, AveragePressureMeasurementVectorStream.AVG_PRESSURE_SOURCE_ID);
+      Assertions.assertEquals(0, new BigDecimal("100100").compareTo(average));
+    }
+    chain.stop();
+  }
+
+  /** One location with pressure sensors of σ 1 Pa and 2 Pa, a temperature and a humidity sensor. */
+  private static SiteConfig twoPressureSensorSite() {
+    PressureSensorConfig p1 = new PressureSensorConfig();
+    p1.setId("P1");
+    p1.setSigma(BigDecimal.ONE);
+    PressureSensorConfig p2 = new PressureSensorConfig();
+    p2.setId("P2");
+    p2.setSigma(new BigDecimal("2"));
+    TemperatureSensorConfig t = new TemperatureSensorConfig();
+    t.setId("T1");
+    HumiditySensorConfig h = new HumiditySensorConfig();
+    h.setId("H1");
+    LocationConfig loc = new LocationConfig();
+    loc.setId("L1");
+    loc.setVolumeFactor(BigDecimal.ONE);
+    loc.setSensors(new ArrayList<>(List.of(p1, p2, t, h)));
+    SiteConfig site = new SiteConfig();
+    site.setLocations(List.of(loc));
+    return site;
+  }
+
+  private static MeasurementVector twoPressureVector(long t) {
+    return new MeasurementVector(
+        t,
+        List.of(
+            new Pressure(t, "P1", new BigDecimal("100000")),
+            new Pressure(t, "P2", new BigDecimal("100500")),
+            new Temperature(t, "T1", new BigDecimal("20")),
+            new Humidity(t, "H1", new BigDecimal("40"))));
+  }
+
+  @Test
+  public void constructor_checkpointSinkWithoutInterval_throws() {
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            new FullStackLeakageMeasurementVectorStream(
+                pressureSite("1.0"), null, null, source, null, 0L, checkpoint -> {}));
+  }
+
+  @Test
+  public void getPlan_keepsConfigDrivenStepsApart() {
+    FullStackLeakageMeasurementVectorStream chain =
+        new FullStackLeakageMeasurementVectorStream(pressureSite("1.0"), null, source);
+
+    Assertions.assertEquals(List.of(CONFIG_NODE, "leakage"), chain.getPlan());
+    chain.stop();
+  }
+
+  @Test
+  public void setLatencyTracer_recordsEveryNode() {
+    long[] now = {0L};
+    LatencyTracer tracer = new LatencyTracer(() -> now[0] += 1_000L);
+    tracer.setEnabled(true);
+    FullStackLeakageMeasurementVectorStream chain =
+        new FullStackLeakageMeasurementVectorStream(pressureSite("1.0"), null, source);
+    chain.setLatencyTracer(tracer);
+
+    source.publishToSubscribers(tracer.stamp(pressureVector(0)));
+
+    List<LatencyStats> stats = tracer.snapshot();
+    Assertions.assertEquals(
+        List.of(CONFIG_NODE, "leakage"), stats.stream().map(LatencyStats::hop).toList());
+    Assertions.assertEquals(1, stats.get(0).count());
+    Assertions.assertEquals(1, stats.get(1).count());
+    chain.stop();
+  }
 }
@@ -0,0 +1,302 @@
+package ca.lajthabalazs.pressure_integity_test.measurement.processing;
+
+import ca.lajthabalazs.pressure_integity_test.measurement.streaming.TestMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.config.CalibrationConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.HumiditySensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.LinearCalibration;
+import ca.lajthabalazs.pressure_integrity_test.config.LocationConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.PressureSensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.SensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.SiteConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.TemperatureSensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.TestConfig;
+import ca.lajthabalazs.pressure_integrity_test.measurement.ErrorSeverity;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Humidity;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementError;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Pressure;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Temperature;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.FullStackLeakageMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.LeakageHistoryCache;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.LeakageHistoryCache.Column;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.LeakageMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.StageMeasurementVectorStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link LeakageHistoryCache}. */
+public class LeakageHistoryCacheTest {
+
+  /** More than two recomputation chunks and several array growths. */
+  private static final int ROWS = 2500;
+
+  private TestMeasurementVectorStream source;
+  private TestConfig testConfig;
+
+  @BeforeEach
+  public void setUp() {
+    source = new TestMeasurementVectorStream();
+    testConfig = StageMeasurementVectorStreamTest.twoStageConfig();
+  }
+
+  private static LocationConfig location(String id, String volumeFactor, SensorConfig... sensors) {
+    LocationConfig loc = new LocationConfig();
+    loc.setId(id);
+    loc.setVolumeFactor(new BigDecimal(volumeFactor));
+    loc.setSensors(new ArrayList<>(List.of(sensors)));
+    return loc;
+  }
+
+  private static <T extends SensorConfig> T sensor(T sensor, String id) {
+    sensor.setId(id);
+    return sensor;
+  }
+
+  /** L1 holds P1, T1 and H1 (paired with T1); L2 holds T2 only. */
+  private static SiteConfig siteConfig(String l1VolumeFactor, String l2VolumeFactor) {
+    SiteConfig site = new SiteConfig();
+    site.setLocations(
+        List.of(
+            location(
+                "L1",
+                l1VolumeFactor,
+                sensor(new PressureSensorConfig(), "P1"),
+                sensor(new TemperatureSensorConfig(), "T1"),
+                sensor(new HumiditySensorConfig(), "H1")),
+            location("L2", l2VolumeFactor, sensor(new TemperatureSensorConfig(), "T2"))));
+    return site;
+  }
+
+  private static CalibrationConfig calibration(String sensorId, String a, String b) {
+    LinearCalibration cal = new LinearCalibration();
+    cal.setA(new BigDecimal(a));
+    cal.setB(new BigDecimal(b));
+    CalibrationConfig config = new CalibrationConfig();
+    config.setSensorCalibration(sensorId, cal);
+    return config;
+  }
+
+  /**
+   * Vector i is 10 s after vector i−1. The pressure sits on the +0.5 bar plateau for 3 h, leaking
+   * slowly, then on the +1.5 bar plateau; temperatures and humidity drift slightly.
+   */
+  private static MeasurementVector rawVector(int i) {
+    long t = i * 10_000L;
+    double pressure = i < 1080 ? 150_000.0 - 0.2 * i : 250_000.0 - 0.3 * (i - 1080);
+    return new MeasurementVector(
+        t,
+        List.of(
+            new Pressure(t, "P1", BigDecimal.valueOf(pressure)),
+            new Pressure(t, "p", new BigDecimal("1.0")),
+            new Temperature(t, "T1", BigDecimal.valueOf(20.0 + 0.001 * (i % 97))),
+            new Temperature(t, "T2", BigDecimal.valueOf(22.0 - 0.001 * (i % 53))),
+            new Humidity(t, "H1", BigDecimal.valueOf(40.0 + 0.01 * (i % 31)))));
+  }
+
+  private void publishHistory(TestMeasurementVectorStream stream) {
+    for (int i = 0; i < ROWS; i++) {
+      stream.publishToSubscribers(rawVector(i));
+    }
+  }
+
+  /** Runs a fresh full stack over the history and returns its output by timestamp. */
+  private Map<Long, MeasurementVector> fullStackRun(
+      SiteConfig site, CalibrationConfig calibration) {
+    TestMeasurementVectorStream fresh = new TestMeasurementVectorStream();
+    FullStackLeakageMeasurementVectorStream chain =
+        new FullStackLeakageMeasurementVectorStream(site, calibration, testConfig, fresh);
+    Map<Long, MeasurementVector> byTime = new HashMap<>();
+    chain.subscribe(v -> byTime.put(v.getTimeUtc(), v));
+    publishHistory(fresh);
+    chain.stop();
+    return byTime;
+  }
+
+  private static void assertMatches(
+      LeakageHistoryCache cache, Map<Long, MeasurementVector> expected) {
+    Assertions.assertEquals(ROWS, cache.size());
+    int published = 0;
+    for (int row = 0; row < cache.size(); row++) {
+      MeasurementVector v = expected.get(cache.getTimeUtc(row));
+      if (v == null) {
+        Assertions.assertTrue(Double.isNaN(cache.getLeakage(row)), "row " + row);
+        continue;
+      }
+      published++;
+      double leakage =
+          v.getMeasurementsMap()
+              .get(LeakageMeasurementVectorStream.LEAKAGE_SOURCE_ID)
+              .getValueInDefaultUnit()
+              .doubleValue();
+      Assertions.assertEquals(leakage, cache.getLeakage(row), 2e-6, "row " + row);
+      Assertions.assertEquals(
+          (int) StageMeasurementVectorStream.stageOf(v), cache.getStage(row), "row " + row);
+    }
+    Assertions.assertTrue(published > ROWS / 2);
+  }
+
+  @Test
+  public void liveHistory_matchesFullStack() {
+    SiteConfig site = siteConfig("1.0", "2.0");
+    LeakageHistoryCache cache = new LeakageHistoryCache(site, null, testConfig, source);
+    publishHistory(source);
+
+    assertMatches(cache, fullStackRun(site, null));
+    Assertions.assertEquals(150_000.0, cache.getAveragePressure(0), 1e-9);
+    double expectedT = 3.0 / (1.0 / 20.0 + 2.0 / 22.0);
+    Assertions.assertEquals(expectedT, cache.getAverageTemperature(0), 1e-9);
+    Assertions.assertTrue(cache.getAverageGasConstant(0) > 286.9);
+    double rho = 150_000.0 / (cache.getAverageGasConstant(0) * (expectedT + 273.15));
+    Assertions.assertEquals(rho, cache.getDensity(0), 1e-9);
+    Assertions.assertEquals(0, cache.getStage(0));
+    Assertions.assertEquals(1, cache.getStage(1200));
+    Assertions.assertEquals(StageMeasurementVectorStream.NO_STAGE, cache.getStage(ROWS - 1));
+    cache.stop();
+  }
+
+  @Test
+  public void pressureCalibrationChange_recomputesPressureAndGasConstantOnly() {
+    SiteConfig site = siteConfig("1.0", "2.0");
+    LeakageHistoryCache cache = new LeakageHistoryCache(site, null, testConfig, source);
+    publishHistory(source);
+    double temperatureBefore = cache.getAverageTemperature(1234);
+    long temperatureFingerprint = cache.getFingerprint(Column.AVERAGE_TEMPERATURE);
+    long pressureFingerprint = cache.getFingerprint(Column.AVERAGE_PRESSURE);
+
+    CalibrationConfig corrected = calibration("P1", "1.001", "-120");
+    Set<Column> recomputed = cache.recompute(site, corrected);
+
+    Assertions.assertEquals(
+        EnumSet.of(Column.AVERAGE_PRESSURE, Column.AVERAGE_GAS_CONSTANT), recomputed);
+    Assertions.assertEquals(temperatureBefore, cache.getAverageTemperature(1234));
+    Assertions.assertEquals(
+        temperatureFingerprint, cache.getFingerprint(Column.AVERAGE_TEMPERATURE));
+    Assertions.assertNotEquals(pressureFingerprint, cache.getFingerprint(Column.AVERAGE_PRESSURE));
+    Assertions.assertEquals(150_000.0 * 1.001 - 120, cache.getAveragePressure(0), 1e-9);
+    assertMatches(cache, fullStackRun(site, corrected));
+    cache.stop();
+  }
+
+  @Test
+  public void unpairedLocationVolumeChange_recomputesTemperatureOnly() {
+    LeakageHistoryCache cache =
+        new LeakageHistoryCache(siteConfig("1.0", "2.0"), null, testConfig, source);
+    publishHistory(source);
+    double gasConstantBefore = cache.getAverageGasConstant(7);
+
+    SiteConfig corrected = siteConfig("1.0", "3.0");
+    Set<Column> recomputed = cache.recompute(corrected, null);
+
+    Assertions.assertEquals(EnumSet.of(Column.AVERAGE_TEMPERATURE), recomputed);
+    Assertions.assertEquals(gasConstantBefore, cache.getAverageGasConstant(7));
+    assertMatches(cache, fullStackRun(corrected, null));
+    cache.stop();
+  }
+
+  @Test
+  public void humidityCalibrationChange_recomputesGasConstantOnly() {
+    SiteConfig site = siteConfig("1.0", "2.0");
+    LeakageHistoryCache cache = new LeakageHistoryCache(site, null, testConfig, source);
+    publishHistory(source);
+
+    CalibrationConfig corrected = calibration("H1", "1.0", "5.0");
+    Assertions.assertEquals(
+        EnumSet.of(Column.AVERAGE_GAS_CONSTANT), cache.recompute(site, corrected));
+    assertMatches(cache, fullStackRun(site, corrected));
+    cache.stop();
+  }
+
+  @Test
+  public void equivalentConfig_recomputesNothing_laterVectorsUseNewConfig() {
+    SiteConfig site = siteConfig("1.0", "2.0");
+    LeakageHistoryCache cache =
+        new LeakageHistoryCache(site, calibration("T1", "1", "0"), null, source);
+    source.publishToSubscribers(rawVector(0));
+    double leakageBefore = cache.getLeakage(0);
+
+    Assertions.assertEquals(
+        Set.of(), cache.recompute(siteConfig("1.00", "2"), calibration("T1", "1.0", "0.00")));
+    Assertions.assertEquals(leakageBefore, cache.getLeakage(0));
+
+    cache.recompute(site, calibration("P1", "1", "1000"));
+    source.publishToSubscribers(rawVector(1));
+    Assertions.assertEquals(150_999.8, cache.getAveragePressure(1), 1e-9);
+    Assertions.assertEquals(StageMeasurementVectorStream.NO_STAGE, cache.getStage(1));
+    cache.stop();
+  }
+
+  @Test
+  public void differentSensors_throws() {
+    LeakageHistoryCache cache =
+        new LeakageHistoryCache(siteConfig("1.0", "2.0"), null, null, source);
+    SiteConfig other = new SiteConfig();
+    other.setLocations(
+        List.of(location("L2", "2.0", sensor(new TemperatureSensorConfig(), "T2"))));
+
+    Assertions.assertThrows(IllegalArgumentException.class, () -> cache.recompute(other, null));
+    cache.stop();
+  }
+
+  @Test
+  public void severeOrIncompleteVectors_haveNoAveragesOrLeakage() {
+    LeakageHistoryCache cache =
+        new LeakageHistoryCache(siteConfig("1.0", "2.0"), null, testConfig, source);
+    source.publishToSubscribers(
+        new MeasurementVector(
+            0L,
+            rawVector(0).getMeasurements(),
+            List.of(new MeasurementError("P1", ErrorSeverity.SEVERE, "Test severe"))));
+    source.publishToSubscribers(
+        new MeasurementVector(
+            10_000L, List.of(new Temperature(10_000L, "T1", new BigDecimal("20")))));
+
+    Assertions.assertEquals(2, cache.size());
+    for (int row = 0; row < 2; row++) {
+      Assertions.assertTrue(Double.isNaN(cache.getAveragePressure(row)));
+      Assertions.assertTrue(Double.isNaN(cache.getAverageGasConstant(row)));
+      Assertions.assertTrue(Double.isNaN(cache.getDensity(row)));
+      Assertions.assertTrue(Double.isNaN(cache.getLeakage(row)));
+      Assertions.assertEquals(StageMeasurementVectorStream.NO_STAGE, cache.getStage(row));
+    }
+    Assertions.assertTrue(Double.isNaN(cache.getAverageTemperature(0)));
+    Assertions.assertEquals(20.0, cache.getAverageTemperature(1), 1e-9);
+    Assertions.assertThrows(IndexOutOfBoundsException.class, () -> cache.getTimeUtc(2));
+    cache.stop();
+  }
+
+  @Test
+  public void lowDensity_hasNoDensityOrLeakage() {
+    LeakageHistoryCache cache =
+        new LeakageHistoryCache(siteConfig("1.0", "2.0"), null, null, source);
+    source.publishToSubscribers(
+        new MeasurementVector(
+            0L,
+            List.of(
+                new Pressure(0L, "P1", new BigDecimal("90000")),
+                new Temperature(0L, "T1", new BigDecimal("20")),
+                new Humidity(0L, "H1", new BigDecimal("40")))));
+
+    Assertions.assertEquals(90_000.0, cache.getAveragePressure(0), 1e-9);
+    Assertions.assertTrue(Double.isNaN(cache.getDensity(0)));
+    Assertions.assertTrue(Double.isNaN(cache.getLeakage(0)));
+    cache.stop();
+  }
+
+  @Test
+  public void stop_unsubscribesFromSource() {
+    LeakageHistoryCache cache =
+        new LeakageHistoryCache(siteConfig("1.0", "2.0"), null, testConfig, source);
+    Assertions.assertEquals(1, source.getSubscribers().size());
+    cache.stop();
+    cache.stop();
+    Assertions.assertTrue(source.getSubscribers().isEmpty());
+  }
+}
@@ -8,11 +8,13 @@ import ca.lajthabalazs.pressure_integrity_test.measurement.Measurement;
 import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementError;
 import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
 import ca.lajthabalazs.pressure_integrity_test.measurement.Pressure;
+import ca.lajthabalazs.pressure_integrity_test.measurement.StageIndex;
 import ca.lajthabalazs.pressure_integrity_test.measurement.Temperature;
 import ca.lajthabalazs.pressure_integrity_test.measurement.processing.AverageGasConstantMeasurementVectorStream;
 import ca.lajthabalazs.pressure_integrity_test.measurement.processing.AveragePressureMeasurementVectorStream;
 import ca.lajthabalazs.pressure_integrity_test.measurement.processing.AverageTemperatureMeasurementVectorStream;
 import ca.lajthabalazs.pressure_integrity_test.measurement.processing.LeakageMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.StageMeasurementVectorStream;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
@@ -369,4 +371,43 @@ public class LeakageMeasurementVectorStreamTest {
     Assertions.assertEquals(List.of(severe), out.getErrors());
     stream.stop();
   }
+
+  private static MeasurementVector withStage(MeasurementVector vector, int stage) {
+    List<Measurement> m = new ArrayList<>(vector.getMeasurements());
+    m.add(
+        new StageIndex(vector.getTimeUtc(), StageMeasurementVectorStream.STAGE_SOURCE_ID, stage));
+    return new MeasurementVector(vector.getTimeUtc(), m);
+  }
+
+  @Test
+  public void stageChange_discardsPreviousPoint() {
+    LeakageMeasurementVectorStream stream = new LeakageMeasurementVectorStream(source);
+    stream.subscribe(received::add);
+    BigDecimal t = new BigDecimal("20");
+    BigDecimal r = new BigDecimal("287");
+
+    source.publishToSubscribers(vectorWithPTR(0L, new BigDecimal("101325"), t, r));
+    source.publishToSubscribers(
+        withStage(vectorWithPTR(1000L, new BigDecimal("150000"), t, r), 0));
+    source.publishToSubscribers(
+        withStage(vectorWithPTR(3600_000L, new BigDecimal("149990"), t, r), 0));
+    source.publishToSubscribers(
+        withStage(vectorWithPTR(7200_000L, new BigDecimal("120000"), t, r), -1));
+
+    Assertions.assertEquals(4, received.size());
+    BigDecimal[] leakages = new BigDecimal[received.size()];
+    for (int i = 0; i < leakages.length; i++) {
+      leakages[i] =
+          received
+              .get(i)
+              .getMeasurementsMap()
+              .get(LeakageMeasurementVectorStream.LEAKAGE_SOURCE_ID)
+              .getValueInDefaultUnit();
+    }
+    Assertions.assertEquals(0, new BigDecimal("-1").compareTo(leakages[0]));
+    Assertions.assertEquals(0, new BigDecimal("-1").compareTo(leakages[1]), "First of stage 0");
+    Assertions.assertTrue(leakages[2].signum() > 0, "Leakage within stage 0");
+    Assertions.assertEquals(0, new BigDecimal("-1").compareTo(leakages[3]), "New stage");
+    stream.stop();
+  }
 }
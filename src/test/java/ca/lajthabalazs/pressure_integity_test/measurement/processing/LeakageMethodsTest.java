@@ -0,0 +1,169 @@
+package ca.lajthabalazs.pressure_integity_test.measurement.processing;
+
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.IlrtRegressionLeakageMethod;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.LeakageMethod;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.MassPointLeakageMethod;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.TotalTimeLeakageMethod;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.TwoPointLeakageMethod;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.List;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the {@link LeakageMethod} implementations: {@link TwoPointLeakageMethod}, {@link
+ * IlrtRegressionLeakageMethod}, {@link MassPointLeakageMethod} and {@link TotalTimeLeakageMethod}.
+ */
+public class LeakageMethodsTest {
+
+  private static final double RHO_INF = 1.16144;
+  private static final double L_SCALE = 8640000.0;
+  private static final double RHO_0 = 3.5;
+
+  /** Density losing a fixed fraction k of the initial mass per second. */
+  private static double linearDensity(long timeUtc, double k) {
+    return RHO_0 * (1.0 - k * (timeUtc / 1000.0));
+  }
+
+  private static double feedLinear(LeakageMethod method, double k, long endMs, long stepMs) {
+    double last = Double.NaN;
+    for (long t = 0; t <= endMs; t += stepMs) {
+      last = method.update(t, linearDensity(t, k));
+    }
+    return last;
+  }
+
+  @Test
+  public void everyMethod_restoredStateGivesSameRatesAsUninterrupted() throws Exception {
+    List<Supplier<LeakageMethod>> factories =
+        List.of(
+            TwoPointLeakageMethod::new,
+            IlrtRegressionLeakageMethod::new,
+            MassPointLeakageMethod::new,
+            TotalTimeLeakageMethod::new);
+    double k = 1e-8;
+    for (Supplier<LeakageMethod> factory : factories) {
+      LeakageMethod uninterrupted = factory.get();
+      feedLinear(uninterrupted, k, 6 * 3600_000L, 600_000L);
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      uninterrupted.writeState(new DataOutputStream(bytes));
+      LeakageMethod resumed = factory.get();
+      resumed.readState(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+      for (long t = 7 * 3600_000L; t <= 12 * 3600_000L; t += 600_000L) {
+        double rho = linearDensity(t, k) * (1.0 + 1e-6 * (t % 7));
+        Assertions.assertEquals(
+            uninterrupted.update(t, rho), resumed.update(t, rho), uninterrupted.getSourceId());
+      }
+    }
+  }
+
+  @Test
+  public void everyMethod_needsMoreThanOnePoint() {
+    LeakageMethod[] methods = {
+      new TwoPointLeakageMethod(),
+      new IlrtRegressionLeakageMethod(),
+      new MassPointLeakageMethod(),
+      new TotalTimeLeakageMethod()
+    };
+    for (LeakageMethod method : methods) {
+      Assertions.assertTrue(Double.isNaN(method.update(1000L, RHO_0)), method.getSourceId());
+    }
+  }
+
+  @Test
+  public void massPoint_linearMassLoss_givesExactRate() {
+    MassPointLeakageMethod method = new MassPointLeakageMethod();
+    double k = 1e-8;
+    double leakage = feedLinear(method, k, 24 * 3600_000L, 600_000L);
+    Assertions.assertEquals(L_SCALE * k, leakage, 1e-9);
+    Assertions.assertEquals(MassPointLeakageMethod.SOURCE_ID, method.getSourceId());
+  }
+
+  @Test
+  public void totalTime_linearMassLoss_givesExactRate() {
+    TotalTimeLeakageMethod method = new TotalTimeLeakageMethod();
+    double k = 1e-8;
+    Assertions.assertTrue(Double.isNaN(method.update(0L, RHO_0)));
+    Assertions.assertTrue(Double.isNaN(method.update(0L, RHO_0)), "No elapsed time yet");
+    Assertions.assertEquals(
+        L_SCALE * k, method.update(600_000L, linearDensity(600_000L, k)), 1e-9, "Single point");
+    method.reset();
+
+    double leakage = feedLinear(method, k, 24 * 3600_000L, 600_000L);
+    Assertions.assertEquals(L_SCALE * k, leakage, 1e-9);
+    Assertions.assertEquals(TotalTimeLeakageMethod.SOURCE_ID, method.getSourceId());
+  }
+
+  @Test
+  public void totalTime_reportsTrendAtLatestPoint() {
+    TotalTimeLeakageMethod method = new TotalTimeLeakageMethod();
+    method.update(0L, RHO_0);
+    // Measured rates 1, 2, 3 (v/v%/d) at t = 1, 2, 3 h: the fitted trend at 3 h is 3.
+    double last = Double.NaN;
+    for (int hour = 1; hour <= 3; hour++) {
+      double seconds = hour * 3600.0;
+      double rho = RHO_0 * (1.0 - hour * seconds / L_SCALE);
+      last = method.update(hour * 3600_000L, rho);
+    }
+    Assertions.assertEquals(3.0, last, 1e-9);
+  }
+
+  @Test
+  public void ilrt_exactLogLine_matchesFormula() {
+    IlrtRegressionLeakageMethod method = new IlrtRegressionLeakageMethod();
+    double a = -2e-7;
+    double b = -2.9;
+    double last = Double.NaN;
+    for (long t = 5000L; t <= 24 * 3600_000L; t += 600_000L) {
+      double y = b + a * ((t - 5000L) / 1000.0);
+      last = method.update(t, RHO_INF * (1.0 + Math.exp(y)));
+    }
+    Assertions.assertEquals(L_SCALE * a * (1.0 / (1.0 + Math.exp(b)) - 1.0), last, 1e-9);
+    Assertions.assertEquals(IlrtRegressionLeakageMethod.SOURCE_ID, method.getSourceId());
+  }
+
+  @Test
+  public void twoPoint_usesPreviousPointOnly_andSkipsNonAdvancingTime() {
+    TwoPointLeakageMethod method = new TwoPointLeakageMethod();
+    double y0 = -2.9;
+    double y1 = -2.9001;
+    method.update(0L, RHO_INF * (1.0 + Math.exp(y0)));
+    double leakage = method.update(3600_000L, RHO_INF * (1.0 + Math.exp(y1)));
+    double slope = (y1 - y0) / 3600.0;
+    Assertions.assertEquals(L_SCALE * slope * (1.0 / (1.0 + Math.exp(y0)) - 1.0), leakage, 1e-9);
+    Assertions.assertTrue(Double.isNaN(method.update(3600_000L, RHO_0)));
+    Assertions.assertEquals(TwoPointLeakageMethod.SOURCE_ID, method.getSourceId());
+  }
+
+  @Test
+  public void methods_agreeOnSmallSteadyLeak() {
+    double k = 5e-9;
+    double expected = L_SCALE * k;
+    double massPoint = feedLinear(new MassPointLeakageMethod(), k, 24 * 3600_000L, 600_000L);
+    double totalTime = feedLinear(new TotalTimeLeakageMethod(), k, 24 * 3600_000L, 600_000L);
+    double ilrt = feedLinear(new IlrtRegressionLeakageMethod(), k, 24 * 3600_000L, 600_000L);
+    Assertions.assertEquals(expected, massPoint, 1e-9);
+    Assertions.assertEquals(expected, totalTime, 1e-9);
+    Assertions.assertEquals(expected, ilrt, expected * 0.01);
+  }
+
+  @Test
+  public void reset_discardsPoints() {
+    LeakageMethod[] methods = {
+      new TwoPointLeakageMethod(),
+      new IlrtRegressionLeakageMethod(),
+      new MassPointLeakageMethod(),
+      new TotalTimeLeakageMethod()
+    };
+    for (LeakageMethod method : methods) {
+      feedLinear(method, 1e-8, 3600_000L, 600_000L);
+      method.reset();
+      Assertions.assertTrue(Double.isNaN(method.update(0L, RHO_0)), method.getSourceId());
+    }
+  }
+}
@@ -0,0 +1,187 @@
+package ca.lajthabalazs.pressure_integity_test.measurement.processing;
+
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.LinearRegressionAccumulator;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link LinearRegressionAccumulator}. */
+public class LinearRegressionAccumulatorTest {
+
+  @Test
+  public void writeState_readState_restoresFit() throws Exception {
+    LinearRegressionAccumulator fit = new LinearRegressionAccumulator();
+    for (int x = 0; x < 5; x++) {
+      fit.add(x, 1.0 + 2.0 * x + (x % 2) * 0.1);
+    }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    fit.writeState(new DataOutputStream(bytes));
+    LinearRegressionAccumulator restored = new LinearRegressionAccumulator();
+    restored.readState(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+    fit.add(5, 11.3);
+    restored.add(5, 11.3);
+
+    Assertions.assertEquals(fit.count(), restored.count());
+    Assertions.assertEquals(fit.slope(), restored.slope());
+    Assertions.assertEquals(fit.intercept(), restored.intercept());
+    Assertions.assertEquals(fit.residualVariance(), restored.residualVariance());
+  }
+
+  @Test
+  public void exactLine_isRecovered() {
+    LinearRegressionAccumulator fit = new LinearRegressionAccumulator();
+    for (int x = 0; x < 10; x++) {
+      fit.add(x, 3.0 - 0.5 * x);
+    }
+    Assertions.assertEquals(10, fit.count());
+    Assertions.assertTrue(fit.hasFit());
+    Assertions.assertEquals(-0.5, fit.slope(), 1e-12);
+    Assertions.assertEquals(3.0, fit.intercept(), 1e-12);
+    Assertions.assertEquals(-2.0, fit.valueAt(10.0), 1e-12);
+  }
+
+  @Test
+  public void noisyPoints_matchClosedFormLeastSquares() {
+    double[] xs = {0, 1, 2, 3, 4};
+    double[] ys = {1.0, 2.9, 5.2, 7.1, 8.8};
+    LinearRegressionAccumulator fit = new LinearRegressionAccumulator();
+    for (int i = 0; i < xs.length; i++) {
+      fit.add(xs[i], ys[i]);
+    }
+    // x̄ = 2, ȳ = 5, Sxy = 19.8, Sxx = 10.
+    Assertions.assertEquals(1.98, fit.slope(), 1e-12);
+    Assertions.assertEquals(1.04, fit.intercept(), 1e-12);
+  }
+
+  @Test
+  public void fewerThanTwoDistinctX_hasNoFit() {
+    LinearRegressionAccumulator fit = new LinearRegressionAccumulator();
+    Assertions.assertFalse(fit.hasFit());
+    Assertions.assertTrue(Double.isNaN(fit.slope()));
+    fit.add(1.0, 1.0);
+    Assertions.assertFalse(fit.hasFit());
+    fit.add(1.0, 2.0);
+    Assertions.assertFalse(fit.hasFit());
+    Assertions.assertTrue(Double.isNaN(fit.intercept()));
+    Assertions.assertTrue(Double.isNaN(fit.valueAt(0.0)));
+  }
+
+  @Test
+  public void remove_restoresPreviousFit() {
+    LinearRegressionAccumulator fit = new LinearRegressionAccumulator();
+    fit.add(0, 0);
+    fit.add(1, 2);
+    fit.add(2, 4);
+    fit.add(3, 100);
+    fit.remove(3, 100);
+    Assertions.assertEquals(3, fit.count());
+    Assertions.assertEquals(2.0, fit.slope(), 1e-12);
+    Assertions.assertEquals(0.0, fit.intercept(), 1e-12);
+  }
+
+  @Test
+  public void removingLastPoint_resetsExactly_andEmptyRemoveThrows() {
+    LinearRegressionAccumulator fit = new LinearRegressionAccumulator();
+    fit.add(0.1, 0.3);
+    fit.remove(0.1, 0.3);
+    Assertions.assertEquals(0, fit.count());
+    Assertions.assertThrows(IllegalStateException.class, () -> fit.remove(0.0, 0.0));
+
+    fit.add(5, 5);
+    fit.add(6, 7);
+    fit.clear();
+    Assertions.assertEquals(0, fit.count());
+    Assertions.assertFalse(fit.hasFit());
+  }
+
+  /**
+   * A long sliding window (add one point, remove the oldest) must end with the same fit as a fresh
+   * accumulator over the final window.
+   */
+  @Test
+  public void longSlidingWindow_doesNotDrift() {
+    Random random = new Random(42);
+    int window = 100;
+    int total = 200_000;
+    double[] xs = new double[total];
+    double[] ys = new double[total];
+    LinearRegressionAccumulator sliding = new LinearRegressionAccumulator();
+    for (int i = 0; i < total; i++) {
+      xs[i] = i * 60.0;
+      ys[i] = -3.2 - 1e-7 * xs[i] + 1e-4 * random.nextGaussian();
+      sliding.add(xs[i], ys[i]);
+      if (i >= window) {
+        sliding.remove(xs[i - window], ys[i - window]);
+      }
+    }
+    LinearRegressionAccumulator fresh = new LinearRegressionAccumulator();
+    for (int i = total - window; i < total; i++) {
+      fresh.add(xs[i], ys[i]);
+    }
+    Assertions.assertEquals(fresh.count(), sliding.count());
+    Assertions.assertEquals(fresh.slope(), sliding.slope(), Math.abs(fresh.slope()) * 1e-6);
+  }
+
+  @Test
+  public void residualVarianceAndSlopeStandardError_matchClosedForm() {
+    double[] xs = {0, 1, 2, 3, 4};
+    double[] ys = {1.0, 2.9, 5.2, 7.1, 8.8};
+    LinearRegressionAccumulator fit = new LinearRegressionAccumulator();
+    for (int i = 0; i < xs.length; i++) {
+      fit.add(xs[i], ys[i]);
+    }
+    double ssr = 0;
+    for (int i = 0; i < xs.length; i++) {
+      double residual = ys[i] - (1.04 + 1.98 * xs[i]);
+      ssr += residual * residual;
+    }
+    Assertions.assertEquals(2.0, fit.meanX(), 1e-12);
+    Assertions.assertEquals(10.0, fit.sumSquaredDeviationsX(), 1e-12);
+    Assertions.assertEquals(ssr / 3, fit.residualVariance(), 1e-12);
+    Assertions.assertEquals(Math.sqrt(ssr / 3 / 10.0), fit.slopeStandardError(), 1e-12);
+  }
+
+  @Test
+  public void residualVariance_needsThreePoints() {
+    LinearRegressionAccumulator fit = new LinearRegressionAccumulator();
+    fit.add(0, 0);
+    fit.add(1, 1);
+    Assertions.assertTrue(Double.isNaN(fit.residualVariance()));
+    Assertions.assertTrue(Double.isNaN(fit.slopeStandardError()));
+    fit.add(2, 2);
+    Assertions.assertEquals(0.0, fit.residualVariance(), 1e-15);
+    fit.clear();
+    fit.add(1, 0);
+    fit.add(1, 1);
+    fit.add(1, 2);
+    Assertions.assertTrue(Double.isNaN(fit.residualVariance()), "No spread in x");
+  }
+
+  /**
+   * Large x offsets and a tiny slope defeat raw sums (n·Σx² − (Σx)² cancels); the centred moments
+   * must still recover the slope and its standard error over 300000 points.
+   */
+  @Test
+  public void largeOffsetAndManyPoints_remainAccurate() {
+    Random random = new Random(1);
+    LinearRegressionAccumulator fit = new LinearRegressionAccumulator();
+    double offset = 1.7e9;
+    double slope = -2e-7;
+    double sigma = 1e-5;
+    int n = 300_000;
+    for (int i = 0; i < n; i++) {
+      double x = offset + i * 60.0;
+      fit.add(x, -3.0 + slope * (x - offset) + sigma * random.nextGaussian());
+    }
+    double spread = 60.0 * 60.0 * ((double) n * n - 1) / 12.0 * n;
+    Assertions.assertEquals(spread, fit.sumSquaredDeviationsX(), spread * 1e-9);
+    Assertions.assertEquals(slope, fit.slope(), 5 * sigma / Math.sqrt(spread));
+    Assertions.assertEquals(sigma * sigma, fit.residualVariance(), sigma * sigma * 0.02);
+    Assertions.assertEquals(sigma / Math.sqrt(spread), fit.slopeStandardError(), 1e-14);
+  }
+}
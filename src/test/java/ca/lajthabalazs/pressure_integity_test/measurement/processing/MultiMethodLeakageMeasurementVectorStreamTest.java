@@ -0,0 +1,271 @@
+package ca.lajthabalazs.pressure_integity_test.measurement.processing;
+
+import ca.lajthabalazs.pressure_integity_test.measurement.streaming.TestMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.ErrorSeverity;
+import ca.lajthabalazs.pressure_integrity_test.measurement.GasConstant;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Leakage;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Measurement;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementError;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Pressure;
+import ca.lajthabalazs.pressure_integrity_test.measurement.StageIndex;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Temperature;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.AverageGasConstantMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.AveragePressureMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.AverageTemperatureMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.IlrtRegressionLeakageMethod;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.LeakageMethod;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.MassPointLeakageMethod;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.MultiMethodLeakageMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.StageMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.TotalTimeLeakageMethod;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.TwoPointLeakageMethod;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link MultiMethodLeakageMeasurementVectorStream}. */
+public class MultiMethodLeakageMeasurementVectorStreamTest {
+
+  private static final double R = 287.0;
+  private static final double T_KELVIN = 293.15;
+
+  private TestMeasurementVectorStream source;
+  private List<MeasurementVector> received;
+
+  @BeforeEach
+  public void setUp() {
+    source = new TestMeasurementVectorStream();
+    received = new ArrayList<>();
+  }
+
+  private static MeasurementVector vectorWithDensity(long timeUtc, double rho) {
+    List<Measurement> m = new ArrayList<>();
+    m.add(
+        new Pressure(
+            timeUtc,
+            AveragePressureMeasurementVectorStream.AVG_PRESSURE_SOURCE_ID,
+            new BigDecimal(rho * R * T_KELVIN)));
+    m.add(
+        new Temperature(
+            timeUtc,
+            AverageTemperatureMeasurementVectorStream.AVG_TEMPERATURE_SOURCE_ID,
+            new BigDecimal("20")));
+    m.add(
+        new GasConstant(
+            timeUtc,
+            AverageGasConstantMeasurementVectorStream.AVG_R_SOURCE_ID,
+            new BigDecimal("287")));
+    return new MeasurementVector(timeUtc, m);
+  }
+
+  private static double leakage(MeasurementVector vector, String sourceId) {
+    Measurement m = vector.getMeasurementsMap().get(sourceId);
+    Assertions.assertInstanceOf(Leakage.class, m);
+    return m.getValueInDefaultUnit().doubleValue();
+  }
+
+  @Test
+  public void defaultMethods_publishOneLeakagePerMethod() {
+    MultiMethodLeakageMeasurementVectorStream stream =
+        new MultiMethodLeakageMeasurementVectorStream(source);
+    stream.subscribe(received::add);
+    List<String> ids =
+        List.of(
+            TwoPointLeakageMethod.SOURCE_ID,
+            IlrtRegressionLeakageMethod.SOURCE_ID,
+            MassPointLeakageMethod.SOURCE_ID,
+            TotalTimeLeakageMethod.SOURCE_ID);
+    Assertions.assertEquals(ids, stream.getLeakageSourceIds());
+
+    source.publishToSubscribers(vectorWithDensity(0L, 3.5));
+    Assertions.assertEquals(1, received.size());
+    Assertions.assertEquals(7, received.get(0).getMeasurements().size());
+    for (String id : ids) {
+      Assertions.assertEquals(-1.0, leakage(received.get(0), id), id);
+    }
+
+    double k = 1e-8;
+    for (long t = 600_000L; t <= 24 * 3600_000L; t += 600_000L) {
+      source.publishToSubscribers(vectorWithDensity(t, 3.5 * (1.0 - k * t / 1000.0)));
+    }
+    MeasurementVector last = received.get(received.size() - 1);
+    for (String id : ids) {
+      Assertions.assertEquals(0.0864, leakage(last, id), 0.0864 * 0.01, id);
+    }
+    stream.stop();
+  }
+
+  /** The density is computed once per vector and the same value reaches every method. */
+  @Test
+  public void customMethods_receiveSameDensityOncePerVector() {
+    List<String> calls = new ArrayList<>();
+    LeakageMethod first = recordingMethod("A", calls);
+    LeakageMethod second = recordingMethod("B", calls);
+    MultiMethodLeakageMeasurementVectorStream stream =
+        new MultiMethodLeakageMeasurementVectorStream(source, List.of(first, second));
+    stream.subscribe(received::add);
+
+    source.publishToSubscribers(vectorWithDensity(1000L, 3.0));
+    source.publishToSubscribers(vectorWithDensity(2000L, 2.5));
+
+    Assertions.assertEquals(4, calls.size());
+    Assertions.assertEquals(calls.get(0).substring(1), calls.get(1).substring(1));
+    Assertions.assertEquals(calls.get(2).substring(1), calls.get(3).substring(1));
+    Assertions.assertEquals(42.0, leakage(received.get(1), "B"));
+
+    stream.stop();
+    Assertions.assertEquals("A reset", calls.get(4));
+    Assertions.assertEquals("B reset", calls.get(5));
+    stream.stop();
+  }
+
+  private static LeakageMethod recordingMethod(String id, List<String> calls) {
+    return new LeakageMethod() {
+      @Override
+      public String getSourceId() {
+        return id;
+      }
+
+      @Override
+      public double update(long timeUtc, double rho) {
+        calls.add(id + timeUtc + ":" + rho);
+        return 42.0;
+      }
+
+      @Override
+      public void reset() {
+        calls.add(id + " reset");
+      }
+
+      @Override
+      public void writeState(DataOutput out) {
+        calls.add(id + " write");
+      }
+
+      @Override
+      public void readState(DataInput in) {
+        calls.add(id + " read");
+      }
+    };
+  }
+
+  @Test
+  public void severeErrorVector_isPassedThrough_invalidVectorIsDropped() {
+    MultiMethodLeakageMeasurementVectorStream stream =
+        new MultiMethodLeakageMeasurementVectorStream(source);
+    stream.subscribe(received::add);
+    MeasurementVector severe =
+        new MeasurementVector(
+            1000L,
+            List.of(),
+            List.of(new MeasurementError("P1", ErrorSeverity.SEVERE, "Out of range")));
+    source.publishToSubscribers(severe);
+    source.publishToSubscribers(new MeasurementVector(2000L, List.of()));
+
+    Assertions.assertEquals(List.of(severe), received);
+    Assertions.assertEquals(List.of(), stream.listSensors());
+    stream.stop();
+  }
+
+  @Test
+  public void invalidMethodLists_throw() {
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> new MultiMethodLeakageMeasurementVectorStream(source, List.of()));
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            new MultiMethodLeakageMeasurementVectorStream(
+                source, List.of(new MassPointLeakageMethod(), new MassPointLeakageMethod())));
+    Assertions.assertTrue(source.getSubscribers().isEmpty());
+  }
+
+  private static MeasurementVector withStage(MeasurementVector vector, int stage) {
+    List<Measurement> m = new ArrayList<>(vector.getMeasurements());
+    m.add(
+        new StageIndex(vector.getTimeUtc(), StageMeasurementVectorStream.STAGE_SOURCE_ID, stage));
+    return new MeasurementVector(vector.getTimeUtc(), m);
+  }
+
+  @Test
+  public void writeState_readState_resumedStreamPublishesSameLeakageAsUninterrupted()
+      throws Exception {
+    TestMeasurementVectorStream firstRun = new TestMeasurementVectorStream();
+    MultiMethodLeakageMeasurementVectorStream uninterrupted =
+        new MultiMethodLeakageMeasurementVectorStream(firstRun);
+    List<MeasurementVector> expected = new ArrayList<>();
+    uninterrupted.subscribe(expected::add);
+    List<MeasurementVector> vectors = new ArrayList<>();
+    for (long t = 0; t <= 12 * 3600_000L; t += 600_000L) {
+      double rho = 3.5 * (1.0 - 1e-8 * (t / 1000.0)) * (1.0 + 1e-6 * (t % 7));
+      vectors.add(withStage(vectorWithDensity(t, rho), t < 2 * 3600_000L ? 0 : 1));
+    }
+    int split = vectors.size() / 2;
+    vectors.subList(0, split).forEach(firstRun::publishToSubscribers);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    uninterrupted.writeState(new DataOutputStream(bytes));
+
+    MultiMethodLeakageMeasurementVectorStream resumed =
+        new MultiMethodLeakageMeasurementVectorStream(source);
+    resumed.readState(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    resumed.subscribe(received::add);
+    for (MeasurementVector v : vectors.subList(split, vectors.size())) {
+      firstRun.publishToSubscribers(v);
+      source.publishToSubscribers(v);
+    }
+
+    List<MeasurementVector> tail = expected.subList(split, expected.size());
+    Assertions.assertEquals(tail.size(), received.size());
+    for (int i = 0; i < tail.size(); i++) {
+      for (String id : resumed.getLeakageSourceIds()) {
+        Assertions.assertEquals(leakage(tail.get(i), id), leakage(received.get(i), id), id);
+      }
+    }
+    uninterrupted.stop();
+    resumed.stop();
+  }
+
+  @Test
+  public void writeState_readState_visitEveryMethodInOrder() throws Exception {
+    List<String> calls = new ArrayList<>();
+    MultiMethodLeakageMeasurementVectorStream stream =
+        new MultiMethodLeakageMeasurementVectorStream(
+            source, List.of(recordingMethod("A", calls), recordingMethod("B", calls)));
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    stream.writeState(new DataOutputStream(bytes));
+    stream.readState(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+    Assertions.assertEquals(List.of("A write", "B write", "A read", "B read"), calls);
+    stream.stop();
+  }
+
+  @Test
+  public void stageChange_resetsEveryMethod() {
+    List<String> calls = new ArrayList<>();
+    MultiMethodLeakageMeasurementVectorStream stream =
+        new MultiMethodLeakageMeasurementVectorStream(
+            source, List.of(recordingMethod("A", calls), recordingMethod("B", calls)));
+    stream.subscribe(received::add);
+
+    source.publishToSubscribers(withStage(vectorWithDensity(1000L, 3.0), 0));
+    source.publishToSubscribers(withStage(vectorWithDensity(2000L, 3.0), 0));
+    source.publishToSubscribers(withStage(vectorWithDensity(3000L, 2.0), 1));
+
+    List<String> resets = calls.stream().filter(c -> c.endsWith("reset")).toList();
+    Assertions.assertEquals(List.of("A reset", "B reset", "A reset", "B reset"), resets);
+    Assertions.assertEquals("A reset", calls.get(0));
+    Assertions.assertEquals("A reset", calls.get(6));
+    stream.stop();
+  }
+}
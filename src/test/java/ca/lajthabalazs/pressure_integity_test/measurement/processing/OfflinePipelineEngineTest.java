@@ -0,0 +1,208 @@
+package ca.lajthabalazs.pressure_integity_test.measurement.processing;
+
+import ca.lajthabalazs.pressure_integity_test.measurement.streaming.TestMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.config.CalibrationConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.HumiditySensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.LinearCalibration;
+import ca.lajthabalazs.pressure_integrity_test.config.LocationConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.PressureSensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.SensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.SiteConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.TemperatureSensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.TestConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.ValidRange;
+import ca.lajthabalazs.pressure_integrity_test.measurement.ErrorSeverity;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Humidity;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Measurement;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementError;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Pressure;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Temperature;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.FullStackLeakageMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.LeakageMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.OfflinePipelineEngine;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.Pipeline;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.SpikeDetectionSettings;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.StageMeasurementVectorStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link OfflinePipelineEngine}. */
+public class OfflinePipelineEngineTest {
+
+  /** Several parallel chunks. */
+  private static final int ROWS = 9000;
+
+  private SiteConfig siteConfig;
+  private CalibrationConfig calibrationConfig;
+  private TestConfig testConfig;
+
+  @BeforeEach
+  public void setUp() {
+    siteConfig = new SiteConfig();
+    siteConfig.setLocations(
+        List.of(
+            location(
+                "L1",
+                "0.6",
+                sensor(new PressureSensorConfig(), "P1"),
+                temperatureSensor("T1"),
+                sensor(new HumiditySensorConfig(), "H1")),
+            location("L2", "0.4", temperatureSensor("T2"))));
+    LinearCalibration cal = new LinearCalibration();
+    cal.setA(new BigDecimal("0.999"));
+    cal.setB(new BigDecimal("12.5"));
+    calibrationConfig = new CalibrationConfig();
+    calibrationConfig.setSensorCalibration("P1", cal);
+    testConfig = StageMeasurementVectorStreamTest.twoStageConfig();
+  }
+
+  private static LocationConfig location(String id, String volumeFactor, SensorConfig... sensors) {
+    LocationConfig loc = new LocationConfig();
+    loc.setId(id);
+    loc.setVolumeFactor(new BigDecimal(volumeFactor));
+    loc.setSensors(new ArrayList<>(List.of(sensors)));
+    return loc;
+  }
+
+  private static <T extends SensorConfig> T sensor(T sensor, String id) {
+    sensor.setId(id);
+    return sensor;
+  }
+
+  private static TemperatureSensorConfig temperatureSensor(String id) {
+    ValidRange range = new ValidRange();
+    range.setMin(new BigDecimal("0"));
+    range.setMax(new BigDecimal("50"));
+    TemperatureSensorConfig sensor = sensor(new TemperatureSensorConfig(), id);
+    sensor.setValidRange(range);
+    return sensor;
+  }
+
+  /**
+   * Vector i is 2 s after vector i−1: 2.5 h on the +0.5 bar plateau, then on the +1.5 bar plateau.
+   * T2 is out of range every 7th vector, every 11th vector has no pressure, every 500th vector has
+   * a severe error and vector 4000 repeats the timestamp of vector 3999.
+   */
+  private static List<MeasurementVector> recording() {
+    List<MeasurementVector> vectors = new ArrayList<>();
+    for (int i = 0; i < ROWS; i++) {
+      long t = (i == 4000 ? i - 1 : i) * 2_000L;
+      double pressure = i < 4500 ? 150_000.0 - 0.05 * i : 250_000.0 - 0.08 * (i - 4500);
+      List<Measurement> measurements = new ArrayList<>();
+      if (i % 11 != 5) {
+        measurements.add(new Pressure(t, "P1", BigDecimal.valueOf(pressure)));
+      }
+      measurements.add(new Temperature(t, "T1", BigDecimal.valueOf(20.0 + 0.01 * (i % 13))));
+      measurements.add(
+          new Temperature(t, "T2", BigDecimal.valueOf(i % 7 == 3 ? 80.0 : 22.0 - 0.0001 * i)));
+      measurements.add(new Humidity(t, "H1", BigDecimal.valueOf(40.0 + 0.1 * (i % 5))));
+      List<MeasurementError> errors =
+          i % 500 == 250
+              ? List.of(new MeasurementError("P1", ErrorSeverity.SEVERE, "Disconnected"))
+              : List.of();
+      vectors.add(new MeasurementVector(t, measurements, errors));
+    }
+    return vectors;
+  }
+
+  private List<MeasurementVector> streamed(List<MeasurementVector> recording) {
+    TestMeasurementVectorStream source = new TestMeasurementVectorStream();
+    FullStackLeakageMeasurementVectorStream chain =
+        new FullStackLeakageMeasurementVectorStream(
+            siteConfig, calibrationConfig, testConfig, source);
+    List<MeasurementVector> received = new ArrayList<>();
+    chain.subscribe(received::add);
+    for (MeasurementVector vector : recording) {
+      source.publishToSubscribers(vector);
+    }
+    chain.stop();
+    return received;
+  }
+
+  private static void assertIdentical(
+      List<MeasurementVector> expected, List<MeasurementVector> actual) {
+    Assertions.assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      MeasurementVector e = expected.get(i);
+      MeasurementVector a = actual.get(i);
+      Assertions.assertEquals(e.getTimeUtc(), a.getTimeUtc());
+      Assertions.assertEquals(
+          List.copyOf(e.getMeasurementsMap().keySet()),
+          List.copyOf(a.getMeasurementsMap().keySet()));
+      for (Map.Entry<String, Measurement> entry : e.getMeasurementsMap().entrySet()) {
+        Assertions.assertEquals(
+            entry.getValue().getValueInDefaultUnit(),
+            a.getMeasurementsMap().get(entry.getKey()).getValueInDefaultUnit(),
+            entry.getKey() + " at vector " + i);
+      }
+      Assertions.assertEquals(e.getErrors(), a.getErrors());
+    }
+  }
+
+  @Test
+  public void processFullStack_identicalToStreamingPipeline() {
+    List<MeasurementVector> recording = recording();
+    List<MeasurementVector> expected = streamed(recording);
+
+    List<MeasurementVector> actual =
+        OfflinePipelineEngine.processFullStack(
+            siteConfig, calibrationConfig, testConfig, recording);
+
+    Assertions.assertTrue(expected.size() > ROWS * 8 / 10);
+    assertIdentical(expected, actual);
+    Assertions.assertTrue(
+        actual.stream()
+            .anyMatch(v -> Integer.valueOf(1).equals(StageMeasurementVectorStream.stageOf(v))));
+    Assertions.assertTrue(
+        actual.stream()
+            .anyMatch(
+                v ->
+                    v.getMeasurementsMap()
+                        .containsKey(LeakageMeasurementVectorStream.LEAKAGE_SOURCE_ID)));
+    Assertions.assertTrue(actual.stream().anyMatch(MeasurementVector::hasSevereError));
+  }
+
+  @Test
+  public void process_statefulFirstStep_runsEverythingSequentially() {
+    List<MeasurementVector> recording = recording().subList(0, 5000);
+    TestMeasurementVectorStream source = new TestMeasurementVectorStream();
+    Pipeline pipeline =
+        Pipeline.builder()
+            .believability(siteConfig, new SpikeDetectionSettings(9, 5.0, 0.5))
+            .averagePressure(siteConfig)
+            .build(source);
+    List<MeasurementVector> expected = new ArrayList<>();
+    pipeline.subscribe(expected::add);
+    recording.forEach(source::publishToSubscribers);
+    pipeline.stop();
+
+    List<MeasurementVector> actual =
+        OfflinePipelineEngine.process(
+            () ->
+                Pipeline.builder()
+                    .believability(siteConfig, new SpikeDetectionSettings(9, 5.0, 0.5))
+                    .averagePressure(siteConfig),
+            recording);
+
+    assertIdentical(expected, actual);
+  }
+
+  @Test
+  public void process_noSteps_returnsRecording() {
+    List<MeasurementVector> recording = recording().subList(0, 10);
+    List<MeasurementVector> actual = OfflinePipelineEngine.process(Pipeline::builder, recording);
+    Assertions.assertEquals(recording, actual);
+  }
+
+  @Test
+  public void process_emptyRecording_returnsEmpty() {
+    Assertions.assertTrue(
+        OfflinePipelineEngine.processFullStack(siteConfig, null, null, List.of()).isEmpty());
+  }
+}
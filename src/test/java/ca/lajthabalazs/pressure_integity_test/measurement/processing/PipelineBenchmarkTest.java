@@ -0,0 +1,115 @@
+package ca.lajthabalazs.pressure_integity_test.measurement.processing;
+
+import ca.lajthabalazs.pressure_integrity_test.config.CalibrationConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.HumiditySensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.LinearCalibration;
+import ca.lajthabalazs.pressure_integrity_test.config.LocationConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.PressureSensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.SensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.SiteConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.TemperatureSensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Humidity;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Pressure;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Temperature;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.OfflinePipelineEngine;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.PipelineBenchmark;
+import ca.lajthabalazs.pressure_integrity_test.measurement.tracing.LatencyStats;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link PipelineBenchmark}. */
+public class PipelineBenchmarkTest {
+
+  private SiteConfig siteConfig;
+  private CalibrationConfig calibrationConfig;
+  private List<MeasurementVector> recording;
+
+  @BeforeEach
+  public void setUp() {
+    LocationConfig loc = new LocationConfig();
+    loc.setId("L1");
+    loc.setVolumeFactor(BigDecimal.ONE);
+    loc.setSensors(
+        new ArrayList<>(
+            List.of(
+                sensor(new PressureSensorConfig(), "P1"),
+                sensor(new TemperatureSensorConfig(), "T1"),
+                sensor(new HumiditySensorConfig(), "H1"))));
+    siteConfig = new SiteConfig();
+    siteConfig.setLocations(List.of(loc));
+    LinearCalibration cal = new LinearCalibration();
+    cal.setA(new BigDecimal("1.001"));
+    cal.setB(new BigDecimal("-0.05"));
+    calibrationConfig = new CalibrationConfig();
+    calibrationConfig.setSensorCalibration("T1", cal);
+    recording = new ArrayList<>();
+    for (int i = 0; i < 3000; i++) {
+      long t = i * 60_000L;
+      recording.add(
+          new MeasurementVector(
+              t,
+              List.of(
+                  new Pressure(t, "P1", BigDecimal.valueOf(150_000.0 - 0.5 * i)),
+                  new Temperature(t, "T1", BigDecimal.valueOf(20.0 + 0.01 * (i % 13))),
+                  new Humidity(t, "H1", BigDecimal.valueOf(40.0 + 0.1 * (i % 5))))));
+    }
+  }
+
+  private static SensorConfig sensor(SensorConfig sensor, String id) {
+    sensor.setId(id);
+    return sensor;
+  }
+
+  @Test
+  public void everyLayout_deliversTheFullStackOutputAndMeasuresIt() {
+    int expected =
+        OfflinePipelineEngine.processFullStack(siteConfig, calibrationConfig, null, recording)
+            .size();
+
+    for (int threads : PipelineBenchmark.LAYOUTS) {
+      PipelineBenchmark.Result result =
+          PipelineBenchmark.run(siteConfig, calibrationConfig, null, recording, threads);
+
+      Assertions.assertEquals(threads, result.threads());
+      Assertions.assertEquals(3000, result.vectors());
+      Assertions.assertEquals(expected, result.delivered(), threads + " threads");
+      Assertions.assertEquals("end", result.latency().hop());
+      Assertions.assertEquals(expected, result.latency().count());
+      Assertions.assertTrue(result.latency().p50Nanos() <= result.latency().p99Nanos());
+      Assertions.assertTrue(result.vectorsPerSecond() > 0);
+      Assertions.assertTrue(result.format().startsWith(threads + " threads: "), result.format());
+    }
+  }
+
+  @Test
+  public void withoutCalibration_withStages() {
+    PipelineBenchmark.Result result =
+        PipelineBenchmark.run(
+            siteConfig, null, StageMeasurementVectorStreamTest.twoStageConfig(), recording, 1);
+
+    Assertions.assertEquals(3000, result.vectors());
+    Assertions.assertTrue(result.delivered() > 0);
+  }
+
+  @Test
+  public void unsupportedLayout_throws() {
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> PipelineBenchmark.run(siteConfig, null, null, recording, 2));
+  }
+
+  @Test
+  public void result_withoutElapsedTime_hasZeroThroughput() {
+    PipelineBenchmark.Result result =
+        new PipelineBenchmark.Result(0, 0, 0, 0, new LatencyStats("end", 0, 0, 0, 0, 0));
+
+    Assertions.assertEquals(0.0, result.vectorsPerSecond());
+    Assertions.assertEquals(
+        "0 threads: 0 vectors/s, end n=0 p50=0.00ms p99=0.00ms max=0.00ms", result.format());
+  }
+}
@@ -0,0 +1,882 @@
+package ca.lajthabalazs.pressure_integity_test.measurement.processing;
+
+import ca.lajthabalazs.pressure_integity_test.measurement.streaming.TestMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.config.CalibrationConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.HumiditySensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.LinearCalibration;
+import ca.lajthabalazs.pressure_integrity_test.config.LocationConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.PressureSensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.SensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.SiteConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.TemperatureSensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.TestConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.ValidRange;
+import ca.lajthabalazs.pressure_integrity_test.measurement.ErrorSeverity;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Humidity;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Measurement;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementError;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Pressure;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Temperature;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.AverageGasConstantMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.AveragePressureMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.AverageTemperatureMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.BelievabilityFilteredMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.CalibratedMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.LeakageMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.Pipeline;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.PipelineStep;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.PipelineVector;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.SpikeDetectionSettings;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.StageMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.streaming.MeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.tracing.LatencyStats;
+import ca.lajthabalazs.pressure_integrity_test.measurement.tracing.LatencyTracer;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.zip.CRC32;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link Pipeline}. */
+public class PipelineTest {
+
+  private TestMeasurementVectorStream source;
+  private SiteConfig siteConfig;
+  private CalibrationConfig calibrationConfig;
+  private TestConfig testConfig;
+
+  @BeforeEach
+  public void setUp() {
+    source = new TestMeasurementVectorStream();
+    siteConfig = new SiteConfig();
+    siteConfig.setLocations(
+        List.of(
+            location(
+                "L1",
+                "0.6",
+                sensor(new PressureSensorConfig(), "P1"),
+                temperatureSensor("T1"),
+                sensor(new HumiditySensorConfig(), "H1")),
+            location("L2", "0.4", temperatureSensor("T2"))));
+    LinearCalibration cal = new LinearCalibration();
+    cal.setA(new BigDecimal("1.001"));
+    cal.setB(new BigDecimal("-0.05"));
+    calibrationConfig = new CalibrationConfig();
+    calibrationConfig.setSensorCalibration("T1", cal);
+    testConfig = StageMeasurementVectorStreamTest.twoStageConfig();
+  }
+
+  private static LocationConfig location(String id, String volumeFactor, SensorConfig... sensors) {
+    LocationConfig loc = new LocationConfig();
+    loc.setId(id);
+    loc.setVolumeFactor(new BigDecimal(volumeFactor));
+    loc.setSensors(new ArrayList<>(List.of(sensors)));
+    return loc;
+  }
+
+  private static <T extends SensorConfig> T sensor(T sensor, String id) {
+    sensor.setId(id);
+    return sensor;
+  }
+
+  /** Temperature sensor with a valid range of 0..50 °C. */
+  private static TemperatureSensorConfig temperatureSensor(String id) {
+    ValidRange range = new ValidRange();
+    range.setMin(new BigDecimal("0"));
+    range.setMax(new BigDecimal("50"));
+    TemperatureSensorConfig sensor = sensor(new TemperatureSensorConfig(), id);
+    sensor.setValidRange(range);
+    return sensor;
+  }
+
+  /**
+   * Vector i is one minute after vector i−1: 1 h on the +0.5 bar plateau, then on the +1.5 bar
+   * plateau. T2 is out of its valid range every 7th vector, and every 11th vector has no pressure.
+   */
+  private static MeasurementVector rawVector(int i) {
+    long t = i * 60_000L;
+    double pressure = i < 60 ? 150_000.0 - 2.0 * i : 250_000.0 - 3.0 * (i - 60);
+    List<Measurement> measurements = new ArrayList<>();
+    if (i % 11 != 5) {
+      measurements.add(new Pressure(t, "P1", BigDecimal.valueOf(pressure)));
+    }
+    measurements.add(new Temperature(t, "T1", BigDecimal.valueOf(20.0 + 0.01 * (i % 13))));
+    measurements.add(
+        new Temperature(t, "T2", BigDecimal.valueOf(i % 7 == 3 ? 80.0 : 22.0 - 0.01 * i)));
+    measurements.add(new Humidity(t, "H1", BigDecimal.valueOf(40.0 + 0.1 * (i % 5))));
+    return new MeasurementVector(t, measurements);
+  }
+
+  private Pipeline.Builder fullStackBuilder() {
+    return Pipeline.builder()
+        .believability(siteConfig)
+        .calibration(calibrationConfig)
+        .averagePressure(siteConfig)
+        .averageTemperature(siteConfig)
+        .averageGasConstant(siteConfig)
+        .testStages(testConfig)
+        .leakage();
+  }
+
+  private static void assertSameVectors(
+      List<MeasurementVector> expected, List<MeasurementVector> actual) {
+    Assertions.assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      MeasurementVector e = expected.get(i);
+      MeasurementVector a = actual.get(i);
+      Assertions.assertEquals(e.getTimeUtc(), a.getTimeUtc());
+      Assertions.assertEquals(
+          List.copyOf(e.getMeasurementsMap().keySet()),
+          List.copyOf(a.getMeasurementsMap().keySet()));
+      for (Map.Entry<String, Measurement> entry : e.getMeasurementsMap().entrySet()) {
+        Measurement m = a.getMeasurementsMap().get(entry.getKey());
+        Assertions.assertSame(entry.getValue().getClass(), m.getClass());
+        Assertions.assertEquals(
+            0,
+            entry.getValue().getValueInDefaultUnit().compareTo(m.getValueInDefaultUnit()),
+            entry.getKey() + " at " + e.getTimeUtc());
+      }
+      Assertions.assertEquals(e.getErrors(), a.getErrors());
+    }
+  }
+
+  @Test
+  public void fullStack_publishesSameVectorsAsChainedStreams() {
+    BelievabilityFilteredMeasurementVectorStream believability =
+        new BelievabilityFilteredMeasurementVectorStream(source, siteConfig);
+    CalibratedMeasurementVectorStream calibrated =
+        new CalibratedMeasurementVectorStream(believability, calibrationConfig);
+    AveragePressureMeasurementVectorStream averagePressure =
+        new AveragePressureMeasurementVectorStream(calibrated, siteConfig);
+    AverageTemperatureMeasurementVectorStream averageTemperature =
+        new AverageTemperatureMeasurementVectorStream(
+            averagePressure, locationBySensorId(), siteConfig);
+    AverageGasConstantMeasurementVectorStream averageGasConstant =
+        new AverageGasConstantMeasurementVectorStream(
+            averageTemperature, locationBySensorId(), Map.of("H1", "T1"), siteConfig);
+    StageMeasurementVectorStream stage =
+        new StageMeasurementVectorStream(averageGasConstant, testConfig);
+    LeakageMeasurementVectorStream leakage = new LeakageMeasurementVectorStream(stage);
+    List<MeasurementVector> chained = new ArrayList<>();
+    leakage.subscribe(chained::add);
+
+    Pipeline pipeline = fullStackBuilder().build(source);
+    List<MeasurementVector> fused = new ArrayList<>();
+    pipeline.subscribe(fused::add);
+
+    for (int i = 0; i < 150; i++) {
+      source.publishToSubscribers(rawVector(i));
+    }
+
+    Assertions.assertTrue(chained.size() > 100);
+    assertSameVectors(chained, fused);
+    Assertions.assertTrue(
+        chained.stream()
+            .anyMatch(v -> Integer.valueOf(1).equals(StageMeasurementVectorStream.stageOf(v))));
+    Assertions.assertTrue(chained.stream().anyMatch(v -> !v.getErrors().isEmpty()));
+    leakage.stop();
+    pipeline.stop();
+  }
+
+  private Map<String, LocationConfig> locationBySensorId() {
+    LocationConfig l1 = siteConfig.getLocations().get(0);
+    LocationConfig l2 = siteConfig.getLocations().get(1);
+    return Map.of("P1", l1, "T1", l1, "H1", l1, "T2", l2);
+  }
+
+  @Test
+  public void plan_fusesStatelessRunsAndClosesNodesAtStatefulStepsAndTaps() {
+    Pipeline pipeline =
+        Pipeline.builder()
+            .tap("raw")
+            .believability(siteConfig)
+            .calibration(calibrationConfig)
+            .averagePressure(siteConfig)
+            .tap("pressure")
+            .averageTemperature(siteConfig, true)
+            .averageGasConstant(siteConfig)
+            .testStages(testConfig)
+            .leakage()
+            .build(source);
+
+    Assertions.assertEquals(
+        List.of(
+            "-> tap:raw",
+            "believability + calibration + averagePressure -> tap:pressure",
+            "averageTemperature + averageGasConstant",
+            "testStages",
+            "leakage"),
+        pipeline.getPlan());
+    pipeline.stop();
+  }
+
+  @Test
+  public void plan_spikeDetectionMakesBelievabilityStateful() {
+    Pipeline pipeline =
+        Pipeline.builder()
+            .believability(siteConfig, new SpikeDetectionSettings(5, 4.0, 0.1))
+            .averagePressure(siteConfig, true)
+            .build(source);
+
+    Assertions.assertEquals(List.of("believability", "averagePressure"), pipeline.getPlan());
+    pipeline.stop();
+  }
+
+  @Test
+  public void tap_publishesIntermediateVectorsOnlyToItsSubscribers() {
+    Pipeline withTap =
+        Pipeline.builder()
+            .believability(siteConfig)
+            .averagePressure(siteConfig)
+            .tap("pressure")
+            .averageTemperature(siteConfig)
+            .build(source);
+    List<MeasurementVector> pressure = new ArrayList<>();
+    List<MeasurementVector> end = new ArrayList<>();
+    withTap.tap("pressure").subscribe(pressure::add);
+    withTap.subscribe(end::add);
+
+    MeasurementVector input = rawVector(0);
+    source.publishToSubscribers(input);
+
+    Assertions.assertEquals(1, pressure.size());
+    Assertions.assertTrue(
+        pressure
+            .getFirst()
+            .getMeasurementsMap()
+            .containsKey(AveragePressureMeasurementVectorStream.AVG_PRESSURE_SOURCE_ID));
+    Assertions.assertFalse(
+        pressure
+            .getFirst()
+            .getMeasurementsMap()
+            .containsKey(AverageTemperatureMeasurementVectorStream.AVG_TEMPERATURE_SOURCE_ID));
+    Assertions.assertEquals(1, end.size());
+    Assertions.assertTrue(
+        end.getFirst()
+            .getMeasurementsMap()
+            .containsKey(AverageTemperatureMeasurementVectorStream.AVG_TEMPERATURE_SOURCE_ID));
+    withTap.stop();
+  }
+
+  @Test
+  public void droppedVector_notPublishedToLaterTapsOrEnd() {
+    Pipeline pipeline =
+        Pipeline.builder().tap("raw").averagePressure(siteConfig).tap("pressure").build(source);
+    List<MeasurementVector> raw = new ArrayList<>();
+    List<MeasurementVector> pressure = new ArrayList<>();
+    List<MeasurementVector> end = new ArrayList<>();
+    pipeline.tap("raw").subscribe(raw::add);
+    pipeline.tap("pressure").subscribe(pressure::add);
+    pipeline.subscribe(end::add);
+
+    MeasurementVector noPressure =
+        new MeasurementVector(0L, List.of(new Temperature(0L, "T1", new BigDecimal("20"))));
+    source.publishToSubscribers(noPressure);
+
+    Assertions.assertEquals(List.of(noPressure), raw);
+    Assertions.assertTrue(pressure.isEmpty());
+    Assertions.assertTrue(end.isEmpty());
+    pipeline.stop();
+  }
+
+  @Test
+  public void severeVector_passesThroughUnchangedAsSameInstance() {
+    Pipeline pipeline = fullStackBuilder().build(source);
+    List<MeasurementVector> received = new ArrayList<>();
+    pipeline.subscribe(received::add);
+
+    MeasurementVector input =
+        new MeasurementVector(
+            1000L,
+            List.of(new Temperature(1000L, "T1", new BigDecimal("20"))),
+            List.of(new MeasurementError("T1", ErrorSeverity.SEVERE, "Test severe")));
+    source.publishToSubscribers(input);
+
+    Assertions.assertEquals(1, received.size());
+    Assertions.assertSame(input, received.getFirst());
+    pipeline.stop();
+  }
+
+  @Test
+  public void stepAddingSevereError_skipsRemainingSteps() {
+    List<String> calls = new ArrayList<>();
+    Pipeline pipeline =
+        Pipeline.builder()
+            .step(new RecordingStep("first", calls, true))
+            .step(new RecordingStep("second", calls, false))
+            .build(source);
+    List<MeasurementVector> received = new ArrayList<>();
+    pipeline.subscribe(received::add);
+
+    source.publishToSubscribers(rawVector(1));
+
+    Assertions.assertEquals(List.of("first"), calls);
+    Assertions.assertEquals(1, received.size());
+    Assertions.assertTrue(received.getFirst().hasSevereError());
+    pipeline.stop();
+  }
+
+  @Test
+  public void customStep_unchangedVectorIsPublishedAsSameInstance() {
+    List<String> calls = new ArrayList<>();
+    RecordingStep step = new RecordingStep("noop", calls, false);
+    Pipeline pipeline = Pipeline.builder().step(step).build(source);
+    List<MeasurementVector> received = new ArrayList<>();
+    pipeline.subscribe(received::add);
+
+    MeasurementVector input = rawVector(2);
+    source.publishToSubscribers(input);
+
+    Assertions.assertEquals(List.of("noop"), calls);
+    Assertions.assertSame(input, received.getFirst());
+    Assertions.assertEquals(List.of("noop"), pipeline.getPlan());
+
+    pipeline.stop();
+    Assertions.assertEquals(1, step.resets);
+  }
+
+  @Test
+  public void noSubscribers_stepsStillRun() {
+    List<String> calls = new ArrayList<>();
+    Pipeline pipeline =
+        Pipeline.builder().step(new RecordingStep("a", calls, false)).tap("a").build(source);
+
+    source.publishToSubscribers(rawVector(3));
+
+    Assertions.assertEquals(List.of("a"), calls);
+    pipeline.stop();
+  }
+
+  @Test
+  public void unknownTap_throws() {
+    Pipeline pipeline = Pipeline.builder().tap("raw").build(source);
+    Assertions.assertThrows(IllegalArgumentException.class, () -> pipeline.tap("other"));
+    pipeline.stop();
+  }
+
+  @Test
+  public void duplicateTap_throws() {
+    Pipeline.Builder builder = Pipeline.builder().tap("raw");
+    Assertions.assertThrows(IllegalArgumentException.class, () -> builder.tap("raw"));
+  }
+
+  @Test
+  public void testStagesWithoutAmbientPressure_throws() {
+    TestConfig config = StageMeasurementVectorStreamTest.twoStageConfig();
+    config.setAmbientPressure(null);
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> Pipeline.builder().testStages(config));
+  }
+
+  @Test
+  public void stop_unsubscribesAndClearsAllSubscribers() {
+    Pipeline pipeline = fullStackBuilder().tap("end").build(source);
+    MeasurementVectorStream tap = pipeline.tap("end");
+    pipeline.subscribe(v -> {});
+    tap.subscribe(v -> {});
+    Assertions.assertEquals(source.listSensors(), pipeline.listSensors());
+    Assertions.assertEquals(source.listSensors(), tap.listSensors());
+
+    pipeline.stop();
+    pipeline.stop();
+
+    Assertions.assertTrue(source.getSubscribers().isEmpty());
+    Assertions.assertTrue(pipeline.getSubscribers().isEmpty());
+    Assertions.assertTrue(tap.getSubscribers().isEmpty());
+  }
+
+  @Test
+  public void threads_publishSameVectorsInOrderAsSingleThread() {
+    Pipeline single = fullStackBuilder().build(source);
+    Pipeline threaded =
+        Pipeline.builder()
+            .believability(siteConfig)
+            .calibration(calibrationConfig)
+            .averagePressure(siteConfig)
+            .thread("averages", 4)
+            .averageTemperature(siteConfig)
+            .averageGasConstant(siteConfig)
+            .testStages(testConfig)
+            .leakage()
+            .tap("leakage")
+            .thread("sinks", 4)
+            .build(source);
+    List<MeasurementVector> expected = new ArrayList<>();
+    List<MeasurementVector> actual = new ArrayList<>();
+    List<MeasurementVector> tapped = new ArrayList<>();
+    single.subscribe(expected::add);
+    threaded.subscribe(actual::add);
+    threaded.tap("leakage").subscribe(tapped::add);
+
+    for (int i = 0; i < 150; i++) {
+      source.publishToSubscribers(rawVector(i));
+    }
+    threaded.drain();
+
+    assertSameVectors(expected, actual);
+    assertSameVectors(expected, tapped);
+    Assertions.assertEquals(
+        List.of(
+            "believability + calibration + averagePressure => thread:averages",
+            "averageTemperature + averageGasConstant",
+            "testStages",
+            "leakage -> tap:leakage => thread:sinks"),
+        threaded.getPlan());
+    single.stop();
+    threaded.stop();
+  }
+
+  @Test
+  public void thread_fullBufferMakesPublisherWait() {
+    List<String> calls = new ArrayList<>();
+    Pipeline pipeline =
+        Pipeline.builder()
+            .thread("slow", 1)
+            .step(new RecordingStep("slow", calls, false, 1L))
+            .build(source);
+    List<MeasurementVector> received = new ArrayList<>();
+    pipeline.subscribe(received::add);
+
+    for (int i = 0; i < 20; i++) {
+      source.publishToSubscribers(rawVector(i));
+    }
+    pipeline.drain();
+
+    Assertions.assertEquals(20, received.size());
+    for (int i = 0; i < 20; i++) {
+      Assertions.assertEquals(i * 60_000L, received.get(i).getTimeUtc());
+    }
+    Assertions.assertEquals(List.of("=> thread:slow", "slow"), pipeline.getPlan());
+    pipeline.stop();
+  }
+
+  @Test
+  public void thread_failingStepIsReportedAndLaterVectorsStillRun() {
+    List<MeasurementVector> received = new ArrayList<>();
+    Pipeline pipeline =
+        Pipeline.builder()
+            .thread("failing", 8)
+            .step(
+                new RecordingStep("failing", new ArrayList<>(), false, 0L) {
+                  @Override
+                  public boolean process(PipelineVector vector) {
+                    if (vector.getTimeUtc() == 0L) {
+                      throw new IllegalStateException("Broken step");
+                    }
+                    return true;
+                  }
+                })
+            .build(source);
+    pipeline.subscribe(received::add);
+
+    source.publishToSubscribers(rawVector(0));
+    source.publishToSubscribers(rawVector(1));
+    pipeline.drain();
+
+    Assertions.assertEquals(1, received.size());
+    Assertions.assertEquals(60_000L, received.getFirst().getTimeUtc());
+    pipeline.stop();
+  }
+
+  @Test
+  public void thread_invalidCapacityThrows() {
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> Pipeline.builder().thread("none", 0));
+  }
+
+  @Test
+  public void stop_terminatesThreads() {
+    Pipeline pipeline =
+        Pipeline.builder().thread("stopped", 8).averagePressure(siteConfig).build(source);
+    source.publishToSubscribers(rawVector(0));
+
+    pipeline.stop();
+    pipeline.drain();
+
+    Assertions.assertTrue(
+        Thread.getAllStackTraces().keySet().stream()
+            .noneMatch(t -> t.getName().equals("pipeline-stopped")));
+    Assertions.assertTrue(source.getSubscribers().isEmpty());
+  }
+
+  /** Full stack with spike detection, so that every kind of step state is checkpointed. */
+  private Pipeline.Builder checkpointedBuilder() {
+    return Pipeline.builder()
+        .believability(siteConfig, new SpikeDetectionSettings(5, 4.0, 0.1))
+        .calibration(calibrationConfig)
+        .averagePressure(siteConfig)
+        .averageTemperature(siteConfig)
+        .averageGasConstant(siteConfig)
+        .testStages(testConfig)
+        .leakage();
+  }
+
+  @Test
+  public void checkpoint_resumedPipelinePublishesSameVectorsAsUninterrupted() {
+    Pipeline uninterrupted = checkpointedBuilder().build(source);
+    List<MeasurementVector> expected = new ArrayList<>();
+    uninterrupted.subscribe(expected::add);
+    for (int i = 0; i < 150; i++) {
+      source.publishToSubscribers(rawVector(i));
+    }
+    uninterrupted.stop();
+
+    TestMeasurementVectorStream firstRun = new TestMeasurementVectorStream();
+    Pipeline interrupted =
+        Pipeline.builder()
+            .believability(siteConfig, new SpikeDetectionSettings(5, 4.0, 0.1))
+            .calibration(calibrationConfig)
+            .averagePressure(siteConfig)
+            .averageTemperature(siteConfig)
+            .averageGasConstant(siteConfig)
+            .thread("stages", 4)
+            .testStages(testConfig)
+            .leakage()
+            .build(firstRun);
+    for (int i = 0; i < 90; i++) {
+      firstRun.publishToSubscribers(rawVector(i));
+    }
+    byte[] checkpoint = interrupted.checkpoint();
+    interrupted.stop();
+
+    // The restarted source replays the recording from the start.
+    TestMeasurementVectorStream secondRun = new TestMeasurementVectorStream();
+    Pipeline resumed = checkpointedBuilder().resumeFrom(checkpoint).build(secondRun);
+    List<MeasurementVector> actual = new ArrayList<>();
+    resumed.subscribe(actual::add);
+    for (int i = 0; i < 150; i++) {
+      secondRun.publishToSubscribers(rawVector(i));
+    }
+
+    assertSameVectors(
+        expected.stream().filter(v -> v.getTimeUtc() >= 90 * 60_000L).toList(), actual);
+    Assertions.assertTrue(
+        actual.stream()
+            .anyMatch(v -> Integer.valueOf(1).equals(StageMeasurementVectorStream.stageOf(v))));
+    resumed.stop();
+  }
+
+  @Test
+  public void checkpoint_withoutVectorsResumesFromScratch() {
+    byte[] checkpoint = fullStackBuilder().build(new TestMeasurementVectorStream()).checkpoint();
+    Pipeline fresh = fullStackBuilder().build(source);
+    Pipeline resumed = fullStackBuilder().resumeFrom(checkpoint).build(source);
+    Pipeline nullCheckpoint = fullStackBuilder().resumeFrom(null).build(source);
+    List<MeasurementVector> expected = new ArrayList<>();
+    List<MeasurementVector> actual = new ArrayList<>();
+    List<MeasurementVector> nullActual = new ArrayList<>();
+    fresh.subscribe(expected::add);
+    resumed.subscribe(actual::add);
+    nullCheckpoint.subscribe(nullActual::add);
+
+    for (int i = 0; i < 20; i++) {
+      source.publishToSubscribers(rawVector(i));
+    }
+
+    assertSameVectors(expected, actual);
+    assertSameVectors(expected, nullActual);
+  }
+
+  @Test
+  public void checkpointEvery_writesPeriodicallyAndOnStop() {
+    List<byte[]> written = new ArrayList<>();
+    Pipeline pipeline =
+        fullStackBuilder().checkpointEvery(30 * 60_000L, written::add).build(source);
+
+    for (int i = 0; i < 75; i++) {
+      source.publishToSubscribers(rawVector(i));
+    }
+    // After vectors 0, 30 and 60
+    Assertions.assertEquals(3, written.size());
+    byte[] last = pipeline.checkpoint();
+    pipeline.stop();
+    pipeline.stop();
+
+    Assertions.assertEquals(4, written.size());
+    Assertions.assertArrayEquals(last, written.getLast());
+  }
+
+  @Test
+  public void checkpointEvery_failingSinkIsReportedAndProcessingGoesOn() {
+    Pipeline pipeline =
+        fullStackBuilder()
+            .checkpointEvery(
+                60_000L,
+                checkpoint -> {
+                  throw new IOException("Disk full");
+                })
+            .build(source);
+    List<MeasurementVector> received = new ArrayList<>();
+    pipeline.subscribe(received::add);
+
+    source.publishToSubscribers(rawVector(0));
+    source.publishToSubscribers(rawVector(1));
+    pipeline.stop();
+
+    Assertions.assertEquals(2, received.size());
+  }
+
+  /** Step that records the thread writing its state and waits for a latch on its first vector. */
+  private static RecordingStep stateRecordingStep(
+      String name, List<String> stateThreads, CountDownLatch release) {
+    return new RecordingStep(name, new ArrayList<>(), false) {
+      @Override
+      public boolean process(PipelineVector vector) {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return true;
+      }
+
+      @Override
+      public void writeState(DataOutput out) {
+        stateThreads.add(Thread.currentThread().getName());
+      }
+    };
+  }
+
+  @Test
+  public void checkpointEvery_writesStepStateOnItsOwnThreadWithoutWaiting() {
+    CountDownLatch release = new CountDownLatch(1);
+    List<String> stateThreads = new CopyOnWriteArrayList<>();
+    List<byte[]> written = new CopyOnWriteArrayList<>();
+    Pipeline pipeline =
+        Pipeline.builder()
+            .step(stateRecordingStep("head", stateThreads, new CountDownLatch(0)))
+            .thread("blocked", 8)
+            .step(stateRecordingStep("blocked", stateThreads, release))
+            .checkpointEvery(60_000L, written::add)
+            .build(source);
+
+    // The thread is stuck on vector 0; the checkpoint taken after it waits behind it, and the
+    // checkpoint due after vector 1 is skipped while it is on its way.
+    source.publishToSubscribers(rawVector(0));
+    source.publishToSubscribers(rawVector(1));
+    Assertions.assertEquals(List.of(), written);
+    release.countDown();
+    pipeline.drain();
+
+    Assertions.assertEquals(1, written.size());
+    Assertions.assertEquals(
+        List.of(Thread.currentThread().getName(), "pipeline-blocked"), stateThreads);
+    source.publishToSubscribers(rawVector(2));
+    pipeline.drain();
+    Assertions.assertEquals(2, written.size());
+    pipeline.stop();
+
+    // The first checkpoint was taken after vector 0
+    List<MeasurementVector> resumed = new ArrayList<>();
+    TestMeasurementVectorStream restart = new TestMeasurementVectorStream();
+    Pipeline.builder()
+        .step(stateRecordingStep("head", stateThreads, new CountDownLatch(0)))
+        .step(stateRecordingStep("blocked", stateThreads, new CountDownLatch(0)))
+        .resumeFrom(written.getFirst())
+        .build(restart)
+        .subscribe(resumed::add);
+    restart.publishToSubscribers(rawVector(0));
+    restart.publishToSubscribers(rawVector(1));
+    Assertions.assertEquals(List.of(60_000L), resumed.stream().map(v -> v.getTimeUtc()).toList());
+  }
+
+  @Test
+  public void checkpointEvery_failingStepStateIsReportedAndNextCheckpointIsTaken() {
+    List<byte[]> written = new ArrayList<>();
+    Pipeline pipeline =
+        Pipeline.builder()
+            .step(
+                new RecordingStep("flaky", new ArrayList<>(), false) {
+                  private boolean failed;
+
+                  @Override
+                  public void writeState(DataOutput out) throws IOException {
+                    if (!failed) {
+                      failed = true;
+                      throw new IOException("Broken state");
+                    }
+                  }
+                })
+            .checkpointEvery(60_000L, written::add)
+            .build(source);
+
+    source.publishToSubscribers(rawVector(0));
+    source.publishToSubscribers(rawVector(1));
+
+    Assertions.assertEquals(1, written.size());
+    pipeline.stop();
+  }
+
+  @Test
+  public void checkpointEvery_invalidIntervalThrows() {
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> Pipeline.builder().checkpointEvery(0L, checkpoint -> {}));
+  }
+
+  @Test
+  public void checkpoint_failingStepStateThrows() {
+    Pipeline pipeline =
+        Pipeline.builder()
+            .step(
+                new RecordingStep("broken", new ArrayList<>(), false) {
+                  @Override
+                  public void writeState(DataOutput out) throws IOException {
+                    throw new IOException("Broken state");
+                  }
+                })
+            .build(source);
+
+    Assertions.assertThrows(UncheckedIOException.class, pipeline::checkpoint);
+  }
+
+  @Test
+  public void resumeFrom_invalidCheckpointThrows() {
+    Pipeline pipeline = fullStackBuilder().build(source);
+    for (int i = 0; i < 10; i++) {
+      source.publishToSubscribers(rawVector(i));
+    }
+    byte[] checkpoint = pipeline.checkpoint();
+    byte[] damaged = checkpoint.clone();
+    damaged[10] ^= 1;
+    byte[] otherMagic = checkpoint.clone();
+    otherMagic[0] ^= 1;
+    // Valid checksum, but the body ends after the magic number
+    ByteBuffer magicOnly = ByteBuffer.allocate(8).put(checkpoint, 0, 4);
+    CRC32 crc = new CRC32();
+    crc.update(checkpoint, 0, 4);
+    magicOnly.putInt((int) crc.getValue());
+
+    assertResumeThrows(fullStackBuilder(), new byte[3], "Not a pipeline checkpoint");
+    assertResumeThrows(fullStackBuilder(), otherMagic, "Not a pipeline checkpoint");
+    assertResumeThrows(fullStackBuilder(), damaged, "Damaged pipeline checkpoint");
+    assertResumeThrows(fullStackBuilder(), magicOnly.array(), "Damaged pipeline checkpoint");
+    assertResumeThrows(Pipeline.builder().leakage(), checkpoint, "different number of steps");
+    assertResumeThrows(
+        Pipeline.builder()
+            .calibration(calibrationConfig)
+            .believability(siteConfig)
+            .averagePressure(siteConfig)
+            .averageTemperature(siteConfig)
+            .averageGasConstant(siteConfig)
+            .testStages(testConfig)
+            .leakage(),
+        checkpoint,
+        "Checkpoint has step believability where the pipeline has calibration");
+  }
+
+  @Test
+  public void resumeFrom_spikeWindowsWithoutSpikeDetectionThrows() {
+    Pipeline spikes =
+        Pipeline.builder()
+            .believability(siteConfig, new SpikeDetectionSettings(5, 4.0, 0.1))
+            .build(source);
+    source.publishToSubscribers(rawVector(0));
+
+    assertResumeThrows(
+        Pipeline.builder().believability(siteConfig),
+        spikes.checkpoint(),
+        "Damaged pipeline checkpoint");
+  }
+
+  private void assertResumeThrows(Pipeline.Builder builder, byte[] checkpoint, String message) {
+    IllegalArgumentException e =
+        Assertions.assertThrows(
+            IllegalArgumentException.class,
+            () -> builder.resumeFrom(checkpoint).build(new TestMeasurementVectorStream()));
+    Assertions.assertTrue(e.getMessage().contains(message), e.getMessage());
+  }
+
+  /** Records its calls; optionally adds a severe error or sleeps. */
+  private static class RecordingStep implements PipelineStep {
+
+    private final String name;
+    private final List<String> calls;
+    private final boolean addSevere;
+    private final long sleepMs;
+    private int resets;
+
+    private RecordingStep(String name, List<String> calls, boolean addSevere) {
+      this(name, calls, addSevere, 0L);
+    }
+
+    private RecordingStep(String name, List<String> calls, boolean addSevere, long sleepMs) {
+      this.name = name;
+      this.calls = calls;
+      this.addSevere = addSevere;
+      this.sleepMs = sleepMs;
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+
+    @Override
+    public boolean isStateless() {
+      return true;
+    }
+
+    @Override
+    public boolean process(PipelineVector vector) {
+      calls.add(name);
+      if (sleepMs > 0) {
+        try {
+          Thread.sleep(sleepMs);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      if (addSevere) {
+        vector.addError(new MeasurementError("P1", ErrorSeverity.SEVERE, "Broken"));
+      }
+      return true;
+    }
+
+    @Override
+    public void reset() {
+      resets++;
+    }
+  }
+
+  @Test
+  public void latencyTracer_recordsEveryNodeWithSteps() {
+    long[] now = {0L};
+    LatencyTracer tracer = new LatencyTracer(() -> now[0] += 1_000L);
+    tracer.setEnabled(true);
+    List<String> calls = new ArrayList<>();
+    Pipeline pipeline =
+        Pipeline.builder()
+            .tap("raw")
+            .step(new RecordingStep("a", calls, false))
+            .step(new RecordingStep("b", calls, false))
+            .build(source);
+    List<MeasurementVector> received = new ArrayList<>();
+    pipeline.subscribe(received::add);
+    pipeline.setLatencyTracer(tracer);
+
+    source.publishToSubscribers(tracer.stamp(rawVector(1)));
+    source.publishToSubscribers(rawVector(2));
+    pipeline.setLatencyTracer(null);
+    source.publishToSubscribers(tracer.stamp(rawVector(3)));
+
+    Assertions.assertEquals(3, received.size());
+    Assertions.assertEquals(1_000L, received.getFirst().getIngestNanos());
+    List<LatencyStats> stats = tracer.snapshot();
+    Assertions.assertEquals(1, stats.size());
+    Assertions.assertEquals("a + b", stats.getFirst().hop());
+    Assertions.assertEquals(1, stats.getFirst().count());
+    Assertions.assertEquals(1_000L, stats.getFirst().maxNanos());
+    pipeline.stop();
+  }
+}
@@ -0,0 +1,118 @@
+package ca.lajthabalazs.pressure_integity_test.measurement.processing;
+
+import ca.lajthabalazs.pressure_integrity_test.measurement.ErrorSeverity;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementError;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Pressure;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Temperature;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.PipelineVector;
+import java.math.BigDecimal;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link PipelineVector}. */
+public class PipelineVectorTest {
+
+  private static final MeasurementError WARNING =
+      new MeasurementError("T1", ErrorSeverity.WARNING, "Out of valid range");
+
+  private static MeasurementVector input() {
+    return new MeasurementVector(
+        1000L,
+        List.of(
+            new Pressure(1000L, "P1", new BigDecimal("100000")),
+            new Temperature(1000L, "T1", new BigDecimal("20"))),
+        List.of(WARNING));
+  }
+
+  @Test
+  public void unchanged_toVectorReturnsInput() {
+    MeasurementVector input = input();
+    PipelineVector vector = new PipelineVector(input);
+
+    Assertions.assertEquals(1000L, vector.getTimeUtc());
+    Assertions.assertSame(input.getMeasurementsMap(), vector.getMeasurementsMap());
+    Assertions.assertEquals(List.of(WARNING), vector.getErrors());
+    Assertions.assertFalse(vector.hasSevereError());
+    Assertions.assertSame(input, vector.toVector());
+  }
+
+  @Test
+  public void putMeasurement_replacesInPlaceAndAppendsNew() {
+    MeasurementVector input = input();
+    PipelineVector vector = new PipelineVector(input);
+
+    vector.putMeasurement(new Pressure(1000L, "P1", new BigDecimal("100100")));
+    vector.putMeasurement(new Temperature(1000L, "AVG_T", new BigDecimal("20")));
+
+    MeasurementVector out = vector.toVector();
+    Assertions.assertEquals(
+        List.of("P1", "T1", "AVG_T"), List.copyOf(out.getMeasurementsMap().keySet()));
+    Assertions.assertEquals(
+        0,
+        new BigDecimal("100100")
+            .compareTo(out.getMeasurementsMap().get("P1").getValueInDefaultUnit()));
+    Assertions.assertEquals(List.of(WARNING), out.getErrors());
+    Assertions.assertSame(out, vector.toVector());
+    Assertions.assertEquals(2, input.getMeasurementsMap().size());
+    Assertions.assertEquals(3, vector.getMeasurementsMap().size());
+  }
+
+  @Test
+  public void addError_tracksSeverityAndLeavesInputUnchanged() {
+    MeasurementVector input = input();
+    PipelineVector vector = new PipelineVector(input);
+    MeasurementError severe = new MeasurementError("P1", ErrorSeverity.SEVERE, "Broken");
+
+    vector.addError(severe);
+
+    Assertions.assertTrue(vector.hasSevereError());
+    Assertions.assertEquals(List.of(WARNING, severe), vector.getErrors());
+    Assertions.assertThrows(UnsupportedOperationException.class, () -> vector.getErrors().clear());
+    MeasurementVector out = vector.toVector();
+    Assertions.assertNotSame(input, out);
+    Assertions.assertTrue(out.hasSevereError());
+    Assertions.assertSame(input.getMeasurementsMap().get("T1"), out.getMeasurementsMap().get("T1"));
+    Assertions.assertEquals(List.of(WARNING), input.getErrors());
+  }
+
+  @Test
+  public void addError_sharesInputErrorsInsteadOfCopying() {
+    MeasurementVector input = input();
+    PipelineVector vector = new PipelineVector(input);
+    MeasurementError second = new MeasurementError("P1", ErrorSeverity.WARNING, "Drifting");
+    MeasurementError third = new MeasurementError("T1", ErrorSeverity.WARNING, "Noisy");
+
+    Assertions.assertSame(input.getErrors(), vector.getErrors());
+    vector.addError(second);
+    Assertions.assertEquals(List.of(WARNING, second), vector.getErrors());
+    vector.addError(third);
+
+    MeasurementVector out = vector.toVector();
+    Assertions.assertFalse(vector.hasSevereError());
+    Assertions.assertSame(vector.getErrors(), out.getErrors());
+    Assertions.assertSame(input.getErrors().getFirst(), out.getErrors().getFirst());
+    Assertions.assertEquals(List.of(WARNING, second, third), out.getErrors());
+    Assertions.assertEquals(ErrorSeverity.WARNING.mask(), out.getSeverityMask());
+    Assertions.assertEquals(List.of(WARNING), input.getErrors());
+  }
+
+  @Test
+  public void severeInput_isSevere() {
+    MeasurementVector input =
+        new MeasurementVector(
+            0L, List.of(), List.of(new MeasurementError("P1", ErrorSeverity.SEVERE, "Broken")));
+    Assertions.assertTrue(new PipelineVector(input).hasSevereError());
+  }
+
+  @Test
+  public void ingestNanos_isCarriedToBuiltVector() {
+    PipelineVector vector = new PipelineVector(input().withIngestNanos(42L));
+
+    vector.putMeasurement(new Temperature(1000L, "AVG_T", new BigDecimal("20")));
+
+    Assertions.assertEquals(42L, vector.getIngestNanos());
+    Assertions.assertEquals(42L, vector.toVector().getIngestNanos());
+  }
+}
@@ -0,0 +1,372 @@
+package ca.lajthabalazs.pressure_integity_test.measurement.processing;
+
+import ca.lajthabalazs.pressure_integity_test.measurement.streaming.TestMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.ErrorSeverity;
+import ca.lajthabalazs.pressure_integrity_test.measurement.GasConstant;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Leakage;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Measurement;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementError;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Pressure;
+import ca.lajthabalazs.pressure_integrity_test.measurement.StageIndex;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Temperature;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.AverageGasConstantMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.AveragePressureMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.AverageTemperatureMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.LeakageMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.RegressionLeakageMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.StageMeasurementVectorStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link RegressionLeakageMeasurementVectorStream}. */
+public class RegressionLeakageMeasurementVectorStreamTest {
+
+  private static final double RHO_INF = 1.16144;
+  private static final double L_SCALE = 8640000.0;
+  private static final double R = 287.0;
+  private static final double T_CELSIUS = 20.0;
+  private static final double T_KELVIN = 293.15;
+
+  private TestMeasurementVectorStream source;
+  private List<MeasurementVector> received;
+
+  @BeforeEach
+  public void setUp() {
+    source = new TestMeasurementVectorStream();
+    received = new ArrayList<>();
+  }
+
+  /** Builds a vector whose density gives y = ln(ρ/ρ∞ − 1) = b + a·t (t in seconds). */
+  private static MeasurementVector vectorOnLine(long timeUtc, double a, double b) {
+    double y = b + a * (timeUtc / 1000.0);
+    double rho = RHO_INF * (1.0 + Math.exp(y));
+    double pressurePa = rho * R * T_KELVIN;
+    return vectorWithPTR(timeUtc, new BigDecimal(pressurePa));
+  }
+
+  private static MeasurementVector vectorWithPTR(long timeUtc, BigDecimal pressurePa) {
+    List<Measurement> m = new ArrayList<>();
+    m.add(
+        new Pressure(
+            timeUtc, AveragePressureMeasurementVectorStream.AVG_PRESSURE_SOURCE_ID, pressurePa));
+    m.add(
+        new Temperature(
+            timeUtc,
+            AverageTemperatureMeasurementVectorStream.AVG_TEMPERATURE_SOURCE_ID,
+            BigDecimal.valueOf(T_CELSIUS)));
+    m.add(
+        new GasConstant(
+            timeUtc,
+            AverageGasConstantMeasurementVectorStream.AVG_R_SOURCE_ID,
+            BigDecimal.valueOf(R)));
+    return new MeasurementVector(timeUtc, m);
+  }
+
+  private static double leakageOf(MeasurementVector vector, String sourceId) {
+    return vector.getMeasurements().stream()
+        .filter(m -> m instanceof Leakage && sourceId.equals(m.getSourceId()))
+        .findFirst()
+        .orElseThrow()
+        .getValueInDefaultUnit()
+        .doubleValue();
+  }
+
+  private static double lastLeakage(List<MeasurementVector> vectors) {
+    return leakageOf(
+        vectors.get(vectors.size() - 1),
+        RegressionLeakageMeasurementVectorStream.REGRESSION_LEAKAGE_SOURCE_ID);
+  }
+
+  private static double lastUcl(List<MeasurementVector> vectors) {
+    return leakageOf(
+        vectors.get(vectors.size() - 1),
+        RegressionLeakageMeasurementVectorStream.REGRESSION_LEAKAGE_UCL_SOURCE_ID);
+  }
+
+  private static double expectedLeakage(double a, double yAtStart) {
+    return L_SCALE * a * (1.0 / (1.0 + Math.exp(yAtStart)) - 1.0);
+  }
+
+  @Test
+  public void firstVector_emitsMinusOne() {
+    RegressionLeakageMeasurementVectorStream stream =
+        new RegressionLeakageMeasurementVectorStream(source);
+    stream.subscribe(received::add);
+
+    source.publishToSubscribers(vectorOnLine(0L, -1e-6, -3.0));
+
+    Assertions.assertEquals(1, received.size());
+    Assertions.assertEquals(-1.0, lastLeakage(received));
+    Assertions.assertEquals(-1.0, lastUcl(received));
+    Assertions.assertEquals(5, received.get(0).getMeasurements().size());
+    stream.stop();
+  }
+
+  @Test
+  public void pointsOnLine_giveSlopeBasedLeakage_matchingTwoPointOnFirstInterval() {
+    RegressionLeakageMeasurementVectorStream stream =
+        new RegressionLeakageMeasurementVectorStream(source);
+    LeakageMeasurementVectorStream twoPoint = new LeakageMeasurementVectorStream(source);
+    stream.subscribe(received::add);
+    List<MeasurementVector> twoPointReceived = new ArrayList<>();
+    twoPoint.subscribe(twoPointReceived::add);
+    double a = -2e-7;
+    double b = -2.9;
+
+    for (long t = 0; t <= 24 * 3600_000L; t += 600_000L) {
+      source.publishToSubscribers(vectorOnLine(t, a, b));
+      if (t == 600_000L) {
+        Assertions.assertEquals(
+            leakageOf(twoPointReceived.get(1), LeakageMeasurementVectorStream.LEAKAGE_SOURCE_ID),
+            lastLeakage(received),
+            1e-5);
+      }
+    }
+
+    Assertions.assertEquals(expectedLeakage(a, b), lastLeakage(received), 1e-5);
+    // Points on an exact line leave no residual, so the upper limit equals the estimate.
+    Assertions.assertEquals(lastLeakage(received), lastUcl(received), 1e-5);
+    stream.stop();
+    twoPoint.stop();
+  }
+
+  @Test
+  public void ucl_isAboveLeakage_andTightensWithMorePoints() {
+    RegressionLeakageMeasurementVectorStream stream =
+        new RegressionLeakageMeasurementVectorStream(source);
+    stream.subscribe(received::add);
+    double a = -2e-7;
+    double b = -2.9;
+    Random random = new Random(11);
+
+    source.publishToSubscribers(vectorOnLine(0L, a, b));
+    source.publishToSubscribers(vectorOnLine(60_000L, a, b + 1e-4));
+    Assertions.assertNotEquals(-1.0, lastLeakage(received));
+    Assertions.assertEquals(-1.0, lastUcl(received), "Two points have no residual variance");
+
+    double widthAfterHour = Double.NaN;
+    for (long t = 120_000L; t <= 24 * 3600_000L; t += 60_000L) {
+      source.publishToSubscribers(vectorOnLine(t, a, b + 1e-4 * random.nextGaussian()));
+      double width = lastUcl(received) - lastLeakage(received);
+      Assertions.assertTrue(width >= 0, "UCL below leakage at " + t);
+      if (t == 3600_000L) {
+        widthAfterHour = width;
+      }
+    }
+    double finalWidth = lastUcl(received) - lastLeakage(received);
+    Assertions.assertTrue(
+        finalWidth < widthAfterHour / 10,
+        "Final width " + finalWidth + " vs after one hour " + widthAfterHour);
+    stream.stop();
+  }
+
+  @Test
+  public void noisyPoints_regressionIsSteadierThanTwoPoint() {
+    RegressionLeakageMeasurementVectorStream stream =
+        new RegressionLeakageMeasurementVectorStream(source);
+    LeakageMeasurementVectorStream twoPoint = new LeakageMeasurementVectorStream(source);
+    stream.subscribe(received::add);
+    List<MeasurementVector> twoPointReceived = new ArrayList<>();
+    twoPoint.subscribe(twoPointReceived::add);
+    double a = -2e-7;
+    double b = -2.9;
+
+    Random random = new Random(7);
+    for (long t = 0; t <= 24 * 3600_000L; t += 600_000L) {
+      double noisyB = b + 1e-4 * random.nextGaussian();
+      source.publishToSubscribers(vectorOnLine(t, a, noisyB));
+    }
+
+    double expected = expectedLeakage(a, b);
+    double regressionError = Math.abs(lastLeakage(received) - expected);
+    double twoPointError =
+        Math.abs(
+            leakageOf(
+                    twoPointReceived.get(twoPointReceived.size() - 1),
+                    LeakageMeasurementVectorStream.LEAKAGE_SOURCE_ID)
+                - expected);
+    Assertions.assertTrue(
+        regressionError < twoPointError,
+        "Regression error " + regressionError + " should be below two-point " + twoPointError);
+    stream.stop();
+    twoPoint.stop();
+  }
+
+  @Test
+  public void window_followsSlopeChange_unboundedFitDoesNot() {
+    long windowMs = 2 * 3600_000L;
+    RegressionLeakageMeasurementVectorStream windowed =
+        new RegressionLeakageMeasurementVectorStream(source, windowMs);
+    RegressionLeakageMeasurementVectorStream unbounded =
+        new RegressionLeakageMeasurementVectorStream(source);
+    List<MeasurementVector> unboundedReceived = new ArrayList<>();
+    windowed.subscribe(received::add);
+    unbounded.subscribe(unboundedReceived::add);
+
+    double a1 = -1e-7;
+    double a2 = -4e-7;
+    long change = 10 * 3600_000L;
+    double yAtChange = -2.9 + a1 * (change / 1000.0);
+    long end = 14 * 3600_000L;
+    for (long t = 0; t <= end; t += 60_000L) {
+      if (t <= change) {
+        source.publishToSubscribers(vectorOnLine(t, a1, -2.9));
+      } else {
+        source.publishToSubscribers(vectorOnLine(t, a2, yAtChange - a2 * (change / 1000.0)));
+      }
+    }
+
+    double yAtWindowStart = yAtChange + a2 * ((end - windowMs - change) / 1000.0);
+    Assertions.assertEquals(expectedLeakage(a2, yAtWindowStart), lastLeakage(received), 1e-4);
+    Assertions.assertTrue(
+        Math.abs(lastLeakage(received) - lastLeakage(unboundedReceived)) > 1e-2,
+        "Unbounded fit mixes slopes");
+    windowed.stop();
+    unbounded.stop();
+  }
+
+  @Test
+  public void severeErrorVector_isPassedThrough_invalidVectorIsDropped() {
+    RegressionLeakageMeasurementVectorStream stream =
+        new RegressionLeakageMeasurementVectorStream(source, 1000L);
+    stream.subscribe(received::add);
+
+    MeasurementVector severe =
+        new MeasurementVector(
+            1000L,
+            List.of(),
+            List.of(new MeasurementError("P1", ErrorSeverity.SEVERE, "Out of range")));
+    source.publishToSubscribers(severe);
+    // Density below ρ∞: regression variable undefined.
+    source.publishToSubscribers(vectorWithPTR(2000L, new BigDecimal("1000")));
+
+    Assertions.assertEquals(List.of(severe), received);
+    Assertions.assertEquals(List.of(), stream.listSensors());
+    stream.stop();
+  }
+
+  @Test
+  public void identicalTimestamps_publishMinusOneUntilTimeAdvances() {
+    RegressionLeakageMeasurementVectorStream stream =
+        new RegressionLeakageMeasurementVectorStream(source, 60_000L);
+    stream.subscribe(received::add);
+
+    source.publishToSubscribers(vectorOnLine(1000L, -1e-6, -3.0));
+    source.publishToSubscribers(vectorOnLine(1000L, -1e-6, -3.0));
+    Assertions.assertEquals(-1.0, lastLeakage(received));
+    for (long t = 2000L; t < 40_000L; t += 1000L) {
+      source.publishToSubscribers(vectorOnLine(t, -1e-6, -3.0));
+    }
+    Assertions.assertNotEquals(-1.0, lastLeakage(received));
+    stream.stop();
+    Assertions.assertTrue(stream.getSubscribers().isEmpty());
+  }
+
+  @Test
+  public void invalidWindow_throws() {
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> new RegressionLeakageMeasurementVectorStream(source, 0L));
+  }
+
+  private static MeasurementVector withStage(MeasurementVector vector, int stage) {
+    List<Measurement> m = new ArrayList<>(vector.getMeasurements());
+    m.add(
+        new StageIndex(vector.getTimeUtc(), StageMeasurementVectorStream.STAGE_SOURCE_ID, stage));
+    return new MeasurementVector(vector.getTimeUtc(), m);
+  }
+
+  @Test
+  public void writeState_readState_resumedStreamPublishesSameLeakageAsUninterrupted()
+      throws Exception {
+    long[] windows = {2 * 3600_000L, RegressionLeakageMeasurementVectorStream.NO_WINDOW};
+    for (long windowMs : windows) {
+      TestMeasurementVectorStream firstRun = new TestMeasurementVectorStream();
+      RegressionLeakageMeasurementVectorStream uninterrupted =
+          new RegressionLeakageMeasurementVectorStream(firstRun, windowMs);
+      List<MeasurementVector> expected = new ArrayList<>();
+      uninterrupted.subscribe(expected::add);
+      Random random = new Random(3);
+      List<MeasurementVector> vectors = new ArrayList<>();
+      for (long t = 0; t <= 6 * 3600_000L; t += 300_000L) {
+        double y = -2.9 - 2e-7 * (t / 1000.0) + random.nextGaussian() * 1e-4;
+        MeasurementVector v =
+            vectorWithPTR(t, new BigDecimal(RHO_INF * (1.0 + Math.exp(y)) * R * T_KELVIN));
+        vectors.add(withStage(v, t < 3600_000L ? 0 : 1));
+      }
+      int split = vectors.size() / 2;
+      vectors.subList(0, split).forEach(firstRun::publishToSubscribers);
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      uninterrupted.writeState(new DataOutputStream(bytes));
+
+      RegressionLeakageMeasurementVectorStream resumed =
+          new RegressionLeakageMeasurementVectorStream(source, windowMs);
+      resumed.readState(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+      resumed.subscribe(received::add);
+      received.clear();
+      for (MeasurementVector v : vectors.subList(split, vectors.size())) {
+        firstRun.publishToSubscribers(v);
+        source.publishToSubscribers(v);
+      }
+
+      List<MeasurementVector> tail = expected.subList(split, expected.size());
+      Assertions.assertEquals(tail.size(), received.size());
+      for (int i = 0; i < tail.size(); i++) {
+        for (String id :
+            List.of(
+                RegressionLeakageMeasurementVectorStream.REGRESSION_LEAKAGE_SOURCE_ID,
+                RegressionLeakageMeasurementVectorStream.REGRESSION_LEAKAGE_UCL_SOURCE_ID)) {
+          Assertions.assertEquals(leakageOf(tail.get(i), id), leakageOf(received.get(i), id));
+        }
+      }
+      uninterrupted.stop();
+      resumed.stop();
+    }
+  }
+
+  @Test
+  public void stageChange_restartsFit() {
+    RegressionLeakageMeasurementVectorStream stream =
+        new RegressionLeakageMeasurementVectorStream(source);
+    stream.subscribe(received::add);
+    double b = -2.9;
+    double a0 = -2e-7;
+    double a1 = -6e-7;
+    for (long t = 0; t <= 3 * 3600_000L; t += 600_000L) {
+      source.publishToSubscribers(withStage(vectorOnLine(t, a0, b), 0));
+    }
+    long start = 4 * 3600_000L;
+    double b1 = b + a0 * (start / 1000.0);
+    for (long t = start; t <= 6 * 3600_000L; t += 600_000L) {
+      double y = b1 + a1 * ((t - start) / 1000.0);
+      MeasurementVector v =
+          vectorWithPTR(t, new BigDecimal(RHO_INF * (1.0 + Math.exp(y)) * R * T_KELVIN));
+      source.publishToSubscribers(withStage(v, 1));
+      if (t == start) {
+        Assertions.assertEquals(
+            -1.0,
+            leakageOf(
+                received.get(received.size() - 1),
+                RegressionLeakageMeasurementVectorStream.REGRESSION_LEAKAGE_SOURCE_ID));
+      }
+    }
+
+    double expected = L_SCALE * a1 * (1.0 / (1.0 + Math.exp(b1)) - 1.0);
+    double actual =
+        leakageOf(
+            received.get(received.size() - 1),
+            RegressionLeakageMeasurementVectorStream.REGRESSION_LEAKAGE_SOURCE_ID);
+    Assertions.assertEquals(expected, actual, 1e-4);
+    stream.stop();
+  }
+}
@@ -0,0 +1,112 @@
+package ca.lajthabalazs.pressure_integity_test.measurement.processing;
+
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.RollingMedian;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link RollingMedian}. */
+public class RollingMedianTest {
+
+  private static double median(double[] sorted) {
+    int n = sorted.length;
+    return (n & 1) == 1 ? sorted[n / 2] : (sorted[n / 2 - 1] + sorted[n / 2]) / 2.0;
+  }
+
+  /** Brute-force median and MAD of the given window. */
+  private static double[] reference(ArrayDeque<Double> window) {
+    double[] sorted = window.stream().mapToDouble(Double::doubleValue).sorted().toArray();
+    double m = median(sorted);
+    double[] deviations = Arrays.stream(sorted).map(v -> Math.abs(v - m)).sorted().toArray();
+    return new double[] {m, median(deviations)};
+  }
+
+  @Test
+  public void emptyWindow_returnsNaN() {
+    RollingMedian rolling = new RollingMedian(5);
+    Assertions.assertEquals(0, rolling.size());
+    Assertions.assertEquals(5, rolling.windowSize());
+    Assertions.assertTrue(Double.isNaN(rolling.median()));
+    Assertions.assertTrue(Double.isNaN(rolling.medianAbsoluteDeviation()));
+  }
+
+  @Test
+  public void smallWindow_knownValues() {
+    RollingMedian rolling = new RollingMedian(5);
+    for (double v : new double[] {1, 2, 3, 4, 100}) {
+      rolling.add(v);
+    }
+    Assertions.assertEquals(3.0, rolling.median());
+    // |x - 3| = 2, 1, 0, 1, 97 → MAD 1
+    Assertions.assertEquals(1.0, rolling.medianAbsoluteDeviation());
+
+    rolling.add(5);
+    // window 2, 3, 4, 100, 5 → median 4, deviations 2, 1, 0, 96, 1 → MAD 1
+    Assertions.assertEquals(5, rolling.size());
+    Assertions.assertEquals(4.0, rolling.median());
+    Assertions.assertEquals(1.0, rolling.medianAbsoluteDeviation());
+  }
+
+  @Test
+  public void toArray_returnsWindowOldestFirst() {
+    RollingMedian rolling = new RollingMedian(3);
+    Assertions.assertArrayEquals(new double[0], rolling.toArray());
+    for (double v : new double[] {5, 1, 3, 2}) {
+      rolling.add(v);
+    }
+    Assertions.assertArrayEquals(new double[] {1, 3, 2}, rolling.toArray());
+  }
+
+  @Test
+  public void evenCount_averagesMiddleValues() {
+    RollingMedian rolling = new RollingMedian(10);
+    for (double v : new double[] {1, 2, 4, 10}) {
+      rolling.add(v);
+    }
+    Assertions.assertEquals(3.0, rolling.median());
+    // |x - 3| = 2, 1, 1, 7 → MAD (1 + 2) / 2
+    Assertions.assertEquals(1.5, rolling.medianAbsoluteDeviation());
+  }
+
+  @Test
+  public void randomStream_matchesBruteForce() {
+    for (int windowSize : new int[] {1, 2, 3, 7, 16, 61}) {
+      RollingMedian rolling = new RollingMedian(windowSize);
+      ArrayDeque<Double> window = new ArrayDeque<>();
+      Random random = new Random(windowSize);
+      for (int i = 0; i < 2000; i++) {
+        // Few distinct values so that duplicates are common.
+        double v = random.nextInt(20) + (random.nextBoolean() ? 0.5 : 0.0);
+        rolling.add(v);
+        window.addLast(v);
+        if (window.size() > windowSize) {
+          window.removeFirst();
+        }
+        double[] expected = reference(window);
+        Assertions.assertEquals(window.size(), rolling.size());
+        Assertions.assertEquals(expected[0], rolling.median(), 0.0, "median, i=" + i);
+        Assertions.assertEquals(
+            expected[1], rolling.medianAbsoluteDeviation(), 0.0, "MAD, w=" + windowSize);
+      }
+    }
+  }
+
+  @Test
+  public void clear_emptiesWindow() {
+    RollingMedian rolling = new RollingMedian(3);
+    rolling.add(1);
+    rolling.add(2);
+    rolling.clear();
+    Assertions.assertEquals(0, rolling.size());
+    rolling.add(7);
+    Assertions.assertEquals(7.0, rolling.median());
+    Assertions.assertEquals(0.0, rolling.medianAbsoluteDeviation());
+  }
+
+  @Test
+  public void invalidWindow_throws() {
+    Assertions.assertThrows(IllegalArgumentException.class, () -> new RollingMedian(0));
+  }
+}
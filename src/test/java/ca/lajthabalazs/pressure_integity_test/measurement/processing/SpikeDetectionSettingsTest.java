@@ -0,0 +1,33 @@
+package ca.lajthabalazs.pressure_integity_test.measurement.processing;
+
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.SpikeDetectionSettings;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link SpikeDetectionSettings}. */
+public class SpikeDetectionSettingsTest {
+
+  @Test
+  public void validSettings_exposeValuesAndMinSamples() {
+    SpikeDetectionSettings settings = new SpikeDetectionSettings(15, 3.5, 0.1);
+    Assertions.assertEquals(15, settings.windowSize());
+    Assertions.assertEquals(3.5, settings.threshold());
+    Assertions.assertEquals(0.1, settings.minDeviation());
+    Assertions.assertEquals(8, settings.minSamples());
+    Assertions.assertEquals(2, new SpikeDetectionSettings(3, 1.0, 0.0).minSamples());
+  }
+
+  @Test
+  public void invalidSettings_throw() {
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> new SpikeDetectionSettings(2, 3.0, 0.0));
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> new SpikeDetectionSettings(5, 0.0, 0.0));
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> new SpikeDetectionSettings(5, Double.NaN, 0.0));
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> new SpikeDetectionSettings(5, 3.0, -1.0));
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> new SpikeDetectionSettings(5, 3.0, Double.NaN));
+  }
+}
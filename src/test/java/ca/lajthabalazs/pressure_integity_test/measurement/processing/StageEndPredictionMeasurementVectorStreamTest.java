@@ -0,0 +1,295 @@
+package ca.lajthabalazs.pressure_integity_test.measurement.processing;
+
+import ca.lajthabalazs.pressure_integity_test.measurement.streaming.TestMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.config.Duration;
+import ca.lajthabalazs.pressure_integrity_test.config.TestConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.TestConfigStage;
+import ca.lajthabalazs.pressure_integrity_test.measurement.ErrorSeverity;
+import ca.lajthabalazs.pressure_integrity_test.measurement.GasConstant;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Measurement;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementError;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Pressure;
+import ca.lajthabalazs.pressure_integrity_test.measurement.StageIndex;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Temperature;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.AverageGasConstantMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.AveragePressureMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.AverageTemperatureMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.RegressionLeakageMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.StageEndPredictionMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.StageMeasurementVectorStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link StageEndPredictionMeasurementVectorStream}. */
+public class StageEndPredictionMeasurementVectorStreamTest {
+
+  private static final double RHO_INF = 1.16144;
+  private static final double R = 287.0;
+  private static final double T_KELVIN = 293.15;
+  private static final long STEP = 600_000L;
+  private static final long STAGE_MS = 24 * 3600_000L;
+
+  private TestMeasurementVectorStream source;
+  private List<MeasurementVector> predictions;
+  private List<MeasurementVector> regressions;
+
+  @BeforeEach
+  public void setUp() {
+    source = new TestMeasurementVectorStream();
+    predictions = new ArrayList<>();
+    regressions = new ArrayList<>();
+  }
+
+  /** One 24 h stage. */
+  private static TestConfig oneDayStageConfig() {
+    TestConfigStage stage = new TestConfigStage();
+    Duration d = new Duration();
+    d.setHours(24);
+    stage.setDuration(d);
+    TestConfig config = new TestConfig();
+    config.setStages(List.of(stage));
+    return config;
+  }
+
+  private static MeasurementVector vector(long timeUtc, double y, Integer stage) {
+    double pressurePa = RHO_INF * (1.0 + Math.exp(y)) * R * T_KELVIN;
+    List<Measurement> m = new ArrayList<>();
+    m.add(
+        new Pressure(
+            timeUtc,
+            AveragePressureMeasurementVectorStream.AVG_PRESSURE_SOURCE_ID,
+            new BigDecimal(pressurePa)));
+    m.add(
+        new Temperature(
+            timeUtc,
+            AverageTemperatureMeasurementVectorStream.AVG_TEMPERATURE_SOURCE_ID,
+            new BigDecimal("20")));
+    m.add(
+        new GasConstant(
+            timeUtc,
+            AverageGasConstantMeasurementVectorStream.AVG_R_SOURCE_ID,
+            new BigDecimal("287")));
+    if (stage != null) {
+      m.add(new StageIndex(timeUtc, StageMeasurementVectorStream.STAGE_SOURCE_ID, stage));
+    }
+    return new MeasurementVector(timeUtc, m);
+  }
+
+  private static double value(MeasurementVector vector, String sourceId) {
+    return vector.getMeasurementsMap().get(sourceId).getValueInDefaultUnit().doubleValue();
+  }
+
+  private double predicted(int index, String sourceId) {
+    return value(predictions.get(index), sourceId);
+  }
+
+  @Test
+  public void writeState_readState_resumedStreamPublishesSamePredictionsAsUninterrupted()
+      throws Exception {
+    TestMeasurementVectorStream firstRun = new TestMeasurementVectorStream();
+    StageEndPredictionMeasurementVectorStream uninterrupted =
+        new StageEndPredictionMeasurementVectorStream(firstRun, oneDayStageConfig());
+    List<MeasurementVector> expected = new ArrayList<>();
+    uninterrupted.subscribe(expected::add);
+    ByteArrayOutputStream fresh = new ByteArrayOutputStream();
+    uninterrupted.writeState(new DataOutputStream(fresh));
+    Random random = new Random(11);
+    List<MeasurementVector> vectors = new ArrayList<>();
+    for (long t = 0; t <= STAGE_MS / 2; t += STEP) {
+      double y = -2.9 - 2e-7 * (t / 1000.0) + random.nextGaussian() * 1e-4;
+      vectors.add(vector(t, y, t < 3600_000L ? null : 0));
+    }
+    int split = vectors.size() / 2;
+    vectors.subList(0, split).forEach(firstRun::publishToSubscribers);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    uninterrupted.writeState(new DataOutputStream(bytes));
+
+    StageEndPredictionMeasurementVectorStream resumed =
+        new StageEndPredictionMeasurementVectorStream(source, oneDayStageConfig());
+    resumed.readState(new DataInputStream(new ByteArrayInputStream(fresh.toByteArray())));
+    resumed.readState(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    resumed.subscribe(predictions::add);
+    for (MeasurementVector v : vectors.subList(split, vectors.size())) {
+      firstRun.publishToSubscribers(v);
+      source.publishToSubscribers(v);
+    }
+
+    List<MeasurementVector> tail = expected.subList(split, expected.size());
+    Assertions.assertEquals(tail.size(), predictions.size());
+    for (int i = 0; i < tail.size(); i++) {
+      for (String id :
+          List.of(
+              StageEndPredictionMeasurementVectorStream.PREDICTED_LEAKAGE_SOURCE_ID,
+              StageEndPredictionMeasurementVectorStream.PREDICTED_LEAKAGE_SE_SOURCE_ID,
+              StageEndPredictionMeasurementVectorStream.PREDICTED_LEAKAGE_UCL_SOURCE_ID)) {
+        Assertions.assertEquals(value(tail.get(i), id), predicted(i, id), id);
+      }
+    }
+    uninterrupted.stop();
+    resumed.stop();
+  }
+
+  @Test
+  public void prediction_tracksRegression_andUclConvergesAtStageEnd() {
+    StageEndPredictionMeasurementVectorStream stream =
+        new StageEndPredictionMeasurementVectorStream(source, oneDayStageConfig());
+    RegressionLeakageMeasurementVectorStream regression =
+        new RegressionLeakageMeasurementVectorStream(source);
+    stream.subscribe(predictions::add);
+    regression.subscribe(regressions::add);
+
+    Random random = new Random(7);
+    for (long t = 0; t <= STAGE_MS; t += STEP) {
+      double y = -2.9 - 2e-7 * (t / 1000.0) + random.nextGaussian() * 1e-4;
+      source.publishToSubscribers(vector(t, y, 0));
+    }
+
+    Assertions.assertEquals(
+        -1.0, predicted(0, StageEndPredictionMeasurementVectorStream.PREDICTED_LEAKAGE_SOURCE_ID));
+    Assertions.assertTrue(
+        predicted(1, StageEndPredictionMeasurementVectorStream.PREDICTED_LEAKAGE_SOURCE_ID) != -1);
+    Assertions.assertEquals(
+        -1.0,
+        predicted(1, StageEndPredictionMeasurementVectorStream.PREDICTED_LEAKAGE_UCL_SOURCE_ID));
+
+    int mid = predictions.size() / 4;
+    double leakage =
+        predicted(mid, StageEndPredictionMeasurementVectorStream.PREDICTED_LEAKAGE_SOURCE_ID);
+    double predictedUcl =
+        predicted(mid, StageEndPredictionMeasurementVectorStream.PREDICTED_LEAKAGE_UCL_SOURCE_ID);
+    double currentUcl =
+        value(
+            regressions.get(mid),
+            RegressionLeakageMeasurementVectorStream.REGRESSION_LEAKAGE_UCL_SOURCE_ID);
+    Assertions.assertEquals(
+        value(
+            regressions.get(mid),
+            RegressionLeakageMeasurementVectorStream.REGRESSION_LEAKAGE_SOURCE_ID),
+        leakage,
+        1e-6);
+    Assertions.assertTrue(predictedUcl > leakage);
+    Assertions.assertTrue(predictedUcl < currentUcl, "More samples will tighten the limit");
+    Assertions.assertTrue(
+        predicted(mid, StageEndPredictionMeasurementVectorStream.PREDICTED_LEAKAGE_SE_SOURCE_ID)
+            > 0);
+
+    int last = predictions.size() - 1;
+    Assertions.assertEquals(
+        value(
+            regressions.get(last),
+            RegressionLeakageMeasurementVectorStream.REGRESSION_LEAKAGE_UCL_SOURCE_ID),
+        predicted(last, StageEndPredictionMeasurementVectorStream.PREDICTED_LEAKAGE_UCL_SOURCE_ID),
+        1e-6);
+
+    // Past the configured end there is nothing left to project.
+    long overrun = STAGE_MS + STEP;
+    source.publishToSubscribers(vector(overrun, -2.9 - 2e-7 * (overrun / 1000.0), 0));
+    Assertions.assertEquals(
+        value(
+            regressions.get(last + 1),
+            RegressionLeakageMeasurementVectorStream.REGRESSION_LEAKAGE_UCL_SOURCE_ID),
+        predicted(
+            last + 1, StageEndPredictionMeasurementVectorStream.PREDICTED_LEAKAGE_UCL_SOURCE_ID),
+        1e-6);
+    stream.stop();
+    regression.stop();
+  }
+
+  @Test
+  public void outsideConfiguredStages_publishesMinusOne() {
+    StageEndPredictionMeasurementVectorStream stream =
+        new StageEndPredictionMeasurementVectorStream(source, oneDayStageConfig());
+    stream.subscribe(predictions::add);
+
+    for (int i = 0; i < 3; i++) {
+      source.publishToSubscribers(vector(i * STEP, -2.9 - i * 1e-4, null));
+      source.publishToSubscribers(vector(i * STEP + 1, -2.9 - i * 1e-4, -1));
+      source.publishToSubscribers(vector(i * STEP + 2, -2.9 - i * 1e-4, 1));
+    }
+
+    Assertions.assertEquals(9, predictions.size());
+    for (int i = 0; i < predictions.size(); i++) {
+      Assertions.assertEquals(
+          -1.0,
+          predicted(i, StageEndPredictionMeasurementVectorStream.PREDICTED_LEAKAGE_SOURCE_ID));
+      Assertions.assertEquals(
+          -1.0,
+          predicted(i, StageEndPredictionMeasurementVectorStream.PREDICTED_LEAKAGE_SE_SOURCE_ID));
+      Assertions.assertEquals(
+          -1.0,
+          predicted(i, StageEndPredictionMeasurementVectorStream.PREDICTED_LEAKAGE_UCL_SOURCE_ID));
+    }
+    stream.stop();
+  }
+
+  @Test
+  public void infiniteDensity_publishesMinusOne() {
+    StageEndPredictionMeasurementVectorStream stream =
+        new StageEndPredictionMeasurementVectorStream(source, oneDayStageConfig());
+    stream.subscribe(predictions::add);
+    List<Measurement> m = new ArrayList<>(vector(0L, -2.9, 0).getMeasurements());
+    m.set(
+        0,
+        new Pressure(
+            0L,
+            AveragePressureMeasurementVectorStream.AVG_PRESSURE_SOURCE_ID,
+            new BigDecimal("1e400")));
+
+    source.publishToSubscribers(new MeasurementVector(0L, m));
+
+    Assertions.assertEquals(
+        -1.0, predicted(0, StageEndPredictionMeasurementVectorStream.PREDICTED_LEAKAGE_SOURCE_ID));
+    stream.stop();
+  }
+
+  @Test
+  public void stageChange_restartsFit() {
+    TestConfig config = oneDayStageConfig();
+    config.setStages(List.of(config.getStages().get(0), config.getStages().get(0)));
+    StageEndPredictionMeasurementVectorStream stream =
+        new StageEndPredictionMeasurementVectorStream(source, config);
+    stream.subscribe(predictions::add);
+
+    source.publishToSubscribers(vector(0L, -2.9, 0));
+    source.publishToSubscribers(vector(STEP, -2.9001, 0));
+    source.publishToSubscribers(vector(2 * STEP, -2.95, 1));
+
+    Assertions.assertTrue(
+        predicted(1, StageEndPredictionMeasurementVectorStream.PREDICTED_LEAKAGE_SOURCE_ID) > 0);
+    Assertions.assertEquals(
+        -1.0, predicted(2, StageEndPredictionMeasurementVectorStream.PREDICTED_LEAKAGE_SOURCE_ID));
+    stream.stop();
+  }
+
+  @Test
+  public void severeErrorVector_isPassedThrough_invalidVectorIsDropped() {
+    TestConfig config = new TestConfig();
+    config.setStages(null);
+    StageEndPredictionMeasurementVectorStream stream =
+        new StageEndPredictionMeasurementVectorStream(source, config);
+    stream.subscribe(predictions::add);
+    MeasurementVector severe =
+        new MeasurementVector(
+            1000L, List.of(), List.of(new MeasurementError("P1", ErrorSeverity.SEVERE, "Bad")));
+
+    source.publishToSubscribers(severe);
+    source.publishToSubscribers(new MeasurementVector(2000L, List.of()));
+    source.publishToSubscribers(vector(3000L, Double.NEGATIVE_INFINITY, 0));
+
+    Assertions.assertEquals(List.of(severe), predictions);
+    Assertions.assertEquals(List.of(), stream.listSensors());
+    stream.stop();
+    stream.stop();
+    Assertions.assertTrue(source.getSubscribers().isEmpty());
+  }
+}
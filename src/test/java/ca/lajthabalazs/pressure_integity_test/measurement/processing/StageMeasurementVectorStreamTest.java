@@ -0,0 +1,255 @@
+package ca.lajthabalazs.pressure_integity_test.measurement.processing;
+
+import ca.lajthabalazs.pressure_integity_test.measurement.streaming.TestMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.config.Duration;
+import ca.lajthabalazs.pressure_integrity_test.config.Quantity;
+import ca.lajthabalazs.pressure_integrity_test.config.TestConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.TestConfigStage;
+import ca.lajthabalazs.pressure_integrity_test.measurement.ErrorSeverity;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Measurement;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementError;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Pressure;
+import ca.lajthabalazs.pressure_integrity_test.measurement.StageIndex;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.AveragePressureMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.StageMeasurementVectorStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link StageMeasurementVectorStream}. */
+public class StageMeasurementVectorStreamTest {
+
+  private static final long HOUR = 3600_000L;
+
+  private TestMeasurementVectorStream source;
+  private List<MeasurementVector> received;
+
+  @BeforeEach
+  public void setUp() {
+    source = new TestMeasurementVectorStream();
+    received = new ArrayList<>();
+  }
+
+  private static Quantity quantity(String value, String unit) {
+    Quantity q = new Quantity();
+    q.setValue(new BigDecimal(value));
+    q.setUnit(unit);
+    return q;
+  }
+
+  private static TestConfigStage stage(String overpressureBar, int hours) {
+    TestConfigStage s = new TestConfigStage();
+    s.setOverpressure(quantity(overpressureBar, Pressure.BAR));
+    Duration d = new Duration();
+    d.setHours(hours);
+    s.setDuration(d);
+    return s;
+  }
+
+  /** Ambient 1 bar; stages at +0.5 bar for 2 h and +1.5 bar for 1 h. */
+  static TestConfig twoStageConfig() {
+    TestConfig config = new TestConfig();
+    config.setAmbientPressure(quantity("100000", Pressure.PASCAL));
+    config.setStages(List.of(stage("0.5", 2), stage("1.5", 1)));
+    return config;
+  }
+
+  private static MeasurementVector pressureVector(long timeUtc, String pascal) {
+    return new MeasurementVector(
+        timeUtc,
+        List.of(
+            new Pressure(
+                timeUtc,
+                AveragePressureMeasurementVectorStream.AVG_PRESSURE_SOURCE_ID,
+                new BigDecimal(pascal))));
+  }
+
+  private int lastStage() {
+    Integer stage = StageMeasurementVectorStream.stageOf(received.get(received.size() - 1));
+    Assertions.assertNotNull(stage);
+    return stage;
+  }
+
+  @Test
+  public void stagesAreEnteredOnPlateauAndEndAfterDuration() {
+    StageMeasurementVectorStream stream =
+        new StageMeasurementVectorStream(source, twoStageConfig(), 1000.0);
+    stream.subscribe(received::add);
+    Assertions.assertEquals(2, stream.getStageCount());
+
+    source.publishToSubscribers(pressureVector(0L, "100000"));
+    Assertions.assertEquals(StageMeasurementVectorStream.NO_STAGE, lastStage());
+    source.publishToSubscribers(pressureVector(HOUR / 2, "149500"));
+    Assertions.assertEquals(0, lastStage());
+    Assertions.assertEquals(0, stream.getCurrentStage());
+    source.publishToSubscribers(pressureVector(HOUR / 2 + 2 * HOUR, "150300"));
+    Assertions.assertEquals(0, lastStage(), "Stage still running at exactly its duration");
+    source.publishToSubscribers(pressureVector(3 * HOUR, "150000"));
+    Assertions.assertEquals(StageMeasurementVectorStream.NO_STAGE, lastStage());
+    source.publishToSubscribers(pressureVector(4 * HOUR, "200000"));
+    Assertions.assertEquals(StageMeasurementVectorStream.NO_STAGE, lastStage());
+    source.publishToSubscribers(pressureVector(5 * HOUR, "250000"));
+    Assertions.assertEquals(1, lastStage());
+    source.publishToSubscribers(pressureVector(7 * HOUR, "250000"));
+    Assertions.assertEquals(StageMeasurementVectorStream.NO_STAGE, lastStage());
+    source.publishToSubscribers(pressureVector(8 * HOUR, "150000"));
+    Assertions.assertEquals(StageMeasurementVectorStream.NO_STAGE, lastStage(), "No more stages");
+
+    Measurement tag = received.get(1).getMeasurementsMap().get("STAGE");
+    Assertions.assertInstanceOf(StageIndex.class, tag);
+    Assertions.assertEquals(HOUR / 2, tag.getTimeUtc());
+    stream.stop();
+  }
+
+  @Test
+  public void leavingPlateau_endsStageEarly() {
+    StageMeasurementVectorStream stream =
+        new StageMeasurementVectorStream(source, twoStageConfig());
+    stream.subscribe(received::add);
+
+    source.publishToSubscribers(pressureVector(0L, "150000"));
+    Assertions.assertEquals(0, lastStage());
+    source.publishToSubscribers(pressureVector(HOUR, "120000"));
+    source.publishToSubscribers(pressureVector(HOUR + 1000L, "115000"));
+    Assertions.assertEquals(0, lastStage(), "Off the plateau for fewer than three vectors");
+    source.publishToSubscribers(pressureVector(HOUR + 2000L, "110000"));
+    Assertions.assertEquals(StageMeasurementVectorStream.NO_STAGE, lastStage());
+    source.publishToSubscribers(pressureVector(HOUR + 3000L, "150000"));
+    Assertions.assertEquals(
+        StageMeasurementVectorStream.NO_STAGE, lastStage(), "A finished stage is not re-entered");
+    stream.stop();
+  }
+
+  @Test
+  public void singleOutlierInsideStage_keepsStage() {
+    StageMeasurementVectorStream stream =
+        new StageMeasurementVectorStream(source, twoStageConfig());
+    stream.subscribe(received::add);
+
+    source.publishToSubscribers(pressureVector(0L, "150000"));
+    source.publishToSubscribers(pressureVector(HOUR / 2, "150100"));
+    source.publishToSubscribers(pressureVector(HOUR, "90000"));
+    Assertions.assertEquals(0, lastStage(), "Outlier is tagged with the running stage");
+    source.publishToSubscribers(pressureVector(HOUR + 60_000L, "149900"));
+    source.publishToSubscribers(pressureVector(HOUR + 120_000L, "120000"));
+    source.publishToSubscribers(pressureVector(HOUR + 180_000L, "120000"));
+    source.publishToSubscribers(pressureVector(HOUR + 240_000L, "150000"));
+    Assertions.assertEquals(0, lastStage(), "Off-plateau count restarts on the plateau");
+    source.publishToSubscribers(pressureVector(2 * HOUR, "150000"));
+
+    for (MeasurementVector vector : received) {
+      Assertions.assertEquals(0, StageMeasurementVectorStream.stageOf(vector));
+    }
+    Assertions.assertEquals(0, stream.getCurrentStage());
+    stream.stop();
+  }
+
+  @Test
+  public void plateauExitSamples_configurable() {
+    StageMeasurementVectorStream stream =
+        new StageMeasurementVectorStream(source, twoStageConfig(), 2000.0, 1);
+    stream.subscribe(received::add);
+
+    source.publishToSubscribers(pressureVector(0L, "150000"));
+    source.publishToSubscribers(pressureVector(HOUR, "120000"));
+
+    Assertions.assertEquals(StageMeasurementVectorStream.NO_STAGE, lastStage());
+    stream.stop();
+  }
+
+  @Test
+  public void vectorWithoutAveragePressure_keepsStageUntilDurationElapsed() {
+    StageMeasurementVectorStream stream =
+        new StageMeasurementVectorStream(source, twoStageConfig());
+    stream.subscribe(received::add);
+
+    source.publishToSubscribers(new MeasurementVector(0L, List.of()));
+    Assertions.assertEquals(StageMeasurementVectorStream.NO_STAGE, lastStage());
+    source.publishToSubscribers(pressureVector(1000L, "150000"));
+    source.publishToSubscribers(new MeasurementVector(HOUR, List.of()));
+    Assertions.assertEquals(0, lastStage());
+    source.publishToSubscribers(new MeasurementVector(3 * HOUR, List.of()));
+    Assertions.assertEquals(StageMeasurementVectorStream.NO_STAGE, lastStage());
+    stream.stop();
+  }
+
+  @Test
+  public void severeErrorVector_isPassedThroughUntagged() {
+    StageMeasurementVectorStream stream =
+        new StageMeasurementVectorStream(source, twoStageConfig());
+    stream.subscribe(received::add);
+    MeasurementVector severe =
+        new MeasurementVector(
+            1000L, List.of(), List.of(new MeasurementError("P1", ErrorSeverity.SEVERE, "Bad")));
+
+    source.publishToSubscribers(severe);
+
+    Assertions.assertSame(severe, received.get(0));
+    Assertions.assertNull(StageMeasurementVectorStream.stageOf(severe));
+    stream.stop();
+  }
+
+  @Test
+  public void configWithoutStages_tagsEveryVectorAsNoStage() {
+    TestConfig config = new TestConfig();
+    config.setStages(null);
+    StageMeasurementVectorStream stream = new StageMeasurementVectorStream(source, config);
+    stream.subscribe(received::add);
+
+    source.publishToSubscribers(pressureVector(0L, "150000"));
+
+    Assertions.assertEquals(0, stream.getStageCount());
+    Assertions.assertEquals(StageMeasurementVectorStream.NO_STAGE, lastStage());
+    Assertions.assertEquals(List.of(), stream.listSensors());
+    stream.stop();
+  }
+
+  @Test
+  public void invalidArguments_throw() {
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> new StageMeasurementVectorStream(source, twoStageConfig(), 0.0));
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> new StageMeasurementVectorStream(source, twoStageConfig(), Double.NaN));
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> new StageMeasurementVectorStream(source, twoStageConfig(), 2000.0, 0));
+    TestConfig noAmbient = twoStageConfig();
+    noAmbient.setAmbientPressure(null);
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> new StageMeasurementVectorStream(source, noAmbient));
+    Assertions.assertTrue(source.getSubscribers().isEmpty());
+  }
+
+  @Test
+  public void stageOf_ignoresTagWithoutValue() {
+    MeasurementVector vector =
+        new MeasurementVector(
+            0L,
+            List.of(
+                new StageIndex(
+                    0L, StageMeasurementVectorStream.STAGE_SOURCE_ID, (BigDecimal) null)));
+    Assertions.assertNull(StageMeasurementVectorStream.stageOf(vector));
+  }
+
+  @Test
+  public void stop_unsubscribesAndRestartsFromFirstStage() {
+    StageMeasurementVectorStream stream =
+        new StageMeasurementVectorStream(source, twoStageConfig());
+    stream.subscribe(received::add);
+    source.publishToSubscribers(pressureVector(0L, "150000"));
+    Assertions.assertEquals(0, stream.getCurrentStage());
+
+    stream.stop();
+    stream.stop();
+
+    Assertions.assertEquals(StageMeasurementVectorStream.NO_STAGE, stream.getCurrentStage());
+    Assertions.assertTrue(source.getSubscribers().isEmpty());
+    Assertions.assertTrue(stream.getSubscribers().isEmpty());
+  }
+}
@@ -0,0 +1,88 @@
+package ca.lajthabalazs.pressure_integity_test.measurement.processing;
+
+import ca.lajthabalazs.pressure_integrity_test.measurement.ErrorSeverity;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Leakage;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Measurement;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementError;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import ca.lajthabalazs.pressure_integrity_test.measurement.StageIndex;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Temperature;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.StageMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.StageResult;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.StageResultCollector;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link StageResultCollector} and {@link StageResult}. */
+public class StageResultCollectorTest {
+
+  private static MeasurementVector tagged(long timeUtc, int stage, String leakage) {
+    List<Measurement> m = new ArrayList<>();
+    m.add(new Temperature(timeUtc, "T1", new BigDecimal("20")));
+    m.add(new StageIndex(timeUtc, StageMeasurementVectorStream.STAGE_SOURCE_ID, stage));
+    m.add(new Leakage(timeUtc, "LEAKAGE", new BigDecimal(leakage)));
+    return new MeasurementVector(timeUtc, m);
+  }
+
+  @Test
+  public void resultIsSnapshottedFromLastVectorOfEachStage() {
+    StageResultCollector collector = new StageResultCollector();
+
+    collector.handle(tagged(0L, -1, "-1"));
+    collector.handle(tagged(1000L, 0, "-1"));
+    collector.handle(tagged(2000L, 0, "0.5"));
+    collector.handle(tagged(3000L, 0, "0.4"));
+    Assertions.assertEquals(List.of(), collector.getResults());
+    collector.handle(tagged(4000L, -1, "0.9"));
+    collector.handle(tagged(5000L, 1, "-1"));
+    collector.handle(tagged(6000L, 1, "0.2"));
+
+    List<StageResult> results = collector.getResults();
+    Assertions.assertEquals(1, results.size());
+    Assertions.assertEquals(
+        new StageResult(0, 1000L, 3000L, 3, Map.of("LEAKAGE", new BigDecimal("0.4"))),
+        results.get(0));
+
+    collector.flush();
+    collector.flush();
+    results = collector.getResults();
+    Assertions.assertEquals(2, results.size());
+    Assertions.assertEquals(1, results.get(1).stageIndex());
+    Assertions.assertEquals(5000L, results.get(1).startTimeUtc());
+    Assertions.assertEquals(6000L, results.get(1).endTimeUtc());
+    Assertions.assertEquals(2, results.get(1).vectorCount());
+  }
+
+  @Test
+  public void directStageChange_closesPreviousStage() {
+    StageResultCollector collector = new StageResultCollector();
+    collector.handle(tagged(1000L, 0, "0.1"));
+    collector.handle(tagged(2000L, 1, "0.3"));
+    collector.flush();
+
+    List<StageResult> results = collector.getResults();
+    Assertions.assertEquals(2, results.size());
+    Assertions.assertEquals(
+        new BigDecimal("0.1"), results.get(0).leakageBySourceId().get("LEAKAGE"));
+    Assertions.assertEquals(
+        new BigDecimal("0.3"), results.get(1).leakageBySourceId().get("LEAKAGE"));
+  }
+
+  @Test
+  public void untaggedAndSevereVectors_areIgnored() {
+    StageResultCollector collector = new StageResultCollector();
+    collector.handle(new MeasurementVector(0L, List.of()));
+    collector.handle(
+        new MeasurementVector(
+            1000L,
+            tagged(1000L, 0, "0.1").getMeasurements(),
+            List.of(new MeasurementError("T1", ErrorSeverity.SEVERE, "Bad"))));
+    collector.flush();
+
+    Assertions.assertEquals(List.of(), collector.getResults());
+  }
+}
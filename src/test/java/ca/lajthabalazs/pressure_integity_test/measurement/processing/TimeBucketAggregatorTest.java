@@ -0,0 +1,343 @@
+package ca.lajthabalazs.pressure_integity_test.measurement.processing;
+
+import ca.lajthabalazs.pressure_integity_test.measurement.streaming.TestMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.config.PressureSensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.SensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.measurement.ErrorSeverity;
+import ca.lajthabalazs.pressure_integrity_test.measurement.GasConstant;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Humidity;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Leakage;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Measurement;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementError;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Pressure;
+import ca.lajthabalazs.pressure_integrity_test.measurement.StageIndex;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Temperature;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.BucketSummary;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.TimeBucketAggregator;
+import ca.lajthabalazs.pressure_integrity_test.measurement.streaming.MeasurementVectorStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link TimeBucketAggregator} and {@link BucketSummary}. */
+public class TimeBucketAggregatorTest {
+
+  private static final long MINUTE = 60_000L;
+
+  private TestMeasurementVectorStream source;
+  private List<BucketSummary> summaries;
+
+  @BeforeEach
+  public void setUp() {
+    source = new TestMeasurementVectorStream();
+    summaries = new ArrayList<>();
+  }
+
+  private static MeasurementVector vector(long timeUtc, double pressure, double temperature) {
+    return new MeasurementVector(
+        timeUtc,
+        List.of(
+            new Pressure(timeUtc, "P1", BigDecimal.valueOf(pressure)),
+            new Temperature(timeUtc, "T1", BigDecimal.valueOf(temperature))));
+  }
+
+  private static BucketSummary only(List<BucketSummary> summaries, long bucketMs) {
+    List<BucketSummary> matching =
+        summaries.stream().filter(s -> s.bucketMs() == bucketMs).toList();
+    Assertions.assertEquals(1, matching.size());
+    return matching.get(0);
+  }
+
+  @Test
+  public void bucketsOfSeveralWidths_summarizeMinMaxMeanLast() {
+    TimeBucketAggregator aggregator =
+        new TimeBucketAggregator(source, List.of(MINUTE, 10 * MINUTE));
+    aggregator.subscribe(summaries::add);
+
+    source.publishToSubscribers(vector(0L, 100.0, 20.0));
+    source.publishToSubscribers(vector(20_000L, 103.0, 21.0));
+    source.publishToSubscribers(vector(40_000L, 102.0, 19.0));
+    Assertions.assertEquals(List.of(), summaries);
+
+    source.publishToSubscribers(vector(MINUTE, 110.0, 22.0));
+
+    BucketSummary minute = only(summaries, MINUTE);
+    Assertions.assertEquals(0L, minute.startTimeUtc());
+    Assertions.assertEquals(MINUTE, minute.endTimeUtc());
+    Assertions.assertEquals(2, minute.size());
+    int p = minute.indexOf("P1");
+    Assertions.assertEquals("P1", minute.sensorId(p));
+    Assertions.assertEquals(3, minute.count(p));
+    Assertions.assertEquals(100.0, minute.min(p));
+    Assertions.assertEquals(103.0, minute.max(p));
+    Assertions.assertEquals(101.666666, minute.mean(p), 1e-5);
+    Assertions.assertEquals(102.0, minute.last(p));
+    int t = minute.indexOf("T1");
+    Assertions.assertEquals(19.0, minute.min(t));
+    Assertions.assertEquals(21.0, minute.max(t));
+    Assertions.assertEquals(-1, minute.indexOf("H1"));
+
+    aggregator.flush();
+    Assertions.assertEquals(3, summaries.size());
+    BucketSummary tenMinutes = only(summaries, 10 * MINUTE);
+    Assertions.assertEquals(4, tenMinutes.count(tenMinutes.indexOf("P1")));
+    Assertions.assertEquals(110.0, tenMinutes.max(tenMinutes.indexOf("P1")));
+    Assertions.assertEquals(110.0, tenMinutes.last(tenMinutes.indexOf("P1")));
+    aggregator.stop();
+  }
+
+  @Test
+  public void meanStream_publishesTypedMeansAtBucketStart() {
+    TestMeasurementVectorStream withSchema =
+        new TestMeasurementVectorStream() {
+          @Override
+          public List<SensorConfig> listSensors() {
+            PressureSensorConfig p = new PressureSensorConfig();
+            p.setId("P1");
+            return List.of(p);
+          }
+        };
+    TimeBucketAggregator aggregator = new TimeBucketAggregator(withSchema, List.of(MINUTE));
+    MeasurementVectorStream means = aggregator.meanStream(MINUTE);
+    List<MeasurementVector> received = new ArrayList<>();
+    means.subscribe(received::add);
+
+    withSchema.publishToSubscribers(vector(5_000L, 100.0, 20.0));
+    withSchema.publishToSubscribers(vector(35_000L, 104.0, 22.0));
+    aggregator.advanceTo(MINUTE - 1);
+    Assertions.assertEquals(List.of(), received);
+    aggregator.advanceTo(MINUTE);
+
+    Assertions.assertEquals(1, received.size());
+    MeasurementVector mean = received.get(0);
+    Assertions.assertEquals(0L, mean.getTimeUtc());
+    Measurement pressure = mean.getMeasurementsMap().get("P1");
+    Assertions.assertInstanceOf(Pressure.class, pressure);
+    Assertions.assertEquals(0, new BigDecimal("102").compareTo(pressure.getValueInDefaultUnit()));
+    Assertions.assertEquals(0L, pressure.getTimeUtc());
+    Assertions.assertInstanceOf(Temperature.class, mean.getMeasurementsMap().get("T1"));
+    Assertions.assertEquals("P1", mean.getMeasurements().get(0).getSourceId(), "Schema order");
+    Assertions.assertEquals("P1", means.listSensors().get(0).getId());
+    aggregator.stop();
+    Assertions.assertTrue(means.getSubscribers().isEmpty());
+  }
+
+  @Test
+  public void emptyBucketsAreSkipped_lateVectorsAreCounted() {
+    TimeBucketAggregator aggregator = new TimeBucketAggregator(source, List.of(MINUTE));
+    aggregator.subscribe(summaries::add);
+
+    source.publishToSubscribers(vector(MINUTE + 1_000L, 1.0, 1.0));
+    source.publishToSubscribers(vector(30_000L, 2.0, 2.0));
+    source.publishToSubscribers(vector(5 * MINUTE, 3.0, 3.0));
+    source.publishToSubscribers(vector(4 * MINUTE, 4.0, 4.0));
+    source.publishToSubscribers(vector(MINUTE + 5_000L, 5.0, 5.0));
+    aggregator.flush();
+    aggregator.flush();
+
+    Assertions.assertEquals(2, summaries.size());
+    Assertions.assertEquals(MINUTE, summaries.get(0).startTimeUtc());
+    Assertions.assertEquals(1, summaries.get(0).count(0));
+    Assertions.assertEquals(5 * MINUTE, summaries.get(1).startTimeUtc());
+    Assertions.assertEquals(3.0, summaries.get(1).mean(0));
+    Assertions.assertEquals(3, aggregator.getLateCount());
+    aggregator.stop();
+    Assertions.assertEquals(0, aggregator.getLateCount());
+  }
+
+  @Test
+  public void severeSensorsAndMissingValuesAreNotAggregated() {
+    TimeBucketAggregator aggregator = new TimeBucketAggregator(source, List.of(MINUTE));
+    aggregator.subscribe(summaries::add);
+
+    source.publishToSubscribers(
+        new MeasurementVector(
+            0L,
+            vector(0L, 999.0, 20.0).getMeasurements(),
+            List.of(
+                new MeasurementError("P1", ErrorSeverity.SEVERE, "Out of range"),
+                new MeasurementError("T1", ErrorSeverity.WARNING, "Stale"))));
+    source.publishToSubscribers(
+        new MeasurementVector(1_000L, List.of(new Pressure(1_000L, "P1", (BigDecimal) null))));
+    source.publishToSubscribers(vector(2_000L, 100.0, 22.0));
+    aggregator.flush();
+
+    BucketSummary summary = summaries.get(0);
+    Assertions.assertEquals(1, summary.count(summary.indexOf("P1")));
+    Assertions.assertEquals(100.0, summary.max(summary.indexOf("P1")));
+    Assertions.assertEquals(2, summary.count(summary.indexOf("T1")));
+    aggregator.stop();
+  }
+
+  @Test
+  public void manySensors_growAccumulators() {
+    TimeBucketAggregator aggregator = new TimeBucketAggregator(source, List.of(MINUTE));
+    aggregator.subscribe(summaries::add);
+    List<Measurement> measurements = new ArrayList<>();
+    for (int i = 0; i < 74; i++) {
+      measurements.add(new Pressure(0L, "P" + i, BigDecimal.valueOf(i)));
+    }
+    source.publishToSubscribers(new MeasurementVector(0L, measurements));
+    aggregator.flush();
+
+    Assertions.assertEquals(74, summaries.get(0).size());
+    Assertions.assertEquals(73.0, summaries.get(0).mean(summaries.get(0).indexOf("P73")));
+    aggregator.stop();
+  }
+
+  @Test
+  public void failingHandler_doesNotStopOthers_unsubscribeStopsDelivery() {
+    TimeBucketAggregator aggregator = new TimeBucketAggregator(source, List.of(MINUTE));
+    aggregator.subscribe(
+        s -> {
+          throw new IllegalStateException("Failing handler does not stop others");
+        });
+    MeasurementVectorStream.Subscription subscription = aggregator.subscribe(summaries::add);
+
+    source.publishToSubscribers(vector(0L, 1.0, 1.0));
+    aggregator.flush();
+    subscription.unsubscribe();
+    source.publishToSubscribers(vector(MINUTE, 1.0, 1.0));
+    aggregator.flush();
+
+    Assertions.assertEquals(1, summaries.size());
+    aggregator.stop();
+  }
+
+  @Test
+  public void stop_discardsOpenBucketsAndUnsubscribes() {
+    TimeBucketAggregator aggregator = new TimeBucketAggregator(source, List.of(MINUTE));
+    aggregator.subscribe(summaries::add);
+    source.publishToSubscribers(vector(0L, 1.0, 1.0));
+
+    aggregator.stop();
+    aggregator.stop();
+    aggregator.flush();
+
+    Assertions.assertEquals(List.of(), summaries);
+    Assertions.assertTrue(source.getSubscribers().isEmpty());
+  }
+
+  private static MeasurementVector everyType(long timeUtc, double value) {
+    BigDecimal v = BigDecimal.valueOf(value);
+    return new MeasurementVector(
+        timeUtc,
+        List.of(
+            new Pressure(timeUtc, "P1", v),
+            new Temperature(timeUtc, "T1", v),
+            new Humidity(timeUtc, "H1", v),
+            new GasConstant(timeUtc, "R1", v),
+            new Leakage(timeUtc, "L1", v),
+            new StageIndex(timeUtc, "S1", v)));
+  }
+
+  private static byte[] state(TimeBucketAggregator aggregator) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    aggregator.writeState(new DataOutputStream(bytes));
+    return bytes.toByteArray();
+  }
+
+  @Test
+  public void writeState_readState_resumedAggregatorClosesSameBuckets() throws Exception {
+    TestMeasurementVectorStream firstRun = new TestMeasurementVectorStream();
+    TimeBucketAggregator uninterrupted =
+        new TimeBucketAggregator(firstRun, List.of(MINUTE, 10 * MINUTE));
+    firstRun.publishToSubscribers(everyType(0L, 1.0));
+    firstRun.publishToSubscribers(everyType(50_000L, 2.0));
+    firstRun.publishToSubscribers(everyType(70_000L, 4.0));
+    firstRun.publishToSubscribers(everyType(30_000L, 8.0));
+    byte[] state = state(uninterrupted);
+
+    TimeBucketAggregator resumed = new TimeBucketAggregator(source, List.of(MINUTE, 10 * MINUTE));
+    resumed.readState(new DataInputStream(new ByteArrayInputStream(state)));
+    List<BucketSummary> expected = new ArrayList<>();
+    uninterrupted.subscribe(expected::add);
+    resumed.subscribe(summaries::add);
+    List<MeasurementVector> expectedMeans = new ArrayList<>();
+    List<MeasurementVector> means = new ArrayList<>();
+    uninterrupted.meanStream(10 * MINUTE).subscribe(expectedMeans::add);
+    resumed.meanStream(10 * MINUTE).subscribe(means::add);
+    firstRun.publishToSubscribers(everyType(100_000L, 16.0));
+    source.publishToSubscribers(everyType(100_000L, 16.0));
+    uninterrupted.flush();
+    resumed.flush();
+
+    Assertions.assertEquals(1, resumed.getLateCount());
+    Assertions.assertEquals(expected.size(), summaries.size());
+    for (int i = 0; i < expected.size(); i++) {
+      BucketSummary e = expected.get(i);
+      BucketSummary a = summaries.get(i);
+      Assertions.assertEquals(e.startTimeUtc(), a.startTimeUtc());
+      Assertions.assertEquals(e.size(), a.size());
+      for (int k = 0; k < e.size(); k++) {
+        Assertions.assertEquals(e.sensorId(k), a.sensorId(k));
+        Assertions.assertEquals(e.count(k), a.count(k));
+        Assertions.assertEquals(e.min(k), a.min(k));
+        Assertions.assertEquals(e.max(k), a.max(k));
+        Assertions.assertEquals(e.mean(k), a.mean(k));
+        Assertions.assertEquals(e.last(k), a.last(k));
+      }
+    }
+    Assertions.assertEquals(1, means.size());
+    for (Measurement m : expectedMeans.get(0).getMeasurements()) {
+      Measurement restored = means.get(0).getMeasurementsMap().get(m.getSourceId());
+      Assertions.assertSame(m.getClass(), restored.getClass());
+      Assertions.assertEquals(
+          0, m.getValueInDefaultUnit().compareTo(restored.getValueInDefaultUnit()));
+      Assertions.assertEquals(0L, restored.getTimeUtc());
+    }
+    uninterrupted.stop();
+    resumed.stop();
+  }
+
+  @Test
+  public void readState_unknownMeasurementTypeThrows() throws Exception {
+    TimeBucketAggregator aggregator = new TimeBucketAggregator(source, List.of(MINUTE));
+    source.publishToSubscribers(
+        new MeasurementVector(
+            0L,
+            List.of(
+                new Measurement(0L, "X1", "u", BigDecimal.ONE) {
+                  @Override
+                  public Measurement withNewTimestamp(long newTimestamp) {
+                    return this;
+                  }
+
+                  @Override
+                  public Measurement withNewValueInDefaultUnit(BigDecimal newValue) {
+                    return this;
+                  }
+                })));
+    byte[] state = state(aggregator);
+
+    Assertions.assertThrows(
+        IOException.class,
+        () -> aggregator.readState(new DataInputStream(new ByteArrayInputStream(state))));
+    aggregator.stop();
+  }
+
+  @Test
+  public void invalidArguments_throw() {
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> new TimeBucketAggregator(source, List.of()));
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> new TimeBucketAggregator(source, List.of(0L)));
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> new TimeBucketAggregator(source, List.of(MINUTE, MINUTE)));
+    Assertions.assertTrue(source.getSubscribers().isEmpty());
+
+    TimeBucketAggregator aggregator = new TimeBucketAggregator(source, List.of(MINUTE));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> aggregator.meanStream(1L));
+    aggregator.stop();
+  }
+}
@@ -0,0 +1,253 @@
+package ca.lajthabalazs.pressure_integity_test.measurement.streaming;
+
+import ca.lajthabalazs.pressure_integrity_test.config.SensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.TemperatureSensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.measurement.ErrorSeverity;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Measurement;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Pressure;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Temperature;
+import ca.lajthabalazs.pressure_integrity_test.measurement.streaming.InterpolatingMeasurementVectorStreamMerger;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link InterpolatingMeasurementVectorStreamMerger}. */
+public class InterpolatingMeasurementVectorStreamMergerTest {
+
+  private TestMeasurementVectorStream timingStream;
+  private TestMeasurementVectorStream dataStream;
+  private InterpolatingMeasurementVectorStreamMerger merger;
+  private List<MeasurementVector> received;
+
+  @BeforeEach
+  public void setUp() {
+    timingStream = new TestMeasurementVectorStream();
+    dataStream = new TestMeasurementVectorStream();
+    received = new ArrayList<>();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    if (merger != null) {
+      merger.stop();
+    }
+  }
+
+  private void data(Measurement... measurements) {
+    dataStream.publishToSubscribers(
+        new MeasurementVector(measurements[0].getTimeUtc(), List.of(measurements)));
+  }
+
+  private MeasurementVector tick(long time) {
+    timingStream.publishToSubscribers(new MeasurementVector(time, List.of()));
+    return received.get(received.size() - 1);
+  }
+
+  private static void assertValue(String expected, Measurement m) {
+    Assertions.assertEquals(
+        0,
+        new BigDecimal(expected).compareTo(m.getValueInDefaultUnit()),
+        "Expected " + expected + " but was " + m.getValueInDefaultUnit());
+  }
+
+  @Test
+  public void tickBetweenSamples_isInterpolatedAtTickTime() {
+    merger = new InterpolatingMeasurementVectorStreamMerger(timingStream, dataStream, 0L);
+    merger.subscribe(received::add);
+    data(new Pressure(1000L, "P1", new BigDecimal("100000")));
+    data(new Pressure(2000L, "P1", new BigDecimal("100100")));
+
+    MeasurementVector merged = tick(1250L);
+
+    Assertions.assertEquals(1250L, merged.getTimeUtc());
+    Assertions.assertTrue(merged.getErrors().isEmpty());
+    Measurement p1 = merged.getMeasurements().get(0);
+    Assertions.assertInstanceOf(Pressure.class, p1);
+    Assertions.assertEquals(1250L, p1.getTimeUtc());
+    assertValue("100025", p1);
+  }
+
+  @Test
+  public void tickOnSample_usesSampleUnchanged() {
+    merger = new InterpolatingMeasurementVectorStreamMerger(timingStream, dataStream, 0L);
+    merger.subscribe(received::add);
+    Temperature first = new Temperature(1000L, "T1", new BigDecimal("20"));
+    Temperature second = new Temperature(2000L, "T1", new BigDecimal("22"));
+    data(first);
+    data(second);
+
+    Assertions.assertSame(first, tick(1000L).getMeasurements().get(0));
+    Assertions.assertSame(second, tick(2000L).getMeasurements().get(0));
+  }
+
+  @Test
+  public void tickAfterLastSample_withinBound_isExtrapolatedWithWarning() {
+    merger = new InterpolatingMeasurementVectorStreamMerger(timingStream, dataStream, 1000L);
+    merger.subscribe(received::add);
+    data(new Temperature(1000L, "T1", new BigDecimal("20")));
+    data(new Temperature(2000L, "T1", new BigDecimal("21")));
+
+    MeasurementVector merged = tick(2500L);
+
+    assertValue("21.5", merged.getMeasurements().get(0));
+    Assertions.assertEquals(2500L, merged.getMeasurements().get(0).getTimeUtc());
+    Assertions.assertEquals(1, merged.getErrors().size());
+    Assertions.assertEquals("T1", merged.getErrors().get(0).sensorId());
+    Assertions.assertEquals(ErrorSeverity.WARNING, merged.getErrors().get(0).severity());
+    Assertions.assertFalse(merged.hasSevereError());
+  }
+
+  @Test
+  public void tickBeforeFirstSample_withinBound_isExtrapolatedBackwards() {
+    merger = new InterpolatingMeasurementVectorStreamMerger(timingStream, dataStream, 500L);
+    merger.subscribe(received::add);
+    data(new Temperature(1000L, "T1", new BigDecimal("20")));
+    data(new Temperature(2000L, "T1", new BigDecimal("22")));
+
+    MeasurementVector merged = tick(500L);
+
+    assertValue("19", merged.getMeasurements().get(0));
+    Assertions.assertEquals(1, merged.getErrors().size());
+  }
+
+  @Test
+  public void singleSample_withinBound_isHeld() {
+    merger = new InterpolatingMeasurementVectorStreamMerger(timingStream, dataStream, 1000L);
+    merger.subscribe(received::add);
+    data(new Temperature(1000L, "T1", new BigDecimal("20")));
+
+    MeasurementVector merged = tick(1400L);
+
+    assertValue("20", merged.getMeasurements().get(0));
+    Assertions.assertEquals(1400L, merged.getMeasurements().get(0).getTimeUtc());
+    Assertions.assertEquals(1, merged.getErrors().size());
+  }
+
+  @Test
+  public void tickBeyondBound_omitsSensorWithWarning() {
+    merger = new InterpolatingMeasurementVectorStreamMerger(timingStream, dataStream, 1000L);
+    merger.subscribe(received::add);
+    data(new Temperature(1000L, "T1", new BigDecimal("20")));
+    data(new Pressure(4900L, "P1", new BigDecimal("100000")));
+
+    MeasurementVector merged = tick(5000L);
+
+    Assertions.assertEquals(
+        List.of("P1"), merged.getMeasurements().stream().map(Measurement::getSourceId).toList());
+    Assertions.assertEquals(2, merged.getErrors().size());
+    Assertions.assertEquals("T1", merged.getErrors().get(0).sensorId());
+    Assertions.assertEquals("P1", merged.getErrors().get(1).sensorId());
+  }
+
+  @Test
+  public void ringKeepsOnlyMostRecentSamples_andIgnoresOutOfOrderSamples() {
+    merger = new InterpolatingMeasurementVectorStreamMerger(timingStream, dataStream, 0L, 2);
+    merger.subscribe(received::add);
+    data(new Temperature(1000L, "T1", new BigDecimal("10")));
+    data(new Temperature(2000L, "T1", new BigDecimal("20")));
+    data(new Temperature(3000L, "T1", new BigDecimal("30")));
+    data(new Temperature(2500L, "T1", new BigDecimal("99")));
+
+    // The 1000 ms sample has been evicted, so 1500 ms is outside the ring.
+    MeasurementVector early = tick(1500L);
+    Assertions.assertTrue(early.getMeasurements().isEmpty());
+    Assertions.assertEquals(1, early.getErrors().size());
+
+    assertValue("25", tick(2500L).getMeasurements().get(0));
+  }
+
+  @Test
+  public void sampleWithSameTimestamp_replacesNewest() {
+    merger = new InterpolatingMeasurementVectorStreamMerger(timingStream, dataStream, 0L);
+    merger.subscribe(received::add);
+    data(new Temperature(1000L, "T1", new BigDecimal("10")));
+    Temperature replacement = new Temperature(1000L, "T1", new BigDecimal("11"));
+    data(replacement);
+
+    Assertions.assertSame(replacement, tick(1000L).getMeasurements().get(0));
+  }
+
+  @Test
+  public void sampleWithoutValue_isIgnoredAndOtherSensorsAreRecorded() {
+    merger = new InterpolatingMeasurementVectorStreamMerger(timingStream, dataStream, 0L);
+    merger.subscribe(received::add);
+    data(
+        new Pressure(1000L, "P1", null),
+        new Temperature(1000L, "T1", new BigDecimal("20")),
+        new Temperature(1000L, "T2", new BigDecimal("30")));
+    data(
+        new Pressure(2000L, "P1", null),
+        new Temperature(2000L, "T1", new BigDecimal("22")),
+        new Temperature(2000L, "T2", new BigDecimal("32")));
+
+    List<Measurement> merged = tick(1500L).getMeasurements();
+
+    Assertions.assertEquals(
+        List.of("T1", "T2"), merged.stream().map(Measurement::getSourceId).toList());
+    assertValue("21", merged.get(0));
+    assertValue("31", merged.get(1));
+  }
+
+  @Test
+  public void mergedMeasurements_followSchemaThenArrivalOrder() {
+    SchemaStream schemaStream = new SchemaStream(List.of("T1", "P1"));
+    merger = new InterpolatingMeasurementVectorStreamMerger(timingStream, schemaStream, 0L);
+    merger.subscribe(received::add);
+    schemaStream.publishToSubscribers(
+        new MeasurementVector(
+            1000L,
+            List.of(
+                new Pressure(1000L, "X9", new BigDecimal("1")),
+                new Pressure(1000L, "P1", new BigDecimal("101325")),
+                new Temperature(1000L, "T1", new BigDecimal("20")))));
+
+    List<String> ids =
+        tick(1000L).getMeasurements().stream().map(Measurement::getSourceId).toList();
+    Assertions.assertEquals(List.of("T1", "P1", "X9"), ids);
+    Assertions.assertEquals(2, merger.listSensors().size());
+  }
+
+  @Test
+  public void stop_unsubscribesAndClearsSamples() {
+    merger = new InterpolatingMeasurementVectorStreamMerger(timingStream, dataStream, 0L);
+    merger.subscribe(received::add);
+    data(new Temperature(1000L, "T1", new BigDecimal("10")));
+    merger.stop();
+    merger.stop();
+
+    timingStream.publishToSubscribers(new MeasurementVector(1000L, List.of()));
+    Assertions.assertTrue(received.isEmpty());
+  }
+
+  @Test
+  public void invalidArguments_throw() {
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> new InterpolatingMeasurementVectorStreamMerger(timingStream, dataStream, -1L));
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> new InterpolatingMeasurementVectorStreamMerger(timingStream, dataStream, 0L, 1));
+  }
+
+  private static final class SchemaStream extends TestMeasurementVectorStream {
+    private final List<SensorConfig> sensors = new ArrayList<>();
+
+    SchemaStream(List<String> ids) {
+      for (String id : ids) {
+        SensorConfig sensor = new TemperatureSensorConfig();
+        sensor.setId(id);
+        sensors.add(sensor);
+      }
+    }
+
+    @Override
+    public List<SensorConfig> listSensors() {
+      return sensors;
+    }
+  }
+}
@@ -0,0 +1,233 @@
+package ca.lajthabalazs.pressure_integity_test.measurement.streaming;
+
+import ca.lajthabalazs.pressure_integrity_test.config.SensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.TemperatureSensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.measurement.ErrorSeverity;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Measurement;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementError;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Pressure;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Temperature;
+import ca.lajthabalazs.pressure_integrity_test.measurement.streaming.KWayMeasurementVectorStreamMerger;
+import ca.lajthabalazs.pressure_integrity_test.measurement.streaming.KWayMeasurementVectorStreamMerger.Mode;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link KWayMeasurementVectorStreamMerger}. */
+public class KWayMeasurementVectorStreamMergerTest {
+
+  private TestMeasurementVectorStream a;
+  private TestMeasurementVectorStream b;
+  private TestMeasurementVectorStream c;
+  private KWayMeasurementVectorStreamMerger merger;
+  private List<MeasurementVector> received;
+
+  @BeforeEach
+  public void setUp() {
+    a = new TestMeasurementVectorStream();
+    b = new TestMeasurementVectorStream();
+    c = new TestMeasurementVectorStream();
+    received = new ArrayList<>();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    if (merger != null) {
+      merger.stop();
+    }
+  }
+
+  private static MeasurementVector temp(String id, long time) {
+    return new MeasurementVector(
+        time, List.of(new Temperature(time, id, new BigDecimal(String.valueOf(time)))));
+  }
+
+  private List<String> receivedIdsAndTimes() {
+    List<String> out = new ArrayList<>();
+    for (MeasurementVector v : received) {
+      List<String> ids = v.getMeasurements().stream().map(Measurement::getSourceId).toList();
+      out.add(String.join("+", ids) + "@" + v.getTimeUtc());
+    }
+    return out;
+  }
+
+  @Test
+  public void interleaved_zeroLateness_releasesEachVectorImmediatelyInOrder() {
+    merger = new KWayMeasurementVectorStreamMerger(List.of(a, b, c), Mode.INTERLEAVED, 0L);
+    merger.subscribe(received::add);
+    MeasurementVector first = temp("A", 1000L);
+    a.publishToSubscribers(first);
+    b.publishToSubscribers(temp("B", 1500L));
+    c.publishToSubscribers(temp("C", 2000L));
+
+    Assertions.assertEquals(List.of("A@1000", "B@1500", "C@2000"), receivedIdsAndTimes());
+    Assertions.assertSame(first, received.get(0), "Interleaved vectors are not copied");
+  }
+
+  @Test
+  public void interleaved_latenessWindow_reordersLateArrivals() {
+    merger = new KWayMeasurementVectorStreamMerger(List.of(a, b, c), Mode.INTERLEAVED, 1000L);
+    merger.subscribe(received::add);
+    a.publishToSubscribers(temp("A", 2000L));
+    c.publishToSubscribers(temp("C", 2500L));
+    b.publishToSubscribers(temp("B", 1600L));
+    Assertions.assertTrue(received.isEmpty(), "Everything is still inside the lateness window");
+    Assertions.assertEquals(3, merger.getBufferedCount());
+
+    a.publishToSubscribers(temp("A", 3000L));
+    Assertions.assertEquals(List.of("B@1600", "A@2000"), receivedIdsAndTimes());
+
+    merger.flush();
+    Assertions.assertEquals(
+        List.of("B@1600", "A@2000", "C@2500", "A@3000"), receivedIdsAndTimes());
+    Assertions.assertEquals(0, merger.getBufferedCount());
+  }
+
+  @Test
+  public void interleaved_equalTimestamps_followSourceOrder() {
+    merger = new KWayMeasurementVectorStreamMerger(List.of(a, b, c), Mode.INTERLEAVED, 10L);
+    merger.subscribe(received::add);
+    c.publishToSubscribers(temp("C", 1000L));
+    a.publishToSubscribers(temp("A", 1000L));
+    b.publishToSubscribers(temp("B", 1000L));
+    merger.flush();
+
+    Assertions.assertEquals(List.of("A@1000", "B@1000", "C@1000"), receivedIdsAndTimes());
+  }
+
+  @Test
+  public void outOfOrderWithinSource_isSortedInsideWindow() {
+    merger = new KWayMeasurementVectorStreamMerger(List.of(a), Mode.INTERLEAVED, 500L);
+    merger.subscribe(received::add);
+    a.publishToSubscribers(temp("A", 1000L));
+    a.publishToSubscribers(temp("A", 1300L));
+    a.publishToSubscribers(temp("A", 1100L));
+    a.publishToSubscribers(temp("A", 900L));
+    merger.flush();
+
+    Assertions.assertEquals(
+        List.of("A@900", "A@1000", "A@1100", "A@1300"), receivedIdsAndTimes());
+  }
+
+  @Test
+  public void arrivalBehindReleasedVectors_isDroppedAndCounted() {
+    merger = new KWayMeasurementVectorStreamMerger(List.of(a, b), Mode.INTERLEAVED, 100L);
+    merger.subscribe(received::add);
+    a.publishToSubscribers(temp("A", 1000L));
+    a.publishToSubscribers(temp("A", 2000L));
+    b.publishToSubscribers(temp("B", 999L));
+    b.publishToSubscribers(temp("B", 1000L));
+
+    merger.flush();
+    Assertions.assertEquals(List.of("A@1000", "B@1000", "A@2000"), receivedIdsAndTimes());
+    Assertions.assertEquals(1, merger.getLateCount());
+  }
+
+  @Test
+  public void fullBuffer_forcesRelease_keepingMemoryBounded() {
+    merger = new KWayMeasurementVectorStreamMerger(List.of(a, b), Mode.INTERLEAVED, 1_000_000L, 2);
+    merger.subscribe(received::add);
+    a.publishToSubscribers(temp("A", 1L));
+    a.publishToSubscribers(temp("A", 2L));
+    Assertions.assertTrue(received.isEmpty());
+    a.publishToSubscribers(temp("A", 3L));
+
+    Assertions.assertEquals(List.of("A@1"), receivedIdsAndTimes());
+    Assertions.assertEquals(2, merger.getBufferedCount());
+  }
+
+  @Test
+  public void tickAligned_combinesSamplesTakenAtOrBeforeEachTick() {
+    TestMeasurementVectorStream timing = new TestMeasurementVectorStream();
+    merger = new KWayMeasurementVectorStreamMerger(List.of(timing, a, b), Mode.TICK_ALIGNED, 500L);
+    merger.subscribe(received::add);
+
+    // The timing source runs ahead; the pressure device delivers its 1000 ms sample late.
+    a.publishToSubscribers(temp("T1", 900L));
+    timing.publishToSubscribers(new MeasurementVector(1000L, List.of()));
+    a.publishToSubscribers(temp("T1", 1400L));
+    b.publishToSubscribers(
+        new MeasurementVector(
+            1000L, List.of(new Pressure(1000L, "P1", new BigDecimal("101325")))));
+    timing.publishToSubscribers(new MeasurementVector(2000L, List.of()));
+    merger.flush();
+
+    Assertions.assertEquals(List.of("T1+P1@1000", "T1+P1@2000"), receivedIdsAndTimes());
+    Measurement t1AtFirstTick = received.get(0).getMeasurements().get(0);
+    Assertions.assertEquals(900L, t1AtFirstTick.getTimeUtc());
+    Assertions.assertEquals(1400L, received.get(1).getMeasurements().get(0).getTimeUtc());
+  }
+
+  @Test
+  public void tickAligned_keepsTimingErrors_andSchemaOrder() {
+    SchemaStream timing = new SchemaStream(List.of("P1"));
+    SchemaStream data = new SchemaStream(List.of("T1", "P1"));
+    merger = new KWayMeasurementVectorStreamMerger(List.of(timing, data), Mode.TICK_ALIGNED, 0L);
+    merger.subscribe(received::add);
+    Assertions.assertEquals(
+        List.of("P1", "T1"), merger.listSensors().stream().map(SensorConfig::getId).toList());
+
+    data.publishToSubscribers(
+        new MeasurementVector(
+            1000L,
+            List.of(
+                new Temperature(1000L, "T1", new BigDecimal("20")),
+                new Pressure(1000L, "P1", new BigDecimal("101325")))));
+    MeasurementError error = new MeasurementError("P1", ErrorSeverity.WARNING, "Noisy");
+    timing.publishToSubscribers(new MeasurementVector(1000L, List.of(), List.of(error)));
+
+    Assertions.assertEquals(List.of("P1+T1@1000"), receivedIdsAndTimes());
+    Assertions.assertEquals(List.of(error), received.get(0).getErrors());
+  }
+
+  @Test
+  public void stop_unsubscribesAndDiscardsBuffers() {
+    merger = new KWayMeasurementVectorStreamMerger(List.of(a, b), Mode.INTERLEAVED, 1000L);
+    merger.subscribe(received::add);
+    a.publishToSubscribers(temp("A", 1000L));
+    merger.stop();
+
+    Assertions.assertEquals(0, merger.getBufferedCount());
+    Assertions.assertTrue(a.getSubscribers().isEmpty());
+    merger.flush();
+    Assertions.assertTrue(received.isEmpty());
+  }
+
+  @Test
+  public void invalidArguments_throw() {
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> new KWayMeasurementVectorStreamMerger(null, Mode.INTERLEAVED, 0L));
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> new KWayMeasurementVectorStreamMerger(List.of(), Mode.INTERLEAVED, 0L));
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> new KWayMeasurementVectorStreamMerger(List.of(a), Mode.INTERLEAVED, -1L));
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> new KWayMeasurementVectorStreamMerger(List.of(a), Mode.INTERLEAVED, 0L, 0));
+  }
+
+  private static final class SchemaStream extends TestMeasurementVectorStream {
+    private final List<SensorConfig> sensors = new ArrayList<>();
+
+    SchemaStream(List<String> ids) {
+      for (String id : ids) {
+        SensorConfig sensor = new TemperatureSensorConfig();
+        sensor.setId(id);
+        sensors.add(sensor);
+      }
+    }
+
+    @Override
+    public List<SensorConfig> listSensors() {
+      return sensors;
+    }
+  }
+}
@@ -0,0 +1,139 @@
+package ca.lajthabalazs.pressure_integity_test.measurement.streaming;
+
+import ca.lajthabalazs.pressure_integrity_test.measurement.Measurement;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Temperature;
+import ca.lajthabalazs.pressure_integrity_test.measurement.streaming.LatestValueBoard;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link LatestValueBoard}. */
+public class LatestValueBoardTest {
+
+  private static Temperature temp(String id, long time, String value) {
+    return new Temperature(time, id, new BigDecimal(value));
+  }
+
+  @Test
+  public void schemaSlots_followGivenOrder_ignoringNullsAndDuplicates() {
+    List<String> ids = new ArrayList<>(List.of("T1", "T2"));
+    ids.add(null);
+    ids.add("T1");
+    ids.add("T3");
+    LatestValueBoard board = new LatestValueBoard(ids);
+
+    Assertions.assertEquals(3, board.size());
+    Assertions.assertEquals(0, board.slotOf("T1"));
+    Assertions.assertEquals(1, board.slotOf("T2"));
+    Assertions.assertEquals(2, board.slotOf("T3"));
+    Assertions.assertEquals(-1, board.slotOf("T4"));
+    Assertions.assertEquals("T3", board.sensorIdAt(2));
+  }
+
+  @Test
+  public void snapshot_emptySlotsAreNull_updatedSlotsHoldLatestValue() {
+    LatestValueBoard board = new LatestValueBoard(List.of("T1", "T2"));
+    Temperature first = temp("T2", 1000L, "20");
+    Temperature second = temp("T2", 2000L, "21");
+    board.update(first);
+    board.update(second);
+
+    LatestValueBoard.Snapshot snapshot = new LatestValueBoard.Snapshot();
+    Assertions.assertEquals(2, board.snapshot(snapshot));
+    Assertions.assertEquals(2, snapshot.size());
+    Assertions.assertNull(snapshot.value(0));
+    Assertions.assertEquals(Long.MIN_VALUE, snapshot.timeUtc(0));
+    Assertions.assertSame(second, snapshot.value(1));
+    Assertions.assertEquals(2000L, snapshot.timeUtc(1));
+    Assertions.assertEquals("T2", snapshot.sensorId(1));
+  }
+
+  @Test
+  public void update_withExplicitTimestamp_recordsThatTimestamp() {
+    LatestValueBoard board = new LatestValueBoard(List.of("T1"));
+    board.update(temp("T1", 1000L, "20"), 5000L);
+
+    LatestValueBoard.Snapshot snapshot = new LatestValueBoard.Snapshot();
+    board.snapshot(snapshot);
+    Assertions.assertEquals(5000L, snapshot.timeUtc(0));
+  }
+
+  @Test
+  public void unknownSensors_areAppended_andGrowthKeepsValues() {
+    LatestValueBoard board = new LatestValueBoard(List.of("T0"));
+    board.update(temp("T0", 1L, "10"));
+    for (int i = 1; i <= 40; i++) {
+      board.update(temp("X" + i, i, String.valueOf(i)));
+    }
+
+    Assertions.assertEquals(41, board.size());
+    Assertions.assertEquals(1, board.slotOf("X1"));
+    LatestValueBoard.Snapshot snapshot = new LatestValueBoard.Snapshot();
+    Assertions.assertEquals(41, board.snapshot(snapshot));
+    Assertions.assertEquals(0, new BigDecimal("10").compareTo(value(snapshot.value(0))));
+    for (int i = 1; i <= 40; i++) {
+      Assertions.assertEquals("X" + i, snapshot.sensorId(i));
+      Assertions.assertEquals(i, snapshot.timeUtc(i));
+    }
+  }
+
+  @Test
+  public void clear_removesValuesButKeepsSlots() {
+    LatestValueBoard board = new LatestValueBoard(List.of("T1"));
+    board.update(temp("T1", 1L, "10"));
+    board.update(temp("X", 1L, "10"));
+    board.clear();
+
+    LatestValueBoard.Snapshot snapshot = new LatestValueBoard.Snapshot();
+    Assertions.assertEquals(2, board.snapshot(snapshot));
+    Assertions.assertNull(snapshot.value(0));
+    Assertions.assertNull(snapshot.value(1));
+    Assertions.assertEquals(1, board.slotOf("X"));
+  }
+
+  /**
+   * Writers store measurements whose value equals their timestamp; a concurrent reader must never
+   * see a value paired with another write's timestamp.
+   */
+  @Test
+  public void concurrentWritersAndReader_snapshotsAreConsistentPerSlot() throws Exception {
+    LatestValueBoard board = new LatestValueBoard(List.of("A", "B"));
+    AtomicBoolean running = new AtomicBoolean(true);
+    AtomicReference<String> failure = new AtomicReference<>();
+    List<Thread> writers = new ArrayList<>();
+    for (String id : List.of("A", "B", "A")) {
+      Thread writer =
+          new Thread(
+              () -> {
+                for (long t = 1; running.get() && t < 200_000; t++) {
+                  board.update(temp(id, t, String.valueOf(t)), t);
+                }
+              });
+      writers.add(writer);
+      writer.start();
+    }
+    LatestValueBoard.Snapshot snapshot = new LatestValueBoard.Snapshot();
+    for (int round = 0; round < 20_000; round++) {
+      board.snapshot(snapshot);
+      for (int i = 0; i < snapshot.size(); i++) {
+        Measurement m = snapshot.value(i);
+        if (m != null && value(m).longValue() != snapshot.timeUtc(i)) {
+          failure.set("Torn read in slot " + i);
+        }
+      }
+    }
+    running.set(false);
+    for (Thread writer : writers) {
+      writer.join();
+    }
+    Assertions.assertNull(failure.get());
+  }
+
+  private static BigDecimal value(Measurement m) {
+    return m.getValueInDefaultUnit();
+  }
+}
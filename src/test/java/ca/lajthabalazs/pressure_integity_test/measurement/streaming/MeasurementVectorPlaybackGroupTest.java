@@ -0,0 +1,208 @@
+package ca.lajthabalazs.pressure_integity_test.measurement.streaming;
+
+import ca.lajthabalazs.pressure_integrity_test.measurement.Humidity;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import ca.lajthabalazs.pressure_integrity_test.measurement.streaming.MeasurementVectorPlaybackGroup;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link MeasurementVectorPlaybackGroup}. */
+public class MeasurementVectorPlaybackGroupTest {
+
+  private static final long AWAIT_TIMEOUT_MS = 2000;
+
+  private MeasurementVectorPlaybackGroup group;
+  private List<String> events;
+
+  @BeforeEach
+  public void setUp() {
+    group = new MeasurementVectorPlaybackGroup();
+    events = Collections.synchronizedList(new ArrayList<>());
+  }
+
+  @AfterEach
+  public void tearDown() {
+    group.shutdown();
+  }
+
+  private static List<MeasurementVector> recording(String sensorId, long... times) {
+    List<MeasurementVector> vectors = new ArrayList<>();
+    for (long t : times) {
+      vectors.add(
+          new MeasurementVector(t, List.of(new Humidity(t, sensorId, new BigDecimal("50")))));
+    }
+    return vectors;
+  }
+
+  private void record(MeasurementVectorPlaybackGroup.Track track, String name) {
+    track.subscribe(v -> events.add(name + "@" + v.getTimeUtc()));
+  }
+
+  private static void await(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + AWAIT_TIMEOUT_MS;
+    while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(5);
+    }
+    Assertions.assertTrue(condition.getAsBoolean(), "Condition not met within timeout");
+  }
+
+  @Test
+  public void recordingsWithDifferentStarts_areAlignedByRelativeTime() throws Exception {
+    record(group.addRecording(recording("A", 1000L, 2000L, 3000L)), "A");
+    record(group.addRecording(recording("B", 500_000L, 500_500L, 501_000L)), "B");
+    group.setSpeed(100.0);
+
+    long startTime = 10_000L;
+    group.startPlayback(startTime);
+    await(group::isFinished);
+
+    Assertions.assertEquals(
+        List.of("A@10000", "B@10000", "B@10500", "A@11000", "B@11000", "A@12000"), events);
+  }
+
+  @Test
+  public void useOriginalTimestamps_publishesVectorsUnchanged() throws Exception {
+    record(group.addRecording(recording("A", 1000L, 1100L)), "A");
+    record(group.addRecording(recording("B", 500_000L, 500_050L)), "B");
+    group.setSpeed(10.0);
+
+    group.startPlayback(0L, true);
+    await(group::isFinished);
+
+    Assertions.assertEquals(List.of("A@1000", "B@500000", "B@500050", "A@1100"), events);
+  }
+
+  @Test
+  public void shiftedTimestamps_applyToMeasurementsToo() throws Exception {
+    MeasurementVectorPlaybackGroup.Track track =
+        group.addRecording(recording("A", 1000L, 1200L));
+    List<MeasurementVector> received = Collections.synchronizedList(new ArrayList<>());
+    track.subscribe(received::add);
+    group.setSpeed(20.0);
+
+    group.startPlayback(50_000L);
+    await(group::isFinished);
+
+    Assertions.assertEquals(2, received.size());
+    Assertions.assertEquals(50_200L, received.get(1).getTimeUtc());
+    Assertions.assertEquals(50_200L, received.get(1).getMeasurements().get(0).getTimeUtc());
+  }
+
+  @Test
+  public void pause_stopsAllTracks_resumeContinues() throws Exception {
+    record(group.addRecording(recording("A", 0L, 100_000L)), "A");
+    record(group.addRecording(recording("B", 0L, 100_000L)), "B");
+
+    group.startPlayback(0L);
+    await(() -> events.size() == 2);
+    group.pause();
+    Assertions.assertTrue(group.isPaused());
+
+    long pausedPosition = group.getPosition();
+    Thread.sleep(30);
+    Assertions.assertEquals(pausedPosition, group.getPosition());
+    Assertions.assertEquals(2, events.size());
+
+    group.seek(99_990L);
+    Assertions.assertTrue(group.isPaused(), "Seek keeps pause state");
+    group.resume();
+    Assertions.assertFalse(group.isPaused());
+    await(group::isFinished);
+    Assertions.assertEquals(List.of("A@0", "B@0", "A@100000", "B@100000"), events);
+  }
+
+  @Test
+  public void seekForward_skipsEarlierVectorsOnAllTracks() throws Exception {
+    record(group.addRecording(recording("A", 0L, 60_000L, 120_000L)), "A");
+    record(group.addRecording(recording("B", 7_000L, 67_000L, 127_000L)), "B");
+    group.pause(); // no-op before start
+    group.seek(1000L); // no-op before start
+
+    group.startPlayback(0L);
+    await(() -> events.size() == 2);
+    group.seek(100_000L);
+    Assertions.assertTrue(group.getPosition() >= 100_000L);
+    group.setSpeed(1000.0);
+    Assertions.assertEquals(1000.0, group.getSpeed());
+    await(group::isFinished);
+
+    Assertions.assertEquals(List.of("A@0", "B@0", "A@120000", "B@120000"), events);
+  }
+
+  @Test
+  public void seekBackward_replaysVectors() throws Exception {
+    record(group.addRecording(recording("A", 0L, 50L)), "A");
+    group.setSpeed(10.0);
+    group.startPlayback(0L);
+    await(group::isFinished);
+
+    group.seek(0L);
+    await(() -> events.size() == 4);
+    Assertions.assertEquals(List.of("A@0", "A@50", "A@0", "A@50"), events);
+  }
+
+  @Test
+  public void subscriberPausingFromPacerThread_stopsFurtherDelivery() throws Exception {
+    MeasurementVectorPlaybackGroup.Track track = group.addRecording(recording("A", 0L, 0L, 10L));
+    track.subscribe(
+        v -> {
+          events.add("A@" + v.getTimeUtc());
+          group.pause();
+        });
+
+    group.startPlayback(0L);
+    await(() -> events.size() == 1);
+    Thread.sleep(30);
+    Assertions.assertEquals(1, events.size());
+    Assertions.assertFalse(group.isFinished());
+  }
+
+  @Test
+  public void stopPlayback_allowsRestart() throws Exception {
+    record(group.addRecording(recording("A", 0L, 100_000L)), "A");
+    group.startPlayback(0L);
+    await(() -> events.size() == 1);
+    group.stopPlayback();
+    Assertions.assertFalse(group.isFinished());
+
+    group.setSpeed(1_000_000.0);
+    group.startPlayback(5L);
+    await(group::isFinished);
+    Assertions.assertEquals(List.of("A@0", "A@5", "A@100005"), events);
+  }
+
+  @Test
+  public void getTracks_returnsTracksInOrder() {
+    MeasurementVectorPlaybackGroup.Track a = group.addRecording(recording("A", 0L, 10L));
+    MeasurementVectorPlaybackGroup.Track b = group.addRecording(recording("B", 0L));
+    Assertions.assertEquals(List.of(a, b), group.getTracks());
+    Assertions.assertEquals(2, a.size());
+    Assertions.assertEquals(1, b.size());
+  }
+
+  @Test
+  public void invalidUsage_throws() {
+    Assertions.assertThrows(IllegalArgumentException.class, () -> group.addRecording(null));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> group.addRecording(List.of()));
+    List<MeasurementVector> withNull = new ArrayList<>();
+    withNull.add(null);
+    Assertions.assertThrows(IllegalArgumentException.class, () -> group.addRecording(withNull));
+    Assertions.assertThrows(IllegalStateException.class, () -> group.startPlayback(0L));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> group.setSpeed(0.0));
+
+    group.addRecording(recording("A", 0L, 100_000L));
+    group.startPlayback(0L);
+    Assertions.assertThrows(IllegalStateException.class, () -> group.startPlayback(0L));
+    Assertions.assertThrows(
+        IllegalStateException.class, () -> group.addRecording(recording("B", 0L)));
+    group.resume(); // not paused: no-op
+    Assertions.assertFalse(group.isPaused());
+  }
+}
@@ -1,9 +1,15 @@
 package ca.lajthabalazs.pressure_integity_test.measurement.streaming;
 
+import ca.lajthabalazs.pressure_integrity_test.config.SensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.TemperatureSensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.measurement.ErrorSeverity;
 import ca.lajthabalazs.pressure_integrity_test.measurement.Humidity;
 import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
 import ca.lajthabalazs.pressure_integrity_test.measurement.Pressure;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Temperature;
 import ca.lajthabalazs.pressure_integrity_test.measurement.streaming.MeasurementVectorStreamMerger;
+import ca.lajthabalazs.pressure_integrity_test.measurement.streaming.SensorGap;
+import ca.lajthabalazs.pressure_integrity_test.measurement.streaming.StalenessThresholds;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
@@ -50,7 +56,10 @@ public class MeasurementVectorStreamMergerTest {
     Assertions.assertTrue(received.get(0).getMeasurements().isEmpty());
   }
 
-  /** Data then timing: merged vector contains data measurements with timing timestamp. */
+  /**
+   * Data then timing: merged vector has the timing timestamp and contains data measurements with
+   * their own acquisition timestamps.
+   */
   @Test
   public void dataThenTiming_publishesLatestDataWithTimingTimestamp() {
     merger = new MeasurementVectorStreamMerger(timingStream, dataStream);
@@ -69,12 +78,13 @@ public class MeasurementVectorStreamMergerTest {
     Assertions.assertEquals("H1", merged.getMeasurements().get(0).getSourceId());
     Assertions.assertEquals(
         0, new BigDecimal("50").compareTo(merged.getMeasurements().get(0).getValueInDefaultUnit()));
-    Assertions.assertEquals(timingTime, merged.getMeasurements().get(0).getTimeUtc());
+    Assertions.assertEquals(1000L, merged.getMeasurements().get(0).getTimeUtc());
+    Assertions.assertSame(h1, merged.getMeasurements().get(0), "Latest value is not copied");
   }
 
-  /** Multiple sensors in data: merged contains all, sorted by sourceId, with timing timestamp. */
+  /** Multiple sensors without a schema: merged contains all, in order of first arrival. */
   @Test
-  public void multipleSensors_mergedSortedBySourceIdWithTimingTimestamp() {
+  public void multipleSensors_mergedInArrivalOrderWithTimingTimestamp() {
     merger = new MeasurementVectorStreamMerger(timingStream, dataStream);
     merger.subscribe(received::add);
 
@@ -89,11 +99,35 @@ public class MeasurementVectorStreamMergerTest {
     MeasurementVector merged = received.get(0);
     Assertions.assertEquals(timingTime, merged.getTimeUtc());
     Assertions.assertEquals(2, merged.getMeasurements().size());
-    // Sorted by sourceId: H1 before P1
+    // Arrival order: H1 before P1
     Assertions.assertEquals("H1", merged.getMeasurements().get(0).getSourceId());
     Assertions.assertEquals("P1", merged.getMeasurements().get(1).getSourceId());
-    Assertions.assertEquals(timingTime, merged.getMeasurements().get(0).getTimeUtc());
-    Assertions.assertEquals(timingTime, merged.getMeasurements().get(1).getTimeUtc());
+    Assertions.assertEquals(1000L, merged.getMeasurements().get(0).getTimeUtc());
+    Assertions.assertEquals(2000L, merged.getMeasurements().get(1).getTimeUtc());
+  }
+
+  /** With a sensor schema on the data stream, merged measurements follow the schema order. */
+  @Test
+  public void dataStreamWithSchema_mergedInSchemaOrder() {
+    SiteConfigStream schemaStream = new SiteConfigStream(List.of("T1", "P1", "H1"));
+    merger = new MeasurementVectorStreamMerger(timingStream, schemaStream);
+    merger.subscribe(received::add);
+
+    schemaStream.publishToSubscribers(
+        new MeasurementVector(
+            1000L,
+            List.of(
+                new Humidity(1000L, "H1", new BigDecimal("50")),
+                new Humidity(1000L, "X9", new BigDecimal("1")),
+                new Pressure(1000L, "P1", new BigDecimal("101325")))));
+    timingStream.publishToSubscribers(new MeasurementVector(2000L, List.of()));
+
+    Assertions.assertEquals(1, received.size());
+    List<String> ids =
+        received.get(0).getMeasurements().stream().map(m -> m.getSourceId()).toList();
+    // T1 has not reported; X9 is outside the schema and is appended after it.
+    Assertions.assertEquals(List.of("P1", "H1", "X9"), ids);
+    Assertions.assertEquals(3, merger.listSensors().size());
   }
 
   /** When data updates (same sensor), next timing event gets the latest value. */
@@ -116,7 +150,7 @@ public class MeasurementVectorStreamMergerTest {
         new BigDecimal("60")
             .compareTo(received.get(0).getMeasurements().get(0).getValueInDefaultUnit()),
         "Should have latest value 60, not 50");
-    Assertions.assertEquals(2500L, received.get(0).getMeasurements().get(0).getTimeUtc());
+    Assertions.assertEquals(2000L, received.get(0).getMeasurements().get(0).getTimeUtc());
   }
 
   /** Multiple timing events each receive current latest from data. */
@@ -165,4 +199,125 @@ public class MeasurementVectorStreamMergerTest {
     timingStream.publishToSubscribers(new MeasurementVector(3000L, List.of()));
     Assertions.assertEquals(1, received.size(), "No new merged vector after stop");
   }
+
+  /** Sensor-list stream used to give the data stream a schema. */
+  /**
+   * A value older than the type's warning age gets a WARNING, older than the severe age a SEVERE
+   * error; the value itself is still merged.
+   */
+  @Test
+  public void staleValues_getWarningThenSevereErrorOnEveryTick() {
+    SiteConfigStream schemaStream = new SiteConfigStream(List.of("T1"));
+    StalenessThresholds thresholds =
+        new StalenessThresholds(10_000L, 20_000L)
+            .withType(TemperatureSensorConfig.TYPE, 1000L, 3000L);
+    merger = new MeasurementVectorStreamMerger(timingStream, schemaStream, thresholds);
+    merger.subscribe(received::add);
+
+    schemaStream.publishToSubscribers(
+        new MeasurementVector(
+            1000L,
+            List.of(
+                new Temperature(1000L, "T1", new BigDecimal("20")),
+                new Pressure(1000L, "P9", new BigDecimal("101325")))));
+    timingStream.publishToSubscribers(new MeasurementVector(2000L, List.of()));
+    timingStream.publishToSubscribers(new MeasurementVector(2500L, List.of()));
+    timingStream.publishToSubscribers(new MeasurementVector(4500L, List.of()));
+    timingStream.publishToSubscribers(new MeasurementVector(12_000L, List.of()));
+
+    Assertions.assertTrue(received.get(0).getErrors().isEmpty(), "Exactly at the limit is fresh");
+    Assertions.assertEquals(1, received.get(1).getErrors().size());
+    Assertions.assertEquals("T1", received.get(1).getErrors().get(0).sensorId());
+    Assertions.assertEquals(ErrorSeverity.WARNING, received.get(1).getErrors().get(0).severity());
+    Assertions.assertEquals(2, received.get(1).getMeasurements().size());
+    Assertions.assertEquals(ErrorSeverity.SEVERE, received.get(2).getErrors().get(0).severity());
+    Assertions.assertTrue(received.get(2).hasSevereError());
+    // P9 is not in the site config, so it uses the default thresholds.
+    Assertions.assertEquals(2, received.get(3).getErrors().size());
+    Assertions.assertEquals("P9", received.get(3).getErrors().get(1).sensorId());
+    Assertions.assertEquals(ErrorSeverity.WARNING, received.get(3).getErrors().get(1).severity());
+  }
+
+  /** A gap is published when it opens and again, with its end time, when a fresh value arrives. */
+  @Test
+  public void sensorGaps_arePublishedOnOpenAndClose() {
+    merger =
+        new MeasurementVectorStreamMerger(
+            timingStream, dataStream, new StalenessThresholds(1000L, 5000L));
+    merger.subscribe(received::add);
+    List<SensorGap> gaps = new ArrayList<>();
+    merger.subscribeGaps(gaps::add);
+    merger.subscribeGaps(
+        gap -> {
+          throw new IllegalStateException("Failing handler does not stop others");
+        });
+
+    dataStream.publishToSubscribers(
+        new MeasurementVector(1000L, List.of(new Humidity(1000L, "H1", new BigDecimal("50")))));
+    timingStream.publishToSubscribers(new MeasurementVector(1500L, List.of()));
+    Assertions.assertTrue(merger.getOpenGaps().isEmpty());
+
+    timingStream.publishToSubscribers(new MeasurementVector(3000L, List.of()));
+    timingStream.publishToSubscribers(new MeasurementVector(4000L, List.of()));
+    SensorGap open = new SensorGap("H1", 1000L, SensorGap.OPEN);
+    Assertions.assertEquals(List.of(open), gaps);
+    Assertions.assertEquals(List.of(open), merger.getOpenGaps());
+
+    dataStream.publishToSubscribers(
+        new MeasurementVector(4200L, List.of(new Humidity(4200L, "H1", new BigDecimal("51")))));
+    timingStream.publishToSubscribers(new MeasurementVector(4500L, List.of()));
+
+    Assertions.assertEquals(
+        List.of(open, new SensorGap("H1", 1000L, 4200L)), gaps);
+    Assertions.assertTrue(merger.getOpenGaps().isEmpty());
+    Assertions.assertTrue(received.get(received.size() - 1).getErrors().isEmpty());
+  }
+
+  @Test
+  public void gapSubscription_unsubscribeAndStop_stopDelivery() {
+    merger =
+        new MeasurementVectorStreamMerger(
+            timingStream, dataStream, new StalenessThresholds(0L, 0L));
+    List<SensorGap> gaps = new ArrayList<>();
+    MeasurementVectorStreamMerger.Subscription subscription = merger.subscribeGaps(gaps::add);
+    dataStream.publishToSubscribers(
+        new MeasurementVector(1000L, List.of(new Humidity(1000L, "H1", new BigDecimal("50")))));
+    subscription.unsubscribe();
+    timingStream.publishToSubscribers(new MeasurementVector(2000L, List.of()));
+    Assertions.assertTrue(gaps.isEmpty());
+    Assertions.assertEquals(1, merger.getOpenGaps().size());
+
+    merger.stop();
+    Assertions.assertTrue(merger.getOpenGaps().isEmpty());
+  }
+
+  /** Without thresholds no staleness errors are added, however old the value. */
+  @Test
+  public void withoutThresholds_oldValuesHaveNoErrors() {
+    merger = new MeasurementVectorStreamMerger(timingStream, dataStream);
+    merger.subscribe(received::add);
+    dataStream.publishToSubscribers(
+        new MeasurementVector(1000L, List.of(new Humidity(1000L, "H1", new BigDecimal("50")))));
+    timingStream.publishToSubscribers(new MeasurementVector(Long.MAX_VALUE, List.of()));
+
+    Assertions.assertTrue(received.get(0).getErrors().isEmpty());
+    Assertions.assertTrue(merger.getOpenGaps().isEmpty());
+  }
+
+  private static final class SiteConfigStream extends TestMeasurementVectorStream {
+    private final List<SensorConfig> sensors = new ArrayList<>();
+
+    SiteConfigStream(List<String> ids) {
+      for (String id : ids) {
+        SensorConfig sensor = new TemperatureSensorConfig();
+        sensor.setId(id);
+        sensors.add(sensor);
+      }
+    }
+
+    @Override
+    public List<SensorConfig> listSensors() {
+      return sensors;
+    }
+  }
 }
@@ -0,0 +1,64 @@
+package ca.lajthabalazs.pressure_integity_test.measurement.streaming;
+
+import ca.lajthabalazs.pressure_integrity_test.config.PressureSensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.TemperatureSensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.measurement.streaming.SensorGap;
+import ca.lajthabalazs.pressure_integrity_test.measurement.streaming.StalenessThresholds;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link StalenessThresholds} and {@link SensorGap}. */
+public class StalenessThresholdsTest {
+
+  @Test
+  public void defaults_applyToTypesWithoutEntry() {
+    StalenessThresholds thresholds =
+        new StalenessThresholds(1000L, 5000L).withType(TemperatureSensorConfig.TYPE, 200L, 300L);
+
+    Assertions.assertEquals(200L, thresholds.warningMs(TemperatureSensorConfig.TYPE));
+    Assertions.assertEquals(300L, thresholds.severeMs(TemperatureSensorConfig.TYPE));
+    Assertions.assertEquals(1000L, thresholds.warningMs(PressureSensorConfig.TYPE));
+    Assertions.assertEquals(5000L, thresholds.severeMs(PressureSensorConfig.TYPE));
+    Assertions.assertEquals(1000L, thresholds.warningMs(null));
+    Assertions.assertEquals(5000L, thresholds.severeMs(null));
+  }
+
+  @Test
+  public void withType_doesNotModifyOriginal() {
+    StalenessThresholds base = new StalenessThresholds(1000L, 5000L);
+    base.withType(TemperatureSensorConfig.TYPE, 1L, 2L);
+    Assertions.assertEquals(1000L, base.warningMs(TemperatureSensorConfig.TYPE));
+  }
+
+  @Test
+  public void isDisabled_onlyWhenNoWarningThresholdIsSet() {
+    Assertions.assertTrue(StalenessThresholds.NONE.isDisabled());
+    Assertions.assertTrue(
+        StalenessThresholds.NONE
+            .withType(TemperatureSensorConfig.TYPE, Long.MAX_VALUE, Long.MAX_VALUE)
+            .isDisabled());
+    Assertions.assertFalse(
+        StalenessThresholds.NONE.withType(TemperatureSensorConfig.TYPE, 1L, 2L).isDisabled());
+    Assertions.assertFalse(new StalenessThresholds(1L, 2L).isDisabled());
+  }
+
+  @Test
+  public void invalidThresholds_throw() {
+    Assertions.assertThrows(IllegalArgumentException.class, () -> new StalenessThresholds(-1L, 0L));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> new StalenessThresholds(10L, 5L));
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> StalenessThresholds.NONE.withType(TemperatureSensorConfig.TYPE, 10L, 5L));
+  }
+
+  @Test
+  public void sensorGap_openAndClosedDurations() {
+    SensorGap open = new SensorGap("T1", 1000L, SensorGap.OPEN);
+    SensorGap closed = new SensorGap("T1", 1000L, 4000L);
+
+    Assertions.assertTrue(open.isOpen());
+    Assertions.assertEquals(2500L, open.durationMs(3500L));
+    Assertions.assertFalse(closed.isOpen());
+    Assertions.assertEquals(3000L, closed.durationMs(9999L));
+  }
+}
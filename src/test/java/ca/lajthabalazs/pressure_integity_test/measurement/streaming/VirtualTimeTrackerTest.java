@@ -309,4 +309,38 @@ public class VirtualTimeTrackerTest {
     long now = startTime + 1000;
     Assertions.assertEquals(100L, tracker.getCurrentVirtualTime(now));
   }
+
+  @Test
+  public void seek_whenPlaying_continuesFromNewPosition() {
+    long startTime = 1000L;
+    tracker.start(startTime);
+    tracker.setSpeed(startTime, 2.0);
+
+    tracker.seek(startTime + 100, 5000L);
+    Assertions.assertEquals(5000L, tracker.getCurrentVirtualTime(startTime + 100));
+
+    // 50ms real time at 2x speed after the seek
+    Assertions.assertEquals(5100L, tracker.getCurrentVirtualTime(startTime + 150));
+  }
+
+  @Test
+  public void seek_whenPaused_staysFrozenAtNewPosition() {
+    long startTime = 1000L;
+    tracker.start(startTime);
+    tracker.pause(startTime + 100);
+
+    tracker.seek(startTime + 200, 300L);
+    Assertions.assertEquals(300L, tracker.getCurrentVirtualTime(startTime + 500));
+    Assertions.assertTrue(tracker.isPaused());
+
+    tracker.resume(startTime + 500);
+    Assertions.assertEquals(400L, tracker.getCurrentVirtualTime(startTime + 600));
+  }
+
+  @Test
+  public void seek_negativePosition_clampsToZero() {
+    tracker.start(1000L);
+    tracker.seek(1000L, -50L);
+    Assertions.assertEquals(0L, tracker.getCurrentVirtualTime(1000L));
+  }
 }
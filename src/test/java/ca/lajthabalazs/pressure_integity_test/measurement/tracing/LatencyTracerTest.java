@@ -0,0 +1,218 @@
+package ca.lajthabalazs.pressure_integity_test.measurement.tracing;
+
+import ca.lajthabalazs.pressure_integity_test.measurement.streaming.TestMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.config.PressureSensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.SensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Measurement;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Pressure;
+import ca.lajthabalazs.pressure_integrity_test.measurement.streaming.MeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.tracing.LatencyStats;
+import ca.lajthabalazs.pressure_integrity_test.measurement.tracing.LatencyTracer;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link LatencyTracer}. */
+public class LatencyTracerTest {
+
+  private long now;
+  private LatencyTracer tracer;
+
+  @BeforeEach
+  public void setUp() {
+    now = 5_000_000L;
+    tracer = new LatencyTracer(() -> now);
+  }
+
+  private static MeasurementVector vector(long t) {
+    Measurement p = new Pressure(t, "P1", new BigDecimal("101325"));
+    return new MeasurementVector(t, List.of(p));
+  }
+
+  @Test
+  public void stamp_disabled_returnsSameVector() {
+    MeasurementVector v = vector(1000L);
+
+    Assertions.assertFalse(tracer.isEnabled());
+    Assertions.assertSame(v, tracer.stamp(v));
+    Assertions.assertEquals(0L, v.getIngestNanos());
+  }
+
+  @Test
+  public void stamp_enabled_carriesCurrentTimeAndSharesContents() {
+    tracer.setEnabled(true);
+    MeasurementVector v = vector(1000L);
+
+    MeasurementVector stamped = tracer.stamp(v);
+
+    Assertions.assertTrue(tracer.isEnabled());
+    Assertions.assertEquals(5_000_000L, stamped.getIngestNanos());
+    Assertions.assertEquals(1000L, stamped.getTimeUtc());
+    Assertions.assertSame(v.getMeasurementsMap(), stamped.getMeasurementsMap());
+    Assertions.assertSame(v.getErrors(), stamped.getErrors());
+  }
+
+  @Test
+  public void stamp_keepsEarlierStamp() {
+    tracer.setEnabled(true);
+    MeasurementVector stamped = tracer.stamp(vector(1000L));
+    now += 1_000L;
+
+    Assertions.assertSame(stamped, tracer.stamp(stamped));
+  }
+
+  @Test
+  public void stamp_clockAtZero_stampsOne() {
+    now = 0L;
+    tracer.setEnabled(true);
+
+    Assertions.assertEquals(1L, tracer.stamp(vector(1000L)).getIngestNanos());
+  }
+
+  @Test
+  public void ingest_republishesStampedVectorsAndDelegatesSensors() {
+    List<SensorConfig> sensors = List.of(new PressureSensorConfig());
+    TestMeasurementVectorStream source =
+        new TestMeasurementVectorStream() {
+          @Override
+          public List<SensorConfig> listSensors() {
+            return sensors;
+          }
+        };
+    LatencyTracer.Ingest ingest = tracer.ingest(source);
+    List<MeasurementVector> received = new ArrayList<>();
+    ingest.subscribe(received::add);
+
+    source.publishToSubscribers(vector(1000L));
+    tracer.setEnabled(true);
+    source.publishToSubscribers(vector(2000L));
+
+    Assertions.assertSame(sensors, ingest.listSensors());
+    Assertions.assertEquals(2, received.size());
+    Assertions.assertEquals(0L, received.get(0).getIngestNanos());
+    Assertions.assertEquals(5_000_000L, received.get(1).getIngestNanos());
+
+    ingest.stop();
+    ingest.stop();
+    source.publishToSubscribers(vector(3000L));
+    Assertions.assertEquals(2, received.size());
+    Assertions.assertTrue(source.getSubscribers().isEmpty());
+    Assertions.assertTrue(ingest.getSubscribers().isEmpty());
+  }
+
+  @Test
+  public void hop_recordsTimeSinceStampOnlyWhileEnabled() {
+    LatencyTracer.Hop hop = tracer.hop("step");
+    tracer.setEnabled(true);
+    MeasurementVector stamped = tracer.stamp(vector(1000L));
+    now += 2_000_000L;
+
+    hop.record(stamped);
+    hop.record(vector(2000L));
+    tracer.setEnabled(false);
+    hop.record(stamped);
+
+    LatencyStats stats = tracer.snapshot().getFirst();
+    Assertions.assertEquals("step", hop.getName());
+    Assertions.assertSame(hop, tracer.hop("step"));
+    Assertions.assertEquals(1, stats.count());
+    Assertions.assertEquals(2_000_000L, stats.maxNanos());
+  }
+
+  @Test
+  public void traced_passesVectorToSinkThenRecords() {
+    tracer.setEnabled(true);
+    MeasurementVector stamped = tracer.stamp(vector(1000L));
+    List<Long> countsAtSink = new ArrayList<>();
+    MeasurementVectorStream.MeasurementVectorHandler sink =
+        v -> {
+          countsAtSink.add(tracer.snapshot().getFirst().count());
+          now += 3_000L;
+        };
+
+    tracer.traced("csv", sink).handle(stamped);
+
+    LatencyStats stats = tracer.snapshot().getFirst();
+    Assertions.assertEquals(List.of(0L), countsAtSink);
+    Assertions.assertEquals(1, stats.count());
+    Assertions.assertEquals(3_000L, stats.maxNanos());
+  }
+
+  @Test
+  public void snapshot_listsHopsInCreationOrder() {
+    tracer.hop("b");
+    tracer.hop("a");
+    tracer.hop("b");
+
+    Assertions.assertEquals(
+        List.of("b", "a"), tracer.snapshot().stream().map(LatencyStats::hop).toList());
+  }
+
+  @Test
+  public void summaryLine_listsHopsWithVectors() {
+    Assertions.assertEquals("Latency: no traced vectors", tracer.summaryLine());
+
+    tracer.setEnabled(true);
+    LatencyTracer.Hop pipeline = tracer.hop("pipeline");
+    tracer.hop("idle");
+    LatencyTracer.Hop dashboard = tracer.hop("dashboard");
+    MeasurementVector stamped = tracer.stamp(vector(1000L));
+    now += 500_000L;
+    pipeline.record(stamped);
+    now += 1_500_000L;
+    dashboard.record(stamped);
+
+    Assertions.assertEquals(
+        "Latency: pipeline n=1 p50=0.50ms p99=0.50ms max=0.50ms, "
+            + "dashboard n=1 p50=2.00ms p99=2.00ms max=2.00ms",
+        tracer.summaryLine());
+  }
+
+  @Test
+  public void reset_removesLatenciesButKeepsHops() {
+    tracer.setEnabled(true);
+    LatencyTracer.Hop hop = tracer.hop("step");
+    hop.record(tracer.stamp(vector(1000L)));
+
+    tracer.reset();
+
+    Assertions.assertEquals(new LatencyStats("step", 0, 0, 0, 0, 0), tracer.snapshot().getFirst());
+  }
+
+  @Test
+  public void startLogging_logsSummaryWhileEnabled() throws InterruptedException {
+    CountDownLatch logged = new CountDownLatch(2);
+    List<String> lines = new ArrayList<>();
+    tracer.startLogging(
+        1L,
+        line -> {
+          synchronized (lines) {
+            lines.add(line);
+          }
+          logged.countDown();
+        });
+    Thread.sleep(20L);
+    synchronized (lines) {
+      Assertions.assertTrue(lines.isEmpty());
+    }
+
+    tracer.setEnabled(true);
+    tracer.startLogging(1L, line -> logged.countDown());
+
+    Assertions.assertTrue(logged.await(5, TimeUnit.SECONDS));
+    tracer.stopLogging();
+    tracer.stopLogging();
+  }
+
+  @Test
+  public void startLogging_nonPositivePeriod_throws() {
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> tracer.startLogging(0L, line -> {}));
+  }
+}
@@ -0,0 +1,88 @@
+package ca.lajthabalazs.pressure_integity_test.server;
+
+import ca.lajthabalazs.pressure_integrity_test.measurement.ErrorSeverity;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementError;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Pressure;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Temperature;
+import ca.lajthabalazs.pressure_integrity_test.server.SseVectorEncoder;
+import java.math.BigDecimal;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link SseVectorEncoder}. */
+public class SseVectorEncoderTest {
+
+  private static MeasurementVector vector(long t, String pressure, MeasurementError... errors) {
+    return new MeasurementVector(
+        t,
+        List.of(
+            new Pressure(t, "P1", new BigDecimal(pressure)),
+            new Temperature(t, "T1", new BigDecimal("20.50"))),
+        List.of(errors));
+  }
+
+  @Test
+  public void firstVector_sendsKeysAndAbsoluteTime() {
+    SseVectorEncoder encoder = new SseVectorEncoder();
+
+    Assertions.assertEquals(
+        "event: key\ndata: 0 P1 Pa\n\n"
+            + "event: key\ndata: 1 T1 C\n\n"
+            + "data: 1700000000000 0=101325 1=20.50\n\n",
+        encoder.encode(vector(1_700_000_000_000L, "101325"), 0));
+  }
+
+  @Test
+  public void laterVectors_sendTimeSincePreviousKnownKeysOnlyAndPlainValues() {
+    SseVectorEncoder encoder = new SseVectorEncoder();
+    encoder.encode(vector(60_000L, "101325"), 0);
+
+    Assertions.assertEquals(
+        "data: 60000 0=100 1=20.50\n\n",
+        encoder.encode(vector(120_000L, "1.0E+2"), 0));
+  }
+
+  @Test
+  public void errors_sendIndexAndSeverity_newIdsWithoutUnit() {
+    SseVectorEncoder encoder = new SseVectorEncoder();
+    encoder.encode(vector(0L, "1"), 0);
+
+    String events =
+        encoder.encode(
+            vector(
+                1_000L,
+                "1",
+                new MeasurementError("T1", ErrorSeverity.WARNING, "Out of range"),
+                new MeasurementError("H9", ErrorSeverity.SEVERE, "Missing")),
+            0);
+
+    Assertions.assertEquals(
+        "event: key\ndata: 2 H9 -\n\n" + "data: 1000 0=1 1=20.50 !1W !2S\n\n", events);
+  }
+
+  @Test
+  public void measurementWithoutValue_sendsEmptyValue() {
+    SseVectorEncoder encoder = new SseVectorEncoder();
+    MeasurementVector vector =
+        new MeasurementVector(
+            0L, List.of(new Pressure(0L, "P1", null), new Temperature(0L, "T1", BigDecimal.ONE)));
+
+    Assertions.assertEquals(
+        "event: key\ndata: 0 P1 Pa\n\n"
+            + "event: key\ndata: 1 T1 C\n\n"
+            + "data: 0 0= 1=1\n\n",
+        encoder.encode(vector, 0));
+  }
+
+  @Test
+  public void droppedVectors_announcedBeforeNextVector() {
+    SseVectorEncoder encoder = new SseVectorEncoder();
+    encoder.encode(vector(0L, "1"), 0);
+
+    Assertions.assertEquals(
+        "event: dropped\ndata: 7\n\ndata: 8000 0=1 1=20.50\n\n",
+        encoder.encode(vector(8_000L, "1"), 7));
+  }
+}
@@ -0,0 +1,198 @@
+package ca.lajthabalazs.pressure_integity_test.server;
+
+import ca.lajthabalazs.pressure_integity_test.measurement.streaming.TestMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Pressure;
+import ca.lajthabalazs.pressure_integrity_test.server.VectorStreamServer;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link VectorStreamServer}, with clients on the loopback interface. */
+public class VectorStreamServerTest {
+
+  private TestMeasurementVectorStream source;
+  private VectorStreamServer server;
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    source = new TestMeasurementVectorStream();
+    server = new VectorStreamServer(source, 4, 2);
+    server.start(0);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    server.close();
+  }
+
+  private static MeasurementVector vector(int i) {
+    long t = i * 1_000L;
+    return new MeasurementVector(t, List.of(new Pressure(t, "P1", BigDecimal.valueOf(i))));
+  }
+
+  /** Minimal HTTP/1.0 client that reads the event stream line by line. */
+  private static final class LoopbackClient implements AutoCloseable {
+
+    private final Socket socket;
+    private final BufferedReader in;
+    private final String status;
+
+    private LoopbackClient(int port, String method) throws IOException {
+      socket = new Socket(InetAddress.getLoopbackAddress(), port);
+      socket.setSoTimeout(10_000);
+      OutputStream out = socket.getOutputStream();
+      out.write((method + " /vectors HTTP/1.0\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+      out.flush();
+      in =
+          new BufferedReader(
+              new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+      status = in.readLine();
+      String header;
+      while ((header = in.readLine()) != null && !header.isEmpty()) {
+        // Skip the headers.
+      }
+    }
+
+    /** Returns the lines of the next event, or null at the end of the stream. */
+    private List<String> event() throws IOException {
+      List<String> lines = new ArrayList<>();
+      String line;
+      while ((line = in.readLine()) != null && !line.isEmpty()) {
+        lines.add(line);
+      }
+      return line == null && lines.isEmpty() ? null : lines;
+    }
+
+    @Override
+    public void close() throws IOException {
+      socket.close();
+    }
+  }
+
+  private void awaitClientCount(int count) throws InterruptedException {
+    long deadline = System.nanoTime() + 10_000_000_000L;
+    while (server.getClientCount() != count && System.nanoTime() < deadline) {
+      Thread.sleep(1L);
+    }
+    Assertions.assertEquals(count, server.getClientCount());
+  }
+
+  @Test
+  public void client_receivesKeysThenVectors() throws IOException {
+    try (LoopbackClient client = new LoopbackClient(server.getPort(), "GET")) {
+      source.publishToSubscribers(vector(5));
+      source.publishToSubscribers(vector(6));
+
+      Assertions.assertTrue(client.status.contains(" 200"));
+      Assertions.assertEquals(List.of("event: key", "data: 0 P1 Pa"), client.event());
+      Assertions.assertEquals(List.of("data: 5000 0=5"), client.event());
+      Assertions.assertEquals(List.of("data: 1000 0=6"), client.event());
+    }
+  }
+
+  @Test
+  public void laterClient_startsWithItsOwnKeysAndAbsoluteTime() throws IOException {
+    try (LoopbackClient first = new LoopbackClient(server.getPort(), "GET")) {
+      source.publishToSubscribers(vector(1));
+      try (LoopbackClient second = new LoopbackClient(server.getPort(), "GET")) {
+        source.publishToSubscribers(vector(2));
+
+        Assertions.assertEquals(List.of("event: key", "data: 0 P1 Pa"), second.event());
+        Assertions.assertEquals(List.of("data: 2000 0=2"), second.event());
+      }
+      first.event();
+      Assertions.assertEquals(List.of("data: 1000 0=1"), first.event());
+      Assertions.assertEquals(List.of("data: 1000 0=2"), first.event());
+    }
+  }
+
+  @Test
+  public void stalledClient_doesNotHoldBackSourceOrOtherClients() throws IOException {
+    try (LoopbackClient stalled = new LoopbackClient(server.getPort(), "GET");
+        LoopbackClient reader = new LoopbackClient(server.getPort(), "GET")) {
+      int count = 20_000;
+      for (int i = 0; i < count; i++) {
+        source.publishToSubscribers(vector(i));
+      }
+
+      // The newest vector is never dropped, so the reading client gets it after a gap.
+      String last = null;
+      while (last == null || !last.endsWith("0=" + (count - 1))) {
+        List<String> event = reader.event();
+        last = event.getLast();
+      }
+      Assertions.assertEquals(2, server.getClientCount());
+      Assertions.assertNotNull(stalled.status);
+    }
+  }
+
+  @Test
+  public void disconnectedClient_isRemoved() throws IOException, InterruptedException {
+    LoopbackClient client = new LoopbackClient(server.getPort(), "GET");
+    awaitClientCount(1);
+
+    client.close();
+    long deadline = System.nanoTime() + 10_000_000_000L;
+    for (int i = 0; server.getClientCount() > 0 && System.nanoTime() < deadline; i++) {
+      source.publishToSubscribers(vector(i));
+      Thread.sleep(1L);
+    }
+
+    Assertions.assertEquals(0, server.getClientCount());
+  }
+
+  @Test
+  public void clientsAboveLimit_areRefused() throws IOException {
+    try (LoopbackClient a = new LoopbackClient(server.getPort(), "GET");
+        LoopbackClient b = new LoopbackClient(server.getPort(), "GET");
+        LoopbackClient c = new LoopbackClient(server.getPort(), "GET")) {
+      Assertions.assertTrue(c.status.contains(" 503"), c.status);
+      Assertions.assertNull(c.event());
+      Assertions.assertEquals(2, server.getClientCount());
+    }
+  }
+
+  @Test
+  public void otherMethods_areRejected() throws IOException {
+    try (LoopbackClient client = new LoopbackClient(server.getPort(), "POST")) {
+      Assertions.assertTrue(client.status.contains(" 405"), client.status);
+    }
+  }
+
+  @Test
+  public void close_endsClientStreamsAndUnsubscribes() throws IOException {
+    try (LoopbackClient client = new LoopbackClient(server.getPort(), "GET")) {
+      server.close();
+      server.close();
+
+      Assertions.assertNull(client.event());
+      Assertions.assertTrue(source.getSubscribers().isEmpty());
+      Assertions.assertEquals(0, server.getClientCount());
+    }
+  }
+
+  @Test
+  public void start_twice_throws() {
+    Assertions.assertThrows(IllegalStateException.class, () -> server.start(0));
+  }
+
+  @Test
+  public void constructor_nonPositiveSizes_throw() {
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> new VectorStreamServer(source, 0, 1));
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> new VectorStreamServer(source, 1, 0));
+  }
+}
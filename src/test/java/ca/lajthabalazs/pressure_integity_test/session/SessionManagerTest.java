@@ -0,0 +1,367 @@
+package ca.lajthabalazs.pressure_integity_test.session;
+
+import ca.lajthabalazs.pressure_integity_test.measurement.streaming.TestMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.config.HumiditySensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.LocationConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.PressureSensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.SiteConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.TemperatureSensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Humidity;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Pressure;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Temperature;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.AveragePressureMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.processing.LeakageMeasurementVectorStream;
+import ca.lajthabalazs.pressure_integrity_test.measurement.tracing.LatencyStats;
+import ca.lajthabalazs.pressure_integrity_test.measurement.tracing.LatencyTracer;
+import ca.lajthabalazs.pressure_integrity_test.session.Session;
+import ca.lajthabalazs.pressure_integrity_test.session.SessionManager;
+import ca.lajthabalazs.pressure_integrity_test.session.SessionStats;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link SessionManager} and {@link Session}. */
+public class SessionManagerTest {
+
+  private SessionManager manager;
+  private SiteConfig siteConfig;
+
+  @BeforeEach
+  public void setUp() {
+    manager = new SessionManager(2);
+    PressureSensorConfig p = new PressureSensorConfig();
+    p.setId("P1");
+    TemperatureSensorConfig t = new TemperatureSensorConfig();
+    t.setId("T1");
+    HumiditySensorConfig h = new HumiditySensorConfig();
+    h.setId("H1");
+    LocationConfig loc = new LocationConfig();
+    loc.setId("L1");
+    loc.setVolumeFactor(BigDecimal.ONE);
+    loc.setSensors(new ArrayList<>(List.of(p, t, h)));
+    siteConfig = new SiteConfig();
+    siteConfig.setLocations(List.of(loc));
+  }
+
+  @AfterEach
+  public void tearDown() {
+    manager.close();
+  }
+
+  /** Vector i is one minute after vector i−1; the pressure identifies the session. */
+  private static MeasurementVector vector(int i, double pressure) {
+    long t = i * 60_000L;
+    return new MeasurementVector(
+        t,
+        List.of(
+            new Pressure(t, "P1", BigDecimal.valueOf(pressure - i)),
+            new Temperature(t, "T1", new BigDecimal("20")),
+            new Humidity(t, "H1", new BigDecimal("40"))));
+  }
+
+  private static double averagePressure(MeasurementVector vector) {
+    return vector
+        .getMeasurementsMap()
+        .get(AveragePressureMeasurementVectorStream.AVG_PRESSURE_SOURCE_ID)
+        .getValueInDefaultUnit()
+        .doubleValue();
+  }
+
+  /** Collects the output of a session until the expected number of vectors has arrived. */
+  private static final class Sink {
+
+    private final List<MeasurementVector> vectors = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> threads = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch done;
+
+    private Sink(Session session, int expected) {
+      done = new CountDownLatch(expected);
+      session
+          .getOutput()
+          .subscribe(
+              v -> {
+                vectors.add(v);
+                threads.add(Thread.currentThread().getName());
+                done.countDown();
+              });
+    }
+
+    private void await() throws InterruptedException {
+      Assertions.assertTrue(done.await(10, TimeUnit.SECONDS));
+    }
+  }
+
+  @Test
+  public void constructor_nonPositiveWorkerThreads_throws() {
+    Assertions.assertThrows(IllegalArgumentException.class, () -> new SessionManager(0));
+  }
+
+  @Test
+  public void constructor_nonPositiveLaneCapacity_throws() {
+    Assertions.assertThrows(IllegalArgumentException.class, () -> new SessionManager(1, 0));
+  }
+
+  @Test
+  public void sessions_processTheirOwnVectorsInOrderOnWorkers() throws InterruptedException {
+    TestMeasurementVectorStream liveSource = new TestMeasurementVectorStream();
+    TestMeasurementVectorStream replaySource = new TestMeasurementVectorStream();
+    Session live = manager.open("live", liveSource, siteConfig, null, null);
+    Session replay = manager.open("replay", replaySource, siteConfig, null, null);
+    Sink liveSink = new Sink(live, 200);
+    Sink replaySink = new Sink(replay, 200);
+
+    for (int i = 0; i < 200; i++) {
+      liveSource.publishToSubscribers(vector(i, 150_000.0));
+      replaySource.publishToSubscribers(vector(i, 250_000.0));
+    }
+    liveSink.await();
+    replaySink.await();
+
+    for (int i = 0; i < 200; i++) {
+      Assertions.assertEquals(i * 60_000L, liveSink.vectors.get(i).getTimeUtc());
+      Assertions.assertEquals(150_000.0 - i, averagePressure(liveSink.vectors.get(i)), 1e-9);
+      Assertions.assertEquals(250_000.0 - i, averagePressure(replaySink.vectors.get(i)), 1e-9);
+    }
+    Assertions.assertTrue(liveSink.threads.stream().allMatch(n -> n.startsWith("session-worker")));
+    Assertions.assertEquals(List.of(live, replay), manager.sessions());
+    Assertions.assertSame(live, manager.get("live"));
+    Assertions.assertNull(live.getPlayback());
+    Assertions.assertEquals(siteConfig.getSensors(), live.getOutput().listSensors());
+  }
+
+  @Test
+  public void stats_reportVectorsCpuAndMemoryPerSession() throws InterruptedException {
+    TestMeasurementVectorStream source = new TestMeasurementVectorStream();
+    Session busy = manager.open("busy", source, siteConfig, null, null);
+    manager.open("idle", new TestMeasurementVectorStream(), siteConfig, null, null);
+    Sink sink = new Sink(busy, 50);
+
+    for (int i = 0; i < 50; i++) {
+      source.publishToSubscribers(vector(i, 150_000.0));
+    }
+    sink.await();
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (busy.stats().vectors() < 50 && System.nanoTime() < deadline) {
+      Thread.sleep(1L);
+    }
+
+    List<SessionStats> stats = manager.stats();
+    Assertions.assertEquals(2, stats.size());
+    SessionStats busyStats = stats.get(0);
+    Assertions.assertEquals("busy", busyStats.session());
+    Assertions.assertEquals(50, busyStats.vectors());
+    Assertions.assertEquals(0, busyStats.backlog());
+    Assertions.assertTrue(busyStats.cpuNanos() >= 0);
+    Assertions.assertTrue(busyStats.allocatedBytes() > 0);
+    Assertions.assertEquals(new SessionStats("idle", 0, 0, 0, 0, 0), stats.get(1));
+  }
+
+  @Test
+  public void busySession_yieldsWorkerAfterABatch() throws InterruptedException {
+    TestMeasurementVectorStream source = new TestMeasurementVectorStream();
+    Session session = manager.open("busy", source, siteConfig, null, null);
+    CountDownLatch firstReceived = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    session
+        .getOutput()
+        .subscribe(
+            v -> {
+              firstReceived.countDown();
+              try {
+                release.await();
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            });
+    Sink sink = new Sink(session, 500);
+
+    source.publishToSubscribers(vector(0, 150_000.0));
+    Assertions.assertTrue(firstReceived.await(10, TimeUnit.SECONDS));
+    for (int i = 1; i < 500; i++) {
+      source.publishToSubscribers(vector(i, 150_000.0));
+    }
+    Assertions.assertEquals(499, session.stats().backlog());
+    release.countDown();
+    sink.await();
+
+    for (int i = 0; i < 500; i++) {
+      Assertions.assertEquals(i * 60_000L, sink.vectors.get(i).getTimeUtc());
+    }
+  }
+
+  @Test
+  public void fullLane_dropsOldestQueuedVectors() throws InterruptedException {
+    try (SessionManager small = new SessionManager(1, 10)) {
+      TestMeasurementVectorStream source = new TestMeasurementVectorStream();
+      Session session = small.open("stalled", source, siteConfig, null, null);
+      CountDownLatch firstReceived = new CountDownLatch(1);
+      CountDownLatch release = new CountDownLatch(1);
+      session
+          .getOutput()
+          .subscribe(
+              v -> {
+                firstReceived.countDown();
+                try {
+                  release.await();
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                }
+              });
+      Sink sink = new Sink(session, 11);
+
+      source.publishToSubscribers(vector(0, 150_000.0));
+      Assertions.assertTrue(firstReceived.await(10, TimeUnit.SECONDS));
+      for (int i = 1; i <= 50; i++) {
+        source.publishToSubscribers(vector(i, 150_000.0));
+      }
+      SessionStats stalled = session.stats();
+      release.countDown();
+      sink.await();
+
+      Assertions.assertEquals(10, stalled.backlog());
+      Assertions.assertEquals(40, stalled.dropped());
+      Assertions.assertEquals(0L, sink.vectors.get(0).getTimeUtc());
+      for (int i = 1; i <= 10; i++) {
+        Assertions.assertEquals((40 + i) * 60_000L, sink.vectors.get(i).getTimeUtc());
+      }
+    }
+  }
+
+  @Test
+  public void open_duplicateName_throws() {
+    manager.open("a", new TestMeasurementVectorStream(), siteConfig, null, null);
+
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> manager.open("a", new TestMeasurementVectorStream(), siteConfig, null, null));
+  }
+
+  @Test
+  public void close_unsubscribesAndRemovesSession() {
+    TestMeasurementVectorStream source = new TestMeasurementVectorStream();
+    Session session = manager.open("a", source, siteConfig, null, null);
+
+    session.close();
+    session.close();
+
+    Assertions.assertTrue(session.isClosed());
+    Assertions.assertTrue(source.getSubscribers().isEmpty());
+    Assertions.assertNull(manager.get("a"));
+    Assertions.assertNotSame(session, manager.open("a", source, siteConfig, null, null));
+  }
+
+  @Test
+  public void playbackSession_replaysOnSharedScheduler() throws InterruptedException {
+    Session session = manager.openPlayback("replay", siteConfig, null, null);
+    Sink sink = new Sink(session, 3);
+    List<MeasurementVector> vectors = List.of(vector(0, 1e5), vector(1, 1e5), vector(2, 1e5));
+
+    session.getPlayback().setSpeed(1_000_000.0);
+    session.getPlayback().startPlayback(vectors, 0L, true);
+    sink.await();
+    session.close();
+
+    Assertions.assertEquals(120_000L, sink.vectors.get(2).getTimeUtc());
+    Assertions.assertTrue(session.getPlayback().getSubscribers().isEmpty());
+  }
+
+  @Test
+  public void latencyTracer_includesTimeWaitingForAWorker() throws InterruptedException {
+    LatencyTracer tracer = new LatencyTracer();
+    tracer.setEnabled(true);
+    TestMeasurementVectorStream source = new TestMeasurementVectorStream();
+    Session session = manager.open("traced", source, siteConfig, null, null);
+    session.setLatencyTracer(tracer);
+    Sink sink = new Sink(session, 2);
+
+    source.publishToSubscribers(vector(0, 150_000.0));
+    source.publishToSubscribers(vector(1, 150_000.0));
+    sink.await();
+    session.setLatencyTracer(null);
+
+    Assertions.assertTrue(sink.vectors.get(0).getIngestNanos() != 0L);
+    List<LatencyStats> stats = tracer.snapshot();
+    Assertions.assertTrue(stats.getFirst().hop().startsWith("believability + calibration"));
+    Assertions.assertEquals(2, stats.getFirst().count());
+  }
+
+  @Test
+  public void managerClose_closesSessionsAndRejectsNewOnes() {
+    TestMeasurementVectorStream source = new TestMeasurementVectorStream();
+    Session session = manager.open("a", source, siteConfig, null, null);
+
+    manager.close();
+
+    Assertions.assertTrue(session.isClosed());
+    Assertions.assertTrue(manager.sessions().isEmpty());
+    Assertions.assertThrows(
+        IllegalStateException.class,
+        () -> manager.openPlayback("b", siteConfig, null, null));
+  }
+
+  @Test
+  public void checkpoints_areSavedPeriodicallyAndOnCloseAndResumed() throws InterruptedException {
+    TestMeasurementVectorStream source = new TestMeasurementVectorStream();
+    List<byte[]> written = Collections.synchronizedList(new ArrayList<>());
+    Session session =
+        manager.open("a", source, siteConfig, null, null, null, 10 * 60_000L, written::add);
+    Sink sink = new Sink(session, 30);
+    for (int i = 0; i < 30; i++) {
+      source.publishToSubscribers(vector(i, 150_000.0));
+    }
+    sink.await();
+    byte[] checkpoint = session.checkpoint();
+    session.close();
+
+    // Periodic checkpoints at 0, 10 and 20 minutes, and the last one on close.
+    Assertions.assertEquals(4, written.size());
+    Assertions.assertArrayEquals(checkpoint, written.getLast());
+
+    TestMeasurementVectorStream resumedSource = new TestMeasurementVectorStream();
+    Session resumed =
+        manager.open("a", resumedSource, siteConfig, null, null, checkpoint, 10 * 60_000L, null);
+    Sink resumedSink = new Sink(resumed, 10);
+    for (int i = 0; i < 40; i++) {
+      resumedSource.publishToSubscribers(vector(i, 150_000.0));
+    }
+    resumedSink.await();
+
+    Assertions.assertEquals(30 * 60_000L, resumedSink.vectors.getFirst().getTimeUtc());
+    Assertions.assertNotEquals(
+        -1.0,
+        resumedSink
+            .vectors
+            .getFirst()
+            .getMeasurementsMap()
+            .get(LeakageMeasurementVectorStream.LEAKAGE_SOURCE_ID)
+            .getValueInDefaultUnit()
+            .doubleValue());
+  }
+
+  @Test
+  public void managerClose_savesLastCheckpointOfEverySession() {
+    List<byte[]> written = Collections.synchronizedList(new ArrayList<>());
+    TestMeasurementVectorStream source = new TestMeasurementVectorStream();
+    manager.open("a", source, siteConfig, null, null, null, 60_000L, written::add);
+    manager.openPlayback("b", siteConfig, null, null, null, 60_000L, written::add);
+
+    manager.close();
+
+    Assertions.assertEquals(2, written.size());
+  }
+
+  @Test
+  public void sessionStats_format() {
+    Assertions.assertEquals(
+        "Unit 1 n=1440 backlog=2 dropped=3 cpu=212.4ms allocated=38.1MB",
+        new SessionStats("Unit 1", 1440, 2, 3, 212_400_000L, 38_100_000L).format());
+  }
+}
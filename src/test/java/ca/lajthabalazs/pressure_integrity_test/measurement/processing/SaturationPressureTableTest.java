@@ -0,0 +1,43 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link SaturationPressureTable}. */
+public class SaturationPressureTableTest {
+
+  @Test
+  public void antoine_knownValues() {
+    // log10(P/bar) = 6.20963 - 2354.731 / (T/K + 7.559)
+    Assertions.assertEquals(2393.497, SaturationPressureTable.antoinePascal(20.0), 1e-3);
+    Assertions.assertEquals(105805.83, SaturationPressureTable.antoinePascal(100.0), 1e-2);
+  }
+
+  @Test
+  public void table_matchesAntoineWithinDocumentedError() {
+    double maxRelativeError = 0.0;
+    for (int i = 0; i <= 100_000; i++) {
+      double celsius = i * 0.001;
+      double exact = SaturationPressureTable.antoinePascal(celsius);
+      double tabulated = SaturationPressureTable.pascal(celsius);
+      maxRelativeError = Math.max(maxRelativeError, Math.abs(tabulated - exact) / exact);
+    }
+    Assertions.assertTrue(maxRelativeError <= 5.4e-6, "max error " + maxRelativeError);
+    Assertions.assertTrue(maxRelativeError > 1e-6, "interpolation is not exact");
+  }
+
+  @Test
+  public void table_endpointsAreExact() {
+    Assertions.assertEquals(
+        SaturationPressureTable.antoinePascal(0.0), SaturationPressureTable.pascal(0.0));
+    Assertions.assertEquals(
+        SaturationPressureTable.antoinePascal(100.0), SaturationPressureTable.pascal(100.0));
+  }
+
+  @Test
+  public void outsideTable_returnsNaN() {
+    Assertions.assertTrue(Double.isNaN(SaturationPressureTable.pascal(-0.01)));
+    Assertions.assertTrue(Double.isNaN(SaturationPressureTable.pascal(100.01)));
+    Assertions.assertTrue(Double.isNaN(SaturationPressureTable.pascal(Double.NaN)));
+  }
+}
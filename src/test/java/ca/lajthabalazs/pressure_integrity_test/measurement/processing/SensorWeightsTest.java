@@ -0,0 +1,117 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
+
+import ca.lajthabalazs.pressure_integrity_test.config.HumiditySensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.LocationConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.SensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.SiteConfig;
+import ca.lajthabalazs.pressure_integrity_test.config.TemperatureSensorConfig;
+import ca.lajthabalazs.pressure_integrity_test.measurement.ErrorSeverity;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Humidity;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementError;
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import ca.lajthabalazs.pressure_integrity_test.measurement.Temperature;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link SensorWeights}. */
+public class SensorWeightsTest {
+
+  private static SensorConfig sensor(SensorConfig sensor, String id, String sigma) {
+    sensor.setId(id);
+    sensor.setSigma(sigma != null ? new BigDecimal(sigma) : null);
+    return sensor;
+  }
+
+  /** L1 (volume 2, no volume for L2): T1 σ=0.5, T2 σ=0, T3 no σ, H1 σ=2. */
+  private static SiteConfig site(LocationConfig l1, LocationConfig l2) {
+    l1.setId("L1");
+    l1.setVolumeFactor(new BigDecimal("2"));
+    l1.setSensors(
+        List.of(
+            sensor(new TemperatureSensorConfig(), "T1", "0.5"),
+            sensor(new HumiditySensorConfig(), "H1", "2")));
+    l2.setId("L2");
+    l2.setSensors(
+        List.of(
+            sensor(new TemperatureSensorConfig(), "T2", "0"),
+            sensor(new TemperatureSensorConfig(), "T3", null)));
+    SiteConfig site = new SiteConfig();
+    site.setLocations(List.of(l1, l2));
+    return site;
+  }
+
+  private static void load(SensorWeights weights, MeasurementVector vector) {
+    weights.load(vector.getMeasurementsMap(), vector.getErrors(), Temperature.class);
+  }
+
+  @Test
+  public void compile_combinesVolumeFactorAndInverseVariance() {
+    LocationConfig l1 = new LocationConfig();
+    LocationConfig l2 = new LocationConfig();
+    SiteConfig site = site(l1, l2);
+    SensorWeights weights =
+        SensorWeights.compile(
+            site, TemperatureSensorConfig.class, Map.of("T1", l1, "T2", l2, "H1", l1));
+
+    Assertions.assertEquals(3, weights.size());
+    Assertions.assertEquals(8.0, weights.weight(0), 0.0);
+    Assertions.assertEquals(1.0, weights.weight(1), 0.0, "Zero sigma and no volume factor");
+    Assertions.assertEquals(1.0, weights.weight(2), 0.0, "No sigma and no location");
+
+    SensorWeights humidity = SensorWeights.compile(site, HumiditySensorConfig.class, Map.of());
+    Assertions.assertEquals(0.25, humidity.weight(0), 0.0);
+  }
+
+  @Test
+  public void load_skipsOtherTypesAndFlaggedSensors_meansRenormalise() {
+    SiteConfig site = site(new LocationConfig(), new LocationConfig());
+    SensorWeights weights = SensorWeights.compile(site, TemperatureSensorConfig.class, Map.of());
+    // Weights: T1 4, T2 1, T3 1
+    load(
+        weights,
+        new MeasurementVector(
+            0L,
+            List.of(
+                new Temperature(0L, "T1", new BigDecimal("10")),
+                new Humidity(0L, "T2", new BigDecimal("50")),
+                new Temperature(0L, "T3", new BigDecimal("20")),
+                new Temperature(0L, "X", new BigDecimal("30")))));
+    Assertions.assertTrue(Double.isNaN(weights.value(1)));
+    Assertions.assertEquals((4 * 10.0 + 20.0) / 5, weights.weightedMean(), 1e-12);
+    Assertions.assertEquals(5 / (4 / 10.0 + 1 / 20.0), weights.weightedHarmonicMean(), 1e-12);
+
+    weights.exclude(2);
+    Assertions.assertEquals(10.0, weights.weightedMean(), 1e-12);
+
+    load(
+        weights,
+        new MeasurementVector(
+            0L,
+            List.of(new Temperature(0L, "T1", new BigDecimal("10"))),
+            List.of(
+                new MeasurementError("T1", ErrorSeverity.WARNING, "Out of valid range"),
+                new MeasurementError("AVG_R", ErrorSeverity.WARNING, "Other"))));
+    Assertions.assertTrue(Double.isNaN(weights.weightedMean()));
+    Assertions.assertTrue(Double.isNaN(weights.weightedHarmonicMean()));
+  }
+
+  @Test
+  public void weightedHarmonicMean_zeroValuesCountOnlyInNumerator() {
+    SiteConfig site = site(new LocationConfig(), new LocationConfig());
+    SensorWeights weights = SensorWeights.compile(site, TemperatureSensorConfig.class, Map.of());
+    load(
+        weights,
+        new MeasurementVector(
+            0L,
+            List.of(
+                new Temperature(0L, "T1", new BigDecimal("0")),
+                new Temperature(0L, "T2", new BigDecimal("20")))));
+    Assertions.assertEquals(5 / (1 / 20.0), weights.weightedHarmonicMean(), 1e-12);
+
+    weights.exclude(1);
+    Assertions.assertTrue(Double.isNaN(weights.weightedHarmonicMean()), "Denominator zero");
+  }
+}
@@ -0,0 +1,73 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link SpscRingBuffer}. */
+public class SpscRingBufferTest {
+
+  @Test
+  public void capacity_roundedUpToPowerOfTwo() {
+    Assertions.assertEquals(1, new SpscRingBuffer<String>(1).capacity());
+    Assertions.assertEquals(8, new SpscRingBuffer<String>(5).capacity());
+    Assertions.assertEquals(8, new SpscRingBuffer<String>(8).capacity());
+  }
+
+  @Test
+  public void invalidCapacity_throws() {
+    Assertions.assertThrows(IllegalArgumentException.class, () -> new SpscRingBuffer<String>(0));
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> new SpscRingBuffer<String>((1 << 30) + 1));
+  }
+
+  @Test
+  public void offerAndPoll_fifoUntilFullOrEmpty() {
+    SpscRingBuffer<String> buffer = new SpscRingBuffer<>(2);
+    Assertions.assertNull(buffer.poll());
+    Assertions.assertTrue(buffer.offer("a"));
+    Assertions.assertTrue(buffer.offer("b"));
+    Assertions.assertFalse(buffer.offer("c"));
+    Assertions.assertEquals(2, buffer.size());
+
+    Assertions.assertEquals("a", buffer.poll());
+    Assertions.assertTrue(buffer.offer("c"));
+    Assertions.assertEquals("b", buffer.poll());
+    Assertions.assertEquals("c", buffer.poll());
+    Assertions.assertNull(buffer.poll());
+    Assertions.assertEquals(0, buffer.size());
+  }
+
+  @Test
+  public void producerAndConsumerThreads_preserveOrder() throws InterruptedException {
+    int count = 200_000;
+    SpscRingBuffer<Integer> buffer = new SpscRingBuffer<>(64);
+    List<Integer> received = new ArrayList<>(count);
+    Thread consumer =
+        new Thread(
+            () -> {
+              while (received.size() < count) {
+                Integer item = buffer.poll();
+                if (item == null) {
+                  Thread.onSpinWait();
+                } else {
+                  received.add(item);
+                }
+              }
+            });
+    consumer.start();
+    for (int i = 0; i < count; i++) {
+      while (!buffer.offer(i)) {
+        Thread.onSpinWait();
+      }
+    }
+    consumer.join(10_000L);
+
+    Assertions.assertFalse(consumer.isAlive());
+    Assertions.assertEquals(count, received.size());
+    for (int i = 0; i < count; i++) {
+      Assertions.assertEquals(i, received.get(i));
+    }
+  }
+}
@@ -0,0 +1,55 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link StageEndPredictionMeasurementVectorStream#projectedSumSquaredDeviationsX}. */
+public class StageEndPredictionProjectionTest {
+
+  @Test
+  public void projectedSpread_matchesAddingTheSamples() {
+    LinearRegressionAccumulator existing = new LinearRegressionAccumulator();
+    double[] xs = {0.0, 250.0, 700.0, 900.0, 1200.0};
+    for (double x : xs) {
+      existing.add(x, 0.0);
+    }
+    double interval = 1200.0 / 4;
+    long m = 17;
+
+    LinearRegressionAccumulator all = new LinearRegressionAccumulator();
+    for (double x : xs) {
+      all.add(x, 0.0);
+    }
+    for (int k = 1; k <= m; k++) {
+      all.add(1200.0 + k * interval, 0.0);
+    }
+
+    double projected =
+        StageEndPredictionMeasurementVectorStream.projectedSumSquaredDeviationsX(
+            existing.count(),
+            existing.meanX(),
+            existing.sumSquaredDeviationsX(),
+            1200.0,
+            interval,
+            m);
+    Assertions.assertEquals(all.sumSquaredDeviationsX(), projected, 1e-6);
+  }
+
+  @Test
+  public void noRemainingSamples_keepsSpread() {
+    Assertions.assertEquals(
+        42.0,
+        StageEndPredictionMeasurementVectorStream.projectedSumSquaredDeviationsX(
+            3, 10.0, 42.0, 20.0, 10.0, 0));
+  }
+
+  @Test
+  public void singleRemainingSample_addsOnlyMeanDistanceTerm() {
+    // x = 0, 10, 20 (mean 10, Sxx 200) plus x = 30: mean 15, Sxx 500.
+    Assertions.assertEquals(
+        500.0,
+        StageEndPredictionMeasurementVectorStream.projectedSumSquaredDeviationsX(
+            3, 10.0, 200.0, 20.0, 10.0, 1),
+        1e-9);
+  }
+}
@@ -0,0 +1,39 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.processing;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link StudentTDistribution}. */
+public class StudentTDistributionTest {
+
+  @Test
+  public void oneSided95_smallDegreesOfFreedom_useTable() {
+    Assertions.assertEquals(6.3138, StudentTDistribution.oneSided95(1), 1e-9);
+    Assertions.assertEquals(2.0150, StudentTDistribution.oneSided95(5), 1e-9);
+    Assertions.assertEquals(1.6973, StudentTDistribution.oneSided95(30), 1e-9);
+  }
+
+  @Test
+  public void oneSided95_largeDegreesOfFreedom_matchExactQuantiles() {
+    Assertions.assertEquals(1.695519, StudentTDistribution.oneSided95(31), 1e-4);
+    Assertions.assertEquals(1.683851, StudentTDistribution.oneSided95(40), 1e-4);
+    Assertions.assertEquals(1.657651, StudentTDistribution.oneSided95(120), 1e-4);
+    Assertions.assertEquals(
+        StudentTDistribution.Z_95, StudentTDistribution.oneSided95(100_000_000L), 1e-7);
+  }
+
+  @Test
+  public void oneSided95_decreasesMonotonically() {
+    for (long df = 1; df < 500; df++) {
+      Assertions.assertTrue(
+          StudentTDistribution.oneSided95(df) > StudentTDistribution.oneSided95(df + 1),
+          "Not decreasing at df " + df);
+    }
+  }
+
+  @Test
+  public void oneSided95_invalidDegreesOfFreedom_throws() {
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> StudentTDistribution.oneSided95(0));
+  }
+}
@@ -0,0 +1,85 @@
+package ca.lajthabalazs.pressure_integrity_test.measurement.tracing;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link LatencyHistogram}. */
+public class LatencyHistogramTest {
+
+  @Test
+  public void bucket_smallValuesHaveOneBucketEach() {
+    for (int i = 0; i < 8; i++) {
+      Assertions.assertEquals(i, LatencyHistogram.bucket(i));
+      Assertions.assertEquals(i, LatencyHistogram.upperBound(i));
+    }
+  }
+
+  @Test
+  public void bucket_splitsEveryPowerOfTwoIntoEightBuckets() {
+    Assertions.assertEquals(8, LatencyHistogram.bucket(8));
+    Assertions.assertEquals(15, LatencyHistogram.bucket(15));
+    Assertions.assertEquals(16, LatencyHistogram.bucket(16));
+    Assertions.assertEquals(16, LatencyHistogram.bucket(17));
+    Assertions.assertEquals(17, LatencyHistogram.bucket(18));
+    Assertions.assertEquals(8, LatencyHistogram.upperBound(8));
+    Assertions.assertEquals(17, LatencyHistogram.upperBound(16));
+    Assertions.assertEquals(19, LatencyHistogram.upperBound(17));
+    Assertions.assertEquals(487, LatencyHistogram.bucket(Long.MAX_VALUE));
+    Assertions.assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBound(487));
+  }
+
+  @Test
+  public void bucket_everyValueIsAtMostItsUpperBoundAndAboveThePreviousOne() {
+    for (long v = 0; v < 100_000; v += 7) {
+      int bucket = LatencyHistogram.bucket(v);
+      Assertions.assertTrue(v <= LatencyHistogram.upperBound(bucket), "value " + v);
+      Assertions.assertTrue(bucket == 0 || v > LatencyHistogram.upperBound(bucket - 1));
+    }
+  }
+
+  @Test
+  public void snapshot_empty_isAllZero() {
+    LatencyStats stats = new LatencyHistogram("sink").snapshot();
+
+    Assertions.assertEquals(new LatencyStats("sink", 0, 0, 0, 0, 0), stats);
+  }
+
+  @Test
+  public void snapshot_reportsCountMeanPercentilesAndMax() {
+    LatencyHistogram histogram = new LatencyHistogram("step");
+    for (int i = 1; i <= 100; i++) {
+      histogram.record(i * 1_000L);
+    }
+
+    LatencyStats stats = histogram.snapshot();
+
+    Assertions.assertEquals("step", histogram.getName());
+    Assertions.assertEquals(100, stats.count());
+    Assertions.assertEquals(50_500, stats.meanNanos());
+    Assertions.assertTrue(stats.p50Nanos() >= 50_000 && stats.p50Nanos() <= 50_000 * 9 / 8);
+    Assertions.assertTrue(stats.p99Nanos() >= 99_000 && stats.p99Nanos() <= 100_000);
+    Assertions.assertEquals(100_000, stats.maxNanos());
+  }
+
+  @Test
+  public void record_negativeCountsAsZero() {
+    LatencyHistogram histogram = new LatencyHistogram("clock skew");
+    histogram.record(-5);
+
+    LatencyStats stats = histogram.snapshot();
+
+    Assertions.assertEquals(1, stats.count());
+    Assertions.assertEquals(0, stats.p99Nanos());
+    Assertions.assertEquals(0, stats.maxNanos());
+  }
+
+  @Test
+  public void reset_removesAllLatencies() {
+    LatencyHistogram histogram = new LatencyHistogram("step");
+    histogram.record(1_000_000L);
+
+    histogram.reset();
+
+    Assertions.assertEquals(new LatencyStats("step", 0, 0, 0, 0, 0), histogram.snapshot());
+  }
+}
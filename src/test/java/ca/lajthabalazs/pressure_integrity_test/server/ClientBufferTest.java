@@ -0,0 +1,104 @@
+package ca.lajthabalazs.pressure_integrity_test.server;
+
+import ca.lajthabalazs.pressure_integrity_test.measurement.MeasurementVector;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link ClientBuffer}. */
+public class ClientBufferTest {
+
+  private static MeasurementVector vector(long t) {
+    return new MeasurementVector(t, Map.of());
+  }
+
+  private static List<Long> times(List<MeasurementVector> vectors) {
+    return vectors.stream().map(MeasurementVector::getTimeUtc).toList();
+  }
+
+  @Test
+  public void drainTo_movesQueuedVectorsInOrder() {
+    ClientBuffer buffer = new ClientBuffer(4);
+    buffer.offer(vector(1));
+    buffer.offer(vector(2));
+    List<MeasurementVector> batch = new ArrayList<>();
+
+    Assertions.assertEquals(0, buffer.drainTo(batch));
+
+    Assertions.assertEquals(List.of(1L, 2L), times(batch));
+  }
+
+  @Test
+  public void offer_fullBuffer_dropsOldestAndCountsOnce() {
+    ClientBuffer buffer = new ClientBuffer(2);
+    for (long t = 1; t <= 5; t++) {
+      buffer.offer(vector(t));
+    }
+    List<MeasurementVector> batch = new ArrayList<>();
+
+    Assertions.assertEquals(3, buffer.drainTo(batch));
+    Assertions.assertEquals(List.of(4L, 5L), times(batch));
+
+    batch.clear();
+    buffer.offer(vector(6));
+    Assertions.assertEquals(0, buffer.drainTo(batch));
+  }
+
+  @Test
+  public void drainTo_waitsForAVector() throws InterruptedException {
+    ClientBuffer buffer = new ClientBuffer(2);
+    List<MeasurementVector> batch = new ArrayList<>();
+    AtomicLong result = new AtomicLong(Long.MIN_VALUE);
+    Thread reader = new Thread(() -> result.set(buffer.drainTo(batch)));
+    reader.start();
+
+    Thread.sleep(20L);
+    Assertions.assertEquals(Long.MIN_VALUE, result.get());
+    buffer.offer(vector(1));
+    reader.join(10_000L);
+
+    Assertions.assertEquals(0, result.get());
+    Assertions.assertEquals(1, batch.size());
+  }
+
+  @Test
+  public void close_wakesReaderAndIgnoresLaterVectors() throws InterruptedException {
+    ClientBuffer buffer = new ClientBuffer(2);
+    AtomicLong result = new AtomicLong();
+    Thread reader = new Thread(() -> result.set(buffer.drainTo(new ArrayList<>())));
+    reader.start();
+
+    Thread.sleep(20L);
+    buffer.close();
+    reader.join(10_000L);
+    buffer.offer(vector(1));
+
+    Assertions.assertEquals(-1, result.get());
+    Assertions.assertEquals(-1, buffer.drainTo(new ArrayList<>()));
+  }
+
+  @Test
+  public void drainTo_interrupted_returnsMinusOneAndKeepsFlag() throws InterruptedException {
+    ClientBuffer buffer = new ClientBuffer(2);
+    AtomicLong result = new AtomicLong();
+    AtomicBoolean interrupted = new AtomicBoolean();
+    Thread reader =
+        new Thread(
+            () -> {
+              result.set(buffer.drainTo(new ArrayList<>()));
+              interrupted.set(Thread.currentThread().isInterrupted());
+            });
+    reader.start();
+
+    Thread.sleep(20L);
+    reader.interrupt();
+    reader.join(10_000L);
+
+    Assertions.assertEquals(-1, result.get());
+    Assertions.assertTrue(interrupted.get());
+  }
+}